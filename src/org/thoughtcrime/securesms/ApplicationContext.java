@@ -29,6 +29,7 @@ import android.support.multidex.MultiDexApplication;
 import com.google.android.gms.security.ProviderInstaller;
 
 import org.thoughtcrime.securesms.crypto.PRNGFixes;
+import org.thoughtcrime.securesms.database.SmsMigrator;
 import org.thoughtcrime.securesms.dependencies.AxolotlStorageModule;
 import org.thoughtcrime.securesms.dependencies.InjectableType;
 import org.thoughtcrime.securesms.dependencies.SignalCommunicationModule;
@@ -55,6 +56,7 @@ import org.thoughtcrime.securesms.service.RotateSenderCertificateListener;
 import org.thoughtcrime.securesms.service.RotateSignedPreKeyListener;
 import org.thoughtcrime.securesms.service.UpdateApkRefreshListener;
 import org.thoughtcrime.securesms.util.TextSecurePreferences;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
 import org.webrtc.PeerConnectionFactory;
 import org.webrtc.PeerConnectionFactory.InitializationOptions;
 import org.webrtc.voiceengine.WebRtcAudioManager;
@@ -111,6 +113,7 @@ public class ApplicationContext extends MultiDexApplication implements Dependenc
     initializeWebRtc();
     initializePendingMessages();
     initializeUnidentifiedDeliveryAbilityRefresh();
+    initializeSmsSearchIndex();
     NotificationChannels.create(this);
     ProcessLifecycleOwner.get().getLifecycle().addObserver(this);
   }
@@ -289,4 +292,8 @@ public class ApplicationContext extends MultiDexApplication implements Dependenc
       jobManager.add(new RefreshUnidentifiedDeliveryAbilityJob(this));
     }
   }
+
+  private void initializeSmsSearchIndex() {
+    SignalExecutors.IO.execute(() -> SmsMigrator.restoreIndexingIfSuspended(this));
+  }
 }
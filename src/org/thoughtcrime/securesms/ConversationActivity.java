@@ -155,6 +155,7 @@ import org.thoughtcrime.securesms.recipients.RecipientFormattingException;
 import org.thoughtcrime.securesms.recipients.RecipientModifiedListener;
 import org.thoughtcrime.securesms.scribbles.ScribbleActivity;
 import org.thoughtcrime.securesms.service.KeyCachingService;
+import org.thoughtcrime.securesms.service.WebRtcCallService;
 import org.thoughtcrime.securesms.sms.MessageSender;
 import org.thoughtcrime.securesms.sms.OutgoingEncryptedMessage;
 import org.thoughtcrime.securesms.sms.OutgoingEndSessionMessage;
@@ -176,6 +177,7 @@ import org.thoughtcrime.securesms.util.Util;
 import org.thoughtcrime.securesms.util.ViewUtil;
 import org.thoughtcrime.securesms.util.concurrent.AssertedSuccessListener;
 import org.thoughtcrime.securesms.util.concurrent.ListenableFuture;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 import org.thoughtcrime.securesms.util.concurrent.SettableFuture;
 import org.thoughtcrime.securesms.util.views.Stub;
 import org.whispersystems.libsignal.InvalidMessageException;
@@ -272,6 +274,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
   private boolean    isDefaultSms          = true;
   private boolean    isMmsEnabled          = true;
   private boolean    isSecurityInitialized = false;
+  private boolean    isCallPrewarmed       = false;
 
   private final IdentityRecordList identityRecords = new IdentityRecordList();
   private final DynamicTheme       dynamicTheme    = new DynamicTheme();
@@ -341,6 +344,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
     }
 
     setIntent(intent);
+    isCallPrewarmed = false;
     initializeResources();
     initializeSecurity(false, isDefaultSms).addListener(new AssertedSuccessListener<Boolean>() {
       @Override
@@ -380,6 +384,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
 
     MessageNotifier.setVisibleThread(threadId);
     markThreadAsRead();
+    initializeCallPrewarm();
 
     Log.i(TAG, "onResume() Finished: " + (System.currentTimeMillis() - getIntent().getLongExtra(TIMING_EXTRA, 0)));
   }
@@ -673,7 +678,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
           invalidateOptionsMenu();
           if (fragment != null) fragment.setLastSeen(0);
         }
-      }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
     });
   }
 
@@ -689,7 +694,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
 
           return null;
         }
-      }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
     });
   }
 
@@ -713,7 +718,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
 
         return null;
       }
-    }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
   }
 
   private void handleUnblock() {
@@ -743,7 +748,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
 
                          return null;
                        }
-                     }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+                     }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
                    }).show();
   }
 
@@ -805,7 +810,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
           protected void onPostExecute(Long result) {
             sendComplete(result);
           }
-        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, endSessionMessage);
+        }.executeOnExecutor(PriorityExecutors.USER_INITIATED, endSessionMessage);
       }
     });
     builder.setNegativeButton(android.R.string.cancel, null);
@@ -919,7 +924,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
                          .setDistributionType(threadId, ThreadDatabase.DistributionTypes.BROADCAST);
           return null;
         }
-      }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
     }
   }
 
@@ -935,7 +940,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
                          .setDistributionType(threadId, ThreadDatabase.DistributionTypes.CONVERSATION);
           return null;
         }
-      }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
     }
   }
 
@@ -1084,6 +1089,15 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
 
   ///// Initializers
 
+  private void initializeCallPrewarm() {
+    if (isCallPrewarmed || !isSingleConversation() || isSelfConversation()) return;
+
+    if (recipient.getRegistered() == RegisteredState.REGISTERED) {
+      WebRtcCallService.prewarm(this);
+      isCallPrewarmed = true;
+    }
+  }
+
   private ListenableFuture<Boolean> initializeDraft() {
     final SettableFuture<Boolean> result = new SettableFuture<>();
 
@@ -1177,7 +1191,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
 
         updateToggleButtonState();
       }
-    }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
 
     return future;
   }
@@ -1234,7 +1248,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
         future.set(true);
         onSecurityUpdated();
       }
-    }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, recipient);
+    }.executeOnExecutor(PriorityExecutors.USER_INITIATED, recipient);
 
     return future;
   }
@@ -1288,7 +1302,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
       protected void onPostExecute(Boolean isMmsEnabled) {
         ConversationActivity.this.isMmsEnabled = isMmsEnabled;
       }
-    }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
   }
 
   private ListenableFuture<Boolean> initializeIdentityRecords() {
@@ -1342,7 +1356,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
         future.set(true);
       }
 
-    }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, recipient);
+    }.executeOnExecutor(PriorityExecutors.USER_INITIATED, recipient);
 
     return future;
   }
@@ -1635,7 +1649,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
         future.set(result);
       }
 
-    }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, thisThreadId);
+    }.executeOnExecutor(PriorityExecutors.USER_INITIATED, thisThreadId);
 
     return future;
   }
@@ -1763,7 +1777,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
 
         return null;
       }
-    }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, threadId);
+    }.executeOnExecutor(PriorityExecutors.USER_INITIATED, threadId);
   }
 
   private void markLastSeen() {
@@ -1773,7 +1787,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
         DatabaseFactory.getThreadDatabase(ConversationActivity.this).setLastSeen(params[0]);
         return null;
       }
-    }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, threadId);
+    }.executeOnExecutor(PriorityExecutors.USER_INITIATED, threadId);
   }
 
   protected void sendComplete(long threadId) {
@@ -1880,7 +1894,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
                      sendComplete(result);
                      future.set(null);
                    }
-                 }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+                 }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
                })
                .onAnyDenied(() -> future.set(null))
                .execute();
@@ -1924,7 +1938,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
                    protected void onPostExecute(Long result) {
                      sendComplete(result);
                    }
-                 }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, message);
+                 }.executeOnExecutor(PriorityExecutors.USER_INITIATED, message);
 
                })
                .execute();
@@ -1955,7 +1969,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
                        .setDefaultSubscriptionId(recipient, subscriptionId.or(-1));
         return null;
       }
-    }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
   }
 
   @Override
@@ -2043,7 +2057,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
                 PersistentBlobProvider.getInstance(ConversationActivity.this).delete(ConversationActivity.this, result.first);
                 return null;
               }
-            }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+            }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
           }
         });
       }
@@ -2072,7 +2086,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
             PersistentBlobProvider.getInstance(ConversationActivity.this).delete(ConversationActivity.this, result.first);
             return null;
           }
-        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
       }
 
       @Override
@@ -2285,7 +2299,7 @@ public class ConversationActivity extends PassphraseRequiredActionBarActivity
         protected void onPostExecute(Void result) {
           initializeIdentityRecords();
         }
-      }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
     }
   }
 
@@ -44,22 +44,21 @@ import org.thoughtcrime.securesms.mms.SlideDeck;
 import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.util.Conversions;
 import org.thoughtcrime.securesms.util.DateUtils;
-import org.thoughtcrime.securesms.util.LRUCache;
 import org.thoughtcrime.securesms.util.StickyHeaderDecoration;
 import org.thoughtcrime.securesms.util.Util;
 import org.thoughtcrime.securesms.util.ViewUtil;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 import org.whispersystems.libsignal.util.guava.Optional;
 
-import java.lang.ref.SoftReference;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -75,10 +74,7 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
   implements StickyHeaderDecoration.StickyHeaderAdapter<HeaderViewHolder>
 {
 
-  private static final int MAX_CACHE_SIZE = 40;
   private static final String TAG = ConversationAdapter.class.getSimpleName();
-  private final Map<String,SoftReference<MessageRecord>> messageRecordCache =
-      Collections.synchronizedMap(new LRUCache<String, SoftReference<MessageRecord>>(MAX_CACHE_SIZE));
 
   private static final int MESSAGE_TYPE_OUTGOING           = 0;
   private static final int MESSAGE_TYPE_INCOMING           = 1;
@@ -101,7 +97,11 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
   private final @NonNull  Calendar          calendar;
   private final @NonNull  MessageDigest     digest;
 
+  private final @NonNull  ConversationRecordStore recordStore;
+
   private MessageRecord recordToPulseHighlight;
+  private long          threadId = -1;
+  private int           threadOffset;
 
   protected static class ViewHolder extends RecyclerView.ViewHolder {
     public <V extends View & BindableConversationItem> ViewHolder(final @NonNull V itemView) {
@@ -152,6 +152,7 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
       this.db            = null;
       this.calendar      = null;
       this.digest        = MessageDigest.getInstance("SHA1");
+      this.recordStore   = new ConversationRecordStore(Runnable::run, Runnable::run);
     } catch (NoSuchAlgorithmException nsae) {
       throw new AssertionError("SHA1 isn't supported!");
     }
@@ -175,6 +176,7 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
       this.db            = DatabaseFactory.getMmsSmsDatabase(context);
       this.calendar      = Calendar.getInstance();
       this.digest        = MessageDigest.getInstance("SHA1");
+      this.recordStore   = new ConversationRecordStore(PriorityExecutors.UI_CRITICAL, Util::runOnMain);
 
       setHasStableIds(true);
     } catch (NoSuchAlgorithmException nsae) {
@@ -182,13 +184,38 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
     }
   }
 
+  /**
+   * Sets the thread and offset the next cursor is queried with, so the rows around the visible
+   * ones can be read ahead of time.
+   */
+  public void setConversation(long threadId, int offset) {
+    this.threadId     = threadId;
+    this.threadOffset = offset;
+  }
+
   @Override
   public void changeCursor(Cursor cursor) {
-    messageRecordCache.clear();
+    recordStore.reset(cursor != null ? cursor.getCount() : 0,
+                      db != null && threadId != -1 ? newRecordLoader(threadId, threadOffset) : null);
     super.cleanFastRecords();
     super.changeCursor(cursor);
   }
 
+  /**
+   * Moves the window of records that are kept, and read ahead, to the items now on screen.
+   */
+  public void onVisibleRangeChanged(int firstVisiblePosition, int lastVisiblePosition) {
+    if (!isActiveCursor() || firstVisiblePosition == RecyclerView.NO_POSITION) return;
+
+    int rowCount = getCursor().getCount();
+    int first    = Math.max(0, getCursorPosition(firstVisiblePosition));
+    int last     = Math.min(rowCount - 1, getCursorPosition(lastVisiblePosition));
+
+    if (first <= last) {
+      recordStore.onVisibleRangeChanged(first, last);
+    }
+  }
+
   @Override
   protected void onBindItemViewHolder(ViewHolder viewHolder, @NonNull MessageRecord messageRecord) {
     long          start            = System.currentTimeMillis();
@@ -306,21 +333,38 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
 
   @Override
   protected MessageRecord getRecordFromCursor(@NonNull Cursor cursor) {
-    long   messageId = cursor.getLong(cursor.getColumnIndexOrThrow(MmsSmsColumns.ID));
-    String type      = cursor.getString(cursor.getColumnIndexOrThrow(MmsSmsDatabase.TRANSPORT));
+    long    messageId = cursor.getLong(cursor.getColumnIndexOrThrow(MmsSmsColumns.ID));
+    boolean mms       = MmsSmsDatabase.MMS_TRANSPORT.equals(cursor.getString(cursor.getColumnIndexOrThrow(MmsSmsDatabase.TRANSPORT)));
+    long    key       = ConversationRecordStore.getKey(messageId, mms);
 
-    final SoftReference<MessageRecord> reference = messageRecordCache.get(type + messageId);
-    if (reference != null) {
-      final MessageRecord record = reference.get();
-      if (record != null) return record;
-    }
+    final MessageRecord record = recordStore.get(key);
+    if (record != null) return record;
 
     final MessageRecord messageRecord = db.readerFor(cursor).getCurrent();
-    messageRecordCache.put(type + messageId, new SoftReference<>(messageRecord));
+    recordStore.put(key, cursor.getPosition(), messageRecord);
 
     return messageRecord;
   }
 
+  private @NonNull ConversationRecordStore.RecordLoader newRecordLoader(long threadId, int offset) {
+    return (row, count) -> {
+      List<MessageRecord>   records = new ArrayList<>(count);
+      MmsSmsDatabase.Reader reader  = db.readerFor(db.getConversation(threadId, offset + row, count));
+
+      try {
+        MessageRecord record;
+
+        while ((record = reader.getNext()) != null) {
+          records.add(record);
+        }
+      } finally {
+        reader.close();
+      }
+
+      return records;
+    };
+  }
+
   public void close() {
     getCursor().close();
   }
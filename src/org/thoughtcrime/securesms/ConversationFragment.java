@@ -46,6 +46,7 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.view.Window;
 import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
@@ -78,6 +79,7 @@ import org.thoughtcrime.securesms.util.SaveAttachmentTask;
 import org.thoughtcrime.securesms.util.SaveAttachmentTask.Attachment;
 import org.thoughtcrime.securesms.util.StickyHeaderDecoration;
 import org.thoughtcrime.securesms.util.ViewUtil;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 import org.thoughtcrime.securesms.util.task.ProgressDialogAsyncTask;
 
 import java.util.Collections;
@@ -395,7 +397,7 @@ public class ConversationFragment extends Fragment
 
             return null;
           }
-        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, messageRecords.toArray(new MessageRecord[messageRecords.size()]));
+        }.executeOnExecutor(PriorityExecutors.USER_INITIATED, messageRecords.toArray(new MessageRecord[messageRecords.size()]));
       }
     });
 
@@ -435,7 +437,7 @@ public class ConversationFragment extends Fragment
         MessageSender.resend(context, messageRecords[0]);
         return null;
       }
-    }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, message);
+    }.executeOnExecutor(PriorityExecutors.USER_INITIATED, message);
   }
 
   private void handleReplyMessage(final MessageRecord message) {
@@ -448,7 +450,7 @@ public class ConversationFragment extends Fragment
         for (Slide slide : message.getSlideDeck().getSlides()) {
           if ((slide.hasImage() || slide.hasVideo() || slide.hasAudio() || slide.hasDocument()) && slide.getUri() != null) {
             SaveAttachmentTask saveTask = new SaveAttachmentTask(getActivity());
-            saveTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, new Attachment(slide.getUri(), slide.getContentType(), message.getDateReceived(), slide.getFileName().orNull()));
+            saveTask.executeOnExecutor(PriorityExecutors.USER_INITIATED, new Attachment(slide.getUri(), slide.getContentType(), message.getDateReceived(), slide.getFileName().orNull()));
             return;
           }
         }
@@ -509,7 +511,9 @@ public class ConversationFragment extends Fragment
       previousOffset = loader.getOffset();
     }
 
+    adapter.setConversation(threadId, loader.getOffset());
     adapter.changeCursor(cursor);
+    reportVisibleRangeAfterLayout();
 
     int lastSeenPosition = adapter.findLastSeenPosition(lastSeen);
 
@@ -528,6 +532,7 @@ public class ConversationFragment extends Fragment
       int pixelOffset = (firstView == null) ? 0 : (firstView.getBottom() - list.getPaddingBottom());
 
       ((LinearLayoutManager) list.getLayoutManager()).scrollToPositionWithOffset(scrollPosition, pixelOffset);
+      reportVisibleRangeAfterLayout();
       previousOffset = 0;
     }
 
@@ -577,12 +582,41 @@ public class ConversationFragment extends Fragment
     list.post(() -> {
       list.getLayoutManager().scrollToPosition(startingPosition);
       getListAdapter().pulseHighlightItem(startingPosition);
+      reportVisibleRangeAfterLayout();
     });
   }
 
   private void scrollToLastSeenPosition(final int lastSeenPosition) {
     if (lastSeenPosition > 0) {
-      list.post(() -> ((LinearLayoutManager)list.getLayoutManager()).scrollToPositionWithOffset(lastSeenPosition, list.getHeight()));
+      list.post(() -> {
+        ((LinearLayoutManager)list.getLayoutManager()).scrollToPositionWithOffset(lastSeenPosition, list.getHeight());
+        reportVisibleRangeAfterLayout();
+      });
+    }
+  }
+
+  /**
+   * Tells the adapter which items are on screen once the pending layout has run, so it reads
+   * ahead of a new cursor or a jump without waiting for the first scroll.
+   */
+  private void reportVisibleRangeAfterLayout() {
+    list.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+      @Override
+      public boolean onPreDraw() {
+        list.getViewTreeObserver().removeOnPreDrawListener(this);
+        reportVisibleRange();
+        return true;
+      }
+    });
+  }
+
+  private void reportVisibleRange() {
+    ConversationAdapter adapter = getListAdapter();
+
+    if (adapter != null) {
+      LinearLayoutManager layoutManager = (LinearLayoutManager) list.getLayoutManager();
+      adapter.onVisibleRangeChanged(layoutManager.findFirstVisibleItemPosition(),
+                                    layoutManager.findLastVisibleItemPosition());
     }
   }
 
@@ -631,6 +665,8 @@ public class ConversationFragment extends Fragment
         bindScrollHeader(conversationDateHeader, positionId);
       }
 
+      reportVisibleRange();
+
       wasAtBottom           = currentlyAtBottom;
       wasAtZoomScrollHeight = currentlyAtZoomScrollHeight;
       lastPositionId        = positionId;
@@ -292,6 +292,10 @@ public class ConversationItem extends LinearLayout
     if (recipient != null) {
       recipient.removeListener(this);
     }
+
+    if (contactPhoto != null && glideRequests != null) {
+      contactPhoto.clear(glideRequests);
+    }
   }
 
   public MessageRecord getMessageRecord() {
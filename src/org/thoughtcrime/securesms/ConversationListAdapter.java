@@ -20,6 +20,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -28,6 +29,7 @@ import android.view.ViewGroup;
 import org.thoughtcrime.securesms.database.CursorRecyclerViewAdapter;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.database.ThreadDatabase;
+import org.thoughtcrime.securesms.database.loaders.ConversationListLoader.WindowCursor;
 import org.thoughtcrime.securesms.database.model.ThreadRecord;
 import org.thoughtcrime.securesms.mms.GlideRequests;
 import org.thoughtcrime.securesms.util.Conversions;
@@ -98,6 +100,14 @@ class ConversationListAdapter extends CursorRecyclerViewAdapter<ConversationList
     }
   }
 
+  @Override
+  public void changeCursor(Cursor cursor) {
+    DiffUtil.DiffResult diff = cursor instanceof WindowCursor ? ((WindowCursor) cursor).getDiffFrom(getCursor()) : null;
+
+    if (diff != null) super.changeCursor(cursor, diff);
+    else              super.changeCursor(cursor);
+  }
+
   @Override
   public ViewHolder onCreateItemViewHolder(ViewGroup parent, int viewType) {
     if (viewType == MESSAGE_TYPE_SWITCH_ARCHIVE) {
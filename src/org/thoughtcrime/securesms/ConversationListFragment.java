@@ -73,6 +73,7 @@ import org.thoughtcrime.securesms.components.reminder.UnauthorizedReminder;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.database.MessagingDatabase.MarkedMessageInfo;
 import org.thoughtcrime.securesms.database.loaders.ConversationListLoader;
+import org.thoughtcrime.securesms.database.loaders.ConversationListLoader.WindowCursor;
 import org.thoughtcrime.securesms.events.ReminderUpdateEvent;
 import org.thoughtcrime.securesms.jobs.ServiceOutageDetectionJob;
 import org.thoughtcrime.securesms.mms.GlideApp;
@@ -81,6 +82,7 @@ import org.thoughtcrime.securesms.notifications.MessageNotifier;
 import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.util.Util;
 import org.thoughtcrime.securesms.util.ViewUtil;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 import org.thoughtcrime.securesms.util.task.SnackbarAsyncTask;
 import org.whispersystems.libsignal.util.guava.Optional;
 
@@ -133,6 +135,7 @@ public class ConversationListFragment extends Fragment
     list.setHasFixedSize(true);
     list.setLayoutManager(new LinearLayoutManager(getActivity()));
     list.setItemAnimator(new DeleteItemAnimator());
+    list.addOnScrollListener(new WindowScrollListener());
 
     new ItemTouchHelper(new ArchiveListenerCallback()).attachToRecyclerView(list);
 
@@ -218,7 +221,7 @@ public class ConversationListFragment extends Fragment
           reminderView.hide();
         }
       }
-    }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, getActivity());
+    }.executeOnExecutor(PriorityExecutors.USER_INITIATED, getActivity());
   }
 
   private void initializeListAdapter() {
@@ -270,7 +273,7 @@ public class ConversationListFragment extends Fragment
           else          DatabaseFactory.getThreadDatabase(getActivity()).archiveConversation(threadId);
         }
       }
-    }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
   }
 
   @SuppressLint("StaticFieldLeak")
@@ -315,7 +318,7 @@ public class ConversationListFragment extends Fragment
               actionMode = null;
             }
           }
-        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
       }
     });
 
@@ -334,7 +337,7 @@ public class ConversationListFragment extends Fragment
 
   @Override
   public Loader<Cursor> onCreateLoader(int arg0, Bundle arg1) {
-    return new ConversationListLoader(getActivity(), queryFilter, archive);
+    return new ConversationListLoader(getActivity(), queryFilter, archive, ConversationListLoader.PAGE_SIZE);
   }
 
   @Override
@@ -454,6 +457,24 @@ public class ConversationListFragment extends Fragment
     updateReminders(false);
   }
 
+  private class WindowScrollListener extends RecyclerView.OnScrollListener {
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+      Cursor         cursor = getListAdapter().getCursor();
+      Loader<Cursor> loader = getLoaderManager().getLoader(0);
+
+      if (!(cursor instanceof WindowCursor) || !((WindowCursor) cursor).hasMore() || !(loader instanceof ConversationListLoader)) {
+        return;
+      }
+
+      int lastVisible = ((LinearLayoutManager) recyclerView.getLayoutManager()).findLastVisibleItemPosition();
+
+      if (lastVisible >= cursor.getCount() - ConversationListLoader.PAGE_SIZE / 2) {
+        ((ConversationListLoader) loader).extendWindow(cursor.getCount() + ConversationListLoader.PAGE_SIZE);
+      }
+    }
+  }
+
   private class ArchiveListenerCallback extends ItemTouchHelper.SimpleCallback {
 
     ArchiveListenerCallback() {
@@ -504,7 +525,7 @@ public class ConversationListFragment extends Fragment
           protected void reverseAction(@Nullable Long parameter) {
             DatabaseFactory.getThreadDatabase(getActivity()).archiveConversation(threadId);
           }
-        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, threadId);
+        }.executeOnExecutor(PriorityExecutors.USER_INITIATED, threadId);
       } else {
         new SnackbarAsyncTask<Long>(getView(),
                                     getResources().getQuantityString(R.plurals.ConversationListFragment_conversations_archived, 1, 1),
@@ -532,7 +553,7 @@ public class ConversationListFragment extends Fragment
               MessageNotifier.updateNotification(getActivity());
             }
           }
-        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, threadId);
+        }.executeOnExecutor(PriorityExecutors.USER_INITIATED, threadId);
       }
     }
 
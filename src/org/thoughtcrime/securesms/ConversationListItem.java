@@ -228,6 +228,7 @@ public class ConversationListItem extends RelativeLayout
   @Override
   public void unbind() {
     if (this.recipient != null) this.recipient.removeListener(this);
+    if (this.glideRequests != null) this.contactPhotoImage.clear(glideRequests);
   }
 
   private void setBatchState(boolean batch) {
@@ -0,0 +1,237 @@
+package org.thoughtcrime.securesms;
+
+
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.LongSparseArray;
+
+import org.thoughtcrime.securesms.database.model.MessageRecord;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the message records around the visible part of a conversation, so binding a row and its
+ * neighbours doesn't rebuild each record from the cursor. The store covers the visible rows plus
+ * {@link #LOOK_AHEAD} rows on either side, and reads the rows ahead of the scroll direction in
+ * the background before they're shown.
+ *
+ * Until the visible rows of a new cursor are reported, the window covers the newest rows, where a
+ * conversation opens. Records are keyed by message id, with the lowest bit telling MMS and SMS
+ * apart. Everything except the background read happens on the main thread.
+ */
+public class ConversationRecordStore {
+
+  static final int LOOK_AHEAD = 25;
+
+  private static final int INITIAL_WINDOW = 2 * LOOK_AHEAD + 1;
+
+  private static final AtomicLong totalHits       = new AtomicLong();
+  private static final AtomicLong totalMisses     = new AtomicLong();
+  private static final AtomicLong totalPrefetched = new AtomicLong();
+
+  private final LongSparseArray<Entry> records = new LongSparseArray<>();
+  private final BitSet                 loaded  = new BitSet();
+  private final Executor               workerExecutor;
+  private final Executor               mainExecutor;
+
+  private @Nullable RecordLoader loader;
+
+  private int     rowCount;
+  private int     generation;
+  private int     firstVisible = -1;
+  private int     lastVisible  = -1;
+  private int     windowStart  = 0;
+  private int     windowEnd    = INITIAL_WINDOW;
+  private int     direction    = 1;
+  private boolean prefetching;
+
+  ConversationRecordStore(@NonNull Executor workerExecutor, @NonNull Executor mainExecutor) {
+    this.workerExecutor = workerExecutor;
+    this.mainExecutor   = mainExecutor;
+  }
+
+  static long getKey(long messageId, boolean mms) {
+    return (messageId << 1) | (mms ? 1 : 0);
+  }
+
+  /**
+   * Drops every record for a new cursor. Reads still in flight for the old one are discarded.
+   *
+   * @param loader Reads rows of the new cursor's query in the background, or null to only keep
+   *               the records that were bound.
+   */
+  @MainThread
+  void reset(int rowCount, @Nullable RecordLoader loader) {
+    this.records.clear();
+    this.loaded.clear();
+    this.rowCount     = rowCount;
+    this.loader       = loader;
+    this.prefetching  = false;
+    this.firstVisible = -1;
+    this.lastVisible  = -1;
+    this.windowStart  = 0;
+    this.windowEnd    = INITIAL_WINDOW;
+    this.generation++;
+
+    prefetch();
+  }
+
+  @MainThread
+  @Nullable MessageRecord get(long key) {
+    Entry entry = records.get(key);
+
+    if (entry == null) {
+      totalMisses.incrementAndGet();
+      return null;
+    }
+
+    totalHits.incrementAndGet();
+    return entry.record;
+  }
+
+  /**
+   * Keeps a record that was bound, unless its row is outside the window.
+   */
+  @MainThread
+  void put(long key, int row, @NonNull MessageRecord record) {
+    if (row < windowStart || row >= windowEnd) return;
+
+    records.put(key, new Entry(row, record));
+    loaded.set(row);
+  }
+
+  /**
+   * Moves the window to the rows now on screen, evicting the records that fell out of it and
+   * reading ahead in whichever direction the list last moved.
+   */
+  @MainThread
+  void onVisibleRangeChanged(int first, int last) {
+    if (first == firstVisible && last == lastVisible) return;
+
+    if      (firstVisible >= 0 && first > firstVisible) direction = 1;
+    else if (firstVisible >= 0 && first < firstVisible) direction = -1;
+
+    firstVisible = first;
+    lastVisible  = last;
+    windowStart  = Math.max(0, first - LOOK_AHEAD);
+    windowEnd    = last + LOOK_AHEAD + 1;
+
+    for (int i = records.size() - 1; i >= 0; i--) {
+      int row = records.valueAt(i).row;
+
+      if (row < windowStart || row >= windowEnd) {
+        records.removeAt(i);
+      }
+    }
+
+    loaded.clear(0, windowStart);
+    loaded.clear(windowEnd, Math.max(windowEnd, loaded.length()));
+
+    prefetch();
+  }
+
+  int size() {
+    return records.size();
+  }
+
+  private void prefetch() {
+    if (loader == null || prefetching || firstVisible < 0) return;
+
+    int start;
+    int end;
+
+    if (direction > 0) {
+      start = loaded.nextClearBit(lastVisible + 1);
+      end   = Math.min(windowEnd, rowCount);
+
+      int nextLoaded = loaded.nextSetBit(start);
+      if (nextLoaded != -1) end = Math.min(end, nextLoaded);
+    } else {
+      end   = loaded.previousClearBit(Math.min(firstVisible, rowCount) - 1) + 1;
+      start = Math.max(windowStart, end > 0 ? loaded.previousSetBit(end - 1) + 1 : 0);
+    }
+
+    if (start >= end) return;
+
+    final RecordLoader loader     = this.loader;
+    final int          generation = this.generation;
+    final int          row        = start;
+    final int          count      = end - start;
+
+    prefetching = true;
+    loaded.set(start, end);
+
+    workerExecutor.execute(() -> {
+      List<MessageRecord> read = null;
+
+      try {
+        read = loader.load(row, count);
+      } finally {
+        List<MessageRecord> result = read;
+        mainExecutor.execute(() -> onPrefetched(generation, row, count, result));
+      }
+    });
+  }
+
+  /**
+   * @param read The records read, or null if the read failed, in which case its rows are read
+   *             again the next time the window moves.
+   */
+  private void onPrefetched(int generation, int start, int count, @Nullable List<MessageRecord> read) {
+    if (generation != this.generation) return;
+
+    prefetching = false;
+
+    if (read == null) {
+      loaded.clear(start, start + count);
+      return;
+    }
+
+    for (int i = 0; i < read.size(); i++) {
+      MessageRecord record = read.get(i);
+      int           row    = start + i;
+      long          key    = getKey(record.getId(), record.isMms());
+
+      if (row >= windowStart && row < windowEnd && records.get(key) == null) {
+        records.put(key, new Entry(row, record));
+        totalPrefetched.incrementAndGet();
+      }
+    }
+
+    prefetch();
+  }
+
+  public static @NonNull String getReport() {
+    long hits    = totalHits.get();
+    long misses  = totalMisses.get();
+    long lookups = hits + misses;
+    int  hitRate = lookups > 0 ? (int) (hits * 100 / lookups) : 0;
+
+    return String.format(Locale.US, "hits: %d, misses: %d (%d%% hit rate), prefetched: %d",
+                         hits, misses, hitRate, totalPrefetched.get());
+  }
+
+  interface RecordLoader {
+    /**
+     * @return The records of up to <code>count</code> rows starting at <code>row</code>, in order.
+     */
+    @WorkerThread
+    @NonNull List<MessageRecord> load(int row, int count);
+  }
+
+  private static class Entry {
+    private final int           row;
+    private final MessageRecord record;
+
+    private Entry(int row, @NonNull MessageRecord record) {
+      this.row    = row;
+      this.record = record;
+    }
+  }
+}
@@ -67,6 +67,7 @@ import org.thoughtcrime.securesms.util.DynamicTheme;
 import org.thoughtcrime.securesms.util.SaveAttachmentTask;
 import org.thoughtcrime.securesms.util.StickyHeaderDecoration;
 import org.thoughtcrime.securesms.util.ViewUtil;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 import org.thoughtcrime.securesms.util.task.ProgressDialogAsyncTask;
 
 import java.util.Collection;
@@ -358,7 +359,7 @@ public class MediaOverviewActivity extends PassphraseRequiredActionBarActivity {
                          super.onPostExecute(attachments);
                          SaveAttachmentTask saveTask = new SaveAttachmentTask(context,
                                                                               attachments.size());
-                         saveTask.executeOnExecutor(THREAD_POOL_EXECUTOR,
+                         saveTask.executeOnExecutor(PriorityExecutors.USER_INITIATED,
                                                     attachments.toArray(new SaveAttachmentTask.Attachment[attachments.size()]));
                          actionMode.finish();
                        }
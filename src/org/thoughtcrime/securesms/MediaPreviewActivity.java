@@ -64,6 +64,7 @@ import org.thoughtcrime.securesms.util.DynamicLanguage;
 import org.thoughtcrime.securesms.util.SaveAttachmentTask;
 import org.thoughtcrime.securesms.util.SaveAttachmentTask.Attachment;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 
 import java.io.IOException;
 import java.util.WeakHashMap;
@@ -247,7 +248,7 @@ public class MediaPreviewActivity extends PassphraseRequiredActionBarActivity im
                    .onAllGranted(() -> {
                      SaveAttachmentTask saveTask = new SaveAttachmentTask(MediaPreviewActivity.this);
                      long saveDate = (mediaItem.date > 0) ? mediaItem.date : System.currentTimeMillis();
-                     saveTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, new Attachment(mediaItem.uri, mediaItem.type, saveDate, null));
+                     saveTask.executeOnExecutor(PriorityExecutors.USER_INITIATED, new Attachment(mediaItem.uri, mediaItem.type, saveDate, null));
                    })
                    .execute();
       });
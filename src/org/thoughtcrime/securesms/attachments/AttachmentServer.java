@@ -4,57 +4,80 @@ package org.thoughtcrime.securesms.attachments;
 import android.content.Context;
 import android.net.Uri;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import org.thoughtcrime.securesms.logging.Log;
 
 import org.spongycastle.util.encoders.Hex;
+import org.thoughtcrime.securesms.crypto.ModernDecryptingPartChannel;
 import org.thoughtcrime.securesms.mms.PartAuthority;
 import org.thoughtcrime.securesms.util.Util;
 
-import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.net.SocketException;
-import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Properties;
-import java.util.StringTokenizer;
 
 /**
+ * Serves a single attachment over HTTP on the loopback interface, for media players that can only
+ * be handed a Uri.
+ *
+ * All connections are multiplexed on one selector thread, and every Range request is served from
+ * the same decrypting source. Decrypted data is kept in a small LRU of fixed-size blocks, so the
+ * overlapping requests players make while probing and seeking don't decrypt the same data again,
+ * and blocks are written to the socket straight from their (direct) buffers without being copied.
+ *
  * @author      Stefan "frostymarvelous" Froelich <stefan d0t froelich At whisppa DoT com>
  */
 public class AttachmentServer implements Runnable {
 
   private static final String TAG = AttachmentServer.class.getSimpleName();
 
-  private final Context      context;
-  private final Attachment   attachment;
-  private final ServerSocket socket;
-  private final int          port;
-  private final String       auth;
+  private static final int BLOCK_SIZE        = 64 * 1024;
+  private static final int MAX_CACHED_BLOCKS = 32;
+  private static final int MAX_HEADER_SIZE   = 8192;
+
+  private final Context             context;
+  private final Attachment          attachment;
+  private final ServerSocketChannel serverChannel;
+  private final Selector            selector;
+  private final int                 port;
+  private final String              auth;
+  private final BlockCache          blockCache;
 
   private volatile boolean isRunning;
 
+  private ModernDecryptingPartChannel channel;
+  private InputStream                 fallbackStream;
+  private long                        fallbackPosition;
+
   public AttachmentServer(Context context, Attachment attachment)
       throws IOException
   {
     try {
-      this.context      = context;
-      this.attachment   = attachment;
-      this.socket       = new ServerSocket(0, 0, InetAddress.getByAddress(new byte[]{127, 0, 0, 1}));
-      this.port         = socket.getLocalPort();
-      this.auth         = new String(Hex.encode(Util.getSecretBytes(16)));
-
-      this.socket.setSoTimeout(5000);
+      this.context       = context;
+      this.attachment    = attachment;
+      this.selector      = Selector.open();
+      this.serverChannel = ServerSocketChannel.open();
+      this.auth          = new String(Hex.encode(Util.getSecretBytes(16)));
+      this.blockCache    = new BlockCache();
+
+      this.serverChannel.socket().bind(new InetSocketAddress(InetAddress.getByAddress(new byte[]{127, 0, 0, 1}), 0));
+      this.serverChannel.configureBlocking(false);
+      this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+      this.port = serverChannel.socket().getLocalPort();
     } catch (UnknownHostException e) {
       throw new AssertionError(e);
     }
@@ -66,185 +89,337 @@ public class AttachmentServer implements Runnable {
 
   public void start() {
     isRunning = true;
-    new Thread(this).start();
+    new Thread(this, "signal-attachment-server-" + port).start();
   }
 
   public void stop() {
     isRunning = false;
+    selector.wakeup();
   }
 
   @Override
   public void run() {
-    while (isRunning) {
-      Socket client = null;
+    try {
+      while (isRunning) {
+        selector.select();
+
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+
+          try {
+            if      (!key.isValid())     continue;
+            else if (key.isAcceptable()) accept();
+            else if (key.isReadable())   ((Connection) key.attachment()).onReadable(key);
+            else if (key.isWritable())   ((Connection) key.attachment()).onWritable(key);
+          } catch (IOException e) {
+            Log.w(TAG, "Closing connection: " + e.getMessage());
+            close(key);
+          }
+        }
+      }
+    } catch (IOException e) {
+      Log.e(TAG, "Error in attachment server", e);
+    } finally {
+      shutdown();
+    }
 
-      try {
-        client = socket.accept();
+    Log.d(TAG, "Proxy interrupted. Shutting down.");
+  }
 
-        if (client != null) {
-          StreamToMediaPlayerTask task = new StreamToMediaPlayerTask(client, "/" + auth);
+  private void accept() throws IOException {
+    SocketChannel client = serverChannel.accept();
 
-          if (task.processRequest()) {
-            task.execute();
-          }
-        }
+    if (client != null) {
+      client.configureBlocking(false);
+      client.register(selector, SelectionKey.OP_READ, new Connection(client));
+    }
+  }
+
+  private void close(@NonNull SelectionKey key) {
+    key.cancel();
+
+    try {
+      key.channel().close();
+    } catch (IOException e) {
+      Log.w(TAG, e);
+    }
+  }
+
+  private void shutdown() {
+    for (SelectionKey key : selector.keys()) {
+      close(key);
+    }
+
+    try {
+      selector.close();
+      serverChannel.close();
+
+      if (channel != null)        channel.close();
+      if (fallbackStream != null) fallbackStream.close();
+    } catch (IOException e) {
+      Log.w(TAG, e);
+    }
+  }
+
+  private @NonNull ByteBuffer getBlock(long position) throws IOException {
+    long       index = position / BLOCK_SIZE;
+    ByteBuffer block = blockCache.get(index);
+
+    if (block == null) {
+      block = loadBlock(index);
+      blockCache.put(index, block);
+    }
 
-      } catch (SocketTimeoutException e) {
-        Log.w(TAG, e);
-      } catch (IOException e) {
-        Log.e(TAG, "Error connecting to client", e);
-      } finally {
-        try {if (client != null) client.close();} catch (IOException e) {}
+    return block;
+  }
+
+  /**
+   * @return A read-only view of the block starting at position and limited to end.
+   */
+  private @NonNull ByteBuffer getSlice(@NonNull ByteBuffer block, long position, long end) throws IOException {
+    long       start = (position / BLOCK_SIZE) * BLOCK_SIZE;
+    ByteBuffer slice = block.asReadOnlyBuffer();
+
+    slice.position((int) (position - start));
+    slice.limit((int) Math.min(block.limit(), end - start));
+
+    if (!slice.hasRemaining()) {
+      throw new IOException("Attachment ended early at " + position);
+    }
+
+    return slice;
+  }
+
+  private @NonNull ByteBuffer loadBlock(long index) throws IOException {
+    ByteBuffer block  = blockCache.takeSpare(this::isBeingWritten);
+    long       offset = index * BLOCK_SIZE;
+
+    if (channel == null) {
+      channel = PartAuthority.getAttachmentChannel(context, attachment.getDataUri());
+    }
+
+    if (channel != null) {
+      channel.position(offset);
+
+      while (block.hasRemaining() && channel.read(block) != -1);
+    } else {
+      readBlockFromStream(block, offset);
+    }
+
+    block.flip();
+    return block;
+  }
+
+  private boolean isBeingWritten(@NonNull ByteBuffer block) {
+    for (SelectionKey key : selector.keys()) {
+      if (key.attachment() instanceof Connection && ((Connection) key.attachment()).block == block) {
+        return true;
       }
     }
 
-    Log.d(TAG, "Proxy interrupted. Shutting down.");
+    return false;
   }
 
+  /**
+   * Legacy attachments can only be decrypted sequentially, so keep one stream open and only reopen
+   * it when a request needs to go backwards.
+   */
+  private void readBlockFromStream(@NonNull ByteBuffer block, long offset) throws IOException {
+    if (fallbackStream == null || fallbackPosition > offset) {
+      if (fallbackStream != null) fallbackStream.close();
+
+      fallbackStream   = PartAuthority.getAttachmentStream(context, attachment.getDataUri());
+      fallbackPosition = 0;
+    }
+
+    byte[] buffer = new byte[block.remaining()];
+
+    while (fallbackPosition < offset) {
+      int read = fallbackStream.read(buffer, 0, (int) Math.min(buffer.length, offset - fallbackPosition));
+      if (read == -1) return;
+      fallbackPosition += read;
+    }
+
+    int read;
 
-  private class StreamToMediaPlayerTask {
+    while (block.hasRemaining() && (read = fallbackStream.read(buffer, 0, block.remaining())) != -1) {
+      block.put(buffer, 0, read);
+      fallbackPosition += read;
+    }
+  }
 
-    private final @NonNull Socket client;
-    private final @NonNull String auth;
+  private class Connection {
 
-    private long       cbSkip;
-    private Properties parameters;
-    private Properties request;
-    private Properties requestHeaders;
-//    private String filePath;
+    private final SocketChannel client;
+    private final ByteBuffer    requestBuffer = ByteBuffer.allocate(MAX_HEADER_SIZE);
 
-    public StreamToMediaPlayerTask(@NonNull Socket client, @NonNull String auth) {
+    private ByteBuffer responseHeaders;
+    private ByteBuffer block;
+    private ByteBuffer body;
+    private long       position;
+    private long       end;
+    private boolean    keepAlive;
+
+    Connection(@NonNull SocketChannel client) {
       this.client = client;
-      this.auth   = auth;
     }
 
-    public boolean processRequest() throws IOException {
-            InputStream is         = client.getInputStream();
-      final int         bufferSize = 8192;
-            byte[]      buffer     = new byte[bufferSize];
-            int         splitByte  = 0;
-            int         readLength = 0;
-
-      {
-        int read = is.read(buffer, 0, bufferSize);
-        while (read > 0) {
-          readLength += read;
-          splitByte = findHeaderEnd(buffer, readLength);
-          if (splitByte > 0)
-            break;
-          read = is.read(buffer, readLength, bufferSize - readLength);
-        }
+    void onReadable(@NonNull SelectionKey key) throws IOException {
+      if (client.read(requestBuffer) == -1) {
+        close(key);
+        return;
       }
 
-      // Create a BufferedReader for parsing the header.
-      ByteArrayInputStream hbis = new ByteArrayInputStream(buffer, 0, readLength);
-      BufferedReader       hin  = new BufferedReader(new InputStreamReader(hbis));
+      processBufferedRequest(key);
+    }
 
-      request        = new Properties();
-      parameters     = new Properties();
-      requestHeaders = new Properties();
+    private void processBufferedRequest(@NonNull SelectionKey key) throws IOException {
+      int headerEnd = findHeaderEnd(requestBuffer.array(), requestBuffer.position());
 
-      try {
-        decodeHeader(hin, request, parameters, requestHeaders);
-      } catch (InterruptedException e1) {
-        Log.e(TAG, "Exception: " + e1.getMessage());
-        e1.printStackTrace();
+      if (headerEnd == 0) {
+        if (!requestBuffer.hasRemaining()) throw new IOException("Request headers too large");
+        return;
       }
 
-      for (Map.Entry<Object, Object> e : requestHeaders.entrySet()) {
-        Log.i(TAG, "Header: " + e.getKey() + " : " + e.getValue());
-      }
+      String request = new String(requestBuffer.array(), 0, headerEnd, "ISO-8859-1");
 
-      String range = requestHeaders.getProperty("range");
+      requestBuffer.flip();
+      requestBuffer.position(headerEnd);
+      requestBuffer.compact();
 
-      if (range != null) {
-        Log.i(TAG, "range is: " + range);
-        range = range.substring(6);
-        int charPos = range.indexOf('-');
-        if (charPos > 0) {
-          range = range.substring(0, charPos);
-        }
-        cbSkip = Long.parseLong(range);
-        Log.i(TAG, "range found!! " + cbSkip);
-      }
+      prepareResponse(request);
+      key.interestOps(SelectionKey.OP_WRITE);
+    }
 
-      if (!"GET".equals(request.get("method"))) {
-        Log.e(TAG, "Only GET is supported: " + request.get("method"));
-        return false;
-      }
+    void onWritable(@NonNull SelectionKey key) throws IOException {
+      while (true) {
+        if (responseHeaders.hasRemaining()) {
+          client.write(responseHeaders);
 
-      String receivedAuth = request.getProperty("uri");
+          if (responseHeaders.hasRemaining()) return;
+          else                                continue;
+        }
 
-      if (receivedAuth == null || !MessageDigest.isEqual(receivedAuth.getBytes(), auth.getBytes())) {
-        Log.w(TAG, "Bad auth token!");
-        return false;
-      }
+        if (body == null || !body.hasRemaining()) {
+          if (position >= end) {
+            onResponseComplete(key);
+            return;
+          }
+
+          block = getBlock(position);
+          body  = getSlice(block, position, end);
+        }
 
-//      filePath = request.getProperty("uri");
+        position += client.write(body);
 
-      return true;
+        if (body.hasRemaining()) return;
+      }
     }
 
-    protected void execute() throws IOException {
-      InputStream inputStream = PartAuthority.getAttachmentStream(context, attachment.getDataUri());
-      long        fileSize    = attachment.getSize();
-
-      String headers = "";
-      if (cbSkip > 0) {// It is a seek or skip request if there's a Range
-        // header
-        headers += "HTTP/1.1 206 Partial Content\r\n";
-        headers += "Content-Type: " + attachment.getContentType() + "\r\n";
-        headers += "Accept-Ranges: bytes\r\n";
-        headers += "Content-Length: " + (fileSize - cbSkip) + "\r\n";
-        headers += "Content-Range: bytes " + cbSkip + "-" + (fileSize - 1) + "/" + fileSize + "\r\n";
-        headers += "Connection: Keep-Alive\r\n";
-        headers += "\r\n";
+    private void onResponseComplete(@NonNull SelectionKey key) throws IOException {
+      block = null;
+      body  = null;
+
+      if (keepAlive) {
+        key.interestOps(SelectionKey.OP_READ);
+        processBufferedRequest(key);
       } else {
-        headers += "HTTP/1.1 200 OK\r\n";
-        headers += "Content-Type: " + attachment.getContentType() + "\r\n";
-        headers += "Accept-Ranges: bytes\r\n";
-        headers += "Content-Length: " + fileSize + "\r\n";
-        headers += "Connection: Keep-Alive\r\n";
-        headers += "\r\n";
+        close(key);
       }
+    }
 
-      Log.i(TAG, "headers: " + headers);
-
-      OutputStream output = null;
-      byte[] buff = new byte[64 * 1024];
-      try {
-        output = new BufferedOutputStream(client.getOutputStream(), 32 * 1024);
-        output.write(headers.getBytes());
+    private void prepareResponse(@NonNull String request) {
+      String[]            lines   = request.split("\r\n");
+      String[]            tokens  = lines[0].split(" ");
+      Map<String, String> headers = new HashMap<>();
 
-        inputStream.skip(cbSkip);
-//        dataSource.skipFully(data, cbSkip);//try to skip as much as possible
+      for (int i = 1; i < lines.length; i++) {
+        int separator = lines[i].indexOf(':');
 
-        // Loop as long as there's stuff to send and client has not closed
-        int cbRead;
-        while (!client.isClosed() && (cbRead = inputStream.read(buff, 0, buff.length)) != -1) {
-          output.write(buff, 0, cbRead);
+        if (separator > 0) {
+          headers.put(lines[i].substring(0, separator).trim().toLowerCase(Locale.US), lines[i].substring(separator + 1).trim());
         }
       }
-      catch (SocketException socketException) {
-        Log.e(TAG, "SocketException() thrown, proxy client has probably closed. This can exit harmlessly");
+
+      String method = tokens.length > 0 ? tokens[0] : "";
+      String path   = tokens.length > 1 ? tokens[1] : "";
+      long   size   = attachment.getSize();
+
+      this.keepAlive = !"close".equalsIgnoreCase(headers.get("connection"));
+      this.position  = 0;
+      this.end       = 0;
+
+      if (!MessageDigest.isEqual(path.getBytes(), ("/" + auth).getBytes())) {
+        Log.w(TAG, "Bad auth token!");
+        setErrorResponse("403 Forbidden", null);
+        return;
       }
-      catch (Exception e) {
-        Log.e(TAG, "Exception thrown from streaming task:");
-        Log.e(TAG, e.getClass().getName() + " : " + e.getLocalizedMessage());
+
+      if (!"GET".equals(method) && !"HEAD".equals(method)) {
+        Log.w(TAG, "Only GET is supported: " + method);
+        setErrorResponse("405 Method Not Allowed", null);
+        return;
       }
 
-      // Cleanup
-      try {
-        if (output != null) {
-          output.close();
+      String range = headers.get("range");
+      long   start = 0;
+      long   last  = size - 1;
+
+      if (range != null && range.startsWith("bytes=")) {
+        String[] bounds = range.substring(6).split("-", 2);
+
+        try {
+          if (bounds[0].length() > 0) {
+            start = Long.parseLong(bounds[0].trim());
+            if (bounds.length > 1 && bounds[1].trim().length() > 0) last = Math.min(last, Long.parseLong(bounds[1].trim()));
+          } else if (bounds.length > 1) {
+            start = Math.max(0, size - Long.parseLong(bounds[1].trim()));
+          }
+        } catch (NumberFormatException e) {
+          Log.w(TAG, "Bad range: " + range);
+          range = null;
+          start = 0;
+          last  = size - 1;
         }
-        client.close();
       }
-      catch (IOException e) {
-        Log.e(TAG, "IOException while cleaning up streaming task:");
-        Log.e(TAG, e.getClass().getName() + " : " + e.getLocalizedMessage());
-        e.printStackTrace();
+
+      if (range != null && (start >= size || start > last)) {
+        setErrorResponse("416 Range Not Satisfiable", "Content-Range: bytes */" + size + "\r\n");
+        return;
+      }
+
+      StringBuilder response = new StringBuilder();
+
+      if (range != null) {
+        response.append("HTTP/1.1 206 Partial Content\r\n");
+        response.append("Content-Range: bytes ").append(start).append("-").append(last).append("/").append(size).append("\r\n");
+      } else {
+        response.append("HTTP/1.1 200 OK\r\n");
       }
+
+      response.append("Content-Type: ").append(attachment.getContentType()).append("\r\n");
+      response.append("Accept-Ranges: bytes\r\n");
+      response.append("Content-Length: ").append(last - start + 1).append("\r\n");
+      response.append("Connection: ").append(keepAlive ? "Keep-Alive" : "close").append("\r\n");
+      response.append("\r\n");
+
+      this.responseHeaders = ByteBuffer.wrap(response.toString().getBytes());
+      this.position        = start;
+      this.end             = "HEAD".equals(method) ? start : last + 1;
+    }
+
+    private void setErrorResponse(@NonNull String status, @Nullable String extraHeaders) {
+      String response = "HTTP/1.1 " + status + "\r\n" +
+                        (extraHeaders != null ? extraHeaders : "") +
+                        "Content-Length: 0\r\n" +
+                        "Connection: close\r\n" +
+                        "\r\n";
+
+      this.responseHeaders = ByteBuffer.wrap(response.getBytes());
+      this.keepAlive       = false;
     }
 
     /**
@@ -261,110 +436,40 @@ public class AttachmentServer implements Runnable {
       }
       return 0;
     }
+  }
 
+  /**
+   * An access-ordered LRU of decrypted blocks. An evicted buffer is handed back out by
+   * {@link #takeSpare(InUsePredicate)} rather than allocating a new direct buffer for every block,
+   * unless a connection is still writing from it.
+   */
+  private static class BlockCache extends LinkedHashMap<Long, ByteBuffer> {
 
-    /**
-     * Decodes the sent headers and loads the data into java Properties' key -
-     * value pairs
-     **/
-    private void decodeHeader(BufferedReader in, Properties pre,
-                              Properties parms, Properties header) throws InterruptedException {
-      try {
-        // Read the request line
-        String inLine = in.readLine();
-        if (inLine == null)
-          return;
-        StringTokenizer st = new StringTokenizer(inLine);
-        if (!st.hasMoreTokens())
-          Log.e(TAG, "BAD REQUEST: Syntax error. Usage: GET /example/file.html");
-
-        String method = st.nextToken();
-        pre.put("method", method);
-
-        if (!st.hasMoreTokens())
-          Log.e(TAG, "BAD REQUEST: Missing URI. Usage: GET /example/file.html");
-
-        String uri = st.nextToken();
-
-        // Decode parameters from the URI
-        int qmi = uri.indexOf('?');
-        if (qmi >= 0) {
-          decodeParms(uri.substring(qmi + 1), parms);
-          uri = decodePercent(uri.substring(0, qmi));
-        } else
-          uri = decodePercent(uri);
-
-        // If there's another token, it's protocol version,
-        // followed by HTTP headers. Ignore version but parse headers.
-        // NOTE: this now forces header names lowercase since they are
-        // case insensitive and vary by client.
-        if (st.hasMoreTokens()) {
-          String line = in.readLine();
-          while (line != null && line.trim().length() > 0) {
-            int p = line.indexOf(':');
-            if (p >= 0)
-              header.put(line.substring(0, p).trim().toLowerCase(),
-                         line.substring(p + 1).trim());
-            line = in.readLine();
-          }
-        }
+    private ByteBuffer spare;
 
-        pre.put("uri", uri);
-      } catch (IOException ioe) {
-        Log.e(TAG, "SERVER INTERNAL ERROR: IOException: " + ioe.getMessage());
-      }
+    BlockCache() {
+      super(MAX_CACHED_BLOCKS, 0.75f, true);
     }
 
-    /**
-     * Decodes parameters in percent-encoded URI-format ( e.g.
-     * "name=Jack%20Daniels&pass=Single%20Malt" ) and adds them to given
-     * Properties. NOTE: this doesn't support multiple identical keys due to the
-     * simplicity of Properties -- if you need multiples, you might want to
-     * replace the Properties with a Hashtable of Vectors or such.
-     */
-    private void decodeParms(String parms, Properties p)
-        throws InterruptedException {
-      if (parms == null)
-        return;
-
-      StringTokenizer st = new StringTokenizer(parms, "&");
-      while (st.hasMoreTokens()) {
-        String e = st.nextToken();
-        int sep = e.indexOf('=');
-        if (sep >= 0)
-          p.put(decodePercent(e.substring(0, sep)).trim(),
-                decodePercent(e.substring(sep + 1)));
-      }
+    @NonNull ByteBuffer takeSpare(@NonNull InUsePredicate inUse) {
+      ByteBuffer buffer = spare != null && !inUse.isInUse(spare) ? spare : ByteBuffer.allocateDirect(BLOCK_SIZE);
+      spare = null;
+      buffer.clear();
+      return buffer;
     }
 
-    /**
-     * Decodes the percent encoding scheme. <br/>
-     * For example: "an+example%20string" -> "an example string"
-     */
-    private String decodePercent(String str) throws InterruptedException {
-      try {
-        StringBuffer sb = new StringBuffer();
-        for (int i = 0; i < str.length(); i++) {
-          char c = str.charAt(i);
-          switch (c) {
-            case '+':
-              sb.append(' ');
-              break;
-            case '%':
-              sb.append((char) Integer.parseInt(
-                  str.substring(i + 1, i + 3), 16));
-              i += 2;
-              break;
-            default:
-              sb.append(c);
-              break;
-          }
-        }
-        return sb.toString();
-      } catch (Exception e) {
-        Log.e(TAG, "BAD REQUEST: Bad percent-encoding.");
-        return null;
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, ByteBuffer> eldest) {
+      if (size() > MAX_CACHED_BLOCKS) {
+        spare = eldest.getValue();
+        return true;
       }
+
+      return false;
     }
   }
-}
\ No newline at end of file
+
+  private interface InUsePredicate {
+    boolean isInUse(@NonNull ByteBuffer block);
+  }
+}
@@ -8,13 +8,17 @@ import android.media.MediaCodecInfo;
 import android.media.MediaFormat;
 import android.media.MediaRecorder;
 import android.os.Build;
-import org.thoughtcrime.securesms.logging.Log;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
 
 @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
 public class AudioCodec {
@@ -26,9 +30,16 @@ public class AudioCodec {
   private static final int    CHANNELS          = 1;
   private static final int    BIT_RATE          = 32000;
 
-  private final int         bufferSize;
-  private final MediaCodec  mediaCodec;
-  private final AudioRecord audioRecord;
+  private static final ExecutorService executor = SignalExecutors.newCachedSingleThreadExecutor("signal-audio-codec");
+
+  private final int                   bufferSize;
+  private final MediaCodec            mediaCodec;
+  private final AudioRecord           audioRecord;
+  private final AudioWaveform.Builder waveform    = new AudioWaveform.Builder();
+  private final byte[]                adtsHeader  = new byte[7];
+
+  private byte[] encodedData = new byte[0];
+  private long   encodedSize = 0;
 
   private boolean running  = true;
   private boolean finished = false;
@@ -54,38 +65,49 @@ public class AudioCodec {
     while (!finished) Util.wait(this, 0);
   }
 
-  public void start(final OutputStream outputStream) {
-    new Thread(new Runnable() {
-      @Override
-      public void run() {
-        MediaCodec.BufferInfo bufferInfo         = new MediaCodec.BufferInfo();
-        byte[]                audioRecordData    = new byte[bufferSize];
-        ByteBuffer[]          codecInputBuffers  = mediaCodec.getInputBuffers();
-        ByteBuffer[]          codecOutputBuffers = mediaCodec.getOutputBuffers();
+  /**
+   * @return The number of encoded bytes written, once {@link #stop()} has returned.
+   */
+  public synchronized long getEncodedSize() {
+    return encodedSize;
+  }
 
-        try {
-          while (true) {
-            boolean running = isRunning();
+  /**
+   * @return The waveform of everything recorded, once {@link #stop()} has returned.
+   */
+  public synchronized @Nullable AudioWaveform getWaveform() {
+    return finished ? waveform.build() : null;
+  }
 
-            handleCodecInput(audioRecord, audioRecordData, mediaCodec, codecInputBuffers, running);
-            handleCodecOutput(mediaCodec, codecOutputBuffers, bufferInfo, outputStream);
+  public void start(final @NonNull OutputStream outputStream) {
+    executor.execute(() -> {
+      MediaCodec.BufferInfo bufferInfo         = new MediaCodec.BufferInfo();
+      byte[]                audioRecordData    = new byte[bufferSize];
+      ByteBuffer[]          codecInputBuffers  = mediaCodec.getInputBuffers();
+      ByteBuffer[]          codecOutputBuffers = mediaCodec.getOutputBuffers();
 
-            if (!running) break;
-          }
-        } catch (IOException e) {
-          Log.w(TAG, e);
-        } finally {
-          mediaCodec.stop();
-          audioRecord.stop();
+      try {
+        while (true) {
+          boolean running = isRunning();
 
-          mediaCodec.release();
-          audioRecord.release();
+          handleCodecInput(audioRecord, audioRecordData, mediaCodec, codecInputBuffers, running);
+          codecOutputBuffers = handleCodecOutput(mediaCodec, codecOutputBuffers, bufferInfo, outputStream);
 
-          Util.close(outputStream);
-          setFinished();
+          if (!running) break;
         }
+      } catch (IOException e) {
+        Log.w(TAG, e);
+      } finally {
+        mediaCodec.stop();
+        audioRecord.stop();
+
+        mediaCodec.release();
+        audioRecord.release();
+
+        Util.close(outputStream);
+        setFinished();
       }
-    }, AudioCodec.class.getSimpleName()).start();
+    });
   }
 
   private synchronized boolean isRunning() {
@@ -101,21 +123,23 @@ public class AudioCodec {
                                 MediaCodec mediaCodec, ByteBuffer[] codecInputBuffers,
                                 boolean running)
   {
-    int length                = audioRecord.read(audioRecordData, 0, audioRecordData.length);
+    int length                = Math.max(0, audioRecord.read(audioRecordData, 0, audioRecordData.length));
     int codecInputBufferIndex = mediaCodec.dequeueInputBuffer(10 * 1000);
 
     if (codecInputBufferIndex >= 0) {
       ByteBuffer codecBuffer = codecInputBuffers[codecInputBufferIndex];
       codecBuffer.clear();
-      codecBuffer.put(audioRecordData);
+      codecBuffer.put(audioRecordData, 0, length);
       mediaCodec.queueInputBuffer(codecInputBufferIndex, 0, length, 0, running ? 0 : MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+
+      waveform.process(audioRecordData, 0, length);
     }
   }
 
-  private void handleCodecOutput(MediaCodec mediaCodec,
-                                 ByteBuffer[] codecOutputBuffers,
-                                 MediaCodec.BufferInfo bufferInfo,
-                                 OutputStream outputStream)
+  private ByteBuffer[] handleCodecOutput(MediaCodec mediaCodec,
+                                         ByteBuffer[] codecOutputBuffers,
+                                         MediaCodec.BufferInfo bufferInfo,
+                                         OutputStream outputStream)
       throws IOException
   {
     int codecOutputBufferIndex = mediaCodec.dequeueOutputBuffer(bufferInfo, 0);
@@ -128,14 +152,18 @@ public class AudioCodec {
         encoderOutputBuffer.limit(bufferInfo.offset + bufferInfo.size);
 
         if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != MediaCodec.BUFFER_FLAG_CODEC_CONFIG) {
-          byte[] header = createAdtsHeader(bufferInfo.size - bufferInfo.offset);
+          int length = encoderOutputBuffer.remaining();
 
+          if (encodedData.length < length) {
+            encodedData = new byte[length];
+          }
 
-          outputStream.write(header);
+          encoderOutputBuffer.get(encodedData, 0, length);
 
-          byte[] data = new byte[encoderOutputBuffer.remaining()];
-          encoderOutputBuffer.get(data);
-          outputStream.write(data);
+          outputStream.write(createAdtsHeader(bufferInfo.size - bufferInfo.offset));
+          outputStream.write(encodedData, 0, length);
+
+          addEncodedSize(adtsHeader.length + length);
         }
 
         encoderOutputBuffer.clear();
@@ -148,11 +176,18 @@ public class AudioCodec {
       codecOutputBufferIndex = mediaCodec.dequeueOutputBuffer(bufferInfo, 0);
     }
 
+    return codecOutputBuffers;
+  }
+
+  private synchronized void addEncodedSize(int length) {
+    encodedSize += length;
   }
 
+  /**
+   * Fills in the header for the next frame. The same array is reused for every frame.
+   */
   private byte[] createAdtsHeader(int length) {
-    int    frameLength = length + 7;
-    byte[] adtsHeader  = new byte[7];
+    int frameLength = length + 7;
 
     adtsHeader[0]  = (byte) 0xFF; // Sync Word
     adtsHeader[1]  = (byte) 0xF1; // MPEG-4, Layer (0), No CRC
@@ -4,7 +4,6 @@ import android.annotation.TargetApi;
 import android.content.Context;
 import android.net.Uri;
 import android.os.Build;
-import android.os.ParcelFileDescriptor;
 import android.support.annotation.NonNull;
 import org.thoughtcrime.securesms.logging.Log;
 import android.util.Pair;
@@ -17,6 +16,7 @@ import org.thoughtcrime.securesms.util.concurrent.ListenableFuture;
 import org.thoughtcrime.securesms.util.concurrent.SettableFuture;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.concurrent.ExecutorService;
 
 @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
@@ -47,13 +47,18 @@ public class AudioRecorder {
           throw new AssertionError("We can only record once at a time.");
         }
 
-        ParcelFileDescriptor fds[] = ParcelFileDescriptor.createPipe();
+        Pair<Uri, OutputStream> capture = blobProvider.createForStreaming(context, MediaUtil.AUDIO_AAC, null);
 
-        captureUri  = blobProvider.create(context, new ParcelFileDescriptor.AutoCloseInputStream(fds[0]),
-                                          MediaUtil.AUDIO_AAC, null, null);
-        audioCodec  = new AudioCodec();
+        try {
+          audioCodec = new AudioCodec();
+        } catch (IOException e) {
+          Util.close(capture.second);
+          blobProvider.delete(context, capture.first);
+          throw e;
+        }
 
-        audioCodec.start(new ParcelFileDescriptor.AutoCloseOutputStream(fds[1]));
+        captureUri = capture.first;
+        audioCodec.start(capture.second);
       } catch (IOException e) {
         Log.w(TAG, e);
       }
@@ -73,14 +78,18 @@ public class AudioRecorder {
 
       audioCodec.stop();
 
-      try {
-        long size = MediaUtil.getMediaSize(context, captureUri);
-        sendToFuture(future, new Pair<>(captureUri, size));
-      } catch (IOException ioe) {
-        Log.w(TAG, ioe);
-        sendToFuture(future, ioe);
+      AudioWaveform waveform = audioCodec.getWaveform();
+
+      if (waveform != null) {
+        try {
+          blobProvider.setAudioWaveform(context, captureUri, waveform);
+        } catch (IOException e) {
+          Log.w(TAG, "Failed to save the waveform, the voice note will be shown without one.", e);
+        }
       }
 
+      sendToFuture(future, new Pair<>(captureUri, audioCodec.getEncodedSize()));
+
       audioCodec = null;
       captureUri = null;
     });
@@ -0,0 +1,104 @@
+package org.thoughtcrime.securesms.audio;
+
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * A compact summary of a voice note's loudness over time: the peak amplitude of each of up to
+ * {@link #MAX_BARS} equal slices of the recording, scaled to 0-255. It's small enough to keep
+ * with the attachment, so drawing and scrubbing a voice note never needs to decode the audio.
+ */
+public class AudioWaveform {
+
+  public static final int MAX_BARS = 64;
+
+  private final byte[] peaks;
+
+  public AudioWaveform(@NonNull byte[] peaks) {
+    this.peaks = peaks;
+  }
+
+  public @NonNull byte[] getPeaks() {
+    return peaks;
+  }
+
+  public int getBarCount() {
+    return peaks.length;
+  }
+
+  /**
+   * @return The peak of the given bar, from 0 to 1.
+   */
+  public float getPeak(int bar) {
+    return (peaks[bar] & 0xFF) / 255f;
+  }
+
+  /**
+   * Collects peaks from 16-bit little-endian mono PCM as it is recorded, without knowing how long
+   * the recording will be. Whenever the slices fill up, neighbouring slices are merged and each
+   * slice covers twice as many samples from then on, so memory stays fixed.
+   */
+  public static class Builder {
+
+    private static final int INITIAL_SAMPLES_PER_SLICE = 1024;
+
+    private final int[] slices = new int[MAX_BARS * 2];
+
+    private int count;
+    private int samplesPerSlice = INITIAL_SAMPLES_PER_SLICE;
+    private int samplesInSlice;
+    private int slicePeak;
+
+    public void process(@NonNull byte[] pcm, int offset, int length) {
+      for (int i = offset; i + 1 < offset + length; i += 2) {
+        int sample = Math.abs((short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8)));
+
+        if (sample > slicePeak) slicePeak = sample;
+
+        if (++samplesInSlice == samplesPerSlice) {
+          addSlice();
+        }
+      }
+    }
+
+    public @NonNull AudioWaveform build() {
+      if (samplesInSlice > 0) addSlice();
+
+      int    bars  = Math.min(count, MAX_BARS);
+      byte[] peaks = new byte[bars];
+
+      for (int bar = 0; bar < bars; bar++) {
+        int start = bar * count / bars;
+        int end   = (bar + 1) * count / bars;
+        int peak  = 0;
+
+        for (int i = start; i < end; i++) {
+          peak = Math.max(peak, slices[i]);
+        }
+
+        peaks[bar] = (byte) Math.min(255, peak * 255 / Short.MAX_VALUE);
+      }
+
+      return new AudioWaveform(peaks);
+    }
+
+    private void addSlice() {
+      slices[count++] = slicePeak;
+      slicePeak       = 0;
+      samplesInSlice  = 0;
+
+      if (count == slices.length) {
+        for (int i = 0; i < count / 2; i++) {
+          slices[i] = Math.max(slices[2 * i], slices[2 * i + 1]);
+        }
+
+        Arrays.fill(slices, count / 2, count, 0);
+
+        count           /= 2;
+        samplesPerSlice *= 2;
+      }
+    }
+  }
+}
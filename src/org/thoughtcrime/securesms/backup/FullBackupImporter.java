@@ -30,6 +30,7 @@ import org.thoughtcrime.securesms.database.GroupReceiptDatabase;
 import org.thoughtcrime.securesms.database.MmsDatabase;
 import org.thoughtcrime.securesms.database.SearchDatabase;
 import org.thoughtcrime.securesms.database.ThreadDatabase;
+import org.thoughtcrime.securesms.database.helpers.DatabaseInstrumentation;
 import org.thoughtcrime.securesms.notifications.NotificationChannels;
 import org.thoughtcrime.securesms.profiles.AvatarHelper;
 import org.thoughtcrime.securesms.recipients.Recipient;
@@ -72,7 +73,7 @@ public class FullBackupImporter extends FullBackupBase {
     int                     count       = 0;
 
     try {
-      db.beginTransaction();
+      DatabaseInstrumentation.beginTransaction(db);
 
       dropAllTables(db);
 
@@ -92,7 +93,7 @@ public class FullBackupImporter extends FullBackupBase {
 
       db.setTransactionSuccessful();
     } finally {
-      db.endTransaction();
+      DatabaseInstrumentation.endTransaction(db);
     }
 
     EventBus.getDefault().post(new BackupEvent(BackupEvent.Type.FINISHED, count));
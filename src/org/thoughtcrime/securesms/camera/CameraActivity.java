@@ -88,7 +88,7 @@ public class CameraActivity extends PassphraseRequiredActionBarActivity implemen
     } else {
       if (editorFragment != null && captureUri != null) {
         Log.i(TAG, "Cleaning up unused capture: " + captureUri);
-        MemoryBlobProvider.getInstance().delete(captureUri);
+        MemoryBlobProvider.getInstance(this).delete(captureUri);
         captureUri = null;
       }
       super.onBackPressed();
@@ -102,7 +102,7 @@ public class CameraActivity extends PassphraseRequiredActionBarActivity implemen
 
     if (captureUri != null) {
       Log.i(TAG, "Cleaning up capture in onDestroy: " + captureUri);
-      MemoryBlobProvider.getInstance().delete(captureUri);
+      MemoryBlobProvider.getInstance(this).delete(captureUri);
     }
   }
 
@@ -117,7 +117,7 @@ public class CameraActivity extends PassphraseRequiredActionBarActivity implemen
   public void onImageCaptured(@NonNull byte[] data) {
     Log.i(TAG, "Fast image captured.");
 
-    captureUri = MemoryBlobProvider.getInstance().createUri(data);
+    captureUri = MemoryBlobProvider.getInstance(this).createUri(data);
     Log.i(TAG, "Fast image stored: " + captureUri.toString());
 
     SettableFuture<Boolean> result = new SettableFuture<>();
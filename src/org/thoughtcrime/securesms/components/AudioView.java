@@ -7,9 +7,11 @@ import android.content.res.TypedArray;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
 import android.graphics.drawable.AnimatedVectorDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
@@ -25,13 +27,20 @@ import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 import org.greenrobot.eventbus.ThreadMode;
 import org.thoughtcrime.securesms.R;
+import org.thoughtcrime.securesms.attachments.Attachment;
+import org.thoughtcrime.securesms.attachments.DatabaseAttachment;
 import org.thoughtcrime.securesms.audio.AudioSlidePlayer;
+import org.thoughtcrime.securesms.audio.AudioWaveform;
 import org.thoughtcrime.securesms.database.AttachmentDatabase;
+import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.events.PartProgressEvent;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.mms.AudioSlide;
 import org.thoughtcrime.securesms.mms.SlideClickListener;
+import org.thoughtcrime.securesms.providers.PersistentBlobProvider;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.ViewUtil;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
@@ -49,10 +58,14 @@ public class AudioView extends FrameLayout implements AudioSlidePlayer.Listener
   private final @NonNull ProgressWheel   downloadProgress;
   private final @NonNull SeekBar         seekBar;
   private final @NonNull TextView        timestamp;
+  private final @NonNull Drawable        defaultProgressDrawable;
+  private final          int             waveformHeight;
 
   private @Nullable SlideClickListener downloadListener;
   private @Nullable AudioSlidePlayer   audioSlidePlayer;
+  private @Nullable AudioSlide         waveformSlide;
   private int backwardsCounter;
+  private int foregroundTint = Color.WHITE;
 
   public AudioView(Context context) {
     this(context, null);
@@ -75,6 +88,9 @@ public class AudioView extends FrameLayout implements AudioSlidePlayer.Listener
     this.seekBar          = (SeekBar) findViewById(R.id.seek);
     this.timestamp        = (TextView) findViewById(R.id.timestamp);
 
+    this.defaultProgressDrawable = seekBar.getProgressDrawable();
+    this.waveformHeight          = ViewUtil.dpToPx(context, 24);
+
     this.playButton.setOnClickListener(new PlayClickedListener());
     this.pauseButton.setOnClickListener(new PauseClickedListener());
     this.seekBar.setOnSeekBarChangeListener(new SeekBarModifiedListener());
@@ -127,6 +143,15 @@ public class AudioView extends FrameLayout implements AudioSlidePlayer.Listener
     }
 
     this.audioSlidePlayer = AudioSlidePlayer.createFor(getContext(), audio, this);
+
+    if (!audio.equals(waveformSlide)) {
+      waveformSlide = audio;
+      setWaveform(null);
+
+      if (audio.asAttachment().isVoiceNote()) {
+        loadWaveform(audio);
+      }
+    }
   }
 
   public void cleanup() {
@@ -218,12 +243,54 @@ public class AudioView extends FrameLayout implements AudioSlidePlayer.Listener
 
     this.timestamp.setTextColor(foregroundTint);
     this.seekBar.getProgressDrawable().setColorFilter(foregroundTint, PorterDuff.Mode.SRC_IN);
+    this.foregroundTint = foregroundTint;
 
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
       this.seekBar.getThumb().setColorFilter(foregroundTint, PorterDuff.Mode.SRC_IN);
     }
   }
 
+  private void loadWaveform(final @NonNull AudioSlide audio) {
+    final Context    context    = getContext().getApplicationContext();
+    final Attachment attachment = audio.asAttachment();
+
+    PriorityExecutors.UI_CRITICAL.execute(() -> {
+      AudioWaveform waveform = getWaveform(context, attachment);
+
+      if (waveform != null) {
+        Util.runOnMain(() -> {
+          if (audio.equals(waveformSlide)) {
+            setWaveform(waveform);
+          }
+        });
+      }
+    });
+  }
+
+  @WorkerThread
+  private static @Nullable AudioWaveform getWaveform(@NonNull Context context, @NonNull Attachment attachment) {
+    if (attachment instanceof DatabaseAttachment) {
+      return DatabaseFactory.getAttachmentDatabase(context).getAudioWaveform(((DatabaseAttachment) attachment).getAttachmentId());
+    } else if (attachment.getDataUri() != null) {
+      return PersistentBlobProvider.getInstance(context).getAudioWaveform(context, attachment.getDataUri());
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Shows the waveform in place of the seek bar's track, or the plain track if there's none.
+   */
+  private void setWaveform(@Nullable AudioWaveform waveform) {
+    if (waveform == null && seekBar.getProgressDrawable() == defaultProgressDrawable) return;
+
+    Drawable progressDrawable = waveform != null ? new AudioWaveformDrawable(waveform, foregroundTint, waveformHeight)
+                                                 : defaultProgressDrawable;
+
+    progressDrawable.setColorFilter(foregroundTint, PorterDuff.Mode.SRC_IN);
+    seekBar.setProgressDrawable(progressDrawable);
+  }
+
   private double getProgress() {
     if (this.seekBar.getProgress() <= 0 || this.seekBar.getMax() <= 0) {
       return 0;
@@ -0,0 +1,89 @@
+package org.thoughtcrime.securesms.components;
+
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.thoughtcrime.securesms.audio.AudioWaveform;
+
+/**
+ * Draws a voice note's stored waveform as the progress drawable of a seek bar. The bars up to the
+ * drawable's level, which the seek bar sets from its progress, are drawn opaque and the rest
+ * faded, so playback and scrubbing only redraw the bars and never touch the audio.
+ */
+class AudioWaveformDrawable extends Drawable {
+
+  private static final int   MAX_LEVEL      = 10000;
+  private static final int   UNPLAYED_ALPHA = 102;
+  private static final float BAR_FILL       = 0.6f;
+  private static final float MIN_PEAK       = 0.08f;
+
+  private final AudioWaveform waveform;
+  private final Paint         paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private final int           intrinsicHeight;
+
+  private int alpha = 255;
+
+  AudioWaveformDrawable(@NonNull AudioWaveform waveform, int color, int intrinsicHeight) {
+    this.waveform        = waveform;
+    this.intrinsicHeight = intrinsicHeight;
+
+    paint.setColor(color);
+    paint.setStyle(Paint.Style.FILL);
+  }
+
+  @Override
+  public void draw(@NonNull Canvas canvas) {
+    Rect bounds = getBounds();
+    int  bars   = waveform.getBarCount();
+
+    if (bars == 0 || bounds.isEmpty()) return;
+
+    float slot     = bounds.width() / (float) bars;
+    float barWidth = Math.max(1, slot * BAR_FILL);
+    float centerY  = bounds.exactCenterY();
+    float played   = getLevel() * bars / (float) MAX_LEVEL;
+
+    for (int i = 0; i < bars; i++) {
+      float height = Math.max(MIN_PEAK, waveform.getPeak(i)) * bounds.height();
+      float left   = bounds.left + i * slot + (slot - barWidth) / 2;
+
+      paint.setAlpha(i < played ? alpha : alpha * UNPLAYED_ALPHA / 255);
+      canvas.drawRect(left, centerY - height / 2, left + barWidth, centerY + height / 2, paint);
+    }
+  }
+
+  @Override
+  protected boolean onLevelChange(int level) {
+    invalidateSelf();
+    return true;
+  }
+
+  @Override
+  public int getIntrinsicHeight() {
+    return intrinsicHeight;
+  }
+
+  @Override
+  public void setAlpha(int alpha) {
+    this.alpha = alpha;
+    invalidateSelf();
+  }
+
+  @Override
+  public void setColorFilter(@Nullable ColorFilter colorFilter) {
+    paint.setColorFilter(colorFilter);
+    invalidateSelf();
+  }
+
+  @Override
+  public int getOpacity() {
+    return PixelFormat.TRANSLUCENT;
+  }
+}
@@ -3,6 +3,7 @@ package org.thoughtcrime.securesms.components;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -11,13 +12,12 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.widget.AppCompatImageView;
 import android.util.AttributeSet;
-import android.view.View;
-
-import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import android.view.ViewGroup;
 
 import org.thoughtcrime.securesms.R;
+import org.thoughtcrime.securesms.contacts.avatars.AvatarPipeline;
 import org.thoughtcrime.securesms.contacts.avatars.ContactColors;
-import org.thoughtcrime.securesms.contacts.avatars.GeneratedContactPhoto;
+import org.thoughtcrime.securesms.contacts.avatars.ContactPhoto;
 import org.thoughtcrime.securesms.contacts.avatars.ResourceContactPhoto;
 import org.thoughtcrime.securesms.mms.GlideRequests;
 import org.thoughtcrime.securesms.recipients.Recipient;
@@ -46,6 +46,8 @@ public class AvatarImageView extends AppCompatImageView {
   private Paint           outlinePaint;
   private OnClickListener listener;
 
+  private @Nullable AvatarPipeline.Request avatarRequest;
+
   public AvatarImageView(Context context) {
     super(context);
     initialize(context, null);
@@ -86,13 +88,14 @@ public class AvatarImageView extends AppCompatImageView {
   }
 
   public void setAvatar(@NonNull GlideRequests requestManager, @Nullable Recipient recipient, boolean quickContactEnabled) {
+    cancelAvatarRequest();
+
     if (recipient != null) {
-      requestManager.load(recipient.getContactPhoto())
-                    .fallback(recipient.getFallbackContactPhotoDrawable(getContext(), inverted))
-                    .error(recipient.getFallbackContactPhotoDrawable(getContext(), inverted))
-                    .diskCacheStrategy(DiskCacheStrategy.ALL)
-                    .circleCrop()
-                    .into(this);
+      ContactPhoto contactPhoto = recipient.getContactPhoto();
+
+      if (contactPhoto != null) setContactPhoto(contactPhoto, recipient);
+      else                      setImageDrawable(recipient.getAsyncFallbackContactPhotoDrawable(getContext(), inverted));
+
       setAvatarClickHandler(recipient, quickContactEnabled);
     } else {
       setImageDrawable(new ResourceContactPhoto(R.drawable.ic_profile_default).asDrawable(getContext(), ContactColors.UNKNOWN_COLOR.toConversationColor(getContext()), inverted));
@@ -101,9 +104,52 @@ public class AvatarImageView extends AppCompatImageView {
   }
 
   public void clear(@NonNull GlideRequests glideRequests) {
+    cancelAvatarRequest();
     glideRequests.clear(this);
   }
 
+  private void setContactPhoto(@NonNull ContactPhoto contactPhoto, @NonNull Recipient recipient) {
+    AvatarPipeline pipeline = AvatarPipeline.getInstance(getContext());
+    int            size     = getAvatarSize();
+    Bitmap         cached   = pipeline.getCached(contactPhoto, size);
+
+    if (cached != null) {
+      setImageBitmap(cached);
+      return;
+    }
+
+    setImageDrawable(recipient.getAsyncFallbackContactPhotoDrawable(getContext(), inverted));
+
+    avatarRequest = pipeline.load(contactPhoto, size, new AvatarPipeline.Callback() {
+      @Override
+      public void onAvatarLoaded(@NonNull Bitmap avatar) {
+        avatarRequest = null;
+        setImageBitmap(avatar);
+      }
+
+      @Override
+      public void onAvatarFailed() {
+        avatarRequest = null;
+      }
+    });
+  }
+
+  private void cancelAvatarRequest() {
+    if (avatarRequest != null) {
+      avatarRequest.cancel();
+      avatarRequest = null;
+    }
+  }
+
+  private int getAvatarSize() {
+    ViewGroup.LayoutParams params = getLayoutParams();
+
+    if (params != null && params.width > 0) return params.width;
+    if (getWidth() > 0)                     return getWidth();
+
+    return getResources().getDimensionPixelSize(R.dimen.contact_photo_target_size);
+  }
+
   private void setAvatarClickHandler(final Recipient recipient, boolean quickContactEnabled) {
     if (!recipient.isGroupRecipient() && quickContactEnabled) {
       super.setOnClickListener(v -> {
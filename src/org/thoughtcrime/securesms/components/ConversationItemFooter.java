@@ -20,6 +20,7 @@ import org.thoughtcrime.securesms.database.model.MessageRecord;
 import org.thoughtcrime.securesms.permissions.Permissions;
 import org.thoughtcrime.securesms.service.ExpiringMessageManager;
 import org.thoughtcrime.securesms.util.DateUtils;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 import org.thoughtcrime.securesms.util.dualsim.SubscriptionInfoCompat;
 import org.thoughtcrime.securesms.util.dualsim.SubscriptionManagerCompat;
 import org.whispersystems.libsignal.util.guava.Optional;
@@ -151,7 +152,7 @@ public class ConversationItemFooter extends LinearLayout {
             expirationManager.scheduleDeletion(id, mms, messageRecord.getExpiresIn());
             return null;
           }
-        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }.executeOnExecutor(PriorityExecutors.UI_CRITICAL);
       }
     } else {
       this.timerView.setVisibility(View.GONE);
@@ -28,6 +28,7 @@ import org.thoughtcrime.securesms.mms.PartAuthority;
 import org.thoughtcrime.securesms.util.BitmapDecodingException;
 import org.thoughtcrime.securesms.util.BitmapUtil;
 import org.thoughtcrime.securesms.util.MediaUtil;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -92,7 +93,7 @@ public class ZoomingImageView extends FrameLayout {
           setSubsamplingImageViewUri(uri);
         }
       }
-    }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }.executeOnExecutor(PriorityExecutors.UI_CRITICAL);
   }
 
   private void setImageViewUri(@NonNull GlideRequests glideRequests, @NonNull Uri uri) {
@@ -1,16 +1,16 @@
 package org.thoughtcrime.securesms.components.emoji;
 
-import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.ColorFilter;
 import android.graphics.Paint;
+import android.graphics.Paint.FontMetricsInt;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
-import android.os.Build.VERSION;
-import android.os.Build.VERSION_CODES;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.Spannable;
@@ -19,33 +19,48 @@ import android.widget.TextView;
 
 import org.thoughtcrime.securesms.R;
 import org.thoughtcrime.securesms.components.emoji.parsing.EmojiDrawInfo;
+import org.thoughtcrime.securesms.components.emoji.parsing.EmojiMatcher;
 import org.thoughtcrime.securesms.components.emoji.parsing.EmojiPageBitmap;
 import org.thoughtcrime.securesms.components.emoji.parsing.EmojiParser;
 import org.thoughtcrime.securesms.components.emoji.parsing.EmojiTree;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.util.FutureTaskListener;
+import org.thoughtcrime.securesms.util.LRUCache;
 import org.thoughtcrime.securesms.util.Util;
 import org.whispersystems.libsignal.util.Pair;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ExecutionException;
 
-class EmojiProvider {
+class EmojiProvider implements ComponentCallbacks2 {
 
   private static final    String        TAG      = EmojiProvider.class.getSimpleName();
   private static volatile EmojiProvider instance = null;
   private static final    Paint         paint    = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG);
 
-  private final EmojiTree emojiTree = new EmojiTree();
+  private final EmojiMatcher emojiMatcher;
 
   private static final int EMOJI_RAW_HEIGHT = 64;
   private static final int EMOJI_RAW_WIDTH  = 64;
   private static final int EMOJI_VERT_PAD   = 0;
   private static final int EMOJI_PER_ROW    = 32;
 
+  private static final int MAX_CACHED_TEXTS = 500;
+
   private final float decodeScale;
   private final float verticalPad;
 
+  private final List<EmojiPageBitmap>                    pages        = new LinkedList<>();
+  private final Map<EmojiDrawInfo, GlyphState>           glyphs       = new HashMap<>();
+  private final Map<EmojiPageBitmap, Set<EmojiDrawable>> pendingPages = new HashMap<>();
+  private final Map<SpanKey, EmojiSpan[]>                spanCache    = new LRUCache<>(MAX_CACHED_TEXTS);
+
   public static EmojiProvider getInstance(Context context) {
     if (instance == null) {
       synchronized (EmojiProvider.class) {
@@ -61,9 +76,12 @@ class EmojiProvider {
     this.decodeScale = Math.min(1f, context.getResources().getDimension(R.dimen.emoji_drawer_size) / EMOJI_RAW_HEIGHT);
     this.verticalPad = EMOJI_VERT_PAD * this.decodeScale;
 
+    EmojiTree emojiTree = new EmojiTree();
+
     for (EmojiPageModel page : EmojiPages.DATA_PAGES) {
       if (page.hasSpriteMap()) {
         EmojiPageBitmap pageBitmap = new EmojiPageBitmap(context, page, decodeScale);
+        pages.add(pageBitmap);
 
         List<String> emojis = page.getEmoji();
         for (int i = 0; i < emojis.size(); i++) {
@@ -75,37 +93,63 @@ class EmojiProvider {
     for (Pair<String,String> obsolete : EmojiPages.OBSOLETE) {
       emojiTree.add(obsolete.first(), emojiTree.getEmoji(obsolete.second(), 0, obsolete.second().length()));
     }
+
+    this.emojiMatcher = emojiTree.compile();
+
+    context.getApplicationContext().registerComponentCallbacks(this);
   }
 
   @Nullable EmojiParser.CandidateList getCandidates(@Nullable CharSequence text) {
     if (text == null) return null;
-    return new EmojiParser(emojiTree).findCandidates(text);
+    return emojiMatcher.findCandidates(text);
   }
 
   @Nullable Spannable emojify(@Nullable CharSequence text, @NonNull TextView tv) {
     return emojify(getCandidates(text), text, tv);
   }
 
+  /**
+   * The spans for a given text and font are reused between calls, so rebinding a view to a message
+   * it has already shown (or that another view has shown) doesn't create any new spans or drawables.
+   * They're only cached once all of their pages are loaded, so that they never need to invalidate
+   * more than the view they were last bound to.
+   */
   @Nullable Spannable emojify(@Nullable EmojiParser.CandidateList matches,
                               @Nullable CharSequence text,
                               @NonNull TextView tv) {
     if (matches == null || text == null) return null;
-    SpannableStringBuilder      builder = new SpannableStringBuilder(text);
+    SpannableStringBuilder builder = new SpannableStringBuilder(text);
+    SpanKey                key     = new SpanKey(text.toString(), tv.getPaint().getFontMetricsInt());
+    EmojiSpan[]            spans   = spanCache.get(key);
+
+    if (spans == null) {
+      spans = createSpans(matches, tv);
+    } else {
+      for (EmojiSpan span : spans) {
+        if (span != null) span.getDrawable().setCallback(tv);
+      }
+    }
 
-    for (EmojiParser.Candidate candidate : matches) {
-      Drawable drawable = getEmojiDrawable(candidate.getDrawInfo());
+    int index = 0;
 
-      if (drawable != null) {
-        builder.setSpan(new EmojiSpan(drawable, tv), candidate.getStartIndex(), candidate.getEndIndex(),
+    for (EmojiParser.Candidate candidate : matches) {
+      if (spans[index] != null) {
+        builder.setSpan(spans[index], candidate.getStartIndex(), candidate.getEndIndex(),
                         Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
       }
+
+      index++;
+    }
+
+    if (isLoaded(spans)) {
+      spanCache.put(key, spans);
     }
 
     return builder;
   }
 
   @Nullable Drawable getEmojiDrawable(CharSequence emoji) {
-    EmojiDrawInfo drawInfo = emojiTree.getEmoji(emoji, 0, emoji.length());
+    EmojiDrawInfo drawInfo = emojiMatcher.getEmoji(emoji);
     return getEmojiDrawable(drawInfo);
   }
 
@@ -114,24 +158,133 @@ class EmojiProvider {
       return null;
     }
 
-    final EmojiDrawable drawable = new EmojiDrawable(drawInfo, decodeScale);
-    drawInfo.getPage().get().addListener(new FutureTaskListener<Bitmap>() {
+    GlyphState glyph = glyphs.get(drawInfo);
+
+    if (glyph == null) {
+      glyph = new GlyphState(drawInfo);
+      glyphs.put(drawInfo, glyph);
+    }
+
+    return new EmojiDrawable(glyph);
+  }
+
+  private @NonNull EmojiSpan[] createSpans(@NonNull EmojiParser.CandidateList matches, @NonNull TextView tv) {
+    EmojiSpan[] spans = new EmojiSpan[matches.size()];
+    int         index = 0;
+
+    for (EmojiParser.Candidate candidate : matches) {
+      Drawable drawable = getEmojiDrawable(candidate.getDrawInfo());
+
+      if (drawable != null) {
+        spans[index] = new EmojiSpan(drawable, tv);
+      }
+
+      index++;
+    }
+
+    return spans;
+  }
+
+  private static boolean isLoaded(@NonNull EmojiSpan[] spans) {
+    for (EmojiSpan span : spans) {
+      if (span != null && ((EmojiDrawable) span.getDrawable()).glyph.page.getLoadedBitmap() == null) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Loads a page on behalf of a drawable that tried to draw from it, and invalidates every drawable
+   * waiting on that page once it's available. Only one listener is registered per page.
+   */
+  private void requestPage(@NonNull EmojiDrawable drawable) {
+    final EmojiPageBitmap    page    = drawable.glyph.page;
+    final Set<EmojiDrawable> pending = pendingPages.get(page);
+
+    if (pending != null) {
+      pending.add(drawable);
+      return;
+    }
+
+    Set<EmojiDrawable> waiting = Collections.newSetFromMap(new WeakHashMap<>());
+    waiting.add(drawable);
+    pendingPages.put(page, waiting);
+
+    page.get().addListener(new FutureTaskListener<Bitmap>() {
       @Override public void onSuccess(final Bitmap result) {
-        Util.runOnMain(() -> drawable.setBitmap(result));
+        Util.runOnMain(() -> onPageLoaded(page));
       }
 
       @Override public void onFailure(ExecutionException error) {
         Log.w(TAG, error);
+        Util.runOnMain(() -> pendingPages.remove(page));
       }
     });
-    return drawable;
+  }
+
+  private void onPageLoaded(@NonNull EmojiPageBitmap page) {
+    Set<EmojiDrawable> pending = pendingPages.remove(page);
+
+    if (pending != null) {
+      for (EmojiDrawable drawable : pending) {
+        drawable.invalidateSelf();
+      }
+    }
+  }
+
+  private void releasePages() {
+    Log.i(TAG, "Releasing emoji pages.");
+
+    spanCache.clear();
+
+    for (EmojiPageBitmap page : pages) {
+      page.release();
+    }
+  }
+
+  @Override
+  public void onTrimMemory(int level) {
+    if (level >= TRIM_MEMORY_UI_HIDDEN) {
+      releasePages();
+    }
+  }
+
+  @Override
+  public void onLowMemory() {
+    releasePages();
+  }
+
+  @Override
+  public void onConfigurationChanged(Configuration newConfig) { }
+
+  /**
+   * Everything about a glyph that doesn't depend on where it's drawn, shared by all of its
+   * drawables.
+   */
+  private class GlyphState {
+    private final EmojiPageBitmap page;
+    private final Rect            source;
+
+    GlyphState(@NonNull EmojiDrawInfo info) {
+      float width  = EMOJI_RAW_WIDTH  * decodeScale;
+      float height = EMOJI_RAW_HEIGHT * decodeScale;
+      int   row    = info.getIndex() / EMOJI_PER_ROW;
+      int   column = info.getIndex() % EMOJI_PER_ROW;
+
+      this.page   = info.getPage();
+      this.source = new Rect((int)(column * width),
+                             (int)(row * height + row * verticalPad)+1,
+                             (int)(((column + 1) * width)-1),
+                             (int)((row + 1) * height + row * verticalPad)-1);
+    }
   }
 
   class EmojiDrawable extends Drawable {
-    private final EmojiDrawInfo info;
-    private       Bitmap        bmp;
-    private       float         intrinsicWidth;
-    private       float         intrinsicHeight;
+    private final GlyphState glyph;
+    private final float      intrinsicWidth;
+    private final float      intrinsicHeight;
 
     @Override
     public int getIntrinsicWidth() {
@@ -143,37 +296,22 @@ class EmojiProvider {
       return (int)intrinsicHeight;
     }
 
-    EmojiDrawable(EmojiDrawInfo info, float decodeScale) {
-      this.info            = info;
+    EmojiDrawable(GlyphState glyph) {
+      this.glyph           = glyph;
       this.intrinsicWidth  = EMOJI_RAW_WIDTH  * decodeScale;
       this.intrinsicHeight = EMOJI_RAW_HEIGHT * decodeScale;
     }
 
     @Override
     public void draw(@NonNull Canvas canvas) {
-      if (bmp == null) {
+      Bitmap bitmap = glyph.page.getLoadedBitmap();
+
+      if (bitmap == null) {
+        requestPage(this);
         return;
       }
 
-      final int row = info.getIndex() / EMOJI_PER_ROW;
-      final int row_index = info.getIndex() % EMOJI_PER_ROW;
-
-      canvas.drawBitmap(bmp,
-                        new Rect((int)(row_index * intrinsicWidth),
-                                 (int)(row * intrinsicHeight + row * verticalPad)+1,
-                                 (int)(((row_index + 1) * intrinsicWidth)-1),
-                                 (int)((row + 1) * intrinsicHeight + row * verticalPad)-1),
-                        getBounds(),
-                        paint);
-    }
-
-    @TargetApi(VERSION_CODES.HONEYCOMB_MR1)
-    public void setBitmap(Bitmap bitmap) {
-      Util.assertMainThread();
-      if (VERSION.SDK_INT < VERSION_CODES.HONEYCOMB_MR1 || bmp == null || !bmp.sameAs(bitmap)) {
-        bmp = bitmap;
-        invalidateSelf();
-      }
+      canvas.drawBitmap(bitmap, glyph.source, getBounds(), paint);
     }
 
     @Override
@@ -188,4 +326,47 @@ class EmojiProvider {
     public void setColorFilter(ColorFilter cf) { }
   }
 
+  private static class SpanKey {
+    private final String text;
+    private final int    ascent;
+    private final int    descent;
+    private final int    top;
+    private final int    bottom;
+    private final int    leading;
+
+    SpanKey(@NonNull String text, @Nullable FontMetricsInt fm) {
+      this.text    = text;
+      this.ascent  = fm != null ? fm.ascent  : 0;
+      this.descent = fm != null ? fm.descent : 0;
+      this.top     = fm != null ? fm.top     : 0;
+      this.bottom  = fm != null ? fm.bottom  : 0;
+      this.leading = fm != null ? fm.leading : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      SpanKey that = (SpanKey) o;
+
+      return ascent  == that.ascent  &&
+             descent == that.descent &&
+             top     == that.top     &&
+             bottom  == that.bottom  &&
+             leading == that.leading &&
+             text.equals(that.text);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = text.hashCode();
+      result = 31 * result + ascent;
+      result = 31 * result + descent;
+      result = 31 * result + top;
+      result = 31 * result + bottom;
+      result = 31 * result + leading;
+      return result;
+    }
+  }
 }
@@ -0,0 +1,122 @@
+package org.thoughtcrime.securesms.components.emoji.parsing;
+
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled, read-only form of {@link EmojiTree} that finds every emoji in a piece of text in a
+ * single left-to-right scan.
+ *
+ * Nodes are stored in breadth-first order, so the children of any node occupy a contiguous,
+ * key-sorted range of the flat arrays and can be found with a binary search instead of a map
+ * lookup on a boxed character. Characters that can't begin an emoji are rejected with a bitset
+ * test before the trie is touched at all, which is all plain text ever costs.
+ *
+ * Produces the same candidates as {@link EmojiParser}.
+ */
+public class EmojiMatcher {
+
+  private static final char SKIN_TONE_HIGH_SURROGATE = '\uD83C';
+  private static final char SKIN_TONE_LOW_FIRST      = '\uDFFB';
+  private static final char SKIN_TONE_LOW_LAST       = '\uDFFF';
+
+  private final char[]          keys;
+  private final int[]           firstChild;
+  private final EmojiDrawInfo[] matches;
+  private final long[]          startChars;
+
+  /**
+   * @param keys The character on the edge leading to each node.
+   * @param firstChild The index of each node's first child, followed by the total node count.
+   * @param matches The emoji matched by the sequence ending at each node, if any.
+   */
+  EmojiMatcher(@NonNull char[] keys, @NonNull int[] firstChild, @NonNull EmojiDrawInfo[] matches) {
+    this.keys       = keys;
+    this.firstChild = firstChild;
+    this.matches    = matches;
+    this.startChars = new long[(Character.MAX_VALUE + 1) / 64];
+
+    for (int i = firstChild[0]; i < firstChild[1]; i++) {
+      startChars[keys[i] >>> 6] |= 1L << (keys[i] & 63);
+    }
+  }
+
+  public @NonNull EmojiParser.CandidateList findCandidates(@Nullable CharSequence text) {
+    List<EmojiParser.Candidate> results = new ArrayList<>();
+
+    if (text == null) return new EmojiParser.CandidateList(results, false);
+
+    int     length    = text.length();
+    boolean allEmojis = length > 0;
+
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+
+      if ((startChars[c >>> 6] & (1L << (c & 63))) == 0) {
+        allEmojis = false;
+        continue;
+      }
+
+      int           node     = 0;
+      int           emojiEnd = -1;
+      EmojiDrawInfo drawInfo = null;
+
+      for (int j = i; j < length && (node = getChild(node, text.charAt(j))) != -1; j++) {
+        if (matches[node] != null) {
+          emojiEnd = j + 1;
+          drawInfo = matches[node];
+        }
+      }
+
+      if (emojiEnd == -1) {
+        allEmojis = false;
+        continue;
+      }
+
+      if (emojiEnd + 2 <= length && isSkinTone(text, emojiEnd)) {
+        emojiEnd += 2;
+      }
+
+      results.add(new EmojiParser.Candidate(i, emojiEnd, drawInfo));
+
+      i = emojiEnd - 1;
+    }
+
+    return new EmojiParser.CandidateList(results, allEmojis);
+  }
+
+  public @Nullable EmojiDrawInfo getEmoji(@NonNull CharSequence emoji) {
+    int node = 0;
+
+    for (int i = 0; i < emoji.length() && node != -1; i++) {
+      node = getChild(node, emoji.charAt(i));
+    }
+
+    return node > 0 ? matches[node] : null;
+  }
+
+  private int getChild(int node, char c) {
+    int low  = firstChild[node];
+    int high = firstChild[node + 1] - 1;
+
+    while (low <= high) {
+      int  middle = (low + high) >>> 1;
+      char key    = keys[middle];
+
+      if      (key < c) low  = middle + 1;
+      else if (key > c) high = middle - 1;
+      else              return middle;
+    }
+
+    return -1;
+  }
+
+  private static boolean isSkinTone(@NonNull CharSequence text, int index) {
+    char low = text.charAt(index + 1);
+    return text.charAt(index) == SKIN_TONE_HIGH_SURROGATE && low >= SKIN_TONE_LOW_FIRST && low <= SKIN_TONE_LOW_LAST;
+  }
+}
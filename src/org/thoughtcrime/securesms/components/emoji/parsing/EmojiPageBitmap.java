@@ -7,6 +7,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.os.AsyncTask;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import org.thoughtcrime.securesms.logging.Log;
 
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
@@ -16,6 +17,7 @@ import org.thoughtcrime.securesms.mms.GlideApp;
 import org.thoughtcrime.securesms.util.ListenableFutureTask;
 import org.thoughtcrime.securesms.util.Stopwatch;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -31,8 +33,8 @@ public class EmojiPageBitmap {
   private final EmojiPageModel model;
   private final float          decodeScale;
 
-  private SoftReference<Bitmap>        bitmapReference;
-  private ListenableFutureTask<Bitmap> task;
+  private volatile SoftReference<Bitmap> bitmapReference;
+  private ListenableFutureTask<Bitmap>   task;
 
   public EmojiPageBitmap(@NonNull Context context, @NonNull EmojiPageModel model, float decodeScale) {
     this.context     = context.getApplicationContext();
@@ -68,11 +70,27 @@ public class EmojiPageBitmap {
         @Override protected void onPostExecute(Void aVoid) {
           task = null;
         }
-      }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      }.executeOnExecutor(PriorityExecutors.UI_CRITICAL);
     }
     return task;
   }
 
+  /**
+   * @return The page if it's currently in memory, without triggering a load.
+   */
+  public @Nullable Bitmap getLoadedBitmap() {
+    SoftReference<Bitmap> reference = bitmapReference;
+    return reference != null ? reference.get() : null;
+  }
+
+  /**
+   * Drops the decoded page. It'll be loaded again by the next call to {@link #get()}.
+   */
+  public void release() {
+    Util.assertMainThread();
+    bitmapReference = null;
+  }
+
   private Bitmap loadPage() throws IOException {
     if (bitmapReference != null && bitmapReference.get() != null) return bitmapReference.get();
 
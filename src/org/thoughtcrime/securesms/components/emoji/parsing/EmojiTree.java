@@ -20,9 +20,13 @@
 
 package org.thoughtcrime.securesms.components.emoji.parsing;
 
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -92,6 +96,51 @@ public class EmojiTree {
     else    return null;
   }
 
+  /**
+   * @return A flattened copy of this tree for fast scanning. Later additions to the tree aren't
+   *         reflected in it.
+   */
+  public @NonNull EmojiMatcher compile() {
+    int             count      = countNodes(root);
+    EmojiTreeNode[] nodes      = new EmojiTreeNode[count];
+    char[]          keys       = new char[count];
+    int[]           firstChild = new int[count + 1];
+    EmojiDrawInfo[] matches    = new EmojiDrawInfo[count];
+    int             next       = 1;
+
+    nodes[0] = root;
+
+    for (int i = 0; i < count; i++) {
+      EmojiTreeNode   node     = nodes[i];
+      List<Character> children = new ArrayList<>(node.children.keySet());
+
+      Collections.sort(children);
+      firstChild[i] = next;
+
+      for (char child : children) {
+        nodes[next] = node.getChild(child);
+        keys[next]  = child;
+        next++;
+      }
+
+      if      (node.isEndOfEmoji())                                          matches[i] = node.getEmoji();
+      else if (i > 0 && keys[i] != TERMINATOR && node.hasChild(TERMINATOR)) matches[i] = node.getChild(TERMINATOR).getEmoji();
+    }
+
+    firstChild[count] = next;
+
+    return new EmojiMatcher(keys, firstChild, matches);
+  }
+
+  private static int countNodes(@NonNull EmojiTreeNode node) {
+    int count = 1;
+
+    for (EmojiTreeNode child : node.children.values()) {
+      count += countNodes(child);
+    }
+
+    return count;
+  }
 
   private static class EmojiTreeNode {
 
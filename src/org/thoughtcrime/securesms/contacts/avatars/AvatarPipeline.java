@@ -0,0 +1,322 @@
+package org.thoughtcrime.securesms.contacts.avatars;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import org.thoughtcrime.securesms.logging.Log;
+import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Loads {@link ContactPhoto}s as circle-cropped bitmaps for avatar views.
+ *
+ * Avatars are decoded at a size bucket rather than the exact size asked for, and a bounded number
+ * of bytes worth of them are kept in memory. Concurrent requests for the same photo and bucket
+ * share a single load, which is abandoned once every request waiting on it has been canceled.
+ */
+public class AvatarPipeline {
+
+  private static final String TAG = AvatarPipeline.class.getSimpleName();
+
+  private static final int MAX_CACHE_BYTES = 8 * 1024 * 1024;
+  private static final int BUCKET_STEP     = 32;
+  private static final int MAX_BUCKET      = 512;
+  private static final int LOAD_THREADS    = 2;
+
+  private static volatile AvatarPipeline instance;
+
+  public static AvatarPipeline getInstance(@NonNull Context context) {
+    if (instance == null) {
+      synchronized (AvatarPipeline.class) {
+        if (instance == null) {
+          instance = new AvatarPipeline(context.getApplicationContext());
+        }
+      }
+    }
+    return instance;
+  }
+
+  private final Context               context;
+  private final LruCache<Key, Bitmap> cache;
+  private final Map<Key, Load>        pending  = new HashMap<>();
+  private final ExecutorService       executor = SignalExecutors.newCachedBoundedExecutor("signal-avatar-load", LOAD_THREADS);
+
+  private AvatarPipeline(@NonNull Context context) {
+    int maxBytes = (int) Math.min(MAX_CACHE_BYTES, Runtime.getRuntime().maxMemory() / 32);
+
+    this.context = context;
+    this.cache   = new LruCache<Key, Bitmap>(maxBytes) {
+      @Override
+      protected int sizeOf(Key key, Bitmap value) {
+        return value.getByteCount();
+      }
+    };
+  }
+
+  /**
+   * @return The avatar for the photo at the given size, if it's already in memory.
+   */
+  public @Nullable Bitmap getCached(@NonNull ContactPhoto photo, int size) {
+    return cache.get(new Key(photo, getBucket(size)));
+  }
+
+  /**
+   * Loads the avatar for the photo at the given size. The callback is invoked on the main thread,
+   * unless the returned request is canceled first.
+   */
+  @MainThread
+  public @NonNull Request load(@NonNull ContactPhoto photo, int size, @NonNull Callback callback) {
+    Key     key     = new Key(photo, getBucket(size));
+    Request request = new Request(callback);
+    Bitmap  cached  = cache.get(key);
+
+    if (cached != null) {
+      callback.onAvatarLoaded(cached);
+      return request;
+    }
+
+    synchronized (pending) {
+      Load load = pending.get(key);
+
+      if (load == null) {
+        load = new Load(key);
+        pending.put(key, load);
+        load.future = executor.submit(load);
+      }
+
+      load.requests.add(request);
+      request.load = load;
+    }
+
+    return request;
+  }
+
+  private static int getBucket(int size) {
+    int bucket = ((Math.max(size, 1) + BUCKET_STEP - 1) / BUCKET_STEP) * BUCKET_STEP;
+    return Math.min(bucket, MAX_BUCKET);
+  }
+
+  private @Nullable Bitmap decode(@NonNull Load load) throws IOException {
+    byte[] data = read(load);
+
+    if (data == null) return null;
+
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeByteArray(data, 0, data.length, options);
+
+    if (options.outWidth <= 0 || options.outHeight <= 0) {
+      throw new IOException("Unable to decode avatar bounds");
+    }
+
+    options.inSampleSize       = getSampleSize(options.outWidth, options.outHeight, load.key.size);
+    options.inJustDecodeBounds = false;
+
+    Bitmap source = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+
+    if (source == null) {
+      throw new IOException("Unable to decode avatar");
+    }
+
+    if (load.canceled) {
+      source.recycle();
+      return null;
+    }
+
+    Bitmap avatar = circleCrop(source, load.key.size);
+    source.recycle();
+
+    return avatar;
+  }
+
+  /**
+   * Reads the photo, giving up as soon as the load is canceled.
+   */
+  private @Nullable byte[] read(@NonNull Load load) throws IOException {
+    if (load.canceled) return null;
+
+    try (InputStream in = load.key.photo.openInputStream(context)) {
+      ByteArrayOutputStream out    = new ByteArrayOutputStream();
+      byte[]                buffer = new byte[4096];
+      int                   read;
+
+      while ((read = in.read(buffer)) != -1) {
+        if (load.canceled) return null;
+        out.write(buffer, 0, read);
+      }
+
+      return out.toByteArray();
+    }
+  }
+
+  private static int getSampleSize(int width, int height, int size) {
+    int sampleSize = 1;
+
+    while (Math.min(width, height) / (sampleSize * 2) >= size) {
+      sampleSize *= 2;
+    }
+
+    return sampleSize;
+  }
+
+  private static @NonNull Bitmap circleCrop(@NonNull Bitmap source, int size) {
+    Bitmap avatar = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(avatar);
+    Paint  paint  = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    Matrix matrix = new Matrix();
+    float  scale  = Math.max((float) size / source.getWidth(), (float) size / source.getHeight());
+
+    matrix.setScale(scale, scale);
+    matrix.postTranslate((size - source.getWidth() * scale) / 2f, (size - source.getHeight() * scale) / 2f);
+
+    BitmapShader shader = new BitmapShader(source, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+    shader.setLocalMatrix(matrix);
+    paint.setShader(shader);
+
+    canvas.drawCircle(size / 2f, size / 2f, size / 2f, paint);
+
+    return avatar;
+  }
+
+  public interface Callback {
+    void onAvatarLoaded(@NonNull Bitmap avatar);
+    void onAvatarFailed();
+  }
+
+  public class Request {
+
+    private final Callback callback;
+
+    private @Nullable Load    load;
+    private           boolean canceled;
+
+    private Request(@NonNull Callback callback) {
+      this.callback = callback;
+    }
+
+    /**
+     * Stops the callback from being invoked. If no other request is waiting on the same avatar,
+     * its load is abandoned.
+     */
+    @MainThread
+    public void cancel() {
+      canceled = true;
+
+      synchronized (pending) {
+        if (load == null) return;
+
+        load.requests.remove(this);
+
+        if (load.requests.isEmpty() && pending.get(load.key) == load) {
+          pending.remove(load.key);
+          load.cancel();
+        }
+
+        load = null;
+      }
+    }
+
+    private void deliver(@Nullable Bitmap avatar) {
+      if (canceled) return;
+
+      if (avatar != null) callback.onAvatarLoaded(avatar);
+      else                callback.onAvatarFailed();
+    }
+  }
+
+  private class Load implements Runnable {
+
+    private final Key           key;
+    private final List<Request> requests = new LinkedList<>();
+
+    private          Future<?> future;
+    private volatile boolean   canceled;
+
+    private Load(@NonNull Key key) {
+      this.key = key;
+    }
+
+    @Override
+    public void run() {
+      Bitmap avatar = null;
+
+      try {
+        avatar = decode(this);
+      } catch (IOException e) {
+        Log.w(TAG, e);
+      }
+
+      if (canceled) return;
+
+      if (avatar != null) {
+        cache.put(key, avatar);
+      }
+
+      final Bitmap        result = avatar;
+      final List<Request> waiting;
+
+      synchronized (pending) {
+        if (pending.get(key) == this) pending.remove(key);
+
+        waiting = new LinkedList<>(requests);
+        requests.clear();
+      }
+
+      Util.runOnMain(() -> {
+        for (Request request : waiting) {
+          request.deliver(result);
+        }
+      });
+    }
+
+    private void cancel() {
+      canceled = true;
+      if (future != null) future.cancel(false);
+    }
+  }
+
+  private static class Key {
+    private final ContactPhoto photo;
+    private final int          size;
+
+    private Key(@NonNull ContactPhoto photo, int size) {
+      this.photo = photo;
+      this.size  = size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      Key that = (Key) o;
+
+      return size == that.size && photo.equals(that.photo);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * photo.hashCode() + size;
+    }
+  }
+}
@@ -0,0 +1,261 @@
+package org.thoughtcrime.securesms.contacts.avatars;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import com.amulyakhare.textdrawable.TextDrawable;
+
+import org.thoughtcrime.securesms.R;
+import org.thoughtcrime.securesms.util.ThemeUtil;
+import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.ViewUtil;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Renders the initials avatars used by {@link GeneratedContactPhoto} into bitmaps, and keeps a
+ * bounded number of them in memory so that rebinding a row doesn't rasterize its avatar again.
+ *
+ * {@link #getAsyncDrawable(Context, String, int, boolean)} never renders on the calling thread. On
+ * a miss it returns a plain circle in the avatar's color, which is swapped for the rendered avatar
+ * once it's ready. Concurrent requests for the same avatar share a single render.
+ */
+class GeneratedAvatarCache {
+
+  private static final Typeface TYPEFACE        = Typeface.create("sans-serif-medium", Typeface.NORMAL);
+  private static final int      MAX_CACHE_BYTES = 8 * 1024 * 1024;
+
+  private static final GeneratedAvatarCache instance = new GeneratedAvatarCache();
+
+  private final LruCache<Key, Bitmap>          cache;
+  private final Map<Key, List<AvatarDrawable>> pending  = new HashMap<>();
+  private final ExecutorService                executor = SignalExecutors.newCachedSingleThreadExecutor("signal-avatar-render");
+
+  static GeneratedAvatarCache getInstance() {
+    return instance;
+  }
+
+  private GeneratedAvatarCache() {
+    int maxBytes = (int) Math.min(MAX_CACHE_BYTES, Runtime.getRuntime().maxMemory() / 32);
+
+    this.cache = new LruCache<Key, Bitmap>(maxBytes) {
+      @Override
+      protected int sizeOf(Key key, Bitmap value) {
+        return value.getByteCount();
+      }
+    };
+  }
+
+  /**
+   * @return The rendered avatar, rendering it on the calling thread if it isn't cached.
+   */
+  @NonNull Drawable getDrawable(@NonNull Context context, @NonNull String abbreviation, int color, boolean inverted) {
+    return new BitmapDrawable(context.getResources(), getBitmap(context, createKey(context, abbreviation, color, inverted)));
+  }
+
+  @NonNull Drawable getAsyncDrawable(@NonNull Context context, @NonNull String abbreviation, int color, boolean inverted) {
+    final Key    key    = createKey(context, abbreviation, color, inverted);
+    final Bitmap cached = cache.get(key);
+
+    if (cached != null) {
+      return new BitmapDrawable(context.getResources(), cached);
+    }
+
+    AvatarDrawable drawable = new AvatarDrawable(key);
+
+    synchronized (pending) {
+      List<AvatarDrawable> waiting = pending.get(key);
+
+      if (waiting != null) {
+        waiting.add(drawable);
+        return drawable;
+      }
+
+      waiting = new LinkedList<>();
+      waiting.add(drawable);
+      pending.put(key, waiting);
+    }
+
+    final Context appContext = context.getApplicationContext();
+
+    executor.execute(() -> {
+      Bitmap               bitmap = getBitmap(appContext, key);
+      List<AvatarDrawable> waiting;
+
+      synchronized (pending) {
+        waiting = pending.remove(key);
+      }
+
+      Util.runOnMain(() -> {
+        for (AvatarDrawable waitingDrawable : waiting) {
+          waitingDrawable.setBitmap(bitmap);
+        }
+      });
+    });
+
+    return drawable;
+  }
+
+  private @NonNull Bitmap getBitmap(@NonNull Context context, @NonNull Key key) {
+    Bitmap bitmap = cache.get(key);
+
+    if (bitmap == null) {
+      bitmap = render(context, key);
+      cache.put(key, bitmap);
+    }
+
+    return bitmap;
+  }
+
+  private static @NonNull Bitmap render(@NonNull Context context, @NonNull Key key) {
+    Resources resources = context.getResources();
+    Bitmap    bitmap    = Bitmap.createBitmap(key.size, key.size, Bitmap.Config.ARGB_8888);
+    Canvas    canvas    = new Canvas(bitmap);
+
+    Drawable base = TextDrawable.builder()
+                                .beginConfig()
+                                .width(key.size)
+                                .height(key.size)
+                                .useFont(TYPEFACE)
+                                .fontSize(ViewUtil.dpToPx(context, 24))
+                                .textColor(key.inverted ? key.color : Color.WHITE)
+                                .endConfig()
+                                .buildRound(key.abbreviation, key.inverted ? Color.WHITE : key.color);
+
+    Drawable gradient = resources.getDrawable(key.darkTheme ? R.drawable.avatar_gradient_dark
+                                                            : R.drawable.avatar_gradient_light);
+
+    base.setBounds(0, 0, key.size, key.size);
+    base.draw(canvas);
+
+    gradient.setBounds(0, 0, key.size, key.size);
+    gradient.draw(canvas);
+
+    return bitmap;
+  }
+
+  private static @NonNull Key createKey(@NonNull Context context, @NonNull String abbreviation, int color, boolean inverted) {
+    return new Key(abbreviation,
+                   color,
+                   context.getResources().getDimensionPixelSize(R.dimen.contact_photo_target_size),
+                   ThemeUtil.isDarkTheme(context),
+                   inverted);
+  }
+
+  private static class Key {
+    private final String  abbreviation;
+    private final int     color;
+    private final int     size;
+    private final boolean darkTheme;
+    private final boolean inverted;
+
+    private Key(@NonNull String abbreviation, int color, int size, boolean darkTheme, boolean inverted) {
+      this.abbreviation = abbreviation;
+      this.color        = color;
+      this.size         = size;
+      this.darkTheme    = darkTheme;
+      this.inverted     = inverted;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      Key that = (Key) o;
+
+      return color     == that.color     &&
+             size      == that.size      &&
+             darkTheme == that.darkTheme &&
+             inverted  == that.inverted  &&
+             abbreviation.equals(that.abbreviation);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = abbreviation.hashCode();
+      result = 31 * result + color;
+      result = 31 * result + size;
+      result = 31 * result + (darkTheme ? 1 : 0);
+      result = 31 * result + (inverted ? 1 : 0);
+      return result;
+    }
+  }
+
+  /**
+   * Draws a circle in the avatar's background color until the rendered avatar is available.
+   */
+  private static class AvatarDrawable extends Drawable {
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final int   size;
+
+    private @Nullable Bitmap bitmap;
+
+    AvatarDrawable(@NonNull Key key) {
+      this.size = key.size;
+      this.paint.setColor(key.inverted ? Color.WHITE : key.color);
+    }
+
+    void setBitmap(@NonNull Bitmap bitmap) {
+      this.bitmap = bitmap;
+      invalidateSelf();
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+      Rect bounds = getBounds();
+
+      if (bitmap != null) {
+        canvas.drawBitmap(bitmap, null, bounds, paint);
+      } else {
+        canvas.drawCircle(bounds.exactCenterX(), bounds.exactCenterY(), Math.min(bounds.width(), bounds.height()) / 2f, paint);
+      }
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+      return size;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+      return size;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+      paint.setAlpha(alpha);
+      invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+      paint.setColorFilter(colorFilter);
+      invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+      return PixelFormat.TRANSLUCENT;
+    }
+  }
+}
@@ -1,28 +1,24 @@
 package org.thoughtcrime.securesms.contacts.avatars;
 
 import android.content.Context;
-import android.graphics.Color;
-import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
-import android.graphics.drawable.LayerDrawable;
 import android.support.annotation.NonNull;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.Nullable;
 import android.support.v7.content.res.AppCompatResources;
 import android.text.TextUtils;
 
-import com.amulyakhare.textdrawable.TextDrawable;
-
 import org.thoughtcrime.securesms.R;
-import org.thoughtcrime.securesms.util.ThemeUtil;
-import org.thoughtcrime.securesms.util.ViewUtil;
+import org.thoughtcrime.securesms.util.LRUCache;
 
+import java.util.Map;
 import java.util.regex.Pattern;
 
 public class GeneratedContactPhoto implements FallbackContactPhoto {
 
-  private static final Pattern  PATTERN  = Pattern.compile("[^\\p{L}\\p{Nd}\\p{S}]+");
-  private static final Typeface TYPEFACE = Typeface.create("sans-serif-medium", Typeface.NORMAL);
+  private static final Pattern PATTERN = Pattern.compile("[^\\p{L}\\p{Nd}\\p{S}]+");
+
+  private static final Map<String, String> ABBREVIATIONS = new LRUCache<>(500);
 
   private final String name;
   private final int    fallbackResId;
@@ -39,29 +35,35 @@ public class GeneratedContactPhoto implements FallbackContactPhoto {
 
   @Override
   public Drawable asDrawable(Context context, int color, boolean inverted) {
-    int targetSize = context.getResources().getDimensionPixelSize(R.dimen.contact_photo_target_size);
     String character = getAbbreviation(name);
 
     if (!TextUtils.isEmpty(character)) {
-      Drawable base = TextDrawable.builder()
-                                  .beginConfig()
-                                  .width(targetSize)
-                                  .height(targetSize)
-                                  .useFont(TYPEFACE)
-                                  .fontSize(ViewUtil.dpToPx(context, 24))
-                                  .textColor(inverted ? color : Color.WHITE)
-                                  .endConfig()
-                                  .buildRound(character, inverted ? Color.WHITE : color);
-
-      Drawable gradient = context.getResources().getDrawable(ThemeUtil.isDarkTheme(context) ? R.drawable.avatar_gradient_dark
-                                                                                            : R.drawable.avatar_gradient_light);
-      return new LayerDrawable(new Drawable[] { base, gradient });
+      return GeneratedAvatarCache.getInstance().getDrawable(context, character, color, inverted);
+    }
+
+    return new ResourceContactPhoto(fallbackResId).asDrawable(context, color, inverted);
+  }
+
+  /**
+   * Like {@link #asDrawable(Context, int, boolean)}, but never renders the avatar on the calling
+   * thread. Until it's rendered, the drawable shows a plain circle in the avatar's color.
+   */
+  public Drawable asAsyncDrawable(Context context, int color, boolean inverted) {
+    String character = getAbbreviation(name);
+
+    if (!TextUtils.isEmpty(character)) {
+      return GeneratedAvatarCache.getInstance().getAsyncDrawable(context, character, color, inverted);
     }
 
     return new ResourceContactPhoto(fallbackResId).asDrawable(context, color, inverted);
   }
 
   private @Nullable String getAbbreviation(String name) {
+    synchronized (ABBREVIATIONS) {
+      String cached = ABBREVIATIONS.get(name);
+      if (cached != null) return cached.isEmpty() ? null : cached;
+    }
+
     String[]      parts   = name.split(" ");
     StringBuilder builder = new StringBuilder();
     int           count   = 0;
@@ -74,6 +76,10 @@ public class GeneratedContactPhoto implements FallbackContactPhoto {
       }
     }
 
+    synchronized (ABBREVIATIONS) {
+      ABBREVIATIONS.put(name, builder.toString());
+    }
+
     if (builder.length() == 0) {
       return null;
     } else {
@@ -0,0 +1,206 @@
+package org.thoughtcrime.securesms.crypto;
+
+
+import android.support.annotation.NonNull;
+
+import org.thoughtcrime.securesms.util.Conversions;
+import org.thoughtcrime.securesms.util.Hex;
+import org.thoughtcrime.securesms.util.LRUCache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A seekable, read-only channel over a file written by {@link ModernEncryptingPartOutputStream}.
+ *
+ * The files are encrypted with AES/CTR, so positioning only requires computing the counter block
+ * for the new position rather than decrypting everything before it. Each read starts the cipher
+ * at the counter of the block holding the current position and decrypts whole blocks with
+ * {@link Cipher#doFinal}, dropping the bytes before the position, so it never depends on how a
+ * provider buffers partial blocks in {@link Cipher#update}. The per-file key is derived once and
+ * cached, so repeatedly reopening the same attachment doesn't pay for it again.
+ */
+public class ModernDecryptingPartChannel implements ReadableByteChannel {
+
+  private static final int BLOCK_SIZE  = 16;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final Map<String, SecretKeySpec> KEY_CACHE = new LRUCache<>(32);
+
+  private final FileInputStream inputStream;
+  private final FileChannel     fileChannel;
+  private final long            dataOffset;
+  private final long            size;
+  private final SecretKeySpec   key;
+  private final Cipher          cipher;
+  private final ByteBuffer      cipherText;
+  private final ByteBuffer      plainText;
+
+  private long position;
+
+  public static ModernDecryptingPartChannel createFor(@NonNull AttachmentSecret attachmentSecret, @NonNull byte[] random, @NonNull File file)
+      throws IOException
+  {
+    return new ModernDecryptingPartChannel(new FileInputStream(file), getKey(attachmentSecret, random), 0);
+  }
+
+  public static ModernDecryptingPartChannel createFor(@NonNull AttachmentSecret attachmentSecret, @NonNull File file)
+      throws IOException
+  {
+    FileInputStream inputStream = new FileInputStream(file);
+    ByteBuffer      random      = ByteBuffer.allocate(32);
+
+    try {
+      while (random.hasRemaining()) {
+        if (inputStream.getChannel().read(random, random.position()) == -1) {
+          throw new IOException("File too short to contain a key");
+        }
+      }
+    } catch (IOException e) {
+      inputStream.close();
+      throw e;
+    }
+
+    return new ModernDecryptingPartChannel(inputStream, getKey(attachmentSecret, random.array()), random.capacity());
+  }
+
+  private ModernDecryptingPartChannel(@NonNull FileInputStream inputStream, @NonNull SecretKeySpec key, long dataOffset)
+      throws IOException
+  {
+    try {
+      this.inputStream = inputStream;
+      this.fileChannel = inputStream.getChannel();
+      this.dataOffset  = dataOffset;
+      this.size        = Math.max(0, fileChannel.size() - dataOffset);
+      this.key         = key;
+      this.cipher      = Cipher.getInstance("AES/CTR/NoPadding");
+      this.cipherText  = ByteBuffer.allocate(BUFFER_SIZE);
+      this.plainText   = ByteBuffer.allocate(BUFFER_SIZE);
+    } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * @return The size of the decrypted contents.
+   */
+  public long size() {
+    return size;
+  }
+
+  public synchronized long position() {
+    return position;
+  }
+
+  public synchronized ModernDecryptingPartChannel position(long position) throws IOException {
+    if (position < 0) throw new IllegalArgumentException("Negative position: " + position);
+    if (!isOpen())    throw new ClosedChannelException();
+
+    this.position = position;
+    return this;
+  }
+
+  @Override
+  public synchronized int read(ByteBuffer dst) throws IOException {
+    if (!isOpen())        throw new ClosedChannelException();
+    if (position >= size) return -1;
+
+    int  skip       = (int) (position % BLOCK_SIZE);
+    long blockStart = position - skip;
+    int  length     = (int)Math.min(Math.min(dst.remaining(), cipherText.capacity() - skip), size - position);
+
+    if (length == 0) return 0;
+
+    cipherText.clear();
+    cipherText.limit(skip + length);
+
+    while (cipherText.hasRemaining()) {
+      if (fileChannel.read(cipherText, dataOffset + blockStart + cipherText.position()) == -1) {
+        break;
+      }
+    }
+
+    cipherText.flip();
+    plainText.clear();
+
+    try {
+      cipher.init(Cipher.DECRYPT_MODE, key, getCounter(blockStart));
+      cipher.doFinal(cipherText, plainText);
+    } catch (GeneralSecurityException e) {
+      throw new IOException(e);
+    }
+
+    plainText.flip();
+
+    if (plainText.remaining() <= skip) return -1;
+
+    plainText.position(skip);
+
+    int decrypted = plainText.remaining();
+
+    dst.put(plainText);
+    position += decrypted;
+
+    return decrypted;
+  }
+
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    return read(ByteBuffer.wrap(buffer, offset, length));
+  }
+
+  @Override
+  public boolean isOpen() {
+    return fileChannel.isOpen();
+  }
+
+  @Override
+  public void close() throws IOException {
+    inputStream.close();
+  }
+
+  private static @NonNull IvParameterSpec getCounter(long blockStart) {
+    byte[] iv = new byte[16];
+    Conversions.longTo4ByteArray(iv, 12, blockStart / BLOCK_SIZE);
+
+    return new IvParameterSpec(iv);
+  }
+
+  static @NonNull SecretKeySpec getKey(@NonNull AttachmentSecret attachmentSecret, @NonNull byte[] random) {
+    String cacheKey = Hex.toStringCondensed(random);
+
+    synchronized (KEY_CACHE) {
+      SecretKeySpec cached = KEY_CACHE.get(cacheKey);
+      if (cached != null) return cached;
+    }
+
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(new SecretKeySpec(attachmentSecret.getModernKey(), "HmacSHA256"));
+
+      SecretKeySpec key = new SecretKeySpec(mac.doFinal(random), "AES");
+
+      synchronized (KEY_CACHE) {
+        KEY_CACHE.put(cacheKey, key);
+      }
+
+      return key;
+    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
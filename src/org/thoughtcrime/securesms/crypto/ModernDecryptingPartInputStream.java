@@ -15,7 +15,6 @@ import java.security.NoSuchAlgorithmException;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
-import javax.crypto.Mac;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
@@ -41,16 +40,13 @@ public class ModernDecryptingPartInputStream {
 
   private static InputStream createFor(@NonNull AttachmentSecret attachmentSecret, @NonNull byte[] random, @NonNull InputStream inputStream, long offset) throws IOException {
     try {
-      Mac mac  = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(attachmentSecret.getModernKey(), "HmacSHA256"));
-
       byte[] iv        = new byte[16];
       int    remainder = (int) (offset % 16);
       Conversions.longTo4ByteArray(iv, 12, offset / 16);
 
-      byte[] key    = mac.doFinal(random);
-      Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
-      cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+      SecretKeySpec key    = ModernDecryptingPartChannel.getKey(attachmentSecret, random);
+      Cipher        cipher = Cipher.getInstance("AES/CTR/NoPadding");
+      cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
 
       long skipped = inputStream.skip(offset - remainder);
 
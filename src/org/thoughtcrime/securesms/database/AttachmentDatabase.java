@@ -40,14 +40,17 @@ import org.json.JSONException;
 import org.thoughtcrime.securesms.attachments.Attachment;
 import org.thoughtcrime.securesms.attachments.AttachmentId;
 import org.thoughtcrime.securesms.attachments.DatabaseAttachment;
+import org.thoughtcrime.securesms.audio.AudioWaveform;
 import org.thoughtcrime.securesms.crypto.AttachmentSecret;
 import org.thoughtcrime.securesms.crypto.ClassicDecryptingPartInputStream;
+import org.thoughtcrime.securesms.crypto.ModernDecryptingPartChannel;
 import org.thoughtcrime.securesms.crypto.ModernDecryptingPartInputStream;
 import org.thoughtcrime.securesms.crypto.ModernEncryptingPartOutputStream;
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
 import org.thoughtcrime.securesms.mms.MediaStream;
 import org.thoughtcrime.securesms.mms.MmsException;
 import org.thoughtcrime.securesms.mms.PartAuthority;
+import org.thoughtcrime.securesms.providers.PersistentBlobProvider;
 import org.thoughtcrime.securesms.util.BitmapDecodingException;
 import org.thoughtcrime.securesms.util.BitmapUtil;
 import org.thoughtcrime.securesms.util.JsonUtils;
@@ -55,6 +58,7 @@ import org.thoughtcrime.securesms.util.MediaUtil;
 import org.thoughtcrime.securesms.util.MediaUtil.ThumbnailData;
 import org.thoughtcrime.securesms.util.StorageUtil;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 import org.thoughtcrime.securesms.video.EncryptedMediaDataSource;
 
 import java.io.File;
@@ -98,6 +102,7 @@ public class AttachmentDatabase extends Database {
   private static final String THUMBNAIL_RANDOM       = "thumbnail_random";
           static final String WIDTH                  = "width";
           static final String HEIGHT                 = "height";
+          static final String AUDIO_WAVEFORM         = "audio_waveform";
 
   public  static final String DIRECTORY              = "parts";
 
@@ -125,14 +130,16 @@ public class AttachmentDatabase extends Database {
     FILE_NAME + " TEXT, " + THUMBNAIL + " TEXT, " + THUMBNAIL_ASPECT_RATIO + " REAL, " +
     UNIQUE_ID + " INTEGER NOT NULL, " + DIGEST + " BLOB, " + FAST_PREFLIGHT_ID + " TEXT, " +
     VOICE_NOTE + " INTEGER DEFAULT 0, " + DATA_RANDOM + " BLOB, " + THUMBNAIL_RANDOM + " BLOB, " +
-    QUOTE + " INTEGER DEFAULT 0, " + WIDTH + " INTEGER DEFAULT 0, " + HEIGHT + " INTEGER DEFAULT 0);";
+    QUOTE + " INTEGER DEFAULT 0, " + WIDTH + " INTEGER DEFAULT 0, " + HEIGHT + " INTEGER DEFAULT 0, " +
+    AUDIO_WAVEFORM + " BLOB DEFAULT NULL);";
 
   public static final String[] CREATE_INDEXS = {
     "CREATE INDEX IF NOT EXISTS part_mms_id_index ON " + TABLE_NAME + " (" + MMS_ID + ");",
     "CREATE INDEX IF NOT EXISTS pending_push_index ON " + TABLE_NAME + " (" + TRANSFER_STATE + ");",
   };
 
-  private final ExecutorService thumbnailExecutor = Util.newSingleThreadedLifoExecutor();
+  private final ExecutorService thumbnailExecutor           = PriorityExecutors.USER_INITIATED;
+  private final ExecutorService backgroundThumbnailExecutor = PriorityExecutors.BULK;
 
   private final AttachmentSecret attachmentSecret;
 
@@ -150,6 +157,22 @@ public class AttachmentDatabase extends Database {
     else                    return dataStream;
   }
 
+  /**
+   * @return A seekable channel over the attachment's data, or null if the attachment is missing or
+   *         was stored in the legacy format, which can only be read as a stream.
+   */
+  public @Nullable ModernDecryptingPartChannel getAttachmentChannel(@NonNull AttachmentId attachmentId)
+      throws IOException
+  {
+    DataInfo dataInfo = getAttachmentDataFileInfo(attachmentId, DATA);
+
+    if (dataInfo == null || dataInfo.random == null || dataInfo.random.length != 32) {
+      return null;
+    }
+
+    return ModernDecryptingPartChannel.createFor(attachmentSecret, dataInfo.random, dataInfo.file);
+  }
+
   public @NonNull InputStream getThumbnailStream(@NonNull AttachmentId attachmentId)
       throws IOException
   {
@@ -207,6 +230,19 @@ public class AttachmentDatabase extends Database {
     }
   }
 
+  public @Nullable AudioWaveform getAudioWaveform(@NonNull AttachmentId attachmentId) {
+    SQLiteDatabase database = databaseHelper.getReadableDatabase();
+
+    try (Cursor cursor = database.query(TABLE_NAME, new String[] {AUDIO_WAVEFORM}, PART_ID_WHERE, attachmentId.toStrings(), null, null, null)) {
+      if (cursor != null && cursor.moveToFirst()) {
+        byte[] peaks = cursor.getBlob(cursor.getColumnIndexOrThrow(AUDIO_WAVEFORM));
+        return peaks != null ? new AudioWaveform(peaks) : null;
+      }
+    }
+
+    return null;
+  }
+
   public @NonNull List<DatabaseAttachment> getAttachmentsForMessage(long mmsId) {
     SQLiteDatabase           database = databaseHelper.getReadableDatabase();
     List<DatabaseAttachment> results  = new LinkedList<>();
@@ -352,7 +388,7 @@ public class AttachmentDatabase extends Database {
       notifyConversationListListeners();
     }
 
-    thumbnailExecutor.submit(new ThumbnailFetchCallable(attachmentId));
+    backgroundThumbnailExecutor.submit(new ThumbnailFetchCallable(attachmentId));
   }
 
   @NonNull Map<Attachment, AttachmentId> insertAttachmentsForMessage(long mmsId, @NonNull List<Attachment> attachments, @NonNull List<Attachment> quoteAttachment)
@@ -651,6 +687,14 @@ public class AttachmentDatabase extends Database {
     contentValues.put(HEIGHT, attachment.getHeight());
     contentValues.put(QUOTE, quote);
 
+    if (attachment.isVoiceNote() && attachment.getDataUri() != null) {
+      AudioWaveform waveform = PersistentBlobProvider.getInstance(context).getAudioWaveform(context, attachment.getDataUri());
+
+      if (waveform != null) {
+        contentValues.put(AUDIO_WAVEFORM, waveform.getPeaks());
+      }
+    }
+
     if (dataInfo != null) {
       contentValues.put(DATA, dataInfo.file.getAbsolutePath());
       contentValues.put(SIZE, dataInfo.length);
@@ -683,11 +727,11 @@ public class AttachmentDatabase extends Database {
           updateAttachmentThumbnail(attachmentId, thumbnailData.toDataStream(), thumbnailData.getAspectRatio());
         } else {
           Log.w(TAG, "Retrieving video thumbnail failed, submitting thumbnail generation job...");
-          thumbnailExecutor.submit(new ThumbnailFetchCallable(attachmentId));
+          backgroundThumbnailExecutor.submit(new ThumbnailFetchCallable(attachmentId));
         }
       } else {
         Log.i(TAG, "Submitting thumbnail generation job...");
-        thumbnailExecutor.submit(new ThumbnailFetchCallable(attachmentId));
+        backgroundThumbnailExecutor.submit(new ThumbnailFetchCallable(attachmentId));
       }
     }
 
@@ -22,6 +22,8 @@ import android.database.DataSetObserver;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.RecyclerView.ViewHolder;
 import android.view.View;
@@ -90,7 +92,44 @@ public abstract class CursorRecyclerViewAdapter<VH extends RecyclerView.ViewHold
     }
   }
 
+  /**
+   * Swaps in a new cursor and dispatches the given per-row changes instead of invalidating the
+   * whole data set. The diff must have been computed against the rows of the current cursor.
+   */
+  public void changeCursor(Cursor cursor, @NonNull DiffUtil.DiffResult diff) {
+    Cursor old = swapCursor(cursor, false);
+    if (old != null) {
+      old.close();
+    }
+
+    diff.dispatchUpdatesTo(new ListUpdateCallback() {
+      @Override
+      public void onInserted(int position, int count) {
+        notifyItemRangeInserted(getAdapterPosition(position), count);
+      }
+
+      @Override
+      public void onRemoved(int position, int count) {
+        notifyItemRangeRemoved(getAdapterPosition(position), count);
+      }
+
+      @Override
+      public void onMoved(int fromPosition, int toPosition) {
+        notifyItemMoved(getAdapterPosition(fromPosition), getAdapterPosition(toPosition));
+      }
+
+      @Override
+      public void onChanged(int position, int count, Object payload) {
+        notifyItemRangeChanged(getAdapterPosition(position), count, payload);
+      }
+    });
+  }
+
   public Cursor swapCursor(Cursor newCursor) {
+    return swapCursor(newCursor, true);
+  }
+
+  private Cursor swapCursor(Cursor newCursor, boolean notify) {
     if (newCursor == cursor) {
       return null;
     }
@@ -106,7 +145,7 @@ public abstract class CursorRecyclerViewAdapter<VH extends RecyclerView.ViewHold
     }
 
     valid = cursor != null;
-    notifyDataSetChanged();
+    if (notify) notifyDataSetChanged();
     return oldCursor;
   }
 
@@ -203,7 +242,11 @@ public abstract class CursorRecyclerViewAdapter<VH extends RecyclerView.ViewHold
     return hasHeaderView() && position == 0;
   }
 
-  private int getCursorPosition(int position) {
+  private int getAdapterPosition(int cursorPosition) {
+    return cursorPosition + getFastAccessSize() + (hasHeaderView() ? 1 : 0);
+  }
+
+  protected int getCursorPosition(int position) {
     if (hasHeaderView()) {
       position -= 1;
     }
@@ -44,11 +44,15 @@ public abstract class Database {
   }
 
   protected void notifyConversationListeners(long threadId) {
-    context.getContentResolver().notifyChange(DatabaseContentProviders.Conversation.getUriForThread(threadId), null);
+    DatabaseChangeBus.getInstance(context).notifyThread(threadId);
+  }
+
+  protected void notifyConversationListeners(long threadId, @NonNull DatabaseChangeBus.Type type, @NonNull String table, long id) {
+    DatabaseChangeBus.getInstance(context).notifyRow(type, table, threadId, id);
   }
 
   protected void notifyConversationListListeners() {
-    context.getContentResolver().notifyChange(DatabaseContentProviders.ConversationList.CONTENT_URI, null);
+    DatabaseChangeBus.getInstance(context).notifyConversationList();
   }
 
   protected void setNotifyConverationListeners(Cursor cursor, long threadId) {
@@ -66,7 +70,7 @@ public abstract class Database {
   }
 
   protected void notifyAttachmentListeners() {
-    context.getContentResolver().notifyChange(DatabaseContentProviders.Attachment.CONTENT_URI, null);
+    DatabaseChangeBus.getInstance(context).notifyAttachments();
   }
 
   public void reset(SQLCipherOpenHelper databaseHelper) {
@@ -0,0 +1,240 @@
+package org.thoughtcrime.securesms.database;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+
+import org.thoughtcrime.securesms.database.helpers.DatabaseInstrumentation;
+import org.thoughtcrime.securesms.util.Util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects the changes made by the database classes and publishes them at most once per frame.
+ *
+ * Changes made inside a transaction are held back until the transaction ends. Everything recorded
+ * within a frame is then merged into a single {@link ChangeSet}: each dirty conversation gets one
+ * {@link ContentResolver#notifyChange} no matter how many writes touched it, and in-process
+ * listeners receive the merged set of typed row changes.
+ */
+public class DatabaseChangeBus {
+
+  private static final long FRAME_MS = 16;
+
+  public enum Type {
+    INSERT, UPDATE, DELETE
+  }
+
+  private static volatile DatabaseChangeBus instance;
+
+  public static DatabaseChangeBus getInstance(@NonNull Context context) {
+    if (instance == null) {
+      synchronized (DatabaseChangeBus.class) {
+        if (instance == null) {
+          instance = new DatabaseChangeBus(context.getApplicationContext());
+        }
+      }
+    }
+    return instance;
+  }
+
+  private final Context        context;
+  private final Handler        handler;
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+  private final Runnable       flushTask = this::flush;
+
+  private ChangeSet pending = new ChangeSet();
+  private boolean   scheduled;
+
+  private DatabaseChangeBus(@NonNull Context context) {
+    HandlerThread thread = new HandlerThread("signal-db-changes");
+    thread.start();
+
+    this.context = context;
+    this.handler = new Handler(thread.getLooper());
+  }
+
+  /**
+   * Listeners are called on the main thread.
+   */
+  public void addListener(@NonNull Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(@NonNull Listener listener) {
+    listeners.remove(listener);
+  }
+
+  void notifyRow(@NonNull Type type, @NonNull String table, long threadId, long id) {
+    DatabaseInstrumentation.runAfterTransaction(() -> {
+      synchronized (this) {
+        pending.addRow(new Change(type, table, threadId, id));
+        schedule();
+      }
+    });
+  }
+
+  void notifyThread(long threadId) {
+    DatabaseInstrumentation.runAfterTransaction(() -> {
+      synchronized (this) {
+        pending.threadIds.add(threadId);
+        schedule();
+      }
+    });
+  }
+
+  void notifyConversationList() {
+    DatabaseInstrumentation.runAfterTransaction(() -> {
+      synchronized (this) {
+        pending.conversationList = true;
+        schedule();
+      }
+    });
+  }
+
+  void notifyAttachments() {
+    DatabaseInstrumentation.runAfterTransaction(() -> {
+      synchronized (this) {
+        pending.attachments = true;
+        schedule();
+      }
+    });
+  }
+
+  private void schedule() {
+    if (!scheduled) {
+      scheduled = true;
+      handler.postDelayed(flushTask, FRAME_MS);
+    }
+  }
+
+  private void flush() {
+    final ChangeSet changes;
+
+    synchronized (this) {
+      changes   = pending;
+      pending   = new ChangeSet();
+      scheduled = false;
+    }
+
+    ContentResolver resolver = context.getContentResolver();
+
+    for (long threadId : changes.threadIds) {
+      resolver.notifyChange(DatabaseContentProviders.Conversation.getUriForThread(threadId), null);
+    }
+
+    if (changes.conversationList) {
+      resolver.notifyChange(DatabaseContentProviders.ConversationList.CONTENT_URI, null);
+    }
+
+    if (changes.attachments) {
+      resolver.notifyChange(DatabaseContentProviders.Attachment.CONTENT_URI, null);
+    }
+
+    if (!listeners.isEmpty()) {
+      Util.runOnMain(() -> {
+        for (Listener listener : listeners) {
+          listener.onChanges(changes);
+        }
+      });
+    }
+  }
+
+  public interface Listener {
+    @MainThread
+    void onChanges(@NonNull ChangeSet changes);
+  }
+
+  /**
+   * A single row that was inserted, updated or deleted. Its conversation is always marked dirty
+   * in the same {@link ChangeSet}.
+   */
+  public static class Change {
+    private final Type   type;
+    private final String table;
+    private final long   threadId;
+    private final long   id;
+
+    private Change(@NonNull Type type, @NonNull String table, long threadId, long id) {
+      this.type     = type;
+      this.table    = table;
+      this.threadId = threadId;
+      this.id       = id;
+    }
+
+    public @NonNull Type getType() {
+      return type;
+    }
+
+    public @NonNull String getTable() {
+      return table;
+    }
+
+    public long getThreadId() {
+      return threadId;
+    }
+
+    public long getId() {
+      return id;
+    }
+  }
+
+  /**
+   * Everything that changed within one frame. A row that was changed several times appears once:
+   * an insert followed by updates is reported as an insert, and anything followed by a delete as a
+   * delete. A row that was both inserted and deleted isn't reported at all.
+   */
+  public static class ChangeSet {
+    private final Set<Long>           threadIds = new HashSet<>();
+    private final Map<String, Change> rows      = new LinkedHashMap<>();
+
+    private boolean conversationList;
+    private boolean attachments;
+
+    private void addRow(@NonNull Change change) {
+      String key      = change.table + ":" + change.id;
+      Change existing = rows.get(key);
+
+      threadIds.add(change.threadId);
+
+      if (existing == null) {
+        rows.put(key, change);
+      } else if (change.type == Type.DELETE) {
+        if (existing.type == Type.INSERT) rows.remove(key);
+        else                              rows.put(key, change);
+      } else if (existing.type == Type.DELETE) {
+        rows.put(key, change);
+      }
+    }
+
+    public @NonNull Set<Long> getThreadIds() {
+      return Collections.unmodifiableSet(threadIds);
+    }
+
+    public @NonNull Collection<Change> getChanges() {
+      return Collections.unmodifiableCollection(rows.values());
+    }
+
+    public boolean isThreadChanged(long threadId) {
+      return threadIds.contains(threadId);
+    }
+
+    public boolean isConversationListChanged() {
+      return conversationList;
+    }
+
+    public boolean isAttachmentsChanged() {
+      return attachments;
+    }
+  }
+}
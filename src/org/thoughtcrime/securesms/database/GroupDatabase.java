@@ -14,6 +14,8 @@ import com.annimon.stream.Stream;
 
 import net.sqlcipher.database.SQLiteDatabase;
 
+import org.thoughtcrime.securesms.database.RecipientDatabase.RecipientSettings;
+import org.thoughtcrime.securesms.database.helpers.DatabaseInstrumentation;
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
 import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.util.BitmapUtil;
@@ -27,8 +29,10 @@ import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 public class GroupDatabase extends Database {
 
@@ -50,6 +54,10 @@ public class GroupDatabase extends Database {
   private static final String ACTIVE              = "active";
   private static final String MMS                 = "mms";
 
+          static final String MEMBERSHIP_TABLE_NAME = "group_membership";
+  private static final String MEMBERSHIP_GROUP_ID   = "group_id";
+  private static final String MEMBERSHIP_ADDRESS    = "address";
+
   public static final String CREATE_TABLE =
       "CREATE TABLE " + TABLE_NAME +
           " (" + ID + " INTEGER PRIMARY KEY, " +
@@ -66,8 +74,16 @@ public class GroupDatabase extends Database {
           AVATAR_DIGEST + " BLOB, " +
           MMS + " INTEGER DEFAULT 0);";
 
+  public static final String CREATE_MEMBERSHIP_TABLE =
+      "CREATE TABLE " + MEMBERSHIP_TABLE_NAME +
+          " (" + ID + " INTEGER PRIMARY KEY, " +
+          MEMBERSHIP_GROUP_ID + " TEXT NOT NULL, " +
+          MEMBERSHIP_ADDRESS + " TEXT NOT NULL, " +
+          "UNIQUE(" + MEMBERSHIP_GROUP_ID + ", " + MEMBERSHIP_ADDRESS + ") ON CONFLICT IGNORE);";
+
   public static final String[] CREATE_INDEXS = {
       "CREATE UNIQUE INDEX IF NOT EXISTS group_id_index ON " + TABLE_NAME + " (" + GROUP_ID + ");",
+      "CREATE INDEX IF NOT EXISTS group_membership_address_index ON " + MEMBERSHIP_TABLE_NAME + " (" + MEMBERSHIP_ADDRESS + ", " + MEMBERSHIP_GROUP_ID + ");",
   };
 
   private static final String[] GROUP_PROJECTION = {
@@ -138,15 +154,49 @@ public class GroupDatabase extends Database {
     return new Reader(cursor);
   }
 
+  /**
+   * @return The groups that the given address is a member of.
+   */
+  public Reader getGroupsContainingMember(@NonNull Address member) {
+    String query = "SELECT " + TABLE_NAME + ".* FROM " + TABLE_NAME +
+                   " INNER JOIN " + MEMBERSHIP_TABLE_NAME +
+                   " ON " + TABLE_NAME + "." + GROUP_ID + " = " + MEMBERSHIP_TABLE_NAME + "." + MEMBERSHIP_GROUP_ID +
+                   " WHERE " + MEMBERSHIP_TABLE_NAME + "." + MEMBERSHIP_ADDRESS + " = ?";
+
+    @SuppressLint("Recycle")
+    Cursor cursor = databaseHelper.getReadableDatabase().rawQuery(query, new String[] {member.serialize()});
+    return new Reader(cursor);
+  }
+
+  /**
+   * Resolves every member of a group synchronously, reading all of their {@link RecipientSettings}
+   * in a single query rather than one query per member.
+   */
   public @NonNull List<Recipient> getGroupMembers(String groupId, boolean includeSelf) {
-    List<Address>   members     = getCurrentMembers(groupId);
-    List<Recipient> recipients  = new LinkedList<>();
+    RecipientDatabase recipientDatabase = DatabaseFactory.getRecipientDatabase(context);
+    List<Recipient>   recipients        = new LinkedList<>();
 
-    for (Address member : members) {
-      if (!includeSelf && Util.isOwnNumber(context, member))
-        continue;
+    String query = "SELECT " + MEMBERSHIP_TABLE_NAME + "." + MEMBERSHIP_ADDRESS + ", " +
+                               RecipientDatabase.TABLE_NAME + "." + RecipientDatabase.ADDRESS + ", " +
+                               Util.join(RecipientDatabase.TYPED_RECIPIENT_PROJECTION, ",") +
+                   " FROM " + MEMBERSHIP_TABLE_NAME +
+                   " LEFT OUTER JOIN " + RecipientDatabase.TABLE_NAME +
+                   " ON " + MEMBERSHIP_TABLE_NAME + "." + MEMBERSHIP_ADDRESS + " = " + RecipientDatabase.TABLE_NAME + "." + RecipientDatabase.ADDRESS +
+                   " WHERE " + MEMBERSHIP_TABLE_NAME + "." + MEMBERSHIP_GROUP_ID + " = ?" +
+                   " ORDER BY " + MEMBERSHIP_TABLE_NAME + "." + MEMBERSHIP_ADDRESS;
+
+    try (Cursor cursor = databaseHelper.getReadableDatabase().rawQuery(query, new String[] {groupId})) {
+      while (cursor != null && cursor.moveToNext()) {
+        Address member = Address.fromSerialized(cursor.getString(cursor.getColumnIndexOrThrow(MEMBERSHIP_ADDRESS)));
+
+        if (!includeSelf && Util.isOwnNumber(context, member))
+          continue;
+
+        Optional<RecipientSettings> settings = cursor.isNull(cursor.getColumnIndexOrThrow(RecipientDatabase.ADDRESS)) ? Optional.absent()
+                                                                                                                       : recipientDatabase.getRecipientSettings(cursor);
 
-      recipients.add(Recipient.from(context, member, false));
+        recipients.add(Recipient.from(context, member, settings, Optional.absent(), false));
+      }
     }
 
     return recipients;
@@ -174,7 +224,17 @@ public class GroupDatabase extends Database {
     contentValues.put(ACTIVE, 1);
     contentValues.put(MMS, GroupUtil.isMmsGroup(groupId));
 
-    databaseHelper.getWritableDatabase().insert(TABLE_NAME, null, contentValues);
+    SQLiteDatabase database = databaseHelper.getWritableDatabase();
+
+    DatabaseInstrumentation.beginTransaction(database);
+
+    try {
+      database.insert(TABLE_NAME, null, contentValues);
+      insertMemberships(database, groupId, members);
+      database.setTransactionSuccessful();
+    } finally {
+      DatabaseInstrumentation.endTransaction(database);
+    }
 
     Recipient.applyCached(Address.fromSerialized(groupId), recipient -> {
       recipient.setName(title);
@@ -242,23 +302,71 @@ public class GroupDatabase extends Database {
   public void updateMembers(String groupId, List<Address> members) {
     Collections.sort(members);
 
-    ContentValues contents = new ContentValues();
+    SQLiteDatabase database = databaseHelper.getWritableDatabase();
+    ContentValues  contents = new ContentValues();
     contents.put(MEMBERS, Address.toSerializedList(members, ','));
     contents.put(ACTIVE, 1);
 
-    databaseHelper.getWritableDatabase().update(TABLE_NAME, contents, GROUP_ID + " = ?",
-                                                new String[] {groupId});
+    DatabaseInstrumentation.beginTransaction(database);
+
+    try {
+      List<Address> currentMembers = getCurrentMembers(groupId);
+      Set<Address>  removed        = new HashSet<>(currentMembers);
+      Set<Address>  added          = new HashSet<>(members);
+
+      removed.removeAll(members);
+      added.removeAll(currentMembers);
+
+      database.update(TABLE_NAME, contents, GROUP_ID + " = ?",
+                      new String[] {groupId});
+
+      insertMemberships(database, groupId, added);
+      deleteMemberships(database, groupId, removed);
+
+      database.setTransactionSuccessful();
+    } finally {
+      DatabaseInstrumentation.endTransaction(database);
+    }
   }
 
   public void remove(String groupId, Address source) {
-    List<Address> currentMembers = getCurrentMembers(groupId);
-    currentMembers.remove(source);
+    SQLiteDatabase database = databaseHelper.getWritableDatabase();
 
-    ContentValues contents = new ContentValues();
-    contents.put(MEMBERS, Address.toSerializedList(currentMembers, ','));
+    DatabaseInstrumentation.beginTransaction(database);
 
-    databaseHelper.getWritableDatabase().update(TABLE_NAME, contents, GROUP_ID + " = ?",
-                                                new String[] {groupId});
+    try {
+      List<Address> currentMembers = getCurrentMembers(groupId);
+      currentMembers.remove(source);
+
+      ContentValues contents = new ContentValues();
+      contents.put(MEMBERS, Address.toSerializedList(currentMembers, ','));
+
+      database.update(TABLE_NAME, contents, GROUP_ID + " = ?",
+                      new String[] {groupId});
+
+      deleteMemberships(database, groupId, Collections.singleton(source));
+
+      database.setTransactionSuccessful();
+    } finally {
+      DatabaseInstrumentation.endTransaction(database);
+    }
+  }
+
+  private void insertMemberships(@NonNull SQLiteDatabase database, @NonNull String groupId, @NonNull Iterable<Address> members) {
+    ContentValues values = new ContentValues(2);
+    values.put(MEMBERSHIP_GROUP_ID, groupId);
+
+    for (Address member : members) {
+      values.put(MEMBERSHIP_ADDRESS, member.serialize());
+      database.insert(MEMBERSHIP_TABLE_NAME, null, values);
+    }
+  }
+
+  private void deleteMemberships(@NonNull SQLiteDatabase database, @NonNull String groupId, @NonNull Iterable<Address> members) {
+    for (Address member : members) {
+      database.delete(MEMBERSHIP_TABLE_NAME, MEMBERSHIP_GROUP_ID + " = ? AND " + MEMBERSHIP_ADDRESS + " = ?",
+                      new String[] {groupId, member.serialize()});
+    }
   }
 
   private List<Address> getCurrentMembers(String groupId) {
@@ -10,6 +10,7 @@ import net.sqlcipher.database.SQLiteDatabase;
 import org.thoughtcrime.securesms.database.documents.Document;
 import org.thoughtcrime.securesms.database.documents.IdentityKeyMismatch;
 import org.thoughtcrime.securesms.database.documents.IdentityKeyMismatchList;
+import org.thoughtcrime.securesms.database.helpers.DatabaseInstrumentation;
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.util.JsonUtils;
@@ -44,7 +45,7 @@ public abstract class MessagingDatabase extends Database implements MmsSmsColumn
     IdentityKeyMismatchList document = new IdentityKeyMismatchList(items);
 
     SQLiteDatabase database = databaseHelper.getWritableDatabase();
-    database.beginTransaction();
+    DatabaseInstrumentation.beginTransaction(database);
 
     try {
       setDocument(database, messageId, MISMATCHED_IDENTITIES, document);
@@ -53,7 +54,7 @@ public abstract class MessagingDatabase extends Database implements MmsSmsColumn
     } catch (IOException ioe) {
       Log.w(TAG, ioe);
     } finally {
-      database.endTransaction();
+      DatabaseInstrumentation.endTransaction(database);
     }
   }
 
@@ -79,7 +80,7 @@ public abstract class MessagingDatabase extends Database implements MmsSmsColumn
 
   protected <D extends Document<I>, I> void removeFromDocument(long messageId, String column, I object, Class<D> clazz) throws IOException {
     SQLiteDatabase database = databaseHelper.getWritableDatabase();
-    database.beginTransaction();
+    DatabaseInstrumentation.beginTransaction(database);
 
     try {
       D           document = getDocument(database, messageId, column, clazz);
@@ -97,7 +98,7 @@ public abstract class MessagingDatabase extends Database implements MmsSmsColumn
       setDocument(database, messageId, column, document);
       database.setTransactionSuccessful();
     } finally {
-      database.endTransaction();
+      DatabaseInstrumentation.endTransaction(database);
     }
   }
 
@@ -111,7 +112,7 @@ public abstract class MessagingDatabase extends Database implements MmsSmsColumn
 
   protected <T extends Document<I>, I> void addToDocument(long messageId, String column, List<I> objects, Class<T> clazz) throws IOException {
     SQLiteDatabase database = databaseHelper.getWritableDatabase();
-    database.beginTransaction();
+    DatabaseInstrumentation.beginTransaction(database);
 
     try {
       T document = getDocument(database, messageId, column, clazz);
@@ -120,7 +121,7 @@ public abstract class MessagingDatabase extends Database implements MmsSmsColumn
 
       database.setTransactionSuccessful();
     } finally {
-      database.endTransaction();
+      DatabaseInstrumentation.endTransaction(database);
     }
   }
 
@@ -44,6 +44,7 @@ import org.thoughtcrime.securesms.database.documents.IdentityKeyMismatch;
 import org.thoughtcrime.securesms.database.documents.IdentityKeyMismatchList;
 import org.thoughtcrime.securesms.database.documents.NetworkFailure;
 import org.thoughtcrime.securesms.database.documents.NetworkFailureList;
+import org.thoughtcrime.securesms.database.helpers.DatabaseInstrumentation;
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
 import org.thoughtcrime.securesms.database.model.MediaMmsMessageRecord;
 import org.thoughtcrime.securesms.database.model.MessageRecord;
@@ -334,32 +335,32 @@ public class MmsDatabase extends MessagingDatabase {
   public void markAsForcedSms(long messageId) {
     long threadId = getThreadIdForMessage(messageId);
     updateMailboxBitmask(messageId, Types.PUSH_MESSAGE_BIT, Types.MESSAGE_FORCE_SMS_BIT, Optional.of(threadId));
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.UPDATE, TABLE_NAME, messageId);
   }
 
   public void markAsPendingInsecureSmsFallback(long messageId) {
     long threadId = getThreadIdForMessage(messageId);
     updateMailboxBitmask(messageId, Types.BASE_TYPE_MASK, Types.BASE_PENDING_INSECURE_SMS_FALLBACK, Optional.of(threadId));
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.UPDATE, TABLE_NAME, messageId);
   }
 
   public void markAsSending(long messageId) {
     long threadId = getThreadIdForMessage(messageId);
     updateMailboxBitmask(messageId, Types.BASE_TYPE_MASK, Types.BASE_SENDING_TYPE, Optional.of(threadId));
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.UPDATE, TABLE_NAME, messageId);
   }
 
   public void markAsSentFailed(long messageId) {
     long threadId = getThreadIdForMessage(messageId);
     updateMailboxBitmask(messageId, Types.BASE_TYPE_MASK, Types.BASE_SENT_FAILED_TYPE, Optional.of(threadId));
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.UPDATE, TABLE_NAME, messageId);
   }
 
   @Override
   public void markAsSent(long messageId, boolean secure) {
     long threadId = getThreadIdForMessage(messageId);
     updateMailboxBitmask(messageId, Types.BASE_TYPE_MASK, Types.BASE_SENT_TYPE | (secure ? Types.PUSH_MESSAGE_BIT | Types.SECURE_MESSAGE_BIT : 0), Optional.of(threadId));
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.UPDATE, TABLE_NAME, messageId);
   }
 
   public void markDownloadState(long messageId, long state) {
@@ -373,7 +374,7 @@ public class MmsDatabase extends MessagingDatabase {
 
   public void markAsNoSession(long messageId, long threadId) {
     updateMailboxBitmask(messageId, Types.ENCRYPTION_MASK, Types.ENCRYPTION_REMOTE_NO_SESSION_BIT, Optional.of(threadId));
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.UPDATE, TABLE_NAME, messageId);
   }
 
 //  public void markAsSecure(long messageId) {
@@ -390,17 +391,17 @@ public class MmsDatabase extends MessagingDatabase {
 
   public void markAsDecryptFailed(long messageId, long threadId) {
     updateMailboxBitmask(messageId, Types.ENCRYPTION_MASK, Types.ENCRYPTION_REMOTE_FAILED_BIT, Optional.of(threadId));
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.UPDATE, TABLE_NAME, messageId);
   }
 
   public void markAsDecryptDuplicate(long messageId, long threadId) {
     updateMailboxBitmask(messageId, Types.ENCRYPTION_MASK, Types.ENCRYPTION_REMOTE_DUPLICATE_BIT, Optional.of(threadId));
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.UPDATE, TABLE_NAME, messageId);
   }
 
   public void markAsLegacyVersion(long messageId, long threadId) {
     updateMailboxBitmask(messageId, Types.ENCRYPTION_MASK, Types.ENCRYPTION_REMOTE_LEGACY_BIT, Optional.of(threadId));
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.UPDATE, TABLE_NAME, messageId);
   }
 
   @Override
@@ -452,7 +453,7 @@ public class MmsDatabase extends MessagingDatabase {
     List<MarkedMessageInfo> result   = new LinkedList<>();
     Cursor                  cursor   = null;
 
-    database.beginTransaction();
+    DatabaseInstrumentation.beginTransaction(database);
 
     try {
       cursor = database.query(TABLE_NAME, new String[] {ID, ADDRESS, DATE_SENT, MESSAGE_BOX, EXPIRES_IN, EXPIRE_STARTED}, where, arguments, null, null, null);
@@ -473,7 +474,7 @@ public class MmsDatabase extends MessagingDatabase {
       database.setTransactionSuccessful();
     } finally {
       if (cursor != null) cursor.close();
-      database.endTransaction();
+      DatabaseInstrumentation.endTransaction(database);
     }
 
     return result;
@@ -788,7 +789,7 @@ public class MmsDatabase extends MessagingDatabase {
       DatabaseFactory.getThreadDatabase(context).update(threadId, true);
     }
 
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.INSERT, TABLE_NAME, messageId);
     jobManager.add(new TrimThreadJob(context, threadId));
 
     return Optional.of(new InsertResult(messageId, threadId));
@@ -960,7 +961,7 @@ public class MmsDatabase extends MessagingDatabase {
     contentValues.put(BODY, body);
     contentValues.put(PART_COUNT, allAttachments.size());
 
-    db.beginTransaction();
+    DatabaseInstrumentation.beginTransaction(db);
     try {
       long messageId = db.insert(TABLE_NAME, null, contentValues);
 
@@ -982,7 +983,7 @@ public class MmsDatabase extends MessagingDatabase {
       db.setTransactionSuccessful();
       return messageId;
     } finally {
-      db.endTransaction();
+      DatabaseInstrumentation.endTransaction(db);
 
       if (insertListener != null) {
         insertListener.onComplete();
@@ -1004,7 +1005,7 @@ public class MmsDatabase extends MessagingDatabase {
     SQLiteDatabase database = databaseHelper.getWritableDatabase();
     database.delete(TABLE_NAME, ID_WHERE, new String[] {messageId+""});
     boolean threadDeleted = DatabaseFactory.getThreadDatabase(context).update(threadId, false);
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.DELETE, TABLE_NAME, messageId);
     return threadDeleted;
   }
 
@@ -12,6 +12,7 @@ import com.annimon.stream.Stream;
 import net.sqlcipher.database.SQLiteDatabase;
 
 import org.thoughtcrime.securesms.color.MaterialColor;
+import org.thoughtcrime.securesms.database.helpers.DatabaseInstrumentation;
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.recipients.Recipient;
@@ -57,6 +58,7 @@ public class RecipientDatabase extends Database {
   private static final String CALL_VIBRATE             = "call_vibrate";
   private static final String NOTIFICATION_CHANNEL     = "notification_channel";
   private static final String UNIDENTIFIED_ACCESS_MODE = "unidentified_access_mode";
+  private static final String CONTACT_SYNC_DIGEST      = "contact_sync_digest";
 
   private static final String[] RECIPIENT_PROJECTION = new String[] {
       BLOCK, NOTIFICATION, CALL_RINGTONE, VIBRATE, CALL_VIBRATE, MUTE_UNTIL, COLOR, SEEN_INVITE_REMINDER, DEFAULT_SUBSCRIPTION_ID, EXPIRE_MESSAGES, REGISTERED,
@@ -147,7 +149,8 @@ public class RecipientDatabase extends Database {
           CALL_RINGTONE + " TEXT DEFAULT NULL, " +
           CALL_VIBRATE + " INTEGER DEFAULT " + VibrateState.DEFAULT.getId() + ", " +
           NOTIFICATION_CHANNEL + " TEXT DEFAULT NULL, " +
-          UNIDENTIFIED_ACCESS_MODE + " INTEGER DEFAULT 0);";
+          UNIDENTIFIED_ACCESS_MODE + " INTEGER DEFAULT 0, " +
+          CONTACT_SYNC_DIGEST + " TEXT DEFAULT NULL);";
 
   public RecipientDatabase(Context context, SQLCipherOpenHelper databaseHelper) {
     super(context, databaseHelper);
@@ -246,7 +249,7 @@ public class RecipientDatabase extends Database {
 
   public BulkOperationsHandle resetAllSystemContactInfo() {
     SQLiteDatabase database = databaseHelper.getWritableDatabase();
-    database.beginTransaction();
+    DatabaseInstrumentation.beginTransaction(database);
 
     ContentValues contentValues = new ContentValues(1);
     contentValues.put(SYSTEM_DISPLAY_NAME, (String)null);
@@ -443,7 +446,7 @@ public class RecipientDatabase extends Database {
     SQLiteDatabase              db      = databaseHelper.getReadableDatabase();
     Map<Address, MaterialColor> updates = new HashMap<>();
 
-    db.beginTransaction();
+    DatabaseInstrumentation.beginTransaction(db);
     try (Cursor cursor = db.query(TABLE_NAME, new String[] {ADDRESS, COLOR, SYSTEM_DISPLAY_NAME}, SYSTEM_DISPLAY_NAME + " IS NOT NULL AND " + SYSTEM_DISPLAY_NAME + " != \"\"", null, null, null, null)) {
       while (cursor != null && cursor.moveToNext()) {
         Address address = Address.fromSerialized(cursor.getString(cursor.getColumnIndexOrThrow(ADDRESS)));
@@ -458,7 +461,7 @@ public class RecipientDatabase extends Database {
       }
     } finally {
       db.setTransactionSuccessful();
-      db.endTransaction();
+      DatabaseInstrumentation.endTransaction(db);
 
       Stream.of(updates.entrySet()).forEach(entry -> {
         Recipient.applyCached(entry.getKey(), recipient -> {
@@ -468,6 +471,49 @@ public class RecipientDatabase extends Database {
     }
   }
 
+  /**
+   * @return The digest of each contact as it was last sent to linked devices.
+   */
+  public @NonNull Map<Address, String> getContactSyncDigests() {
+    SQLiteDatabase       db      = databaseHelper.getReadableDatabase();
+    Map<Address, String> results = new HashMap<>();
+
+    try (Cursor cursor = db.query(TABLE_NAME, new String[] {ADDRESS, CONTACT_SYNC_DIGEST}, CONTACT_SYNC_DIGEST + " IS NOT NULL", null, null, null, null)) {
+      while (cursor != null && cursor.moveToNext()) {
+        results.put(Address.fromSerialized(cursor.getString(0)), cursor.getString(1));
+      }
+    }
+
+    return results;
+  }
+
+  /**
+   * @param clearOthers Whether to forget the digests of every contact not in {@code digests}, as
+   *                    after a complete sync.
+   */
+  public void setContactSyncDigests(@NonNull Map<Address, String> digests, boolean clearOthers) {
+    SQLiteDatabase db = databaseHelper.getWritableDatabase();
+
+    DatabaseInstrumentation.beginTransaction(db);
+    try {
+      if (clearOthers) {
+        ContentValues cleared = new ContentValues(1);
+        cleared.putNull(CONTACT_SYNC_DIGEST);
+        db.update(TABLE_NAME, cleared, null, null);
+      }
+
+      for (Map.Entry<Address, String> entry : digests.entrySet()) {
+        ContentValues contentValues = new ContentValues(1);
+        contentValues.put(CONTACT_SYNC_DIGEST, entry.getValue());
+        updateOrInsert(entry.getKey(), contentValues);
+      }
+
+      db.setTransactionSuccessful();
+    } finally {
+      DatabaseInstrumentation.endTransaction(db);
+    }
+  }
+
   // XXX This shouldn't be here, and is just a temporary workaround
   public RegisteredState isRegistered(@NonNull Address address) {
     SQLiteDatabase db = databaseHelper.getReadableDatabase();
@@ -481,7 +527,7 @@ public class RecipientDatabase extends Database {
   private void updateOrInsert(Address address, ContentValues contentValues) {
     SQLiteDatabase database = databaseHelper.getWritableDatabase();
 
-    database.beginTransaction();
+    DatabaseInstrumentation.beginTransaction(database);
 
     int updated = database.update(TABLE_NAME, contentValues, ADDRESS + " = ?",
                                   new String[] {address.serialize()});
@@ -492,7 +538,7 @@ public class RecipientDatabase extends Database {
     }
 
     database.setTransactionSuccessful();
-    database.endTransaction();
+    DatabaseInstrumentation.endTransaction(database);
   }
 
   public class BulkOperationsHandle {
@@ -518,7 +564,7 @@ public class RecipientDatabase extends Database {
 
     public void finish() {
       database.setTransactionSuccessful();
-      database.endTransaction();
+      DatabaseInstrumentation.endTransaction(database);
 
       Stream.of(pendingContactInfoMap.entrySet())
             .forEach(entry -> Recipient.applyCached(entry.getKey(), recipient -> {
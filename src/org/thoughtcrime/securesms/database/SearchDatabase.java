@@ -8,6 +8,7 @@ import com.annimon.stream.Stream;
 import net.sqlcipher.Cursor;
 import net.sqlcipher.database.SQLiteDatabase;
 
+import org.thoughtcrime.securesms.database.helpers.DatabaseInstrumentation;
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
 import org.thoughtcrime.securesms.util.Util;
 
@@ -26,12 +27,16 @@ public class SearchDatabase extends Database {
   public static final String RANK    = "rank";
   public static final String SNIPPET = "snippet";
 
+  private static final String SMS_INSERT_TRIGGER_NAME = "sms_ai";
+  private static final String SMS_INSERT_TRIGGER      =
+      "CREATE TRIGGER " + SMS_INSERT_TRIGGER_NAME + " AFTER INSERT ON " + SmsDatabase.TABLE_NAME + " BEGIN\n" +
+          "  INSERT INTO " + SMS_FTS_TABLE_NAME + "(" + ID + ", " + BODY + ") VALUES (new." + SmsDatabase.ID + ", new." + SmsDatabase.BODY + ");\n" +
+          "END;\n";
+
   public static final String[] CREATE_TABLE = {
       "CREATE VIRTUAL TABLE " + SMS_FTS_TABLE_NAME + " USING fts5(" + BODY + ", content=" + SmsDatabase.TABLE_NAME + ", content_rowid=" + SmsDatabase.ID + ");",
 
-      "CREATE TRIGGER sms_ai AFTER INSERT ON " + SmsDatabase.TABLE_NAME + " BEGIN\n" +
-          "  INSERT INTO " + SMS_FTS_TABLE_NAME + "(" + ID + ", " + BODY + ") VALUES (new." + SmsDatabase.ID + ", new." + SmsDatabase.BODY + ");\n" +
-          "END;\n",
+      SMS_INSERT_TRIGGER,
       "CREATE TRIGGER sms_ad AFTER DELETE ON " + SmsDatabase.TABLE_NAME + " BEGIN\n" +
           "  INSERT INTO " + SMS_FTS_TABLE_NAME + "(" + SMS_FTS_TABLE_NAME + ", " + ID + ", " + BODY + ") VALUES('delete', old." + SmsDatabase.ID + ", old." + SmsDatabase.BODY + ");\n" +
           "END;\n",
@@ -94,5 +99,27 @@ public class SearchDatabase extends Database {
     setNotifyConverationListListeners(cursor);
     return cursor;
   }
+
+  /**
+   * Stops indexing inserted SMS until {@link #rebuildSmsIndex()} is called, so that a bulk import
+   * can index everything at once instead of row by row.
+   */
+  public void suspendSmsIndexing() {
+    databaseHelper.getWritableDatabase().execSQL("DROP TRIGGER IF EXISTS " + SMS_INSERT_TRIGGER_NAME);
+  }
+
+  public void rebuildSmsIndex() {
+    SQLiteDatabase db = databaseHelper.getWritableDatabase();
+
+    DatabaseInstrumentation.beginTransaction(db);
+    try {
+      db.execSQL("DROP TRIGGER IF EXISTS " + SMS_INSERT_TRIGGER_NAME);
+      db.execSQL(SMS_INSERT_TRIGGER);
+      db.execSQL("INSERT INTO " + SMS_FTS_TABLE_NAME + "(" + SMS_FTS_TABLE_NAME + ") VALUES ('rebuild')");
+      db.setTransactionSuccessful();
+    } finally {
+      DatabaseInstrumentation.endTransaction(db);
+    }
+  }
 }
 
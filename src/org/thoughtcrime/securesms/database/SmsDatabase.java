@@ -32,6 +32,7 @@ import net.sqlcipher.database.SQLiteStatement;
 import org.thoughtcrime.securesms.ApplicationContext;
 import org.thoughtcrime.securesms.database.documents.IdentityKeyMismatch;
 import org.thoughtcrime.securesms.database.documents.IdentityKeyMismatchList;
+import org.thoughtcrime.securesms.database.helpers.DatabaseInstrumentation;
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
 import org.thoughtcrime.securesms.database.model.MessageRecord;
 import org.thoughtcrime.securesms.database.model.SmsMessageRecord;
@@ -127,7 +128,7 @@ public class SmsDatabase extends MessagingDatabase {
     long threadId = getThreadIdForMessage(id);
 
     DatabaseFactory.getThreadDatabase(context).update(threadId, false);
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.UPDATE, TABLE_NAME, id);
   }
 
   public long getThreadIdForMessage(long id) {
@@ -272,7 +273,7 @@ public class SmsDatabase extends MessagingDatabase {
     long threadId = getThreadIdForMessage(id);
 
     DatabaseFactory.getThreadDatabase(context).update(threadId, false);
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.UPDATE, TABLE_NAME, id);
   }
 
   public void markStatus(long id, int status) {
@@ -285,7 +286,7 @@ public class SmsDatabase extends MessagingDatabase {
 
     long threadId = getThreadIdForMessage(id);
     DatabaseFactory.getThreadDatabase(context).update(threadId, false);
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.UPDATE, TABLE_NAME, id);
   }
 
   public void markAsSentFailed(long id) {
@@ -400,7 +401,7 @@ public class SmsDatabase extends MessagingDatabase {
     List<MarkedMessageInfo> results   = new LinkedList<>();
     Cursor                  cursor    = null;
 
-    database.beginTransaction();
+    DatabaseInstrumentation.beginTransaction(database);
     try {
       cursor = database.query(TABLE_NAME, new String[] {ID, ADDRESS, DATE_SENT, TYPE, EXPIRES_IN, EXPIRE_STARTED}, where, arguments, null, null, null);
 
@@ -420,7 +421,7 @@ public class SmsDatabase extends MessagingDatabase {
       database.setTransactionSuccessful();
     } finally {
       if (cursor != null) cursor.close();
-      database.endTransaction();
+      DatabaseInstrumentation.endTransaction(database);
     }
 
     return results;
@@ -472,7 +473,7 @@ public class SmsDatabase extends MessagingDatabase {
       long           newMessageId = db.insert(TABLE_NAME, null, contentValues);
 
       DatabaseFactory.getThreadDatabase(context).update(record.getThreadId(), true);
-      notifyConversationListeners(record.getThreadId());
+      notifyConversationListeners(record.getThreadId(), DatabaseChangeBus.Type.INSERT, TABLE_NAME, newMessageId);
 
       jobManager.add(new TrimThreadJob(context, record.getThreadId()));
 
@@ -511,7 +512,7 @@ public class SmsDatabase extends MessagingDatabase {
     long messageId    = db.insert(TABLE_NAME, null, values);
 
     DatabaseFactory.getThreadDatabase(context).update(threadId, true);
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.INSERT, TABLE_NAME, messageId);
     jobManager.add(new TrimThreadJob(context, threadId));
 
     if (unread) {
@@ -602,7 +603,7 @@ public class SmsDatabase extends MessagingDatabase {
         DatabaseFactory.getRecipientDatabase(context).setDefaultSubscriptionId(recipient, message.getSubscriptionId());
       }
 
-      notifyConversationListeners(threadId);
+      notifyConversationListeners(threadId, DatabaseChangeBus.Type.INSERT, TABLE_NAME, messageId);
 
       if (!message.isIdentityUpdate() && !message.isIdentityVerified() && !message.isIdentityDefault()) {
         jobManager.add(new TrimThreadJob(context, threadId));
@@ -660,7 +661,7 @@ public class SmsDatabase extends MessagingDatabase {
 
     DatabaseFactory.getThreadDatabase(context).setHasSent(threadId, true);
 
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.INSERT, TABLE_NAME, messageId);
 
     if (!message.isIdentityVerified() && !message.isIdentityDefault()) {
       jobManager.add(new TrimThreadJob(context, threadId));
@@ -711,7 +712,7 @@ public class SmsDatabase extends MessagingDatabase {
     long threadId     = getThreadIdForMessage(messageId);
     db.delete(TABLE_NAME, ID_WHERE, new String[] {messageId+""});
     boolean threadDeleted = DatabaseFactory.getThreadDatabase(context).update(threadId, false);
-    notifyConversationListeners(threadId);
+    notifyConversationListeners(threadId, DatabaseChangeBus.Type.DELETE, TABLE_NAME, messageId);
     return threadDeleted;
   }
 
@@ -770,13 +771,13 @@ public class SmsDatabase extends MessagingDatabase {
 
   /*package*/ SQLiteDatabase beginTransaction() {
     SQLiteDatabase database = databaseHelper.getWritableDatabase();
-    database.beginTransaction();
+    DatabaseInstrumentation.beginTransaction(database);
     return database;
   }
 
   /*package*/ void endTransaction(SQLiteDatabase database) {
     database.setTransactionSuccessful();
-    database.endTransaction();
+    DatabaseInstrumentation.endTransaction(database);
   }
 
   /*package*/ SQLiteStatement createInsertStatement(SQLiteDatabase database) {
@@ -17,64 +17,59 @@
 package org.thoughtcrime.securesms.database;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteException;
 import android.net.Uri;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import net.sqlcipher.database.SQLiteDatabase;
 import net.sqlcipher.database.SQLiteStatement;
 
+import org.thoughtcrime.securesms.database.helpers.DatabaseInstrumentation;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.util.TextSecurePreferences;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+/**
+ * Imports the system SMS database.
+ *
+ * Conversations are read from the system provider a page at a time and converted on a small pool
+ * of threads, with the first pages of a few conversations read ahead of the one being inserted. Rows are inserted in transactions that span as
+ * many conversations as it takes to reach {@link #BATCH_SIZE} rows, and search indexing is
+ * suspended until the import is over, at which point the index is rebuilt once.
+ *
+ * Conversations are recorded as imported when their transaction commits, so an interrupted import
+ * picks up where it left off instead of importing them again.
+ */
 public class SmsMigrator {
 
   private static final String TAG = SmsMigrator.class.getSimpleName();
 
-  private static void addStringToStatement(SQLiteStatement statement, Cursor cursor,
-                                           int index, String key)
-  {
-    int columnIndex = cursor.getColumnIndexOrThrow(key);
-
-    if (cursor.isNull(columnIndex)) {
-      statement.bindNull(index);
-    } else {
-      statement.bindString(index, cursor.getString(columnIndex));
-    }
-  }
-
-  private static void addIntToStatement(SQLiteStatement statement, Cursor cursor,
-                                        int index, String key)
-  {
-    int columnIndex = cursor.getColumnIndexOrThrow(key);
-
-    if (cursor.isNull(columnIndex)) {
-      statement.bindNull(index);
-    } else {
-      statement.bindLong(index, cursor.getLong(columnIndex));
-    }
-  }
+  private static final String PREFERENCES_NAME        = "SecureSMS";
+  private static final String MIGRATED_THREADS_PREF   = "migrated_threads";
+  private static final String INDEXING_SUSPENDED_PREF = "sms_indexing_suspended";
 
-  @SuppressWarnings("SameParameterValue")
-  private static void addTranslatedTypeToStatement(SQLiteStatement statement, Cursor cursor, int index, String key)
-  {
-    int columnIndex = cursor.getColumnIndexOrThrow(key);
-
-    if (cursor.isNull(columnIndex)) {
-      statement.bindLong(index, SmsDatabase.Types.BASE_INBOX_TYPE);
-    } else {
-      long theirType = cursor.getLong(columnIndex);
-      statement.bindLong(index, SmsDatabase.Types.translateFromSystemBaseType(theirType));
-    }
-  }
+  private static final int BATCH_SIZE        = 1000;
+  private static final int PAGE_SIZE         = 500;
+  private static final int READER_THREADS    = 3;
+  private static final int READ_AHEAD        = 6;
+  private static final int PROGRESS_INTERVAL = 100;
 
   private static boolean isAppropriateTypeForMigration(Cursor cursor, int columnIndex) {
     long systemType = cursor.getLong(columnIndex);
@@ -85,25 +80,19 @@ public class SmsMigrator {
            ourType == MmsSmsColumns.Types.BASE_SENT_FAILED_TYPE;
   }
 
-  private static void getContentValuesForRow(Context context, Cursor cursor,
-                                             long threadId, SQLiteStatement statement)
-  {
-    String theirAddress = cursor.getString(cursor.getColumnIndexOrThrow(SmsDatabase.ADDRESS));
-    statement.bindString(1, Address.fromExternal(context, theirAddress).serialize());
-
-    addIntToStatement(statement, cursor, 2, SmsDatabase.PERSON);
-    addIntToStatement(statement, cursor, 3, SmsDatabase.DATE_RECEIVED);
-    addIntToStatement(statement, cursor, 4, SmsDatabase.DATE_RECEIVED);
-    addIntToStatement(statement, cursor, 5, SmsDatabase.PROTOCOL);
-    addIntToStatement(statement, cursor, 6, SmsDatabase.READ);
-    addIntToStatement(statement, cursor, 7, SmsDatabase.STATUS);
-    addTranslatedTypeToStatement(statement, cursor, 8, SmsDatabase.TYPE);
-    addIntToStatement(statement, cursor, 9, SmsDatabase.REPLY_PATH_PRESENT);
-    addStringToStatement(statement, cursor, 10, SmsDatabase.SUBJECT);
-    addStringToStatement(statement, cursor, 11, SmsDatabase.BODY);
-    addStringToStatement(statement, cursor, 12, SmsDatabase.SERVICE_CENTER);
-
-    statement.bindLong(13, threadId);
+  private static @NonNull Map<String, String> getCanonicalAddresses(Context context) {
+    Map<String, String> addresses = new HashMap<>();
+    Uri                 uri       = Uri.parse("content://mms-sms/canonical-addresses");
+
+    try (Cursor cursor = context.getContentResolver().query(uri, new String[] {"_id", "address"}, null, null, null)) {
+      while (cursor != null && cursor.moveToNext()) {
+        addresses.put(cursor.getString(0), cursor.getString(1));
+      }
+    } catch (IllegalStateException | IllegalArgumentException | SQLiteException e) {
+      Log.w(TAG, "Unable to read all canonical addresses, falling back to individual lookups.", e);
+    }
+
+    return addresses;
   }
 
   private static String getTheirCanonicalAddress(Context context, String theirRecipientId) {
@@ -127,13 +116,17 @@ public class SmsMigrator {
     }
   }
 
-  private static @Nullable Set<Recipient> getOurRecipients(Context context, String theirRecipients) {
+  private static @Nullable Set<Recipient> getOurRecipients(Context context, Map<String, String> canonicalAddresses, String theirRecipients) {
     StringTokenizer tokenizer     = new StringTokenizer(theirRecipients.trim(), " ");
     Set<Recipient>  recipientList = new HashSet<>();
 
     while (tokenizer.hasMoreTokens()) {
       String theirRecipientId = tokenizer.nextToken();
-      String address          = getTheirCanonicalAddress(context, theirRecipientId);
+      String address          = canonicalAddresses.get(theirRecipientId);
+
+      if (address == null) {
+        address = getTheirCanonicalAddress(context, theirRecipientId);
+      }
 
       if (address != null) {
         recipientList.add(Recipient.from(context, Address.fromExternal(context, address), true));
@@ -144,97 +137,447 @@ public class SmsMigrator {
     else                         return recipientList;
   }
 
-  private static void migrateConversation(Context context, SmsMigrationProgressListener listener,
-                                          ProgressDescription progress,
-                                          long theirThreadId, long ourThreadId)
-  {
-    SmsDatabase ourSmsDatabase = DatabaseFactory.getSmsDatabase(context);
-    Cursor cursor              = null;
+  /**
+   * @return Our thread for a system thread, or -1 if it has no usable recipients.
+   */
+  private static long getOurThreadId(Context context, Map<String, String> canonicalAddresses, SystemThread theirThread) {
+    ThreadDatabase threadDatabase = DatabaseFactory.getThreadDatabase(context);
+    Set<Recipient> ourRecipients  = getOurRecipients(context, canonicalAddresses, theirThread.recipientIds);
+
+    if (ourRecipients == null) {
+      return -1;
+    }
+
+    if (ourRecipients.size() == 1) {
+      return threadDatabase.getThreadIdFor(ourRecipients.iterator().next());
+    }
+
+    ourRecipients.add(Recipient.from(context, Address.fromSerialized(TextSecurePreferences.getLocalNumber(context)), true));
+
+    List<Address> memberAddresses = new LinkedList<>();
+
+    for (Recipient recipient : ourRecipients) {
+      memberAddresses.add(recipient.getAddress());
+    }
+
+    String    ourGroupId        = DatabaseFactory.getGroupDatabase(context).getOrCreateGroupForMembers(memberAddresses, true);
+    Recipient ourGroupRecipient = Recipient.from(context, Address.fromSerialized(ourGroupId), true);
+
+    return threadDatabase.getThreadIdFor(ourGroupRecipient, ThreadDatabase.DistributionTypes.CONVERSATION);
+  }
+
+  private static @NonNull List<SystemThread> getSystemThreads(Context context) {
+    List<SystemThread> threads       = new LinkedList<>();
+    Uri                threadListUri = Uri.parse("content://mms-sms/conversations?simple=true");
+
+    try (Cursor cursor = context.getContentResolver().query(threadListUri, null, null, null, "date ASC")) {
+      int messageCountColumn = cursor != null ? cursor.getColumnIndex("message_count") : -1;
+
+      while (cursor != null && cursor.moveToNext()) {
+        threads.add(new SystemThread(cursor.getLong(cursor.getColumnIndexOrThrow("_id")),
+                                     cursor.getString(cursor.getColumnIndexOrThrow("recipient_ids")),
+                                     messageCountColumn != -1 ? cursor.getInt(messageCountColumn) : 0));
+      }
+    }
+
+    return threads;
+  }
+
+  /**
+   * Reads and converts the importable messages in up to {@link #PAGE_SIZE} messages of a system
+   * thread, continuing after the last message of the <code>previous</code> page. Pages are keyed on
+   * (date, _id) rather than an offset, so messages arriving in the thread while it's imported
+   * don't shift later pages. Runs on the reader pool.
+   */
+  private static @NonNull Page readPage(Context context, long theirThreadId, @Nullable Page previous) {
+    List<SmsRow>        rows      = new ArrayList<>();
+    Map<String, String> addresses = new HashMap<>();
+    Uri                 uri       = Uri.parse("content://sms/conversations/" + theirThreadId);
+    String              sortOrder = "date DESC, _id DESC LIMIT " + PAGE_SIZE;
+    boolean             paged     = true;
+    Cursor              cursor;
 
     try {
-      Uri uri = Uri.parse("content://sms/conversations/" + theirThreadId);
+      if (previous == null) {
+        cursor = context.getContentResolver().query(uri, null, null, null, sortOrder);
+      } else {
+        String   selection     = "date < ? OR (date = ? AND _id < ?)";
+        String[] selectionArgs = new String[] {String.valueOf(previous.lastDate), String.valueOf(previous.lastDate), String.valueOf(previous.lastId)};
+
+        cursor = context.getContentResolver().query(uri, null, selection, selectionArgs, sortOrder);
+      }
+    } catch (SQLiteException | IllegalArgumentException e) {
+      Log.w(TAG, "Paged query failed", e);
+
+      if (previous != null) {
+        return new Page(rows, false, 0, 0);
+      }
 
       try {
         cursor = context.getContentResolver().query(uri, null, null, null, null);
-      } catch (SQLiteException e) {
+        paged  = false;
+      } catch (SQLiteException e2) {
         /// Work around for weird sony-specific (?) bug: #4309
-        Log.w(TAG, e);
-        return;
+        Log.w(TAG, e2);
+        return new Page(rows, false, 0, 0);
       }
+    }
 
-      SQLiteDatabase transaction = ourSmsDatabase.beginTransaction();
-      SQLiteStatement statement  = ourSmsDatabase.createInsertStatement(transaction);
+    if (cursor == null) {
+      return new Page(rows, false, 0, 0);
+    }
 
-      while (cursor != null && cursor.moveToNext()) {
-        int typeColumn = cursor.getColumnIndex(SmsDatabase.TYPE);
+    try {
+      SmsRow.Columns columns    = new SmsRow.Columns(cursor);
+      int            typeColumn = cursor.getColumnIndex(SmsDatabase.TYPE);
+      int            dateColumn = cursor.getColumnIndexOrThrow("date");
+      int            idColumn   = cursor.getColumnIndexOrThrow("_id");
+      boolean        hasMore    = paged && cursor.getCount() == PAGE_SIZE;
+      long           lastDate   = 0;
+      long           lastId     = 0;
+
+      while (cursor.moveToNext()) {
+        lastDate = cursor.getLong(dateColumn);
+        lastId   = cursor.getLong(idColumn);
 
         if (cursor.isNull(typeColumn) || isAppropriateTypeForMigration(cursor, typeColumn)) {
-          getContentValuesForRow(context, cursor, ourThreadId, statement);
-          statement.execute();
-        }
+          String theirAddress = cursor.getString(columns.address);
+          String ourAddress   = addresses.get(theirAddress);
 
-        listener.progressUpdate(new ProgressDescription(progress, cursor.getCount(), cursor.getPosition()));
-      }
+          if (ourAddress == null) {
+            ourAddress = Address.fromExternal(context, theirAddress).serialize();
+            addresses.put(theirAddress, ourAddress);
+          }
 
-      ourSmsDatabase.endTransaction(transaction);
-      DatabaseFactory.getThreadDatabase(context).update(ourThreadId, true);
-      DatabaseFactory.getThreadDatabase(context).notifyConversationListeners(ourThreadId);
+          rows.add(new SmsRow(cursor, columns, ourAddress));
+        }
+      }
 
+      return new Page(rows, hasMore, lastDate, lastId);
     } finally {
-      if (cursor != null)
-        cursor.close();
+      cursor.close();
     }
   }
 
   public static void migrateDatabase(Context context, SmsMigrationProgressListener listener)
   {
-//    if (context.getSharedPreferences("SecureSMS", Context.MODE_PRIVATE).getBoolean("migrated", false))
-//      return;
+    SharedPreferences   preferences        = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    Set<String>         migratedThreads    = new HashSet<>(preferences.getStringSet(MIGRATED_THREADS_PREF, Collections.emptySet()));
+    Map<String, String> canonicalAddresses = getCanonicalAddresses(context);
+    List<SystemThread>  threads            = getSystemThreads(context);
+    List<SystemThread>  remaining          = new LinkedList<>();
+
+    for (SystemThread thread : threads) {
+      if (!migratedThreads.contains(String.valueOf(thread.id))) remaining.add(thread);
+    }
 
-    ThreadDatabase threadDatabase = DatabaseFactory.getThreadDatabase(context);
-    Cursor cursor                 = null;
+    Log.i(TAG, "Importing " + remaining.size() + " of " + threads.size() + " system threads.");
+
+    ProgressDescription progress = new ProgressDescription(threads.size(), threads.size() - remaining.size(), 100, 0);
+    ExecutorService     readers  = SignalExecutors.newCachedBoundedExecutor("signal-sms-import", READER_THREADS);
+    List<Future<Page>>  reads    = new LinkedList<>();
+    ImportBatch         batch    = new ImportBatch(context, preferences, migratedThreads);
+
+    synchronized (SmsMigrator.class) {
+      preferences.edit().putBoolean(INDEXING_SUSPENDED_PREF, true).commit();
+      DatabaseFactory.getSearchDatabase(context).suspendSmsIndexing();
+    }
 
     try {
-      Uri threadListUri = Uri.parse("content://mms-sms/conversations?simple=true");
-      cursor            = context.getContentResolver().query(threadListUri, null, null, null, "date ASC");
+      int submitted = 0;
 
-      while (cursor != null && cursor.moveToNext()) {
-        long                theirThreadId   = cursor.getLong(cursor.getColumnIndexOrThrow("_id"));
-        String              theirRecipients = cursor.getString(cursor.getColumnIndexOrThrow("recipient_ids"));
-        Set<Recipient>     ourRecipients   = getOurRecipients(context, theirRecipients);
-        ProgressDescription progress        = new ProgressDescription(cursor.getCount(), cursor.getPosition(), 100, 0);
-
-        if (ourRecipients != null) {
-          if (ourRecipients.size() == 1) {
-            long ourThreadId = threadDatabase.getThreadIdFor(ourRecipients.iterator().next());
-            migrateConversation(context, listener, progress, theirThreadId, ourThreadId);
-          } else if (ourRecipients.size() > 1) {
-            ourRecipients.add(Recipient.from(context, Address.fromSerialized(TextSecurePreferences.getLocalNumber(context)), true));
-
-            List<Address> memberAddresses = new LinkedList<>();
-
-            for (Recipient recipient : ourRecipients) {
-              memberAddresses.add(recipient.getAddress());
-            }
+      for (SystemThread theirThread : remaining) {
+        while (submitted < remaining.size() && reads.size() < READ_AHEAD) {
+          final long theirThreadId = remaining.get(submitted++).id;
+          reads.add(readers.submit(() -> readPage(context, theirThreadId, null)));
+        }
+
+        Future<Page> next        = reads.remove(0);
+        long         ourThreadId = -1;
+        boolean      resolved    = false;
+        int          imported    = 0;
 
-            String    ourGroupId        = DatabaseFactory.getGroupDatabase(context).getOrCreateGroupForMembers(memberAddresses, true);
-            Recipient ourGroupRecipient = Recipient.from(context, Address.fromSerialized(ourGroupId), true);
-            long      ourThreadId       = threadDatabase.getThreadIdFor(ourGroupRecipient, ThreadDatabase.DistributionTypes.CONVERSATION);
+        while (next != null) {
+          Page page = getResult(next);
 
-            migrateConversation(context, listener, progress, theirThreadId, ourThreadId);
+          if (page.hasMore) {
+            next = readers.submit(() -> readPage(context, theirThread.id, page));
+          } else {
+            next = null;
+          }
+
+          if (!resolved && !page.rows.isEmpty()) {
+            ourThreadId = getOurThreadId(context, canonicalAddresses, theirThread);
+            resolved    = true;
+          }
+
+          if (resolved && ourThreadId == -1) {
+            if (next != null) next.cancel(true);
+            break;
+          }
+
+          int total = Math.max(theirThread.messageCount, imported + page.rows.size());
+
+          for (SmsRow row : page.rows) {
+            batch.insert(row, ourThreadId);
+
+            if (imported++ % PROGRESS_INTERVAL == 0) {
+              listener.progressUpdate(new ProgressDescription(progress, total, imported));
+            }
           }
         }
 
+        batch.addThread(theirThread.id, ourThreadId);
+
+        if (batch.size() >= BATCH_SIZE) {
+          batch.commit();
+        }
+
         progress.incrementPrimaryComplete();
         listener.progressUpdate(progress);
       }
+
+      batch.commit();
+    } catch (InterruptedException e) {
+      Log.w(TAG, "Import was interrupted, it will pick up from the last committed batch.", e);
+      Thread.currentThread().interrupt();
+      return;
     } finally {
-      if (cursor != null)
-        cursor.close();
+      batch.abort();
+      readers.shutdownNow();
+      restoreIndexing(context);
+    }
+
+    preferences.edit()
+               .remove(MIGRATED_THREADS_PREF)
+               .putBoolean("migrated", true)
+               .apply();
+  }
+
+  /**
+   * Rebuilds the search index if an import was interrupted while indexing was suspended. Called at
+   * startup, so a process that died mid-import doesn't leave new messages out of search.
+   */
+  public static synchronized void restoreIndexingIfSuspended(Context context) {
+    if (context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE).getBoolean(INDEXING_SUSPENDED_PREF, false)) {
+      restoreIndexing(context);
+    }
+  }
+
+  private static void restoreIndexing(Context context) {
+    Log.i(TAG, "Rebuilding the SMS search index.");
+
+    DatabaseFactory.getSearchDatabase(context).rebuildSmsIndex();
+    context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE).edit().remove(INDEXING_SUSPENDED_PREF).apply();
+  }
+
+  private static <T> T getResult(Future<T> future) throws InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      else                                          throw new AssertionError(e);
+    }
+  }
+
+  private static class ImportBatch {
+
+    private final Context           context;
+    private final SharedPreferences preferences;
+    private final Set<String>       migratedThreads;
+    private final SmsDatabase       smsDatabase;
+    private final Set<Long>         ourThreads   = new HashSet<>();
+    private final Set<String>       theirThreads = new HashSet<>();
+
+    private SQLiteDatabase  transaction;
+    private SQLiteStatement statement;
+    private int             size;
+
+    private ImportBatch(Context context, SharedPreferences preferences, Set<String> migratedThreads) {
+      this.context         = context;
+      this.preferences     = preferences;
+      this.migratedThreads = migratedThreads;
+      this.smsDatabase     = DatabaseFactory.getSmsDatabase(context);
+    }
+
+    void insert(@NonNull SmsRow row, long threadId) {
+      if (transaction == null) {
+        transaction = smsDatabase.beginTransaction();
+        statement   = smsDatabase.createInsertStatement(transaction);
+      }
+
+      row.bind(statement, threadId);
+      statement.execute();
+      size++;
     }
 
-    context.getSharedPreferences("SecureSMS", Context.MODE_PRIVATE).edit()
-      .putBoolean("migrated", true).apply();
+    void addThread(long theirThreadId, long ourThreadId) {
+      theirThreads.add(String.valueOf(theirThreadId));
+      if (ourThreadId != -1) ourThreads.add(ourThreadId);
+    }
+
+    int size() {
+      return size;
+    }
+
+    void commit() {
+      if (transaction != null) {
+        statement.close();
+        smsDatabase.endTransaction(transaction);
+        transaction = null;
+        statement   = null;
+      }
+
+      ThreadDatabase threadDatabase = DatabaseFactory.getThreadDatabase(context);
+
+      for (long ourThreadId : ourThreads) {
+        threadDatabase.update(ourThreadId, true);
+        threadDatabase.notifyConversationListeners(ourThreadId);
+      }
+
+      migratedThreads.addAll(theirThreads);
+      preferences.edit().putStringSet(MIGRATED_THREADS_PREF, new HashSet<>(migratedThreads)).commit();
+
+      ourThreads.clear();
+      theirThreads.clear();
+      size = 0;
+    }
+
+    /**
+     * Rolls back anything that wasn't committed.
+     */
+    void abort() {
+      if (transaction != null) {
+        statement.close();
+        DatabaseInstrumentation.endTransaction(transaction);
+        transaction = null;
+        statement   = null;
+      }
+    }
+  }
+
+  private static class SystemThread {
+    private final long   id;
+    private final String recipientIds;
+    private final int    messageCount;
+
+    private SystemThread(long id, String recipientIds, int messageCount) {
+      this.id           = id;
+      this.recipientIds = recipientIds;
+      this.messageCount = messageCount;
+    }
+  }
+
+  /**
+   * A page of converted messages from a system thread.
+   */
+  private static class Page {
+    private final List<SmsRow> rows;
+    private final boolean      hasMore;
+    private final long         lastDate;
+    private final long         lastId;
+
+    /**
+     * @param lastDate The date of the last message read, which the next page continues after.
+     * @param lastId   The system id of the last message read.
+     */
+    private Page(@NonNull List<SmsRow> rows, boolean hasMore, long lastDate, long lastId) {
+      this.rows     = rows;
+      this.hasMore  = hasMore;
+      this.lastDate = lastDate;
+      this.lastId   = lastId;
+    }
+  }
+
+  /**
+   * A system SMS, converted to what's bound into {@link SmsDatabase#createInsertStatement(SQLiteDatabase)}.
+   */
+  private static class SmsRow {
+
+    private final String address;
+    private final Long   person;
+    private final Long   dateReceived;
+    private final Long   protocol;
+    private final Long   read;
+    private final Long   status;
+    private final long   type;
+    private final Long   replyPathPresent;
+    private final String subject;
+    private final String body;
+    private final String serviceCenter;
+
+    private SmsRow(Cursor cursor, Columns columns, String address) {
+      this.address          = address;
+      this.person           = getLong(cursor, columns.person);
+      this.dateReceived     = getLong(cursor, columns.dateReceived);
+      this.protocol         = getLong(cursor, columns.protocol);
+      this.read             = getLong(cursor, columns.read);
+      this.status           = getLong(cursor, columns.status);
+      this.type             = cursor.isNull(columns.type) ? SmsDatabase.Types.BASE_INBOX_TYPE
+                                                          : SmsDatabase.Types.translateFromSystemBaseType(cursor.getLong(columns.type));
+      this.replyPathPresent = getLong(cursor, columns.replyPathPresent);
+      this.subject          = cursor.getString(columns.subject);
+      this.body             = cursor.getString(columns.body);
+      this.serviceCenter    = cursor.getString(columns.serviceCenter);
+    }
+
+    void bind(SQLiteStatement statement, long threadId) {
+      statement.bindString(1, address);
+      bindLong(statement, 2, person);
+      bindLong(statement, 3, dateReceived);
+      bindLong(statement, 4, dateReceived);
+      bindLong(statement, 5, protocol);
+      bindLong(statement, 6, read);
+      bindLong(statement, 7, status);
+      statement.bindLong(8, type);
+      bindLong(statement, 9, replyPathPresent);
+      bindString(statement, 10, subject);
+      bindString(statement, 11, body);
+      bindString(statement, 12, serviceCenter);
+      statement.bindLong(13, threadId);
+    }
+
+    private static @Nullable Long getLong(Cursor cursor, int column) {
+      return cursor.isNull(column) ? null : cursor.getLong(column);
+    }
+
+    private static void bindLong(SQLiteStatement statement, int index, @Nullable Long value) {
+      if (value == null) statement.bindNull(index);
+      else               statement.bindLong(index, value);
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, @Nullable String value) {
+      if (value == null) statement.bindNull(index);
+      else               statement.bindString(index, value);
+    }
+
+    private static class Columns {
+      private final int address;
+      private final int person;
+      private final int dateReceived;
+      private final int protocol;
+      private final int read;
+      private final int status;
+      private final int type;
+      private final int replyPathPresent;
+      private final int subject;
+      private final int body;
+      private final int serviceCenter;
+
+      private Columns(Cursor cursor) {
+        this.address          = cursor.getColumnIndexOrThrow(SmsDatabase.ADDRESS);
+        this.person           = cursor.getColumnIndexOrThrow(SmsDatabase.PERSON);
+        this.dateReceived     = cursor.getColumnIndexOrThrow(SmsDatabase.DATE_RECEIVED);
+        this.protocol         = cursor.getColumnIndexOrThrow(SmsDatabase.PROTOCOL);
+        this.read             = cursor.getColumnIndexOrThrow(SmsDatabase.READ);
+        this.status           = cursor.getColumnIndexOrThrow(SmsDatabase.STATUS);
+        this.type             = cursor.getColumnIndexOrThrow(SmsDatabase.TYPE);
+        this.replyPathPresent = cursor.getColumnIndexOrThrow(SmsDatabase.REPLY_PATH_PRESENT);
+        this.subject          = cursor.getColumnIndexOrThrow(SmsDatabase.SUBJECT);
+        this.body             = cursor.getColumnIndexOrThrow(SmsDatabase.BODY);
+        this.serviceCenter    = cursor.getColumnIndexOrThrow(SmsDatabase.SERVICE_CENTER);
+      }
+    }
   }
 
   public interface SmsMigrationProgressListener {
@@ -358,16 +358,35 @@ public class ThreadDatabase extends Database {
   }
 
   public Cursor getConversationList() {
-    return getConversationList("0");
+    return getConversationList("0", 0);
+  }
+
+  public Cursor getConversationList(int limit) {
+    return getConversationList("0", limit);
   }
 
   public Cursor getArchivedConversationList() {
-    return getConversationList("1");
+    return getConversationList("1", 0);
+  }
+
+  public Cursor getArchivedConversationList(int limit) {
+    return getConversationList("1", limit);
+  }
+
+  /**
+   * Returns the rows of the conversation list between offset and offset + limit, without registering
+   * for change notifications. Used to look ahead of the window that is currently displayed.
+   */
+  public Cursor getConversationListWindow(boolean archived, int offset, int limit) {
+    SQLiteDatabase db    = databaseHelper.getReadableDatabase();
+    String         query = createQuery(ARCHIVED + " = ? AND " + MESSAGE_COUNT + " != 0", offset, limit);
+
+    return db.rawQuery(query, new String[]{archived ? "1" : "0"});
   }
 
-  private Cursor getConversationList(String archived) {
+  private Cursor getConversationList(String archived, int limit) {
     SQLiteDatabase db     = databaseHelper.getReadableDatabase();
-    String         query  = createQuery(ARCHIVED + " = ? AND " + MESSAGE_COUNT + " != 0", 0);
+    String         query  = createQuery(ARCHIVED + " = ? AND " + MESSAGE_COUNT + " != 0", limit);
     Cursor         cursor = db.rawQuery(query, new String[]{archived});
 
     setNotifyConverationListListeners(cursor);
@@ -605,6 +624,10 @@ public class ThreadDatabase extends Database {
   }
 
   private @NonNull String createQuery(@NonNull String where, int limit) {
+    return createQuery(where, 0, limit);
+  }
+
+  private @NonNull String createQuery(@NonNull String where, int offset, int limit) {
     String projection = Util.join(COMBINED_THREAD_RECIPIENT_GROUP_PROJECTION, ",");
     String query =
     "SELECT " + projection + " FROM " + TABLE_NAME +
@@ -619,6 +642,10 @@ public class ThreadDatabase extends Database {
       query += " LIMIT " + limit;
     }
 
+    if (limit > 0 && offset > 0) {
+      query += " OFFSET " + offset;
+    }
+
     return query;
   }
 
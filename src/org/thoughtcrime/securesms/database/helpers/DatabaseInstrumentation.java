@@ -0,0 +1,265 @@
+package org.thoughtcrime.securesms.database.helpers;
+
+
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.thoughtcrime.securesms.logging.Log;
+import org.thoughtcrime.securesms.util.LRUCache;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Collects timings for the queries and transactions run against {@link SQLCipherOpenHelper}'s
+ * databases. Queries are measured by {@link InstrumentedCursorFactory}, transactions by calling
+ * {@link #beginTransaction(SQLiteDatabase)} and {@link #endTransaction(SQLiteDatabase)} in place
+ * of the methods on the database itself. That includes the transactions of upgrades, the
+ * SQLCipher migration and backup restores. {@link ClassicOpenHelper}'s legacy database isn't a
+ * SQLCipher database, so its transactions aren't measured.
+ *
+ * The aggregated results are attached to submitted debug logs via {@link #getReport()}.
+ *
+ * The query plan of each slow statement is captured once, on a background thread, so explaining
+ * a slow query never adds to the time of the query itself.
+ */
+public class DatabaseInstrumentation {
+
+  private static final String TAG = DatabaseInstrumentation.class.getSimpleName();
+
+  private static final String PENDING_PLAN = "";
+
+  private static final long SLOW_QUERY_MS       = 50;
+  private static final long SLOW_TRANSACTION_MS = 250;
+  private static final int  MAX_STATEMENTS      = 100;
+  private static final int  MAX_SLOW_QUERIES    = 25;
+  private static final int  REPORTED_STATEMENTS = 20;
+  private static final int  MAX_PENDING_PLANS   = 4;
+
+  private static final Map<String, StatementStats> statements  = new LRUCache<>(MAX_STATEMENTS);
+  private static final Map<String, String>         queryPlans  = new LRUCache<>(MAX_SLOW_QUERIES);
+  private static final LinkedList<SlowQuery>       slowQueries = new LinkedList<>();
+  private static final TransactionStats            transactions = new TransactionStats();
+  private static final Executor                    planExecutor = SignalExecutors.newCachedSingleThreadExecutor("signal-query-plan");
+
+  private static int pendingPlans;
+
+  private static final ThreadLocal<TransactionState> transactionState = new ThreadLocal<TransactionState>() {
+    @Override
+    protected TransactionState initialValue() {
+      return new TransactionState();
+    }
+  };
+
+  public static void beginTransaction(@NonNull SQLiteDatabase db) {
+    long start = SystemClock.elapsedRealtime();
+    db.beginTransaction();
+    long acquired = SystemClock.elapsedRealtime();
+
+    TransactionState state = transactionState.get();
+
+    if (state.depth++ == 0) {
+      state.startTime = acquired;
+      state.lockWait  = acquired - start;
+    }
+  }
+
+  public static void endTransaction(@NonNull SQLiteDatabase db) {
+    db.endTransaction();
+
+    TransactionState state = transactionState.get();
+
+    if (state.depth > 0 && --state.depth == 0) {
+      long duration = SystemClock.elapsedRealtime() - state.startTime;
+
+      runAfterTransactionTasks(state);
+
+      synchronized (DatabaseInstrumentation.class) {
+        transactions.count++;
+        transactions.totalTime     += duration;
+        transactions.maxTime        = Math.max(transactions.maxTime, duration);
+        transactions.totalLockWait += state.lockWait;
+        transactions.maxLockWait    = Math.max(transactions.maxLockWait, state.lockWait);
+      }
+
+      if (duration >= SLOW_TRANSACTION_MS) {
+        Log.w(TAG, "Slow transaction: " + duration + " ms (waited " + state.lockWait + " ms for the lock)");
+      }
+    }
+  }
+
+  /**
+   * Runs the task once the calling thread's outermost transaction has ended, or right away if it
+   * isn't in one.
+   */
+  public static void runAfterTransaction(@NonNull Runnable task) {
+    TransactionState state = transactionState.get();
+
+    if (state.depth == 0) task.run();
+    else                  state.afterTransaction.add(task);
+  }
+
+  private static void runAfterTransactionTasks(@NonNull TransactionState state) {
+    if (state.afterTransaction.isEmpty()) return;
+
+    List<Runnable> tasks = new ArrayList<>(state.afterTransaction);
+    state.afterTransaction.clear();
+
+    for (Runnable task : tasks) {
+      task.run();
+    }
+  }
+
+  static void onQuery(@NonNull SQLiteDatabase db, @NonNull String sql, long duration, int rows) {
+    boolean capturePlan;
+
+    synchronized (DatabaseInstrumentation.class) {
+      StatementStats stats = statements.get(sql);
+
+      if (stats == null) {
+        stats = new StatementStats(sql);
+        statements.put(sql, stats);
+      }
+
+      stats.count++;
+      stats.totalTime += duration;
+      stats.totalRows += rows;
+      stats.maxTime    = Math.max(stats.maxTime, duration);
+
+      if (duration < SLOW_QUERY_MS) {
+        return;
+      }
+
+      slowQueries.add(new SlowQuery(System.currentTimeMillis(), sql, duration, rows));
+
+      if (slowQueries.size() > MAX_SLOW_QUERIES) {
+        slowQueries.removeFirst();
+      }
+
+      capturePlan = !queryPlans.containsKey(sql) && pendingPlans < MAX_PENDING_PLANS;
+
+      if (capturePlan) {
+        queryPlans.put(sql, PENDING_PLAN);
+        pendingPlans++;
+      }
+    }
+
+    Log.w(TAG, "Slow query: " + duration + " ms, " + rows + " rows");
+
+    if (capturePlan) {
+      planExecutor.execute(() -> {
+        String plan = explainQueryPlan(db, sql);
+
+        synchronized (DatabaseInstrumentation.class) {
+          queryPlans.put(sql, plan);
+          pendingPlans--;
+        }
+      });
+    }
+  }
+
+  public static synchronized @NonNull String getReport() {
+    StringBuilder        builder = new StringBuilder();
+    List<StatementStats> sorted  = new ArrayList<>(statements.values());
+
+    Collections.sort(sorted, (lhs, rhs) -> Long.compare(rhs.totalTime, lhs.totalTime));
+
+    builder.append("Transactions: ").append(transactions.count)
+           .append(", total ").append(transactions.totalTime).append(" ms")
+           .append(", max ").append(transactions.maxTime).append(" ms")
+           .append(", lock wait total ").append(transactions.totalLockWait).append(" ms")
+           .append(", lock wait max ").append(transactions.maxLockWait).append(" ms\n\n");
+
+    builder.append("Statements by total time (count / total ms / max ms / avg rows):\n");
+
+    for (StatementStats stats : sorted.subList(0, Math.min(sorted.size(), REPORTED_STATEMENTS))) {
+      builder.append(String.format(Locale.US, "%6d %8d %6d %8d  ", stats.count, stats.totalTime, stats.maxTime, stats.totalRows / stats.count))
+             .append(stats.sql).append("\n");
+    }
+
+    builder.append("\nSlow queries (>= ").append(SLOW_QUERY_MS).append(" ms):\n");
+
+    for (SlowQuery slowQuery : slowQueries) {
+      builder.append(slowQuery.timestamp).append(" ")
+             .append(slowQuery.duration).append(" ms, ")
+             .append(slowQuery.rows).append(" rows: ")
+             .append(slowQuery.sql).append("\n");
+
+      String plan = queryPlans.get(slowQuery.sql);
+
+      if (plan != null) {
+        builder.append(plan);
+      }
+    }
+
+    return builder.toString();
+  }
+
+  private static @Nullable String explainQueryPlan(@NonNull SQLiteDatabase db, @NonNull String sql) {
+    StringBuilder builder = new StringBuilder();
+
+    try (Cursor cursor = db.rawQuery(InstrumentedCursorFactory.EXPLAIN_QUERY_PLAN + sql, null)) {
+      while (cursor != null && cursor.moveToNext()) {
+        builder.append("    plan: ").append(cursor.getString(cursor.getColumnCount() - 1)).append("\n");
+      }
+    } catch (Exception e) {
+      Log.w(TAG, "Failed to capture query plan.", e);
+      return null;
+    }
+
+    return builder.toString();
+  }
+
+  private static class StatementStats {
+    private final String sql;
+
+    private long count;
+    private long totalTime;
+    private long maxTime;
+    private long totalRows;
+
+    private StatementStats(@NonNull String sql) {
+      this.sql = sql;
+    }
+  }
+
+  private static class SlowQuery {
+    private final long   timestamp;
+    private final String sql;
+    private final long   duration;
+    private final int    rows;
+
+    private SlowQuery(long timestamp, @NonNull String sql, long duration, int rows) {
+      this.timestamp = timestamp;
+      this.sql       = sql;
+      this.duration  = duration;
+      this.rows      = rows;
+    }
+  }
+
+  private static class TransactionStats {
+    private long count;
+    private long totalTime;
+    private long maxTime;
+    private long totalLockWait;
+    private long maxLockWait;
+  }
+
+  private static class TransactionState {
+    private final List<Runnable> afterTransaction = new LinkedList<>();
+
+    private int  depth;
+    private long startTime;
+    private long lockWait;
+  }
+}
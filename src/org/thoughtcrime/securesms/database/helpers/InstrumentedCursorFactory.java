@@ -0,0 +1,69 @@
+package org.thoughtcrime.securesms.database.helpers;
+
+
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import net.sqlcipher.database.SQLiteCursor;
+import net.sqlcipher.database.SQLiteCursorDriver;
+import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteQuery;
+
+/**
+ * Creates cursors that report how long their query took to execute, and how many rows it
+ * returned, to {@link DatabaseInstrumentation}.
+ *
+ * SQLite only steps a query once the cursor first fills its window, which always happens through
+ * {@link Cursor#getCount()}, so that's the call being timed.
+ */
+class InstrumentedCursorFactory implements SQLiteDatabase.CursorFactory {
+
+  static final String EXPLAIN_QUERY_PLAN = "EXPLAIN QUERY PLAN ";
+
+  private static final String QUERY_PREFIX = "SQLiteQuery: ";
+
+  @Override
+  public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable, SQLiteQuery query) {
+    String sql = query.toString();
+
+    if (sql.startsWith(QUERY_PREFIX)) {
+      sql = sql.substring(QUERY_PREFIX.length());
+    }
+
+    if (sql.startsWith(EXPLAIN_QUERY_PLAN)) {
+      return new SQLiteCursor(db, masterQuery, editTable, query);
+    }
+
+    return new InstrumentedCursor(db, masterQuery, editTable, query, sql);
+  }
+
+  private static class InstrumentedCursor extends SQLiteCursor {
+
+    private final SQLiteDatabase db;
+    private final String         sql;
+
+    private boolean measured;
+
+    InstrumentedCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable, SQLiteQuery query, @NonNull String sql) {
+      super(db, driver, editTable, query);
+      this.db  = db;
+      this.sql = sql;
+    }
+
+    @Override
+    public int getCount() {
+      if (measured) {
+        return super.getCount();
+      }
+
+      long start = SystemClock.elapsedRealtime();
+      int  count = super.getCount();
+
+      measured = true;
+      DatabaseInstrumentation.onQuery(db, sql, SystemClock.elapsedRealtime() - start, count);
+
+      return count;
+    }
+  }
+}
@@ -39,7 +39,7 @@ public class SQLCipherMigrationHelper {
                                @NonNull android.database.sqlite.SQLiteDatabase legacyDb,
                                @NonNull net.sqlcipher.database.SQLiteDatabase modernDb)
   {
-    modernDb.beginTransaction();
+    DatabaseInstrumentation.beginTransaction(modernDb);
     try {
       GenericForegroundService.startForegroundTask(context, context.getString(R.string.SQLCipherMigrationHelper_migrating_signal_database));
       copyTable("identities", legacyDb, modernDb, null);
@@ -49,7 +49,7 @@ public class SQLCipherMigrationHelper {
       copyTable("group_receipts", legacyDb, modernDb, null);
       modernDb.setTransactionSuccessful();
     } finally {
-      modernDb.endTransaction();
+      DatabaseInstrumentation.endTransaction(modernDb);
       GenericForegroundService.stopForegroundTask(context);
     }
   }
@@ -63,7 +63,7 @@ public class SQLCipherMigrationHelper {
     MasterCipher           legacyCipher           = new MasterCipher(masterSecret);
     AsymmetricMasterCipher legacyAsymmetricCipher = new AsymmetricMasterCipher(MasterSecretUtil.getAsymmetricMasterSecret(context, masterSecret));
 
-    modernDb.beginTransaction();
+    DatabaseInstrumentation.beginTransaction(modernDb);
 
     try {
       GenericForegroundService.startForegroundTask(context, context.getString(R.string.SQLCipherMigrationHelper_migrating_signal_database));
@@ -174,7 +174,7 @@ public class SQLCipherMigrationHelper {
       TextSecurePreferences.setNeedsSqlCipherMigration(context, false);
       modernDb.setTransactionSuccessful();
     } finally {
-      modernDb.endTransaction();
+      DatabaseInstrumentation.endTransaction(modernDb);
       GenericForegroundService.stopForegroundTask(context);
     }
   }
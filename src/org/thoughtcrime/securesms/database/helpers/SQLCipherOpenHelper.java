@@ -57,15 +57,18 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper {
   private static final int QUOTE_MISSING                    = 11;
   private static final int NOTIFICATION_CHANNELS            = 12;
   private static final int SECRET_SENDER                    = 13;
+  private static final int GROUP_MEMBERSHIP                 = 14;
+  private static final int CONTACT_SYNC_DIGEST              = 15;
+  private static final int AUDIO_WAVEFORM                   = 16;
 
-  private static final int    DATABASE_VERSION = 13;
+  private static final int    DATABASE_VERSION = 16;
   private static final String DATABASE_NAME    = "signal.db";
 
   private final Context        context;
   private final DatabaseSecret databaseSecret;
 
   public SQLCipherOpenHelper(@NonNull Context context, @NonNull DatabaseSecret databaseSecret) {
-    super(context, DATABASE_NAME, null, DATABASE_VERSION, new SQLiteDatabaseHook() {
+    super(context, DATABASE_NAME, new InstrumentedCursorFactory(), DATABASE_VERSION, new SQLiteDatabaseHook() {
       @Override
       public void preKey(SQLiteDatabase db) {
         db.rawExecSQL("PRAGMA cipher_default_kdf_iter = 1;");
@@ -93,6 +96,7 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper {
     db.execSQL(DraftDatabase.CREATE_TABLE);
     db.execSQL(PushDatabase.CREATE_TABLE);
     db.execSQL(GroupDatabase.CREATE_TABLE);
+    db.execSQL(GroupDatabase.CREATE_MEMBERSHIP_TABLE);
     db.execSQL(RecipientDatabase.CREATE_TABLE);
     db.execSQL(GroupReceiptDatabase.CREATE_TABLE);
     db.execSQL(OneTimePreKeyDatabase.CREATE_TABLE);
@@ -134,7 +138,7 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper {
   public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
     Log.i(TAG, "Upgrading database: " + oldVersion + ", " + newVersion);
 
-    db.beginTransaction();
+    DatabaseInstrumentation.beginTransaction(db);
 
     try {
 
@@ -294,9 +298,38 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper {
         db.execSQL("ALTER TABLE sms ADD COLUMN unidentified INTEGER DEFAULT 0");
       }
 
+      if (oldVersion < GROUP_MEMBERSHIP) {
+        db.execSQL("CREATE TABLE group_membership (_id INTEGER PRIMARY KEY, group_id TEXT NOT NULL, address TEXT NOT NULL, UNIQUE(group_id, address) ON CONFLICT IGNORE)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS group_membership_address_index ON group_membership (address, group_id)");
+
+        try (Cursor cursor = db.rawQuery("SELECT group_id, members FROM groups", null)) {
+          while (cursor != null && cursor.moveToNext()) {
+            String groupId = cursor.getString(cursor.getColumnIndexOrThrow("group_id"));
+            String members = cursor.getString(cursor.getColumnIndexOrThrow("members"));
+
+            if (groupId == null || TextUtils.isEmpty(members)) continue;
+
+            for (Address member : Address.fromSerializedList(members, ',')) {
+              ContentValues values = new ContentValues(2);
+              values.put("group_id", groupId);
+              values.put("address", member.serialize());
+              db.insert("group_membership", null, values);
+            }
+          }
+        }
+      }
+
+      if (oldVersion < CONTACT_SYNC_DIGEST) {
+        db.execSQL("ALTER TABLE recipient_preferences ADD COLUMN contact_sync_digest TEXT DEFAULT NULL");
+      }
+
+      if (oldVersion < AUDIO_WAVEFORM) {
+        db.execSQL("ALTER TABLE part ADD COLUMN audio_waveform BLOB DEFAULT NULL");
+      }
+
       db.setTransactionSuccessful();
     } finally {
-      db.endTransaction();
+      DatabaseInstrumentation.endTransaction(db);
     }
 
     if (oldVersion < MIGRATE_PREKEYS_VERSION) {
@@ -2,39 +2,106 @@ package org.thoughtcrime.securesms.database.loaders;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.database.CursorWrapper;
 import android.database.MatrixCursor;
 import android.database.MergeCursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
 
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.resource.bitmap.CenterCrop;
+import com.bumptech.glide.load.resource.bitmap.RoundedCorners;
+
+import org.thoughtcrime.securesms.R;
 import org.thoughtcrime.securesms.contacts.ContactAccessor;
 import org.thoughtcrime.securesms.database.Address;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.database.ThreadDatabase;
+import org.thoughtcrime.securesms.database.model.ThreadRecord;
+import org.thoughtcrime.securesms.logging.Log;
+import org.thoughtcrime.securesms.mms.DecryptableStreamUriLoader.DecryptableUri;
+import org.thoughtcrime.securesms.mms.GlideApp;
 import org.thoughtcrime.securesms.util.AbstractCursorLoader;
+import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 
 import java.util.LinkedList;
 import java.util.List;
 
+/**
+ * Loads the conversation list one window at a time. The first window only covers what fits on
+ * a few screens; callers grow it with {@link #extendWindow(int)} as the user scrolls.
+ *
+ * Every delivered cursor is a {@link WindowCursor} which carries a row-level diff against the
+ * previously delivered one, so content changes don't have to rebind the entire list.
+ */
 public class ConversationListLoader extends AbstractCursorLoader {
 
-  private final String filter;
+  private static final String TAG = ConversationListLoader.class.getSimpleName();
+
+  public static final int PAGE_SIZE = 50;
+
+  private final String  filter;
   private final boolean archived;
 
+  private volatile int limit;
+
   public ConversationListLoader(Context context, String filter, boolean archived) {
+    this(context, filter, archived, 0);
+  }
+
+  public ConversationListLoader(Context context, String filter, boolean archived, int limit) {
     super(context);
     this.filter   = filter;
     this.archived = archived;
+    this.limit    = limit;
+  }
+
+  /**
+   * Grows the window to at least the given number of threads and reloads.
+   */
+  public void extendWindow(int limit) {
+    if (this.limit > 0 && limit > this.limit) {
+      Log.i(TAG, "Extending conversation list window to " + limit);
+      this.limit = limit;
+      onContentChanged();
+    }
   }
 
   @Override
   public Cursor getCursor() {
-    if      (filter != null && filter.trim().length() != 0) return getFilteredConversationList(filter);
-    else if (!archived)                                     return getUnarchivedConversationList();
-    else                                                    return getArchivedConversationList();
+    if (filter != null && filter.trim().length() != 0) {
+      return getFilteredConversationList(filter);
+    }
+
+    int     limit        = this.limit;
+    Cursor  threadCursor = archived ? DatabaseFactory.getThreadDatabase(context).getArchivedConversationList(limit)
+                                    : DatabaseFactory.getThreadDatabase(context).getConversationList(limit);
+    boolean hasMore      = limit > 0 && threadCursor.getCount() >= limit;
+    Cursor  cursor       = archived || hasMore ? threadCursor : getUnarchivedConversationList(threadCursor);
+
+    if (hasMore) {
+      prefetchWindow(threadCursor.getCount(), PAGE_SIZE);
+    }
+
+    Snapshot snapshot = Snapshot.of(cursor);
+    Cursor   current  = this.cursor;
+
+    if (current instanceof WindowCursor) {
+      Snapshot            base = ((WindowCursor) current).snapshot;
+      DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new SnapshotDiffCallback(base, snapshot));
+
+      return new WindowCursor(cursor, snapshot, base, diff, hasMore);
+    }
+
+    return new WindowCursor(cursor, snapshot, null, null, hasMore);
   }
 
-  private Cursor getUnarchivedConversationList() {
+  private Cursor getUnarchivedConversationList(@NonNull Cursor threadCursor) {
     List<Cursor> cursorList = new LinkedList<>();
-    cursorList.add(DatabaseFactory.getThreadDatabase(context).getConversationList());
+    cursorList.add(threadCursor);
 
     int archivedCount = DatabaseFactory.getThreadDatabase(context)
                                        .getArchivedConversationListCount();
@@ -64,10 +131,6 @@ public class ConversationListLoader extends AbstractCursorLoader {
     return new MergeCursor(cursorList.toArray(new Cursor[0]));
   }
 
-  private Cursor getArchivedConversationList() {
-    return DatabaseFactory.getThreadDatabase(context).getArchivedConversationList();
-  }
-
   private Cursor getFilteredConversationList(String filter) {
     List<String> numbers = ContactAccessor.getInstance().getNumbersForThreadSearchFilter(context, filter);
     List<Address> addresses = new LinkedList<>();
@@ -78,4 +141,169 @@ public class ConversationListLoader extends AbstractCursorLoader {
 
     return DatabaseFactory.getThreadDatabase(context).getFilteredConversationList(addresses);
   }
+
+  /**
+   * Resolves the recipients and snippet thumbnails of the rows just past the current window, so
+   * they're already warm by the time the window is extended over them.
+   */
+  private void prefetchWindow(int offset, int limit) {
+    PriorityExecutors.BULK.execute(() -> {
+      ThreadDatabase threadDatabase = DatabaseFactory.getThreadDatabase(context);
+      List<Uri>      thumbnails     = new LinkedList<>();
+
+      try (ThreadDatabase.Reader reader = threadDatabase.readerFor(threadDatabase.getConversationListWindow(archived, offset, limit))) {
+        ThreadRecord record;
+
+        while ((record = reader.getNext()) != null) {
+          if (record.getSnippetUri() != null) {
+            thumbnails.add(record.getSnippetUri());
+          }
+        }
+      }
+
+      if (thumbnails.isEmpty()) return;
+
+      int size   = context.getResources().getDimensionPixelSize(R.dimen.conversation_list_thumbnail_size);
+      int radius = context.getResources().getDimensionPixelSize(R.dimen.message_corner_collapse_radius);
+
+      Util.runOnMain(() -> {
+        for (Uri thumbnail : thumbnails) {
+          GlideApp.with(context)
+                  .load(new DecryptableUri(thumbnail))
+                  .diskCacheStrategy(DiskCacheStrategy.NONE)
+                  .transforms(new CenterCrop(), new RoundedCorners(radius))
+                  .preload(size, size);
+        }
+      });
+    });
+  }
+
+  public static class WindowCursor extends CursorWrapper {
+
+    private final @NonNull  Snapshot            snapshot;
+    private final @Nullable Snapshot            base;
+    private final @Nullable DiffUtil.DiffResult diff;
+    private final           boolean             hasMore;
+
+    private WindowCursor(@NonNull Cursor cursor,
+                         @NonNull Snapshot snapshot,
+                         @Nullable Snapshot base,
+                         @Nullable DiffUtil.DiffResult diff,
+                         boolean hasMore)
+    {
+      super(cursor);
+      this.snapshot = snapshot;
+      this.base     = base;
+      this.diff     = diff;
+      this.hasMore  = hasMore;
+    }
+
+    /**
+     * @return The changes from the given cursor to this one, or null if this cursor wasn't
+     *         computed against it and the list has to be rebound from scratch.
+     */
+    public @Nullable DiffUtil.DiffResult getDiffFrom(@Nullable Cursor previous) {
+      if (diff != null && previous instanceof WindowCursor && ((WindowCursor) previous).snapshot == base) {
+        return diff;
+      }
+
+      return null;
+    }
+
+    public boolean hasMore() {
+      return hasMore;
+    }
+  }
+
+  private static class Snapshot {
+
+    private final long[] ids;
+    private final long[] fingerprints;
+
+    private Snapshot(long[] ids, long[] fingerprints) {
+      this.ids          = ids;
+      this.fingerprints = fingerprints;
+    }
+
+    static Snapshot of(@NonNull Cursor cursor) {
+      long[] ids          = new long[cursor.getCount()];
+      long[] fingerprints = new long[cursor.getCount()];
+
+      cursor.moveToPosition(-1);
+
+      while (cursor.moveToNext()) {
+        long id   = cursor.getLong(cursor.getColumnIndexOrThrow(ThreadDatabase.ID));
+        int  type = cursor.getInt(cursor.getColumnIndexOrThrow(ThreadDatabase.TYPE));
+
+        ids[cursor.getPosition()]          = id == -1 ? -1 - type : id;
+        fingerprints[cursor.getPosition()] = fingerprint(cursor);
+      }
+
+      cursor.moveToPosition(-1);
+
+      return new Snapshot(ids, fingerprints);
+    }
+
+    /**
+     * Hashes what a row shows. The synthetic archive rows are stamped with the time of the load, so
+     * their date is left out, as is the last seen time, which the list doesn't show.
+     */
+    private static long fingerprint(@NonNull Cursor cursor) {
+      long    result    = 17;
+      boolean synthetic = cursor.getLong(cursor.getColumnIndexOrThrow(ThreadDatabase.ID)) == -1;
+
+      if (!synthetic) {
+        result = 31 * result + cursor.getLong(cursor.getColumnIndexOrThrow(ThreadDatabase.DATE));
+      }
+
+      result = 31 * result + cursor.getLong(cursor.getColumnIndexOrThrow(ThreadDatabase.MESSAGE_COUNT));
+      result = 31 * result + cursor.getInt(cursor.getColumnIndexOrThrow(ThreadDatabase.READ));
+      result = 31 * result + cursor.getInt(cursor.getColumnIndexOrThrow(ThreadDatabase.UNREAD_COUNT));
+      result = 31 * result + cursor.getLong(cursor.getColumnIndexOrThrow(ThreadDatabase.SNIPPET_TYPE));
+      result = 31 * result + hash(cursor.getString(cursor.getColumnIndexOrThrow(ThreadDatabase.SNIPPET)));
+      result = 31 * result + hash(cursor.getString(cursor.getColumnIndexOrThrow(ThreadDatabase.SNIPPET_URI)));
+      result = 31 * result + cursor.getInt(cursor.getColumnIndexOrThrow(ThreadDatabase.ARCHIVED));
+      result = 31 * result + cursor.getLong(cursor.getColumnIndexOrThrow(ThreadDatabase.STATUS));
+      result = 31 * result + cursor.getInt(cursor.getColumnIndexOrThrow(ThreadDatabase.DELIVERY_RECEIPT_COUNT));
+      result = 31 * result + cursor.getInt(cursor.getColumnIndexOrThrow(ThreadDatabase.READ_RECEIPT_COUNT));
+      result = 31 * result + cursor.getLong(cursor.getColumnIndexOrThrow(ThreadDatabase.EXPIRES_IN));
+
+      return result;
+    }
+
+    private static int hash(@Nullable String value) {
+      return value == null ? 0 : value.hashCode();
+    }
+  }
+
+  private static class SnapshotDiffCallback extends DiffUtil.Callback {
+
+    private final Snapshot oldSnapshot;
+    private final Snapshot newSnapshot;
+
+    SnapshotDiffCallback(@NonNull Snapshot oldSnapshot, @NonNull Snapshot newSnapshot) {
+      this.oldSnapshot = oldSnapshot;
+      this.newSnapshot = newSnapshot;
+    }
+
+    @Override
+    public int getOldListSize() {
+      return oldSnapshot.ids.length;
+    }
+
+    @Override
+    public int getNewListSize() {
+      return newSnapshot.ids.length;
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+      return oldSnapshot.ids[oldItemPosition] == newSnapshot.ids[newItemPosition];
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+      return oldSnapshot.fingerprints[oldItemPosition] == newSnapshot.fingerprints[newItemPosition];
+    }
+  }
 }
@@ -9,63 +9,112 @@ import android.text.TextUtils;
 import org.thoughtcrime.securesms.logging.Log;
 
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
 import org.thoughtcrime.securesms.giph.model.GiphyImage;
-import org.thoughtcrime.securesms.giph.model.GiphyResponse;
+import org.thoughtcrime.securesms.net.HttpClients;
 import org.thoughtcrime.securesms.util.AsyncLoader;
 import org.thoughtcrime.securesms.util.JsonUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
+import okhttp3.Call;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 public abstract class GiphyLoader extends AsyncLoader<List<GiphyImage>> {
 
   private static final String TAG = GiphyLoader.class.getName();
 
-  public static int PAGE_SIZE = 100;
+  public static final int PAGE_SIZE = 25;
 
   @Nullable private String searchString;
 
   private final OkHttpClient client;
 
+  private volatile Call firstPageCall;
+
   protected GiphyLoader(@NonNull Context context, @Nullable String searchString) {
     super(context);
     this.searchString = searchString;
-    this.client       = new OkHttpClient.Builder().proxySelector(new GiphyProxySelector()).build();
+    this.client       = HttpClients.get(context, HttpClients.UseCase.GIPHY_API);
   }
 
   @Override
   public List<GiphyImage> loadInBackground() {
-    return loadPage(0);
-  }
+    Call call = newPageCall(0);
+    firstPageCall = call;
 
-  public @NonNull List<GiphyImage> loadPage(int offset) {
     try {
-      String url;
+      return readPage(call);
+    } catch (IOException e) {
+      Log.w(TAG, e);
+      return new LinkedList<>();
+    } finally {
+      firstPageCall = null;
+    }
+  }
+
+  @Override
+  public void cancelLoadInBackground() {
+    Call call = firstPageCall;
+    if (call != null) call.cancel();
+  }
+
+  /**
+   * @return A call for the page of results starting at the given offset, which can be canceled
+   *         while {@link #readPage(Call)} is running.
+   */
+  public @NonNull Call newPageCall(int offset) {
+    String url;
 
-      if (TextUtils.isEmpty(searchString)) url = String.format(getTrendingUrl(), offset);
-      else                                 url = String.format(getSearchUrl(), offset, Uri.encode(searchString));
+    if (TextUtils.isEmpty(searchString)) url = String.format(getTrendingUrl(), offset);
+    else                                 url = String.format(getSearchUrl(), offset, Uri.encode(searchString));
 
-      Request  request  = new Request.Builder().url(url).build();
-      Response response = client.newCall(request).execute();
+    return client.newCall(new Request.Builder().url(url).build());
+  }
 
-      if (!response.isSuccessful()) {
+  /**
+   * Executes the call and reads the images out of the response as they're parsed, without
+   * building the whole document first. Gives up as soon as the call is canceled.
+   */
+  public static @NonNull List<GiphyImage> readPage(@NonNull Call call) throws IOException {
+    try (Response response = call.execute()) {
+      ResponseBody body = response.body();
+
+      if (!response.isSuccessful() || body == null) {
         throw new IOException("Unexpected code " + response);
       }
 
-      GiphyResponse    giphyResponse = JsonUtils.fromJson(response.body().byteStream(), GiphyResponse.class);
-      List<GiphyImage> results       = giphyResponse.getData();
+      try (JsonParser parser = JsonUtils.getMapper().getFactory().createParser(body.byteStream())) {
+        List<GiphyImage> results = new ArrayList<>(PAGE_SIZE);
 
-      if (results == null) return new LinkedList<>();
-      else                 return results;
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+          throw new IOException("Unexpected response body");
+        }
 
-    } catch (IOException e) {
-      Log.w(TAG, e);
-      return new LinkedList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String    field = parser.getCurrentName();
+          JsonToken value = parser.nextToken();
+
+          if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+              if (call.isCanceled()) throw new IOException("Canceled");
+              results.add(JsonUtils.getMapper().readValue(parser, GiphyImage.class));
+            }
+          } else {
+            parser.skipChildren();
+          }
+        }
+
+        return results;
+      }
     }
   }
 
@@ -31,6 +31,7 @@ import org.thoughtcrime.securesms.mms.GlideRequests;
 import org.thoughtcrime.securesms.util.Util;
 import org.thoughtcrime.securesms.util.ViewUtil;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
@@ -117,17 +118,23 @@ class GiphyAdapter extends RecyclerView.Adapter<GiphyAdapter.GiphyViewHolder> {
   GiphyAdapter(@NonNull Context context, @NonNull GlideRequests glideRequests, @NonNull List<GiphyImage> images) {
     this.context       = context.getApplicationContext();
     this.glideRequests = glideRequests;
-    this.images        = images;
+    this.images        = new ArrayList<>(images);
   }
 
   public void setImages(@NonNull List<GiphyImage> images) {
-    this.images = images;
+    this.images = new ArrayList<>(images);
     notifyDataSetChanged();
   }
 
   public void addImages(List<GiphyImage> images) {
+    int start = this.images.size();
+
     this.images.addAll(images);
-    notifyDataSetChanged();
+    notifyItemRangeInserted(start, images.size());
+  }
+
+  @NonNull GiphyImage getImage(int position) {
+    return images.get(position);
   }
 
   @Override
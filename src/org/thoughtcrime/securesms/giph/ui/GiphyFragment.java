@@ -1,6 +1,5 @@
 package org.thoughtcrime.securesms.giph.ui;
 
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -20,8 +19,9 @@ import android.widget.TextView;
 import org.thoughtcrime.securesms.R;
 import org.thoughtcrime.securesms.giph.model.GiphyImage;
 import org.thoughtcrime.securesms.giph.net.GiphyLoader;
-import org.thoughtcrime.securesms.giph.util.InfiniteScrollListener;
+import org.thoughtcrime.securesms.giph.util.RecyclerViewPositionHelper;
 import org.thoughtcrime.securesms.mms.GlideApp;
+import org.thoughtcrime.securesms.mms.GlideRequests;
 import org.thoughtcrime.securesms.util.ViewUtil;
 
 import java.util.LinkedList;
@@ -32,6 +32,7 @@ public abstract class GiphyFragment extends Fragment implements LoaderManager.Lo
   private static final String TAG = GiphyFragment.class.getSimpleName();
 
   private GiphyAdapter                     giphyAdapter;
+  private GiphyPrefetcher                  prefetcher;
   private RecyclerView                     recyclerView;
   private ProgressBar                      loadingProgress;
   private TextView                         noResultsView;
@@ -53,8 +54,11 @@ public abstract class GiphyFragment extends Fragment implements LoaderManager.Lo
   public void onActivityCreated(Bundle bundle) {
     super.onActivityCreated(bundle);
 
-    this.giphyAdapter = new GiphyAdapter(getActivity(), GlideApp.with(this), new LinkedList<>());
+    GlideRequests glideRequests = GlideApp.with(this);
+
+    this.giphyAdapter = new GiphyAdapter(getActivity(), glideRequests, new LinkedList<>());
     this.giphyAdapter.setListener(this);
+    this.prefetcher   = new GiphyPrefetcher(getActivity(), glideRequests, giphyAdapter);
 
     this.recyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
     this.recyclerView.setItemAnimator(new DefaultItemAnimator());
@@ -64,6 +68,12 @@ public abstract class GiphyFragment extends Fragment implements LoaderManager.Lo
     getLoaderManager().initLoader(0, null, this);
   }
 
+  @Override
+  public void onDestroy() {
+    super.onDestroy();
+    if (prefetcher != null) prefetcher.cancel();
+  }
+
   @Override
   public void onLoadFinished(Loader<List<GiphyImage>> loader, @NonNull List<GiphyImage> data) {
     this.loadingProgress.setVisibility(View.GONE);
@@ -72,11 +82,13 @@ public abstract class GiphyFragment extends Fragment implements LoaderManager.Lo
     else                noResultsView.setVisibility(View.GONE);
 
     this.giphyAdapter.setImages(data);
+    this.prefetcher.reset(loader instanceof GiphyLoader ? (GiphyLoader) loader : null, data.size());
   }
 
   @Override
   public void onLoaderReset(Loader<List<GiphyImage>> loader) {
     noResultsView.setVisibility(View.GONE);
+    this.prefetcher.cancel();
     this.giphyAdapter.setImages(new LinkedList<GiphyImage>());
   }
 
@@ -95,6 +107,7 @@ public abstract class GiphyFragment extends Fragment implements LoaderManager.Lo
   public void setSearchString(@Nullable String searchString) {
     this.searchString = searchString;
     this.noResultsView.setVisibility(View.GONE);
+    this.prefetcher.cancel();
     this.getLoaderManager().restartLoader(0, null, this);
   }
 
@@ -103,22 +116,10 @@ public abstract class GiphyFragment extends Fragment implements LoaderManager.Lo
     if (listener != null) listener.onClick(viewHolder);
   }
 
-  private class GiphyScrollListener extends InfiniteScrollListener {
+  private class GiphyScrollListener extends RecyclerView.OnScrollListener {
     @Override
-    public void onLoadMore(final int currentPage) {
-      final Loader<List<GiphyImage>> loader = getLoaderManager().getLoader(0);
-      if (loader == null) return;
-
-      new AsyncTask<Void, Void, List<GiphyImage>>() {
-        @Override
-        protected List<GiphyImage> doInBackground(Void... params) {
-          return ((GiphyLoader)loader).loadPage(currentPage * GiphyLoader.PAGE_SIZE);
-        }
-
-        protected void onPostExecute(List<GiphyImage> images) {
-          giphyAdapter.addImages(images);
-        }
-      }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+      prefetcher.onScrolled(RecyclerViewPositionHelper.createHelper(recyclerView).findLastVisibleItemPosition());
     }
   }
 }
@@ -0,0 +1,178 @@
+package org.thoughtcrime.securesms.giph.ui;
+
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.bumptech.glide.request.target.Target;
+
+import org.thoughtcrime.securesms.giph.model.GiphyImage;
+import org.thoughtcrime.securesms.giph.model.GiphyPaddedUrl;
+import org.thoughtcrime.securesms.giph.net.GiphyLoader;
+import org.thoughtcrime.securesms.logging.Log;
+import org.thoughtcrime.securesms.mms.GlideRequests;
+import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+
+import okhttp3.Call;
+
+/**
+ * Keeps the Giphy picker ahead of the user's scroll position.
+ *
+ * The next page is requested while a page's worth of results is still below the last visible
+ * item, and the renditions the adapter is about to show for the next few items are downloaded
+ * into Glide's disk cache. Everything outstanding is canceled when the results are replaced.
+ */
+class GiphyPrefetcher {
+
+  private static final String TAG = GiphyPrefetcher.class.getSimpleName();
+
+  private static final int  PREFETCH_DISTANCE = GiphyLoader.PAGE_SIZE;
+  private static final int  WARM_STILLS       = 12;
+  private static final int  WARM_ANIMATED     = 4;
+  private static final int  MAX_WARMING       = WARM_STILLS + WARM_ANIMATED;
+  private static final long RETRY_DELAY_MS    = 5000;
+
+  private final Context                  context;
+  private final GlideRequests            glideRequests;
+  private final GiphyAdapter             adapter;
+  private final LinkedList<Target<File>> warming = new LinkedList<>();
+
+  private @Nullable GiphyLoader loader;
+  private @Nullable Call        pageCall;
+  private           int         generation;
+  private           boolean     exhausted;
+  private           long        retryAt;
+  private           int         stillsWarmedTo;
+  private           int         animatedWarmedTo;
+
+  GiphyPrefetcher(@NonNull Context context, @NonNull GlideRequests glideRequests, @NonNull GiphyAdapter adapter) {
+    this.context       = context.getApplicationContext();
+    this.glideRequests = glideRequests;
+    this.adapter       = adapter;
+  }
+
+  /**
+   * Starts over with the results of a new first page.
+   */
+  @MainThread
+  void reset(@Nullable GiphyLoader loader, int loaded) {
+    cancel();
+
+    this.loader    = loader;
+    this.exhausted = loaded < GiphyLoader.PAGE_SIZE;
+  }
+
+  /**
+   * Abandons the page and image downloads that are in flight.
+   */
+  @MainThread
+  void cancel() {
+    generation++;
+
+    if (pageCall != null) {
+      pageCall.cancel();
+      pageCall = null;
+    }
+
+    for (Target<File> target : warming) {
+      glideRequests.clear(target);
+    }
+
+    warming.clear();
+
+    loader           = null;
+    retryAt          = 0;
+    stillsWarmedTo   = -1;
+    animatedWarmedTo = -1;
+  }
+
+  @MainThread
+  void onScrolled(int lastVisible) {
+    if (lastVisible < 0) return;
+
+    if (adapter.getItemCount() - 1 - lastVisible <= PREFETCH_DISTANCE) {
+      fetchNextPage(lastVisible);
+    }
+
+    warm(lastVisible);
+  }
+
+  private void fetchNextPage(final int lastVisible) {
+    if (loader == null || pageCall != null || exhausted || SystemClock.elapsedRealtime() < retryAt) {
+      return;
+    }
+
+    final Call call = loader.newPageCall(adapter.getItemCount());
+    final int  page = generation;
+
+    pageCall = call;
+
+    SignalExecutors.IO.execute(() -> {
+      List<GiphyImage> images;
+
+      try {
+        images = GiphyLoader.readPage(call);
+      } catch (IOException e) {
+        Log.w(TAG, e);
+        images = null;
+      }
+
+      final List<GiphyImage> result = images;
+
+      Util.runOnMain(() -> {
+        if (page != generation) return;
+
+        pageCall = null;
+
+        if (result == null) {
+          retryAt = SystemClock.elapsedRealtime() + RETRY_DELAY_MS;
+          return;
+        }
+
+        exhausted = result.size() < GiphyLoader.PAGE_SIZE;
+        adapter.addImages(result);
+        warm(lastVisible);
+      });
+    });
+  }
+
+  /**
+   * Downloads the stills for the next few items, and the animations for the very next ones unless
+   * the adapter is only showing stills.
+   */
+  private void warm(int lastVisible) {
+    int count = adapter.getItemCount();
+    int start = lastVisible + 1;
+
+    for (int i = Math.max(start, stillsWarmedTo + 1); i < Math.min(count, start + WARM_STILLS); i++) {
+      GiphyImage image = adapter.getImage(i);
+      warm(new GiphyPaddedUrl(image.getStillUrl(), image.getStillSize()));
+      stillsWarmedTo = i;
+    }
+
+    if (Util.isLowMemory(context)) return;
+
+    for (int i = Math.max(start, animatedWarmedTo + 1); i < Math.min(count, start + WARM_ANIMATED); i++) {
+      GiphyImage image = adapter.getImage(i);
+      warm(new GiphyPaddedUrl(image.getGifUrl(), image.getGifSize()));
+      animatedWarmedTo = i;
+    }
+  }
+
+  private void warm(@NonNull GiphyPaddedUrl url) {
+    warming.add(glideRequests.downloadOnly().load(url).preload());
+
+    if (warming.size() > MAX_WARMING) {
+      glideRequests.clear(warming.removeFirst());
+    }
+  }
+}
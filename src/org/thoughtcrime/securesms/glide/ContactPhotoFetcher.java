@@ -15,10 +15,11 @@ import java.io.InputStream;
 
 class ContactPhotoFetcher implements DataFetcher<InputStream> {
 
-  private final Context   context;
+  private final Context      context;
   private final ContactPhoto contactPhoto;
 
-  private InputStream inputStream;
+  private          InputStream inputStream;
+  private volatile boolean     canceled;
 
   ContactPhotoFetcher(@NonNull Context context, @NonNull ContactPhoto contactPhoto) {
     this.context      = context.getApplicationContext();
@@ -27,6 +28,11 @@ class ContactPhotoFetcher implements DataFetcher<InputStream> {
 
   @Override
   public void loadData(Priority priority, DataCallback<? super InputStream> callback) {
+    if (canceled) {
+      callback.onLoadFailed(new IOException("Canceled"));
+      return;
+    }
+
     try {
       inputStream = contactPhoto.openInputStream(context);
       callback.onDataReady(inputStream);
@@ -44,7 +50,7 @@ class ContactPhotoFetcher implements DataFetcher<InputStream> {
 
   @Override
   public void cancel() {
-
+    canceled = true;
   }
 
   @NonNull
@@ -1,5 +1,7 @@
 package org.thoughtcrime.securesms.glide;
 
+import android.content.Context;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.bumptech.glide.load.Options;
@@ -8,7 +10,7 @@ import com.bumptech.glide.load.model.ModelLoaderFactory;
 import com.bumptech.glide.load.model.MultiModelLoaderFactory;
 
 import org.thoughtcrime.securesms.giph.model.GiphyPaddedUrl;
-import org.thoughtcrime.securesms.giph.net.GiphyProxySelector;
+import org.thoughtcrime.securesms.net.HttpClients;
 
 import java.io.InputStream;
 
@@ -37,8 +39,8 @@ public class GiphyPaddedUrlLoader implements ModelLoader<GiphyPaddedUrl, InputSt
 
     private final OkHttpClient client;
 
-    public Factory() {
-      this.client  = new OkHttpClient.Builder().proxySelector(new GiphyProxySelector()).build();
+    public Factory(@NonNull Context context) {
+      this.client  = HttpClients.get(context, HttpClients.UseCase.MEDIA);
     }
 
     @Override
@@ -1,5 +1,7 @@
 package org.thoughtcrime.securesms.glide;
 
+import android.content.Context;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.bumptech.glide.load.Options;
@@ -8,7 +10,7 @@ import com.bumptech.glide.load.model.ModelLoader;
 import com.bumptech.glide.load.model.ModelLoaderFactory;
 import com.bumptech.glide.load.model.MultiModelLoaderFactory;
 
-import org.thoughtcrime.securesms.giph.net.GiphyProxySelector;
+import org.thoughtcrime.securesms.net.HttpClients;
 
 import java.io.InputStream;
 
@@ -37,28 +39,10 @@ public class OkHttpUrlLoader implements ModelLoader<GlideUrl, InputStream> {
   }
 
   public static class Factory implements ModelLoaderFactory<GlideUrl, InputStream> {
-    private static volatile OkHttpClient internalClient;
-    private OkHttpClient client;
+    private final OkHttpClient client;
 
-    private static OkHttpClient getInternalClient() {
-      if (internalClient == null) {
-        synchronized (Factory.class) {
-          if (internalClient == null) {
-            internalClient = new OkHttpClient.Builder()
-                                             .proxySelector(new GiphyProxySelector())
-                                             .build();
-          }
-        }
-      }
-      return internalClient;
-    }
-
-    public Factory() {
-      this(getInternalClient());
-    }
-
-    private Factory(OkHttpClient client) {
-      this.client = client;
+    public Factory(@NonNull Context context) {
+      this.client = HttpClients.get(context, HttpClients.UseCase.MEDIA);
     }
 
     @Override
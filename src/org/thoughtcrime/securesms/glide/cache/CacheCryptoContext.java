@@ -0,0 +1,147 @@
+package org.thoughtcrime.securesms.glide.cache;
+
+
+import android.support.annotation.NonNull;
+
+import org.thoughtcrime.securesms.util.LRUCache;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The crypto state shared by every encrypted Glide cache entry, so that reading or writing one
+ * doesn't go through a JCE provider lookup.
+ *
+ * Each thread keeps its own key-derivation Mac, the AES/CTR ciphers are pooled, and a bounded
+ * number of derived per-entry keys are remembered. Glide checks whether a decoder handles an entry
+ * right before decoding it, so every cache hit derives the same key at least twice.
+ */
+class CacheCryptoContext {
+
+  private static final int MAX_CACHED_KEYS    = 256;
+  private static final int MAX_POOLED_CIPHERS = 8;
+
+  private static final byte[] IV = new byte[16];
+
+  private static final ThreadLocal<KeyedMac>       macs    = new ThreadLocal<>();
+  private static final Map<EntryId, SecretKeySpec> keys    = new LRUCache<>(MAX_CACHED_KEYS);
+  private static final ArrayDeque<Cipher>          ciphers = new ArrayDeque<>(MAX_POOLED_CIPHERS);
+
+  private CacheCryptoContext() {}
+
+  /**
+   * @return The key for the cache entry with the given random, derived from the master key.
+   */
+  static @NonNull SecretKeySpec getEntryKey(@NonNull byte[] masterKey, @NonNull byte[] random) {
+    EntryId id = new EntryId(masterKey, random);
+
+    synchronized (keys) {
+      SecretKeySpec cached = keys.get(id);
+      if (cached != null) return cached;
+    }
+
+    SecretKeySpec key = new SecretKeySpec(getMac(masterKey).doFinal(random), "AES");
+
+    synchronized (keys) {
+      keys.put(id, key);
+    }
+
+    return key;
+  }
+
+  /**
+   * @return A cipher initialized with the given key. It should be handed back with
+   *         {@link #recycleCipher(Cipher)} once the stream using it is closed.
+   */
+  static @NonNull Cipher obtainCipher(int mode, @NonNull SecretKeySpec key) {
+    Cipher cipher;
+
+    synchronized (ciphers) {
+      cipher = ciphers.pollFirst();
+    }
+
+    try {
+      if (cipher == null) {
+        cipher = Cipher.getInstance("AES/CTR/NoPadding");
+      }
+
+      cipher.init(mode, key, new IvParameterSpec(IV));
+      return cipher;
+    } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  static void recycleCipher(@NonNull Cipher cipher) {
+    synchronized (ciphers) {
+      if (ciphers.size() < MAX_POOLED_CIPHERS) {
+        ciphers.addFirst(cipher);
+      }
+    }
+  }
+
+  private static @NonNull Mac getMac(@NonNull byte[] masterKey) {
+    KeyedMac keyedMac = macs.get();
+
+    if (keyedMac == null || !Arrays.equals(keyedMac.masterKey, masterKey)) {
+      try {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(masterKey, "HmacSHA256"));
+
+        keyedMac = new KeyedMac(masterKey.clone(), mac);
+        macs.set(keyedMac);
+      } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    return keyedMac.mac;
+  }
+
+  private static class KeyedMac {
+    private final byte[] masterKey;
+    private final Mac    mac;
+
+    private KeyedMac(@NonNull byte[] masterKey, @NonNull Mac mac) {
+      this.masterKey = masterKey;
+      this.mac       = mac;
+    }
+  }
+
+  private static class EntryId {
+    private final byte[] masterKey;
+    private final byte[] random;
+    private final int    hashCode;
+
+    private EntryId(@NonNull byte[] masterKey, @NonNull byte[] random) {
+      this.masterKey = masterKey;
+      this.random    = random;
+      this.hashCode  = 31 * Arrays.hashCode(masterKey) + Arrays.hashCode(random);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      EntryId that = (EntryId) o;
+
+      return Arrays.equals(random, that.random) && Arrays.equals(masterKey, that.masterKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
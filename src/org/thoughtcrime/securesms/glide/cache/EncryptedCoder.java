@@ -8,20 +8,15 @@ import org.thoughtcrime.securesms.util.Util;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
-import javax.crypto.Mac;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 class EncryptedCoder {
@@ -31,68 +26,242 @@ class EncryptedCoder {
                                        (byte)0xe5, (byte)0xb1, (byte)0x1b, (byte)0xd7,
                                        (byte)0x29, (byte)0xe5, (byte)0x04, (byte)0xcc};
 
+  private static final int BUFFER_SIZE = 64 * 1024;
+
   OutputStream createEncryptedOutputStream(@NonNull byte[] masterKey, @NonNull File file)
       throws IOException
   {
-    try {
-      byte[] random = Util.getSecretBytes(32);
-      Mac    mac    = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(masterKey, "HmacSHA256"));
-
-      FileOutputStream fileOutputStream = new FileOutputStream(file);
-      byte[]           iv               = new byte[16];
-      byte[]           key              = mac.doFinal(random);
+    byte[]        random = Util.getSecretBytes(32);
+    SecretKeySpec key    = CacheCryptoContext.getEntryKey(masterKey, random);
 
-      Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
-      cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+    FileOutputStream fileOutputStream = new FileOutputStream(file);
 
-      fileOutputStream.write(MAGIC_BYTES);
-      fileOutputStream.write(random);
+    fileOutputStream.write(MAGIC_BYTES);
+    fileOutputStream.write(random);
 
-      CipherOutputStream outputStream = new CipherOutputStream(fileOutputStream, cipher);
-      outputStream.write(MAGIC_BYTES);
+    EncryptingOutputStream outputStream = new EncryptingOutputStream(fileOutputStream, CacheCryptoContext.obtainCipher(Cipher.ENCRYPT_MODE, key));
+    outputStream.write(MAGIC_BYTES);
 
-      return outputStream;
-    } catch (NoSuchAlgorithmException | InvalidKeyException | NoSuchPaddingException | InvalidAlgorithmParameterException e) {
-      throw new AssertionError(e);
-    }
+    return outputStream;
   }
 
   InputStream createEncryptedInputStream(@NonNull byte[] masterKey, @NonNull File file) throws IOException {
-    try {
-      Mac    mac    = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(masterKey, "HmacSHA256"));
-
-      FileInputStream fileInputStream     = new FileInputStream(file);
-      byte[]          theirMagic          = new byte[MAGIC_BYTES.length];
-      byte[]          theirRandom         = new byte[32];
-      byte[]          theirEncryptedMagic = new byte[MAGIC_BYTES.length];
+    FileInputStream fileInputStream     = new FileInputStream(file);
+    byte[]          theirMagic          = new byte[MAGIC_BYTES.length];
+    byte[]          theirRandom         = new byte[32];
+    byte[]          theirEncryptedMagic = new byte[MAGIC_BYTES.length];
 
+    try {
       Util.readFully(fileInputStream, theirMagic);
       Util.readFully(fileInputStream, theirRandom);
+    } catch (IOException e) {
+      fileInputStream.close();
+      throw e;
+    }
+
+    if (!MessageDigest.isEqual(theirMagic, MAGIC_BYTES)) {
+      fileInputStream.close();
+      throw new IOException("Not an encrypted cache file!");
+    }
+
+    SecretKeySpec         key         = CacheCryptoContext.getEntryKey(masterKey, theirRandom);
+    DecryptingInputStream inputStream = new DecryptingInputStream(fileInputStream, CacheCryptoContext.obtainCipher(Cipher.DECRYPT_MODE, key));
+
+    try {
+      Util.readFully(inputStream, theirEncryptedMagic);
+    } catch (IOException e) {
+      inputStream.close();
+      throw e;
+    }
+
+    if (!MessageDigest.isEqual(theirEncryptedMagic, MAGIC_BYTES)) {
+      inputStream.close();
+      throw new IOException("Key change on encrypted cache file!");
+    }
 
-      if (!MessageDigest.isEqual(theirMagic, MAGIC_BYTES)) {
-        throw new IOException("Not an encrypted cache file!");
+    return inputStream;
+  }
+
+  /**
+   * Decrypts as much as the caller asks for with a single cipher update where it can, instead of
+   * in the small chunks that {@link javax.crypto.CipherInputStream} uses. Providers may hold back
+   * part of a block until more input or {@link Cipher#doFinal()} arrives, so output is sized with
+   * {@link Cipher#getOutputSize(int)} and whatever doesn't fit the caller's array is kept for the
+   * next read.
+   */
+  private static class DecryptingInputStream extends FilterInputStream {
+
+    private final Cipher cipher;
+    private final byte[] single = new byte[1];
+
+    private byte[]  buffer;
+    private byte[]  pending = new byte[0];
+    private int     pendingOffset;
+    private int     pendingLength;
+    private boolean finished;
+    private boolean closed;
+
+    private DecryptingInputStream(@NonNull InputStream in, @NonNull Cipher cipher) {
+      super(in);
+      this.cipher = cipher;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int read = read(single, 0, 1);
+      return read == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(@NonNull byte[] output, int offset, int length) throws IOException {
+      if (length == 0) return 0;
+
+      while (pendingLength == 0) {
+        if (finished) return -1;
+
+        int toRead = Math.min(Math.max(length, 4096), BUFFER_SIZE);
+
+        if (buffer == null || buffer.length < toRead) {
+          buffer = new byte[toRead];
+        }
+
+        int read = in.read(buffer, 0, toRead);
+
+        try {
+          if (read == -1) {
+            finished      = true;
+            pendingLength = cipher.doFinal(ensurePending(cipher.getOutputSize(0)), 0);
+          } else if (cipher.getOutputSize(read) <= length) {
+            int decrypted = cipher.update(buffer, 0, read, output, offset);
+            if (decrypted > 0) return decrypted;
+          } else {
+            pendingLength = cipher.update(buffer, 0, read, ensurePending(cipher.getOutputSize(read)), 0);
+          }
+        } catch (GeneralSecurityException e) {
+          throw new IOException(e);
+        }
+
+        pendingOffset = 0;
       }
 
-      byte[] iv  = new byte[16];
-      byte[] key = mac.doFinal(theirRandom);
+      int copied = Math.min(length, pendingLength);
 
-      Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
-      cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+      System.arraycopy(pending, pendingOffset, output, offset, copied);
+      pendingOffset += copied;
+      pendingLength -= copied;
 
-      CipherInputStream inputStream = new CipherInputStream(fileInputStream, cipher);
-      Util.readFully(inputStream, theirEncryptedMagic);
+      return copied;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      byte[] skipBuffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+      long   skipped    = 0;
+
+      while (skipped < n) {
+        int read = read(skipBuffer, 0, (int) Math.min(n - skipped, skipBuffer.length));
+        if (read == -1) break;
+        skipped += read;
+      }
+
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return pendingLength;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) return;
+      closed = true;
+
+      try {
+        if (!finished) cipher.doFinal();
+      } catch (GeneralSecurityException e) {
+        // Only resetting the cipher, nothing more will be read
+      }
+
+      try {
+        super.close();
+      } finally {
+        CacheCryptoContext.recycleCipher(cipher);
+      }
+    }
 
-      if (!MessageDigest.isEqual(theirEncryptedMagic, MAGIC_BYTES)) {
-        throw new IOException("Key change on encrypted cache file!");
+    private @NonNull byte[] ensurePending(int size) {
+      if (pending.length < size) {
+        pending = new byte[size];
       }
 
-      return inputStream;
-    } catch (NoSuchAlgorithmException | InvalidKeyException | NoSuchPaddingException | InvalidAlgorithmParameterException e) {
-      throw new AssertionError(e);
+      return pending;
     }
   }
 
+  private static class EncryptingOutputStream extends FilterOutputStream {
 
+    private final Cipher cipher;
+    private final byte[] single = new byte[1];
+
+    private byte[]  buffer;
+    private boolean closed;
+
+    private EncryptingOutputStream(@NonNull OutputStream out, @NonNull Cipher cipher) {
+      super(out);
+      this.cipher = cipher;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      single[0] = (byte) b;
+      write(single, 0, 1);
+    }
+
+    @Override
+    public void write(@NonNull byte[] input, int offset, int length) throws IOException {
+      while (length > 0) {
+        int chunk      = Math.min(length, BUFFER_SIZE);
+        int outputSize = cipher.getOutputSize(chunk);
+
+        if (buffer == null || buffer.length < outputSize) {
+          buffer = new byte[Math.max(outputSize, 4096)];
+        }
+
+        try {
+          int encrypted = cipher.update(input, offset, chunk, buffer, 0);
+          out.write(buffer, 0, encrypted);
+        } catch (GeneralSecurityException e) {
+          throw new IOException(e);
+        }
+
+        offset += chunk;
+        length -= chunk;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) return;
+      closed = true;
+
+      try {
+        byte[] last = cipher.doFinal();
+        if (last != null) out.write(last);
+      } catch (GeneralSecurityException e) {
+        throw new IOException(e);
+      } finally {
+        try {
+          super.close();
+        } finally {
+          CacheCryptoContext.recycleCipher(cipher);
+        }
+      }
+    }
+  }
 }
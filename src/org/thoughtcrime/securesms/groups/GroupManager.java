@@ -111,7 +111,7 @@ public class GroupManager {
       GroupContext groupContext = groupContextBuilder.build();
 
       if (avatar != null) {
-        Uri avatarUri = MemoryBlobProvider.getInstance().createSingleUseUri(avatar);
+        Uri avatarUri = MemoryBlobProvider.getInstance(context).createSingleUseUri(avatar);
         avatarAttachment = new UriAttachment(avatarUri, MediaUtil.IMAGE_PNG, AttachmentDatabase.TRANSFER_PROGRESS_DONE, avatar.length, null, false, false);
       }
 
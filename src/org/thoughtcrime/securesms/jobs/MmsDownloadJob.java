@@ -197,7 +197,7 @@ public class MmsDownloadJob extends MasterSecretJob {
              LegacyMessageException
   {
     MmsDatabase           database    = DatabaseFactory.getMmsDatabase(context);
-    MemoryBlobProvider    provider    = MemoryBlobProvider.getInstance();
+    MemoryBlobProvider    provider    = MemoryBlobProvider.getInstance(context);
     Optional<Address>     group       = Optional.absent();
     Set<Address>          members     = new HashSet<>();
     String                body        = null;
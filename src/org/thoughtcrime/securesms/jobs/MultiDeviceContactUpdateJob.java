@@ -1,6 +1,7 @@
 package org.thoughtcrime.securesms.jobs;
 
 import android.Manifest;
+import android.content.ContentUris;
 import android.content.Context;
 import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
@@ -19,12 +20,14 @@ import org.thoughtcrime.securesms.crypto.UnidentifiedAccessUtil;
 import org.thoughtcrime.securesms.database.Address;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.database.IdentityDatabase;
+import org.thoughtcrime.securesms.database.RecipientDatabase;
 import org.thoughtcrime.securesms.dependencies.InjectableType;
 import org.thoughtcrime.securesms.jobmanager.JobParameters;
 import org.thoughtcrime.securesms.jobmanager.SafeData;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.permissions.Permissions;
 import org.thoughtcrime.securesms.recipients.Recipient;
+import org.thoughtcrime.securesms.util.Base64;
 import org.thoughtcrime.securesms.util.TextSecurePreferences;
 import org.whispersystems.libsignal.IdentityKey;
 import org.whispersystems.libsignal.util.guava.Optional;
@@ -41,11 +44,20 @@ import org.whispersystems.signalservice.api.push.exceptions.PushNetworkException
 import org.whispersystems.signalservice.api.util.InvalidNumberException;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -134,21 +146,28 @@ public class MultiDeviceContactUpdateJob extends MasterSecretJob implements Inje
       Recipient                                 recipient       = Recipient.from(context, address, false);
       Optional<IdentityDatabase.IdentityRecord> identityRecord  = DatabaseFactory.getIdentityDatabase(context).getIdentity(address);
       Optional<VerifiedMessage>                 verifiedMessage = getVerifiedMessage(recipient, identityRecord);
+      Optional<String>                          name            = Optional.fromNullable(recipient.getName());
+      Optional<String>                          color           = Optional.fromNullable(recipient.getColor().serialize());
+      Optional<byte[]>                          profileKey      = Optional.fromNullable(recipient.getProfileKey());
+      boolean                                   blocked         = recipient.isBlocked();
+      Optional<Integer>                         expireTimer     = recipient.getExpireMessages() > 0 ? Optional.of(recipient.getExpireMessages()) : Optional.absent();
+      String                                    photoVersion    = recipient.getContactUri() != null ? getPhotoVersion(ContentUris.parseId(recipient.getContactUri())) : null;
 
       out.write(new DeviceContact(address.toPhoneString(),
-                                  Optional.fromNullable(recipient.getName()),
+                                  name,
                                   getAvatar(recipient.getContactUri()),
-                                  Optional.fromNullable(recipient.getColor().serialize()),
+                                  color,
                                   verifiedMessage,
-                                  Optional.fromNullable(recipient.getProfileKey()),
-                                  recipient.isBlocked(),
-                                  recipient.getExpireMessages() > 0 ?
-                                      Optional.of(recipient.getExpireMessages()) :
-                                      Optional.absent()));
+                                  profileKey,
+                                  blocked,
+                                  expireTimer));
 
       out.close();
       sendUpdate(messageSender, contactDataFile, false);
 
+      String digest = getContactDigest(name, color, identityRecord, profileKey, blocked, expireTimer, photoVersion);
+      DatabaseFactory.getRecipientDatabase(context).setContactSyncDigests(Collections.singletonMap(address, digest), false);
+
     } catch(InvalidNumberException e) {
       Log.w(TAG, e);
     } finally {
@@ -178,37 +197,69 @@ public class MultiDeviceContactUpdateJob extends MasterSecretJob implements Inje
     TextSecurePreferences.setLastFullContactSyncTime(context, System.currentTimeMillis());
     TextSecurePreferences.setNeedsFullContactSync(context, false);
 
+    RecipientDatabase    recipientDatabase = DatabaseFactory.getRecipientDatabase(context);
+    Map<Address, String> syncedDigests     = forceSync ? Collections.emptyMap() : recipientDatabase.getContactSyncDigests();
+    Map<Address, String> sentDigests       = new HashMap<>();
+    Map<Long, String>    photoVersions     = getPhotoVersions();
+    int                  unchanged         = 0;
+
     File contactDataFile = createTempFile("multidevice-contact-update");
 
     try {
       DeviceContactsOutputStream out      = new DeviceContactsOutputStream(new FileOutputStream(contactDataFile));
       Collection<ContactData>    contacts = ContactAccessor.getInstance().getContactsWithPush(context);
+      boolean                    complete = forceSync || hasRemovedContacts(syncedDigests, contacts);
+
+      if (complete) {
+        syncedDigests = Collections.emptyMap();
+      }
 
       for (ContactData contactData : contacts) {
         Uri                                       contactUri  = Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_URI, String.valueOf(contactData.id));
         Address                                   address     = Address.fromExternal(context, contactData.numbers.get(0).number);
         Recipient                                 recipient   = Recipient.from(context, address, false);
         Optional<IdentityDatabase.IdentityRecord> identity    = DatabaseFactory.getIdentityDatabase(context).getIdentity(address);
-        Optional<VerifiedMessage>                 verified    = getVerifiedMessage(recipient, identity);
         Optional<String>                          name        = Optional.fromNullable(contactData.name);
         Optional<String>                          color       = Optional.of(recipient.getColor().serialize());
         Optional<byte[]>                          profileKey  = Optional.fromNullable(recipient.getProfileKey());
         boolean                                   blocked     = recipient.isBlocked();
         Optional<Integer>                         expireTimer = recipient.getExpireMessages() > 0 ? Optional.of(recipient.getExpireMessages()) : Optional.absent();
+        String                                    digest      = getContactDigest(name, color, identity, profileKey, blocked, expireTimer, photoVersions.get(contactData.id));
+
+        if (digest.equals(syncedDigests.get(address))) {
+          unchanged++;
+          continue;
+        }
+
+        Optional<VerifiedMessage> verified = getVerifiedMessage(recipient, identity);
 
         out.write(new DeviceContact(address.toPhoneString(), name, getAvatar(contactUri), color, verified, profileKey, blocked, expireTimer));
+        sentDigests.put(address, digest);
       }
 
       if (ProfileKeyUtil.hasProfileKey(context)) {
-        out.write(new DeviceContact(TextSecurePreferences.getLocalNumber(context),
-                                    Optional.absent(), Optional.absent(),
-                                    Optional.absent(), Optional.absent(),
-                                    Optional.of(ProfileKeyUtil.getProfileKey(context)),
-                                    false, Optional.absent()));
+        Address          localAddress    = Address.fromSerialized(TextSecurePreferences.getLocalNumber(context));
+        Optional<byte[]> localProfileKey = Optional.of(ProfileKeyUtil.getProfileKey(context));
+        String           digest          = getContactDigest(Optional.absent(), Optional.absent(), Optional.absent(), localProfileKey, false, Optional.absent(), null);
+
+        if (!digest.equals(syncedDigests.get(localAddress))) {
+          out.write(new DeviceContact(localAddress.toPhoneString(),
+                                      Optional.absent(), Optional.absent(),
+                                      Optional.absent(), Optional.absent(),
+                                      localProfileKey,
+                                      false, Optional.absent()));
+          sentDigests.put(localAddress, digest);
+        }
       }
 
       out.close();
-      sendUpdate(messageSender, contactDataFile, true);
+
+      Log.i(TAG, "Sending " + sentDigests.size() + " contacts (" + unchanged + " unchanged), complete = " + complete);
+
+      if (complete || !sentDigests.isEmpty()) {
+        sendUpdate(messageSender, contactDataFile, complete);
+        recipientDatabase.setContactSyncDigests(sentDigests, complete);
+      }
     } catch(InvalidNumberException e) {
       Log.w(TAG, e);
     } finally {
@@ -305,6 +356,95 @@ public class MultiDeviceContactUpdateJob extends MasterSecretJob implements Inje
     }
   }
 
+  /**
+   * A partial sync can only add or update contacts, so if any contact that was synced before is
+   * gone (deleted, or no longer on Signal), linked devices need a complete sync to drop it.
+   */
+  private boolean hasRemovedContacts(@NonNull Map<Address, String> syncedDigests, @NonNull Collection<ContactData> contacts) {
+    if (syncedDigests.isEmpty()) return false;
+
+    Set<Address> current = new HashSet<>();
+
+    for (ContactData contactData : contacts) {
+      current.add(Address.fromExternal(context, contactData.numbers.get(0).number));
+    }
+
+    if (ProfileKeyUtil.hasProfileKey(context)) {
+      current.add(Address.fromSerialized(TextSecurePreferences.getLocalNumber(context)));
+    }
+
+    for (Address synced : syncedDigests.keySet()) {
+      if (!current.contains(synced)) {
+        Log.i(TAG, "A previously synced contact was removed, sending a complete sync.");
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * A digest of everything a linked device is sent about a contact, used to skip the contacts that
+   * haven't changed since they were last sent. The avatar is represented by its version in the
+   * system contacts, so its bytes are only read for contacts that are actually sent.
+   */
+  private static @NonNull String getContactDigest(@NonNull Optional<String> name,
+                                                  @NonNull Optional<String> color,
+                                                  @NonNull Optional<IdentityDatabase.IdentityRecord> identity,
+                                                  @NonNull Optional<byte[]> profileKey,
+                                                  boolean blocked,
+                                                  @NonNull Optional<Integer> expireTimer,
+                                                  @Nullable String photoVersion)
+  {
+    try {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      DataOutputStream      out  = new DataOutputStream(baos);
+
+      out.writeUTF(name.or(""));
+      out.writeUTF(color.or(""));
+      out.writeUTF(identity.isPresent() ? identity.get().getVerifiedStatus().name() : "");
+      out.write(identity.isPresent() ? identity.get().getIdentityKey().serialize() : new byte[0]);
+      out.write(profileKey.or(new byte[0]));
+      out.writeBoolean(blocked);
+      out.writeInt(expireTimer.or(0));
+      out.writeUTF(photoVersion != null ? photoVersion : "");
+      out.close();
+
+      return Base64.encodeBytes(MessageDigest.getInstance("SHA-256").digest(baos.toByteArray()));
+    } catch (IOException | NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * @return The current photo of every system contact, by contact id. A contact's photo id or
+   *         photo file id changes whenever its photo does.
+   */
+  private @NonNull Map<Long, String> getPhotoVersions() {
+    return getPhotoVersions(null, null);
+  }
+
+  private @Nullable String getPhotoVersion(long contactId) {
+    return getPhotoVersions(ContactsContract.Contacts._ID + " = ?", new String[] {String.valueOf(contactId)}).get(contactId);
+  }
+
+  private @NonNull Map<Long, String> getPhotoVersions(@Nullable String selection, @Nullable String[] selectionArgs) {
+    Map<Long, String> versions   = new HashMap<>();
+    String[]          projection = new String[] {ContactsContract.Contacts._ID,
+                                                 ContactsContract.Contacts.PHOTO_ID,
+                                                 ContactsContract.Contacts.PHOTO_FILE_ID};
+
+    try (Cursor cursor = context.getContentResolver().query(ContactsContract.Contacts.CONTENT_URI, projection, selection, selectionArgs, null)) {
+      while (cursor != null && cursor.moveToNext()) {
+        if (!cursor.isNull(1) || !cursor.isNull(2)) {
+          versions.put(cursor.getLong(0), cursor.getLong(1) + ":" + cursor.getLong(2));
+        }
+      }
+    }
+
+    return versions;
+  }
+
   private Optional<VerifiedMessage> getVerifiedMessage(Recipient recipient, Optional<IdentityDatabase.IdentityRecord> identity) throws InvalidNumberException {
     if (!identity.isPresent()) return Optional.absent();
 
@@ -18,16 +18,22 @@ import org.thoughtcrime.securesms.mms.MmsException;
 import org.thoughtcrime.securesms.transport.UndeliverableMessageException;
 import org.thoughtcrime.securesms.util.MediaUtil;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
 
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public abstract class SendJob extends MasterSecretJob {
 
   @SuppressWarnings("unused")
   private final static String TAG = SendJob.class.getSimpleName();
 
+  private static final ExecutorService RESIZE_EXECUTOR = SignalExecutors.newCachedBoundedExecutor("signal-attachment-resize", 2);
+
   public SendJob(Context context, JobParameters parameters) {
     super(context, parameters);
   }
@@ -64,26 +70,41 @@ public abstract class SendJob extends MasterSecretJob {
                                                               @NonNull List<Attachment> attachments)
       throws UndeliverableMessageException
   {
-    AttachmentDatabase attachmentDatabase = DatabaseFactory.getAttachmentDatabase(context);
-    List<Attachment>   results            = new LinkedList<>();
+    AttachmentDatabase        attachmentDatabase = DatabaseFactory.getAttachmentDatabase(context);
+    List<Attachment>          results            = new LinkedList<>();
+    List<Future<MediaStream>> resized            = new ArrayList<>(attachments.size());
 
-    for (Attachment attachment : attachments) {
-      try {
+    try {
+      for (Attachment attachment : attachments) {
         if (constraints.isSatisfied(context, attachment)) {
           if (MediaUtil.isJpeg(attachment)) {
-            MediaStream stripped = constraints.getResizedMedia(context, attachment);
-            results.add(attachmentDatabase.updateAttachmentData(attachment, stripped));
+            resized.add(RESIZE_EXECUTOR.submit(() -> constraints.getResizedMedia(context, attachment)));
           } else {
-            results.add(attachment);
+            resized.add(null);
           }
         } else if (constraints.canResize(attachment)) {
-          MediaStream resized = constraints.getResizedMedia(context, attachment);
-          results.add(attachmentDatabase.updateAttachmentData(attachment, resized));
+          resized.add(RESIZE_EXECUTOR.submit(() -> constraints.getResizedMedia(context, attachment)));
         } else {
           throw new UndeliverableMessageException("Size constraints could not be met!");
         }
-      } catch (IOException | MmsException e) {
-        throw new UndeliverableMessageException(e);
+      }
+
+      for (int i = 0; i < attachments.size(); i++) {
+        Future<MediaStream> stream = resized.get(i);
+
+        if (stream == null) results.add(attachments.get(i));
+        else                results.add(attachmentDatabase.updateAttachmentData(attachments.get(i), stream.get()));
+      }
+    } catch (ExecutionException e) {
+      throw new UndeliverableMessageException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UndeliverableMessageException(e);
+    } catch (MmsException e) {
+      throw new UndeliverableMessageException(e);
+    } finally {
+      for (Future<MediaStream> stream : resized) {
+        if (stream != null) stream.cancel(true);
       }
     }
 
@@ -14,6 +14,7 @@ import android.support.annotation.Nullable;
 
 import org.thoughtcrime.securesms.jobmanager.SafeData;
 import org.thoughtcrime.securesms.logging.Log;
+import org.thoughtcrime.securesms.net.HttpClients;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -65,7 +66,7 @@ public class UpdateApkJob extends ContextJob {
 
     Log.i(TAG, "Checking for APK update...");
 
-    OkHttpClient client  = new OkHttpClient();
+    OkHttpClient client  = HttpClients.get(context, HttpClients.UseCase.UPDATES);
     Request      request = new Request.Builder().url(String.format("%s/latest.json", BuildConfig.NOPLAY_UPDATE_URL)).build();
 
     Response response = client.newCall(request).execute();
@@ -102,18 +102,10 @@ class LogFile {
       }
     }
 
-    String readAll() throws IOException {
-      StringBuilder builder = new StringBuilder();
-
-      String entry;
-      while ((entry = readEntry()) != null) {
-        builder.append(entry).append('\n');
-      }
-
-      return builder.toString();
-    }
-
-    private String readEntry() throws IOException {
+    /**
+     * @return The next entry, or null at the end of the file.
+     */
+    String readEntry() throws IOException {
       try {
         Util.readFully(inputStream, ivBuffer);
         Util.readFully(inputStream, intBuffer);
@@ -135,5 +127,9 @@ class LogFile {
         return null;
       }
     }
+
+    void close() {
+      Util.close(inputStream);
+    }
   }
 }
@@ -2,6 +2,7 @@ package org.thoughtcrime.securesms.logging;
 
 import android.content.Context;
 import android.support.annotation.AnyThread;
+import android.support.annotation.NonNull;
 import android.support.annotation.WorkerThread;
 
 import org.thoughtcrime.securesms.database.NoExternalStorageException;
@@ -85,26 +86,36 @@ public class PersistentLogger extends Log.Logger {
     write(LOG_WTF, tag, message, t);
   }
 
+  /**
+   * Decrypts the logs one entry at a time, oldest first, and hands each entry to the consumer on
+   * the logger's thread. Nothing is logged to disk until the consumer is done.
+   */
   @WorkerThread
-  public ListenableFuture<String> getLogs() {
-    final SettableFuture<String> future = new SettableFuture<>();
+  public ListenableFuture<Void> readLogs(@NonNull EntryConsumer consumer) {
+    final SettableFuture<Void> future = new SettableFuture<>();
 
     executor.execute(() -> {
-      StringBuilder builder = new StringBuilder();
-
       try {
         File[] logs = getSortedLogFiles();
         for (int i = logs.length - 1; i >= 0; i--) {
+          LogFile.Reader reader = null;
+
           try {
-            LogFile.Reader reader = new LogFile.Reader(secret, logs[i]);
-            builder.append(reader.readAll());
+            reader = new LogFile.Reader(secret, logs[i]);
+
+            String entry;
+            while ((entry = reader.readEntry()) != null) {
+              consumer.accept(entry);
+            }
           } catch (IOException e) {
             android.util.Log.w(TAG, "Failed to read log at index " + i + ". Removing reference.");
             logs[i].delete();
+          } finally {
+            if (reader != null) reader.close();
           }
         }
 
-        future.set(builder.toString());
+        future.set(null);
       } catch (NoExternalStorageException e) {
         future.setException(e);
       }
@@ -225,4 +236,8 @@ public class PersistentLogger extends Log.Logger {
   private String buildEntry(String level, String tag, String message, Date date) {
     return DATE_FORMAT.format(date) + ' ' + level + ' ' + tag + ": " + message;
   }
+
+  public interface EntryConsumer {
+    void accept(@NonNull String entry);
+  }
 }
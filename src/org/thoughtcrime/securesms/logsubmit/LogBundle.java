@@ -0,0 +1,273 @@
+package org.thoughtcrime.securesms.logsubmit;
+
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+
+import okio.BufferedSink;
+
+/**
+ * A debug log written line by line to a temporary file, so it never has to be held in memory as
+ * one string. Once written, the file is memory-mapped and lines are decoded only when they're
+ * shown, filtered, or uploaded.
+ *
+ * Lines can be replaced without touching the file by passing the edits alongside it when it's
+ * written out.
+ */
+class LogBundle implements Closeable {
+
+  static final int LEVEL_NONE = 0;
+
+  private static final Charset UTF_8  = Charset.forName("UTF-8");
+  private static final String  LEVELS = "VDIWEAF";
+
+  private final File       file;
+  private final ByteBuffer buffer;
+  private final int[]      offsets;
+  private final byte[]     levels;
+  private final int        lineCount;
+
+  private LogBundle(@NonNull File file, @NonNull ByteBuffer buffer, @NonNull int[] offsets, @NonNull byte[] levels, int lineCount) {
+    this.file      = file;
+    this.buffer    = buffer;
+    this.offsets   = offsets;
+    this.levels    = levels;
+    this.lineCount = lineCount;
+  }
+
+  int getLineCount() {
+    return lineCount;
+  }
+
+  @NonNull String getLine(int line) {
+    ByteBuffer source = buffer.duplicate();
+    byte[]     bytes  = new byte[getLineLength(line)];
+
+    source.position(offsets[line]);
+    source.get(bytes);
+
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * @return The level of the line as one of the {@link Log} priorities, or {@link #LEVEL_NONE} if
+   *         it isn't a log entry.
+   */
+  int getLevel(int line) {
+    return levels[line];
+  }
+
+  /**
+   * Finds the lines logged at <code>minLevel</code> or above, by a tag containing
+   * <code>tag</code>. Lines that aren't log entries, like the headers, only match an empty filter.
+   *
+   * @return The indexes of the matching lines, or null if every line matches.
+   */
+  @WorkerThread
+  @Nullable int[] filter(int minLevel, @Nullable String tag) {
+    boolean byLevel = minLevel > Log.VERBOSE;
+    boolean byTag   = tag != null && tag.trim().length() > 0;
+
+    if (!byLevel && !byTag) return null;
+
+    String query   = byTag ? tag.trim().toLowerCase(Locale.US) : null;
+    int[]  matches = new int[64];
+    int    count   = 0;
+
+    for (int i = 0; i < lineCount; i++) {
+      if (levels[i] == LEVEL_NONE || levels[i] < minLevel) continue;
+
+      if (byTag) {
+        String lineTag = parseTag(getLine(i));
+        if (lineTag == null || !lineTag.toLowerCase(Locale.US).contains(query)) continue;
+      }
+
+      if (count == matches.length) matches = Arrays.copyOf(matches, count * 2);
+      matches[count++] = i;
+    }
+
+    return Arrays.copyOf(matches, count);
+  }
+
+  /**
+   * @return The number of bytes {@link #writeTo(BufferedSink, Map)} will write with these edits.
+   */
+  long getLength(@NonNull Map<Integer, String> edits) {
+    long length = offsets[lineCount];
+
+    for (Map.Entry<Integer, String> edit : edits.entrySet()) {
+      length += edit.getValue().getBytes(UTF_8).length - getLineLength(edit.getKey());
+    }
+
+    return length;
+  }
+
+  /**
+   * Streams every line to the sink, replacing the lines that were edited.
+   */
+  @WorkerThread
+  void writeTo(@NonNull BufferedSink sink, @NonNull Map<Integer, String> edits) throws IOException {
+    ByteBuffer source  = buffer.duplicate();
+    byte[]     scratch = new byte[8192];
+
+    for (int i = 0; i < lineCount; i++) {
+      String edit = edits.get(i);
+
+      if (edit != null) {
+        sink.write(edit.getBytes(UTF_8));
+      } else {
+        source.position(offsets[i]);
+
+        for (int remaining = getLineLength(i); remaining > 0; ) {
+          int read = Math.min(remaining, scratch.length);
+
+          source.get(scratch, 0, read);
+          sink.write(scratch, 0, read);
+
+          remaining -= read;
+        }
+      }
+
+      sink.writeByte('\n');
+    }
+  }
+
+  @Override
+  public void close() {
+    file.delete();
+  }
+
+  private int getLineLength(int line) {
+    return offsets[line + 1] - offsets[line] - 1;
+  }
+
+  /**
+   * Finds the level of a log entry, in either the persistent logger's format or logcat's, by
+   * looking for the single letter field before the tag.
+   */
+  static int parseLevel(@NonNull String line) {
+    int level = findLevel(line);
+    if (level < 0) return LEVEL_NONE;
+
+    switch (line.charAt(level)) {
+      case 'V': return Log.VERBOSE;
+      case 'D': return Log.DEBUG;
+      case 'I': return Log.INFO;
+      case 'W': return Log.WARN;
+      case 'E': return Log.ERROR;
+      default:  return Log.ASSERT;
+    }
+  }
+
+  static @Nullable String parseTag(@NonNull String line) {
+    int level = findLevel(line);
+    if (level < 0) return null;
+
+    return line.substring(level + 2, line.indexOf(": ")).trim();
+  }
+
+  private static int findLevel(@NonNull String line) {
+    int tagEnd = line.indexOf(": ");
+
+    for (int i = 0; i + 1 < tagEnd; i++) {
+      if ((i == 0 || line.charAt(i - 1) == ' ') && line.charAt(i + 1) == ' ' && LEVELS.indexOf(line.charAt(i)) >= 0) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Writes the lines of a bundle to its file, remembering where each one starts.
+   */
+  static class Writer implements Closeable {
+
+    private final File         file;
+    private final OutputStream outputStream;
+
+    private int[]  offsets = new int[1024];
+    private byte[] levels  = new byte[1024];
+    private int     count;
+    private int     length;
+    private boolean finished;
+
+    Writer(@NonNull File file) throws IOException {
+      this.file         = file;
+      this.outputStream = new BufferedOutputStream(new FileOutputStream(file));
+    }
+
+    void writeLine(@NonNull String line) throws IOException {
+      if (count + 1 >= offsets.length) {
+        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        levels  = Arrays.copyOf(levels, levels.length * 2);
+      }
+
+      byte[] bytes = line.getBytes(UTF_8);
+
+      outputStream.write(bytes);
+      outputStream.write('\n');
+
+      offsets[count] = length;
+      levels[count]  = (byte) parseLevel(line);
+
+      count++;
+      length += bytes.length + 1;
+    }
+
+    /**
+     * Writes each line of a block of text, such as a report.
+     */
+    void writeLines(@NonNull String text) throws IOException {
+      for (String line : text.split("\n")) {
+        writeLine(line);
+      }
+    }
+
+    @NonNull LogBundle finish() throws IOException {
+      outputStream.close();
+
+      offsets[count] = length;
+
+      try (FileInputStream inputStream = new FileInputStream(file)) {
+        FileChannel channel = inputStream.getChannel();
+        ByteBuffer  buffer  = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        finished = true;
+        return new LogBundle(file, buffer, offsets, levels, count);
+      }
+    }
+
+    /**
+     * Abandons the bundle if it wasn't finished.
+     */
+    @Override
+    public void close() {
+      if (finished) return;
+
+      try {
+        outputStream.close();
+      } catch (IOException e) {
+        // Deleted below either way
+      }
+
+      file.delete();
+    }
+  }
+}
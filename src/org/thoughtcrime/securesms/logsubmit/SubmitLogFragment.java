@@ -32,39 +32,51 @@ import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.text.ClipboardManager;
-import android.text.TextUtils;
 import android.text.method.LinkMovementMethod;
 import android.text.util.Linkify;
 import android.util.TypedValue;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.thoughtcrime.securesms.ApplicationContext;
+import org.thoughtcrime.securesms.ConversationRecordStore;
 import org.thoughtcrime.securesms.R;
 import org.thoughtcrime.securesms.contactshare.SimpleTextWatcher;
+import org.thoughtcrime.securesms.database.helpers.DatabaseInstrumentation;
+import org.thoughtcrime.securesms.providers.BlobStore;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.logsubmit.util.Scrubber;
+import org.thoughtcrime.securesms.net.HttpClients;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 import org.thoughtcrime.securesms.util.task.ProgressDialogAsyncTask;
+import org.thoughtcrime.securesms.webrtc.CallQualityLog;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.lang.ref.WeakReference;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
@@ -73,6 +85,7 @@ import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.BufferedSink;
 
 /**
  * A helper {@link Fragment} to preview and submit logcat information to a public pastebin.
@@ -89,9 +102,10 @@ public class SubmitLogFragment extends Fragment {
 
   private static final String API_ENDPOINT = "https://debuglogs.org";
 
-  private static final String HEADER_SYSINFO = "========== SYSINFO ========";
-  private static final String HEADER_LOGCAT  = "========== LOGCAT ========";
-  private static final String HEADER_LOGGER  = "========== LOGGER ========";
+  private static final String HEADER_SYSINFO  = "========== SYSINFO ========";
+  private static final String HEADER_DATABASE = "========== DATABASE ========";
+  private static final String HEADER_LOGCAT   = "========== LOGCAT ========";
+  private static final String HEADER_LOGGER   = "========== LOGGER ========";
 
   private Button   okButton;
   private Button   cancelButton;
@@ -104,8 +118,13 @@ public class SubmitLogFragment extends Fragment {
 
   private RecyclerView           logPreview;
   private LogPreviewAdapter      logPreviewAdapter;
+  private EditText               filterTag;
+  private Spinner                filterLevel;
   private OnLogSubmittedListener mListener;
 
+  private @Nullable LogBundle logBundle;
+  private           int       filterGeneration;
+
   /**
    * Use this factory method to create a new instance of
    * this fragment using the provided parameters.
@@ -172,19 +191,50 @@ public class SubmitLogFragment extends Fragment {
     mListener = null;
   }
 
+  @Override
+  public void onDestroy() {
+    super.onDestroy();
+
+    if (logBundle != null) {
+      logBundle.close();
+      logBundle = null;
+    }
+  }
+
   private void initializeResources() {
     okButton     = getView().findViewById(R.id.ok);
     cancelButton = getView().findViewById(R.id.cancel);
     logPreview   = getView().findViewById(R.id.log_preview);
     scrollButton = getView().findViewById(R.id.scroll_to_bottom_button);
+    filterTag    = getView().findViewById(R.id.log_filter_tag);
+    filterLevel  = getView().findViewById(R.id.log_filter_level);
 
     okButton.setOnClickListener(new View.OnClickListener() {
       @Override
       public void onClick(View view) {
-        new SubmitToPastebinAsyncTask(logPreviewAdapter.getText()).execute();
+        if (logBundle != null) {
+          new SubmitToPastebinAsyncTask(logBundle, logPreviewAdapter.getEdits()).execute();
+        }
+      }
+    });
+
+    filterTag.addTextChangedListener(new SimpleTextWatcher() {
+      @Override
+      public void onTextChanged(String text) {
+        applyFilter();
       }
     });
 
+    filterLevel.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+      @Override
+      public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+        applyFilter();
+      }
+
+      @Override
+      public void onNothingSelected(AdapterView<?> parent) {}
+    });
+
     cancelButton.setOnClickListener(new View.OnClickListener() {
       @Override
       public void onClick(View view) {
@@ -213,25 +263,77 @@ public class SubmitLogFragment extends Fragment {
     new PopulateLogcatAsyncTask(getActivity()).execute();
   }
 
-  private static String grabLogcat() {
+  /**
+   * Shows only the lines at the selected level or above, from tags matching the filter. The
+   * lines are matched in the background, straight from the bundle.
+   */
+  private void applyFilter() {
+    final LogBundle bundle     = logBundle;
+    final int       minLevel   = android.util.Log.VERBOSE + filterLevel.getSelectedItemPosition();
+    final String    tag        = filterTag.getText().toString();
+    final int       generation = ++filterGeneration;
+
+    if (bundle == null) return;
+
+    PriorityExecutors.USER_INITIATED.execute(() -> {
+      int[] lines = bundle.filter(minLevel, tag);
+
+      Util.runOnMain(() -> {
+        if (generation == filterGeneration && bundle == logBundle) {
+          logPreviewAdapter.setLines(lines);
+        }
+      });
+    });
+  }
+
+  private static void writeLogcat(@NonNull LogBundle.Writer writer, @NonNull Scrubber scrubber) throws IOException {
+    final Process process;
+
     try {
-      final Process         process        = Runtime.getRuntime().exec("logcat -d");
-      final BufferedReader  bufferedReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-      final StringBuilder   log            = new StringBuilder();
-      final String          separator      = System.getProperty("line.separator");
+      process = Runtime.getRuntime().exec("logcat -d");
+    } catch (IOException ioe) {
+      Log.w(TAG, "IOException when trying to read logcat.", ioe);
+      return;
+    }
 
+    try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
       String line;
       while ((line = bufferedReader.readLine()) != null) {
-        log.append(line);
-        log.append(separator);
+        writer.writeLine(scrubber.scrub(line));
       }
-      return log.toString();
-    } catch (IOException ioe) {
-      Log.w(TAG, "IOException when trying to read logcat.", ioe);
-      return null;
+    } finally {
+      process.destroy();
     }
   }
 
+  private static void writeLogger(@NonNull Context context, @NonNull LogBundle.Writer writer, @NonNull Scrubber scrubber) throws IOException {
+    final AtomicReference<IOException> failure = new AtomicReference<>();
+
+    try {
+      ApplicationContext.getInstance(context).getPersistentLogger().readLogs(entry -> {
+        if (failure.get() != null) return;
+
+        try {
+          writer.writeLine(scrubber.scrub(entry));
+        } catch (IOException e) {
+          failure.set(e);
+        }
+      }).get();
+    } catch (InterruptedException | ExecutionException e) {
+      Log.w(TAG, "Failed to retrieve new logs.", e);
+      writer.writeLine("Failed to retrieve logs.");
+    }
+
+    if (failure.get() != null) throw failure.get();
+  }
+
+  private static void writeSection(@NonNull LogBundle.Writer writer, @NonNull String header) throws IOException {
+    writer.writeLine("");
+    writer.writeLine("");
+    writer.writeLine(header);
+    writer.writeLine("");
+  }
+
   private Intent getIntentForSupportEmail(String logUrl) {
     Intent emailSendIntent = new Intent(Intent.ACTION_SEND);
 
@@ -332,7 +434,7 @@ public class SubmitLogFragment extends Fragment {
     hackSavedLogUrl = logUrl;
   }
 
-  private class PopulateLogcatAsyncTask extends AsyncTask<Void,Void,String> {
+  private class PopulateLogcatAsyncTask extends AsyncTask<Void,Void,LogBundle> {
     private WeakReference<Context> weakContext;
 
     public PopulateLogcatAsyncTask(Context context) {
@@ -340,73 +442,84 @@ public class SubmitLogFragment extends Fragment {
     }
 
     @Override
-    protected String doInBackground(Void... voids) {
+    protected LogBundle doInBackground(Void... voids) {
       Context context = weakContext.get();
       if (context == null) return null;
 
-      Scrubber scrubber = new Scrubber();
+      Scrubber         scrubber = new Scrubber();
+      LogBundle.Writer writer   = null;
 
-      String newLogs;
       try {
-        long t1 = System.currentTimeMillis();
-        String logs = ApplicationContext.getInstance(context).getPersistentLogger().getLogs().get();
-        Log.i(TAG, "Fetch our logs : " + (System.currentTimeMillis() - t1) + " ms");
+        writer = new LogBundle.Writer(File.createTempFile("debuglog", ".txt", context.getCacheDir()));
 
-        long t2 = System.currentTimeMillis();
-        newLogs = scrubber.scrub(logs);
-        Log.i(TAG, "Scrub our logs: " + (System.currentTimeMillis() - t2) + " ms");
-      } catch (InterruptedException | ExecutionException e) {
-        Log.w(TAG, "Failed to retrieve new logs.", e);
-        newLogs = "Failed to retrieve logs.";
-      }
+        writer.writeLine(HEADER_SYSINFO);
+        writer.writeLine("");
+        writer.writeLines(buildDescription(context));
 
-      long t3 = System.currentTimeMillis();
-      String logcat = grabLogcat();
-      Log.i(TAG, "Fetch logcat: " + (System.currentTimeMillis() - t3) + " ms");
+        writeSection(writer, HEADER_DATABASE);
+        writer.writeLines(scrubber.scrub(DatabaseInstrumentation.getReport()));
 
-      long t4 = System.currentTimeMillis();
-      String scrubbedLogcat = scrubber.scrub(logcat);
-      Log.i(TAG, "Scrub logcat: " + (System.currentTimeMillis() - t4) + " ms");
+        long t1 = System.currentTimeMillis();
+        writeSection(writer, HEADER_LOGCAT);
+        writeLogcat(writer, scrubber);
+        Log.i(TAG, "Fetch logcat: " + (System.currentTimeMillis() - t1) + " ms");
 
-      return HEADER_SYSINFO + "\n\n" +
-             buildDescription(context) + "\n\n\n" +
-             HEADER_LOGCAT + "\n\n" +
-             scrubbedLogcat + "\n\n\n" +
-             HEADER_LOGGER + "\n\n" +
-             newLogs;
+        long t2 = System.currentTimeMillis();
+        writeSection(writer, HEADER_LOGGER);
+        writeLogger(context, writer, scrubber);
+        Log.i(TAG, "Fetch our logs: " + (System.currentTimeMillis() - t2) + " ms");
+
+        return writer.finish();
+      } catch (IOException e) {
+        Log.w(TAG, "Failed to write the debug log.", e);
+        return null;
+      } finally {
+        if (writer != null) writer.close();
+      }
     }
 
     @Override
     protected void onPreExecute() {
       super.onPreExecute();
-      logPreviewAdapter.setText(getString(R.string.log_submit_activity__loading_logs));
+      logPreviewAdapter.setMessage(getString(R.string.log_submit_activity__loading_logs));
       okButton.setEnabled(false);
     }
 
     @Override
-    protected void onPostExecute(String logcat) {
-      super.onPostExecute(logcat);
-      if (TextUtils.isEmpty(logcat)) {
+    protected void onPostExecute(LogBundle bundle) {
+      super.onPostExecute(bundle);
+      if (bundle == null) {
         if (mListener != null) mListener.onFailure();
         return;
       }
-      logPreviewAdapter.setText(logcat);
+
+      if (getView() == null) {
+        bundle.close();
+        return;
+      }
+
+      logBundle = bundle;
+      logPreviewAdapter.setBundle(bundle);
+      applyFilter();
       okButton.setEnabled(true);
     }
   }
 
   private class SubmitToPastebinAsyncTask extends ProgressDialogAsyncTask<Void,Void,String> {
-    private final String         paste;
+    private final LogBundle            bundle;
+    private final Map<Integer, String> edits;
+    private final OkHttpClient         client;
 
-    public SubmitToPastebinAsyncTask(String paste) {
+    public SubmitToPastebinAsyncTask(@NonNull LogBundle bundle, @NonNull Map<Integer, String> edits) {
       super(getActivity(), R.string.log_submit_activity__submitting, R.string.log_submit_activity__uploading_logs);
-      this.paste = paste;
+      this.bundle = bundle;
+      this.edits  = new HashMap<>(edits);
+      this.client = HttpClients.get(getActivity(), HttpClients.UseCase.LOG_SUBMIT);
     }
 
     @Override
     protected String doInBackground(Void... voids) {
       try {
-        OkHttpClient client   = new OkHttpClient.Builder().build();
         Response     response = client.newCall(new Request.Builder().url(API_ENDPOINT).get().build()).execute();
         ResponseBody body     = response.body();
 
@@ -428,7 +541,7 @@ public class SubmitLogFragment extends Fragment {
           post.addFormDataPart(key, fields.getString(key));
         }
 
-        post.addFormDataPart("file", "file", RequestBody.create(MediaType.parse("text/plain"), paste));
+        post.addFormDataPart("file", "file", new LogBundleRequestBody(bundle, edits));
 
         Response postResponse = client.newCall(new Request.Builder().url(url).post(post.build()).build()).execute();
 
@@ -470,6 +583,14 @@ public class SubmitLogFragment extends Fragment {
   }
 
   @TargetApi(VERSION_CODES.KITKAT)
+  private static String getBlobUsage(Context context) {
+    BlobStore blobStore = BlobStore.getInstance(context);
+    return String.format(Locale.ENGLISH, "%d entries, %dM in memory, %dM on disk",
+                         blobStore.getEntryCount(),
+                         asMegs(blobStore.getMemoryBytes()),
+                         asMegs(blobStore.getDiskBytes()));
+  }
+
   public static String getMemoryClass(Context context) {
     ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
     String          lowMem          = "";
@@ -494,6 +615,10 @@ public class SubmitLogFragment extends Fragment {
                                .append(Build.DISPLAY).append(")\n");
     builder.append("Memory  : ").append(getMemoryUsage(context)).append("\n");
     builder.append("Memclass: ").append(getMemoryClass(context)).append("\n");
+    builder.append("Blobs   : ").append(getBlobUsage(context)).append("\n");
+    builder.append("Pools   :\n").append(PriorityExecutors.getReport()).append("\n");
+    builder.append("Calls   :\n").append(CallQualityLog.getReport()).append("\n");
+    builder.append("Records : ").append(ConversationRecordStore.getReport()).append("\n");
     builder.append("OS Host : ").append(Build.HOST).append("\n");
     builder.append("App     : ");
     try {
@@ -524,9 +649,42 @@ public class SubmitLogFragment extends Fragment {
     public void onCancel();
   }
 
+  /**
+   * Streams the bundle straight from its file into the upload.
+   */
+  private static final class LogBundleRequestBody extends RequestBody {
+
+    private final LogBundle            bundle;
+    private final Map<Integer, String> edits;
+
+    private LogBundleRequestBody(@NonNull LogBundle bundle, @NonNull Map<Integer, String> edits) {
+      this.bundle = bundle;
+      this.edits  = edits;
+    }
+
+    @Override
+    public MediaType contentType() {
+      return MediaType.parse("text/plain");
+    }
+
+    @Override
+    public long contentLength() {
+      return bundle.getLength(edits);
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+      bundle.writeTo(sink, edits);
+    }
+  }
+
   private static final class LogPreviewAdapter extends RecyclerView.Adapter<LogPreviewViewHolder> {
 
-    private String[] lines = new String[0];
+    private final Map<Integer, String> edits = new HashMap<>();
+
+    private @Nullable LogBundle bundle;
+    private @Nullable int[]     lines;
+    private @Nullable String    message;
 
     @Override
     public LogPreviewViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
@@ -535,7 +693,15 @@ public class SubmitLogFragment extends Fragment {
 
     @Override
     public void onBindViewHolder(LogPreviewViewHolder holder, int position) {
-      holder.bind(lines, position);
+      if (bundle == null) {
+        holder.bind(null, position, message);
+        return;
+      }
+
+      int    line = lines != null ? lines[position] : position;
+      String edit = edits.get(line);
+
+      holder.bind(edits, line, edit != null ? edit : bundle.getLine(line));
     }
 
     @Override
@@ -545,35 +711,56 @@ public class SubmitLogFragment extends Fragment {
 
     @Override
     public int getItemCount() {
-      return lines.length;
+      if      (bundle == null) return message != null ? 1 : 0;
+      else if (lines != null)  return lines.length;
+      else                     return bundle.getLineCount();
     }
 
-    void setText(@NonNull String text) {
-      lines = text.split("\n");
+    void setMessage(@NonNull String message) {
+      this.bundle  = null;
+      this.lines   = null;
+      this.message = message;
       notifyDataSetChanged();
     }
 
-    String getText() {
-      return Util.join(lines, "\n");
+    void setBundle(@NonNull LogBundle bundle) {
+      this.bundle = bundle;
+      this.lines  = null;
+      edits.clear();
+      notifyDataSetChanged();
+    }
+
+    /**
+     * @param lines The lines of the bundle to show, or null to show all of them.
+     */
+    void setLines(@Nullable int[] lines) {
+      this.lines = lines;
+      notifyDataSetChanged();
+    }
+
+    @NonNull Map<Integer, String> getEdits() {
+      return edits;
     }
   }
 
   private static final class LogPreviewViewHolder extends RecyclerView.ViewHolder {
 
-    private EditText text;
-    private String[] lines;
-    private int      index;
+    private EditText             text;
+    private Map<Integer, String> edits;
+    private int                  line;
 
     LogPreviewViewHolder(View itemView) {
       super(itemView);
       text = (EditText) itemView;
     }
 
-    void bind(String[] lines, int index) {
-      this.lines = lines;
-      this.index = index;
+    void bind(@Nullable Map<Integer, String> edits, int line, String value) {
+      unbind();
+
+      this.edits = edits;
+      this.line  = line;
 
-      text.setText(lines[index]);
+      text.setText(value);
       text.addTextChangedListener(textWatcher);
     }
 
@@ -584,8 +771,8 @@ public class SubmitLogFragment extends Fragment {
     private final SimpleTextWatcher textWatcher = new SimpleTextWatcher() {
       @Override
       public void onTextChanged(String text) {
-        if (lines != null) {
-          lines[index] = text;
+        if (edits != null) {
+          edits.put(line, text);
         }
       }
     };
@@ -42,15 +42,20 @@ public class Scrubber {
     this(DEFAULTS);
   }
 
+  /**
+   * Called once per line of the debug log, so it does nothing but match unless something needs to
+   * be scrubbed.
+   */
   public String scrub(final String in) {
-    android.util.Log.d(TAG, "scrubbing input");
     String out = in;
     for (Pattern pattern : patterns) {
       Matcher       matcher       = pattern.matcher(out);
       StringBuilder builder       = new StringBuilder();
       int           lastEndingPos = 0;
 
-      while (matcher.find()) {
+      if (!matcher.find()) continue;
+
+      do {
         builder.append(out.substring(lastEndingPos, matcher.start()));
 
         final String censored = matcher.group().substring(0,1)                                      +
@@ -60,7 +65,8 @@ public class Scrubber {
 
         lastEndingPos = matcher.end();
         android.util.Log.i(TAG, "replacing a match on /" + pattern.toString() + "/ => " + censored);
-      }
+      } while (matcher.find());
+
       builder.append(out.substring(lastEndingPos));
       out = builder.toString();
     }
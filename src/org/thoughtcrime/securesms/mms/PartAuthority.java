@@ -9,6 +9,7 @@ import android.support.annotation.Nullable;
 
 import org.thoughtcrime.securesms.attachments.Attachment;
 import org.thoughtcrime.securesms.attachments.AttachmentId;
+import org.thoughtcrime.securesms.crypto.ModernDecryptingPartChannel;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.providers.PersistentBlobProvider;
 import org.thoughtcrime.securesms.providers.PartProvider;
@@ -49,7 +50,7 @@ public class PartAuthority {
       case PART_ROW:       return DatabaseFactory.getAttachmentDatabase(context).getAttachmentStream(new PartUriParser(uri).getPartId(), 0);
       case THUMB_ROW:      return DatabaseFactory.getAttachmentDatabase(context).getThumbnailStream(new PartUriParser(uri).getPartId());
       case PERSISTENT_ROW: return PersistentBlobProvider.getInstance(context).getStream(context, ContentUris.parseId(uri));
-      case SINGLE_USE_ROW: return MemoryBlobProvider.getInstance().getStream(ContentUris.parseId(uri));
+      case SINGLE_USE_ROW: return MemoryBlobProvider.getInstance(context).getStream(ContentUris.parseId(uri));
       default:             return context.getContentResolver().openInputStream(uri);
       }
     } catch (SecurityException se) {
@@ -57,6 +58,21 @@ public class PartAuthority {
     }
   }
 
+  /**
+   * @return A seekable channel over the attachment, or null if the uri doesn't refer to an
+   *         attachment that can be read that way and {@link #getAttachmentStream(Context, Uri)}
+   *         should be used instead.
+   */
+  public static @Nullable ModernDecryptingPartChannel getAttachmentChannel(@NonNull Context context, @NonNull Uri uri)
+      throws IOException
+  {
+    if (uriMatcher.match(uri) == PART_ROW) {
+      return DatabaseFactory.getAttachmentDatabase(context).getAttachmentChannel(new PartUriParser(uri).getPartId());
+    }
+
+    return null;
+  }
+
   public static @Nullable String getAttachmentFileName(@NonNull Context context, @NonNull Uri uri) {
     int match = uriMatcher.match(uri);
 
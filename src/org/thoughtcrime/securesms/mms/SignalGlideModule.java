@@ -68,8 +68,8 @@ public class SignalGlideModule extends AppGlideModule {
     registry.append(ContactPhoto.class, InputStream.class, new ContactPhotoLoader.Factory(context));
     registry.append(DecryptableUri.class, InputStream.class, new DecryptableStreamUriLoader.Factory(context));
     registry.append(AttachmentModel.class, InputStream.class, new AttachmentStreamUriLoader.Factory());
-    registry.append(GiphyPaddedUrl.class, InputStream.class, new GiphyPaddedUrlLoader.Factory());
-    registry.replace(GlideUrl.class, InputStream.class, new OkHttpUrlLoader.Factory());
+    registry.append(GiphyPaddedUrl.class, InputStream.class, new GiphyPaddedUrlLoader.Factory(context));
+    registry.replace(GlideUrl.class, InputStream.class, new OkHttpUrlLoader.Factory(context));
   }
 
   public static class NoopDiskCacheFactory implements DiskCache.Factory {
@@ -0,0 +1,221 @@
+package org.thoughtcrime.securesms.net;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import okhttp3.CacheControl;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * An application interceptor that answers GET requests from a {@link HttpResponseCache}.
+ *
+ * Fresh entries are served without touching the network, stale ones are revalidated with
+ * If-None-Match or If-Modified-Since, and Cache-Control, Expires and Vary are honored when deciding
+ * what to store. Identical requests made while one is already in flight wait for it and share its
+ * response instead of going to the network themselves.
+ */
+public class CachingInterceptor implements Interceptor {
+
+  static final int MAX_ENTRY_BYTES = 512 * 1024;
+
+  private final HttpResponseCache     cache;
+  private final long                  heuristicMaxAge;
+  private final Map<String, InFlight> inFlight = new HashMap<>();
+
+  /**
+   * @param heuristicMaxAge How long, in milliseconds, to consider a response fresh when it says
+   *                        nothing about its own freshness.
+   */
+  public CachingInterceptor(@NonNull HttpResponseCache cache, long heuristicMaxAge) {
+    this.cache           = cache;
+    this.heuristicMaxAge = heuristicMaxAge;
+  }
+
+  @Override
+  public Response intercept(@NonNull Chain chain) throws IOException {
+    Request request = chain.request();
+
+    if (!isCacheable(request)) {
+      return chain.proceed(request);
+    }
+
+    String                  url    = request.url().toString();
+    HttpResponseCache.Entry cached = cache.get(url);
+    long                    now    = System.currentTimeMillis();
+
+    if (cached != null && cached.isFresh(now) && !request.cacheControl().noCache()) {
+      return cached.toResponse(request);
+    }
+
+    if (request.cacheControl().onlyIfCached()) {
+      return new Response.Builder().request(request)
+                                   .protocol(Protocol.HTTP_1_1)
+                                   .code(504)
+                                   .message("Unsatisfiable Request (only-if-cached)")
+                                   .body(ResponseBody.create(null, new byte[0]))
+                                   .sentRequestAtMillis(-1)
+                                   .receivedResponseAtMillis(now)
+                                   .build();
+    }
+
+    InFlight call;
+    boolean  leader;
+
+    synchronized (inFlight) {
+      call   = inFlight.get(url);
+      leader = call == null;
+
+      if (leader) {
+        call = new InFlight();
+        inFlight.put(url, call);
+      }
+    }
+
+    if (!leader) {
+      HttpResponseCache.Entry shared = call.await();
+
+      if (shared != null) return shared.toResponse(request);
+      else                return chain.proceed(request);
+    }
+
+    HttpResponseCache.Entry shared = null;
+
+    try {
+      Response response = chain.proceed(withValidators(request, cached));
+      now = System.currentTimeMillis();
+
+      if (response.code() == 304 && cached != null) {
+        response.close();
+
+        shared = cached.revalidated(response.headers(), now, getExpiresAt(response, now));
+        cache.put(shared);
+
+        return shared.toResponse(request);
+      }
+
+      ResponseBody body = response.body();
+
+      if (body == null || body.source().request(MAX_ENTRY_BYTES + 1)) {
+        if (cached != null) cache.remove(url);
+        return response;
+      }
+
+      shared = new HttpResponseCache.Entry(url, response.code(), response.message(), response.headers(), body.bytes(), now, getExpiresAt(response, now));
+
+      if (isStorable(request, response, shared)) cache.put(shared);
+      else if (cached != null)                    cache.remove(url);
+
+      return shared.toResponse(request);
+    } finally {
+      synchronized (inFlight) {
+        inFlight.remove(url);
+      }
+
+      call.complete(shared);
+    }
+  }
+
+  private static boolean isCacheable(@NonNull Request request) {
+    return request.method().equals("GET")              &&
+           request.header("Range") == null             &&
+           request.header("Authorization") == null     &&
+           request.header("If-None-Match") == null     &&
+           request.header("If-Modified-Since") == null &&
+           !request.cacheControl().noStore();
+  }
+
+  private static boolean isStorable(@NonNull Request request, @NonNull Response response, @NonNull HttpResponseCache.Entry entry) {
+    if (response.code() != 200)                return false;
+    if (response.cacheControl().noStore())     return false;
+    if (request.cacheControl().noStore())      return false;
+    if (!isVaryCompatible(response.headers())) return false;
+
+    return entry.isFresh(entry.getReceivedAt()) || entry.hasValidators();
+  }
+
+  /**
+   * Encoding is negotiated below us and the body we see is already decoded, so a response that
+   * only varies on Accept-Encoding is the same for every request we'd make.
+   */
+  private static boolean isVaryCompatible(@NonNull Headers headers) {
+    for (String vary : headers.values("Vary")) {
+      for (String field : vary.split(",")) {
+        if (!field.trim().equalsIgnoreCase("Accept-Encoding")) return false;
+      }
+    }
+
+    return true;
+  }
+
+  private long getExpiresAt(@NonNull Response response, long now) {
+    CacheControl cacheControl = response.cacheControl();
+
+    if (cacheControl.noCache()) {
+      return now;
+    }
+
+    if (cacheControl.maxAgeSeconds() >= 0) {
+      return now + cacheControl.maxAgeSeconds() * 1000L;
+    }
+
+    Date expires = response.headers().getDate("Expires");
+
+    if (expires != null) {
+      Date served = response.headers().getDate("Date");
+      long base   = served != null ? served.getTime() : now;
+
+      return now + Math.max(0, expires.getTime() - base);
+    }
+
+    return now + heuristicMaxAge;
+  }
+
+  private static @NonNull Request withValidators(@NonNull Request request, @Nullable HttpResponseCache.Entry cached) {
+    if (cached == null || !cached.hasValidators()) {
+      return request;
+    }
+
+    Request.Builder builder      = request.newBuilder();
+    String          etag         = cached.getHeaders().get("ETag");
+    String          lastModified = cached.getHeaders().get("Last-Modified");
+
+    if (etag != null)         builder.header("If-None-Match", etag);
+    if (lastModified != null) builder.header("If-Modified-Since", lastModified);
+
+    return builder.build();
+  }
+
+  private static class InFlight {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    private volatile HttpResponseCache.Entry entry;
+
+    private void complete(@Nullable HttpResponseCache.Entry entry) {
+      this.entry = entry;
+      latch.countDown();
+    }
+
+    private @Nullable HttpResponseCache.Entry await() throws IOException {
+      try {
+        latch.await();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+
+      return entry;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package org.thoughtcrime.securesms.net;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import org.thoughtcrime.securesms.crypto.AttachmentSecret;
+import org.thoughtcrime.securesms.crypto.AttachmentSecretProvider;
+import org.thoughtcrime.securesms.crypto.ModernDecryptingPartInputStream;
+import org.thoughtcrime.securesms.crypto.ModernEncryptingPartOutputStream;
+import org.thoughtcrime.securesms.giph.net.GiphyProxySelector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * The app's HTTP clients for talking to anything other than the Signal service.
+ *
+ * Every client is derived from a single base client, so they all share one connection pool,
+ * dispatcher and set of TLS sessions. What differs between them is set per {@link UseCase}.
+ */
+public class HttpClients {
+
+  private static final String CACHE_DIRECTORY = "http";
+  private static final long   MAX_CACHE_BYTES = 10 * 1024 * 1024;
+
+  public enum UseCase {
+    /** Giphy's trending and search pages. */
+    GIPHY_API(true, 30, true, TimeUnit.MINUTES.toMillis(5)),
+
+    /** Media loaded by Glide, which keeps its own cache. */
+    MEDIA(true, 30, false, 0),
+
+    /** The update descriptor for builds distributed outside the Play Store. */
+    UPDATES(false, 30, true, 0),
+
+    /** Debug log uploads, which can be large. */
+    LOG_SUBMIT(false, 120, false, 0);
+
+    private final boolean giphyProxy;
+    private final long    readTimeoutSeconds;
+    private final boolean cached;
+    private final long    heuristicMaxAge;
+
+    UseCase(boolean giphyProxy, long readTimeoutSeconds, boolean cached, long heuristicMaxAge) {
+      this.giphyProxy         = giphyProxy;
+      this.readTimeoutSeconds = readTimeoutSeconds;
+      this.cached             = cached;
+      this.heuristicMaxAge    = heuristicMaxAge;
+    }
+  }
+
+  private static final Map<UseCase, OkHttpClient> clients = new EnumMap<>(UseCase.class);
+
+  private static OkHttpClient       base;
+  private static GiphyProxySelector giphyProxySelector;
+  private static HttpResponseCache  cache;
+
+  public static synchronized @NonNull OkHttpClient get(@NonNull Context context, @NonNull UseCase useCase) {
+    OkHttpClient client = clients.get(useCase);
+
+    if (client == null) {
+      client = build(context.getApplicationContext(), useCase);
+      clients.put(useCase, client);
+    }
+
+    return client;
+  }
+
+  private static @NonNull OkHttpClient build(@NonNull Context context, @NonNull UseCase useCase) {
+    if (base == null) {
+      base = new OkHttpClient.Builder().connectTimeout(15, TimeUnit.SECONDS)
+                                       .writeTimeout(30, TimeUnit.SECONDS)
+                                       .build();
+    }
+
+    OkHttpClient.Builder builder = base.newBuilder().readTimeout(useCase.readTimeoutSeconds, TimeUnit.SECONDS);
+
+    if (useCase.giphyProxy) {
+      if (giphyProxySelector == null) giphyProxySelector = new GiphyProxySelector();
+      builder.proxySelector(giphyProxySelector);
+    }
+
+    if (useCase.cached) {
+      builder.addInterceptor(new CachingInterceptor(getCache(context), useCase.heuristicMaxAge));
+    }
+
+    return builder.build();
+  }
+
+  private static @NonNull HttpResponseCache getCache(@NonNull Context context) {
+    if (cache == null) {
+      AttachmentSecret attachmentSecret = AttachmentSecretProvider.getInstance(context).getOrCreateAttachmentSecret();
+      File             directory        = new File(context.getCacheDir(), CACHE_DIRECTORY);
+
+      cache = new HttpResponseCache(directory, MAX_CACHE_BYTES, new EncryptedStorage(attachmentSecret));
+    }
+
+    return cache;
+  }
+
+  private static class EncryptedStorage implements HttpResponseCache.Storage {
+
+    private final AttachmentSecret attachmentSecret;
+
+    private EncryptedStorage(@NonNull AttachmentSecret attachmentSecret) {
+      this.attachmentSecret = attachmentSecret;
+    }
+
+    @Override
+    public @NonNull OutputStream openOutput(@NonNull File file) throws IOException {
+      return ModernEncryptingPartOutputStream.createFor(attachmentSecret, file, true).second;
+    }
+
+    @Override
+    public @NonNull InputStream openInput(@NonNull File file) throws IOException {
+      return ModernDecryptingPartInputStream.createFor(attachmentSecret, file, 0);
+    }
+  }
+}
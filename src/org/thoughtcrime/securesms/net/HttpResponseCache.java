@@ -0,0 +1,244 @@
+package org.thoughtcrime.securesms.net;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.thoughtcrime.securesms.logging.Log;
+import org.thoughtcrime.securesms.util.Hex;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * A size-bounded disk store of HTTP responses, one file per URL. How the files are written and
+ * read is up to the {@link Storage}, which in the app encrypts them.
+ */
+public class HttpResponseCache {
+
+  private static final String TAG = HttpResponseCache.class.getSimpleName();
+
+  private static final int VERSION = 1;
+
+  private final File    directory;
+  private final long    maxSize;
+  private final Storage storage;
+
+  public HttpResponseCache(@NonNull File directory, long maxSize, @NonNull Storage storage) {
+    this.directory = directory;
+    this.maxSize   = maxSize;
+    this.storage   = storage;
+  }
+
+  public synchronized @Nullable Entry get(@NonNull String url) {
+    File file = getFile(url);
+
+    if (!file.exists()) return null;
+
+    try (DataInputStream in = new DataInputStream(storage.openInput(file))) {
+      if (in.readInt() != VERSION || !url.equals(in.readUTF())) {
+        return null;
+      }
+
+      long            receivedAt  = in.readLong();
+      long            expiresAt   = in.readLong();
+      int             code        = in.readInt();
+      String          message     = in.readUTF();
+      int             headerCount = in.readInt();
+      Headers.Builder headers     = new Headers.Builder();
+
+      for (int i = 0; i < headerCount; i++) {
+        headers.add(in.readUTF(), in.readUTF());
+      }
+
+      byte[] body = new byte[in.readInt()];
+      in.readFully(body);
+
+      file.setLastModified(System.currentTimeMillis());
+
+      return new Entry(url, code, message, headers.build(), body, receivedAt, expiresAt);
+    } catch (IOException e) {
+      Log.w(TAG, e);
+      file.delete();
+      return null;
+    }
+  }
+
+  public synchronized void put(@NonNull Entry entry) {
+    File file = getFile(entry.url);
+    File temp = new File(directory, file.getName() + ".tmp");
+
+    if (!directory.exists() && !directory.mkdirs()) {
+      Log.w(TAG, "Unable to create " + directory);
+      return;
+    }
+
+    try (DataOutputStream out = new DataOutputStream(storage.openOutput(temp))) {
+      out.writeInt(VERSION);
+      out.writeUTF(entry.url);
+      out.writeLong(entry.receivedAt);
+      out.writeLong(entry.expiresAt);
+      out.writeInt(entry.code);
+      out.writeUTF(entry.message);
+      out.writeInt(entry.headers.size());
+
+      for (int i = 0; i < entry.headers.size(); i++) {
+        out.writeUTF(entry.headers.name(i));
+        out.writeUTF(entry.headers.value(i));
+      }
+
+      out.writeInt(entry.body.length);
+      out.write(entry.body);
+    } catch (IOException e) {
+      Log.w(TAG, e);
+      temp.delete();
+      return;
+    }
+
+    if (!temp.renameTo(file)) {
+      temp.delete();
+      return;
+    }
+
+    trimToSize();
+  }
+
+  public synchronized void remove(@NonNull String url) {
+    getFile(url).delete();
+  }
+
+  private void trimToSize() {
+    File[] files = directory.listFiles();
+
+    if (files == null) return;
+
+    long size = 0;
+
+    for (File file : files) {
+      size += file.length();
+    }
+
+    if (size <= maxSize) return;
+
+    Arrays.sort(files, (lhs, rhs) -> Long.compare(lhs.lastModified(), rhs.lastModified()));
+
+    for (File file : files) {
+      if (size <= maxSize) break;
+
+      long length = file.length();
+
+      if (file.delete()) {
+        size -= length;
+      }
+    }
+  }
+
+  private @NonNull File getFile(@NonNull String url) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes());
+      return new File(directory, Hex.toStringCondensed(digest));
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  public interface Storage {
+    @NonNull OutputStream openOutput(@NonNull File file) throws IOException;
+    @NonNull InputStream openInput(@NonNull File file) throws IOException;
+  }
+
+  /**
+   * A buffered response. It's fresh until {@link #getExpiresAt()}, and can be revalidated after
+   * that if it carries an ETag or Last-Modified.
+   */
+  public static class Entry {
+
+    private final String  url;
+    private final int     code;
+    private final String  message;
+    private final Headers headers;
+    private final byte[]  body;
+    private final long    receivedAt;
+    private final long    expiresAt;
+
+    Entry(@NonNull String url, int code, @NonNull String message, @NonNull Headers headers, @NonNull byte[] body, long receivedAt, long expiresAt) {
+      this.url        = url;
+      this.code       = code;
+      this.message    = message;
+      this.headers    = headers;
+      this.body       = body;
+      this.receivedAt = receivedAt;
+      this.expiresAt  = expiresAt;
+    }
+
+    public @NonNull String getUrl() {
+      return url;
+    }
+
+    public int getCode() {
+      return code;
+    }
+
+    public @NonNull Headers getHeaders() {
+      return headers;
+    }
+
+    public long getReceivedAt() {
+      return receivedAt;
+    }
+
+    public long getExpiresAt() {
+      return expiresAt;
+    }
+
+    public boolean isFresh(long now) {
+      return now < expiresAt;
+    }
+
+    public boolean hasValidators() {
+      return headers.get("ETag") != null || headers.get("Last-Modified") != null;
+    }
+
+    /**
+     * @return A copy of this entry with the headers of a 304 merged in and a new expiry.
+     */
+    @NonNull Entry revalidated(@NonNull Headers notModified, long now, long expiresAt) {
+      Headers.Builder merged = headers.newBuilder();
+
+      for (String name : notModified.names()) {
+        if (name.equalsIgnoreCase("Content-Length")) continue;
+        merged.set(name, notModified.get(name));
+      }
+
+      return new Entry(url, code, message, merged.build(), body, now, expiresAt);
+    }
+
+    @NonNull Response toResponse(@NonNull Request request) {
+      String    contentType = headers.get("Content-Type");
+      MediaType mediaType   = contentType != null ? MediaType.parse(contentType) : null;
+
+      return new Response.Builder().request(request)
+                                   .protocol(Protocol.HTTP_1_1)
+                                   .code(code)
+                                   .message(message)
+                                   .headers(headers)
+                                   .body(ResponseBody.create(mediaType, body))
+                                   .sentRequestAtMillis(receivedAt)
+                                   .receivedResponseAtMillis(receivedAt)
+                                   .build();
+    }
+  }
+}
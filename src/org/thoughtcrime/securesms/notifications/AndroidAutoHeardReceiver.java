@@ -26,6 +26,7 @@ import android.support.v4.app.NotificationManagerCompat;
 
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.database.MessagingDatabase.MarkedMessageInfo;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 import org.whispersystems.libsignal.logging.Log;
 
 import java.util.LinkedList;
@@ -71,7 +72,7 @@ public class AndroidAutoHeardReceiver extends BroadcastReceiver {
 
           return null;
         }
-      }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
     }
   }
 }
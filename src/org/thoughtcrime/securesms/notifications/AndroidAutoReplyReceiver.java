@@ -32,6 +32,7 @@ import org.thoughtcrime.securesms.mms.OutgoingMediaMessage;
 import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.sms.MessageSender;
 import org.thoughtcrime.securesms.sms.OutgoingTextMessage;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 import org.whispersystems.libsignal.logging.Log;
 
 import java.util.Collections;
@@ -91,7 +92,7 @@ public class AndroidAutoReplyReceiver extends BroadcastReceiver {
 
           return null;
         }
-      }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
     }
   }
 
@@ -7,6 +7,7 @@ import android.content.Intent;
 import android.os.AsyncTask;
 
 import org.thoughtcrime.securesms.database.DatabaseFactory;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 
 public class DeleteNotificationReceiver extends BroadcastReceiver {
 
@@ -35,7 +36,7 @@ public class DeleteNotificationReceiver extends BroadcastReceiver {
 
           return null;
         }
-      }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
     }
   }
 }
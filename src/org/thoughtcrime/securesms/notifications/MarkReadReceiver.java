@@ -21,6 +21,7 @@ import org.thoughtcrime.securesms.jobs.MultiDeviceReadUpdateJob;
 import org.thoughtcrime.securesms.jobs.SendReadReceiptJob;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.service.ExpiringMessageManager;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -61,7 +62,7 @@ public class MarkReadReceiver extends BroadcastReceiver {
 
           return null;
         }
-      }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      }.executeOnExecutor(PriorityExecutors.USER_INITIATED);
     }
   }
 
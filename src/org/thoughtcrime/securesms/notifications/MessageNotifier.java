@@ -56,6 +56,8 @@ import org.thoughtcrime.securesms.service.KeyCachingService;
 import org.thoughtcrime.securesms.util.ServiceUtil;
 import org.thoughtcrime.securesms.util.SpanUtil;
 import org.thoughtcrime.securesms.util.TextSecurePreferences;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
 import org.thoughtcrime.securesms.webrtc.CallNotificationBuilder;
 import org.whispersystems.signalservice.internal.util.Util;
 
@@ -64,7 +66,6 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -509,7 +510,7 @@ public class MessageNotifier {
 
           return null;
         }
-      }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      }.executeOnExecutor(PriorityExecutors.BACKGROUND);
     }
   }
 
@@ -554,7 +555,7 @@ public class MessageNotifier {
 
   private static class CancelableExecutor {
 
-    private final Executor                 executor = Executors.newSingleThreadExecutor();
+    private final Executor                 executor = SignalExecutors.newCachedSingleThreadExecutor("signal-notification-delay");
     private final Set<DelayedNotification> tasks    = new HashSet<>();
 
     public void execute(final DelayedNotification runnable) {
@@ -0,0 +1,323 @@
+package org.thoughtcrime.securesms.providers;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Pair;
+
+import org.thoughtcrime.securesms.crypto.AttachmentSecret;
+import org.thoughtcrime.securesms.crypto.AttachmentSecretProvider;
+import org.thoughtcrime.securesms.crypto.ModernDecryptingPartInputStream;
+import org.thoughtcrime.securesms.crypto.ModernEncryptingPartOutputStream;
+import org.thoughtcrime.securesms.logging.Log;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Holds short-lived blobs for the blob providers without letting them pile up on the heap.
+ *
+ * Small blobs are kept in memory as long as they fit in a global byte budget. Anything larger, or
+ * anything that doesn't fit, is spilled to an encrypted file in the cache directory and read back
+ * as a stream. Each blob is reference counted: removing one that still has open streams only frees
+ * it once the last of them is closed. Blobs that are never removed are dropped once their time to
+ * live has passed.
+ */
+public class BlobStore {
+
+  private static final String TAG = BlobStore.class.getSimpleName();
+
+  private static final long   MAX_MEMORY_BYTES = 16 * 1024 * 1024;
+  private static final long   MAX_INLINE_BYTES = 2 * 1024 * 1024;
+  private static final String DIRECTORY        = "blobs";
+  private static final String EXTENSION        = ".blob";
+
+  private static volatile BlobStore instance;
+
+  public static BlobStore getInstance(@NonNull Context context) {
+    if (instance == null) {
+      synchronized (BlobStore.class) {
+        if (instance == null) {
+          instance = new BlobStore(context.getApplicationContext());
+        }
+      }
+    }
+    return instance;
+  }
+
+  private final Map<Long, Entry>  entries  = new HashMap<>();
+  private final SecureRandom      random   = new SecureRandom();
+  private final ExecutorService   executor = SignalExecutors.newCachedSingleThreadExecutor("signal-blob-spill");
+  private final Context           context;
+  private final File              directory;
+  private final long              memoryBudget;
+
+  private long memoryBytes;
+  private long diskBytes;
+
+  private BlobStore(@NonNull Context context) {
+    this.context      = context;
+    this.directory    = new File(context.getCacheDir(), DIRECTORY);
+    this.memoryBudget = Math.min(MAX_MEMORY_BYTES, Runtime.getRuntime().maxMemory() / 16);
+
+    executor.execute(this::deleteOrphanedFiles);
+  }
+
+  /**
+   * Stores a blob. If it's kept in memory, the array is retained as is and must not be modified.
+   *
+   * @param ttl How long, in milliseconds, the blob may live without being removed.
+   * @return The id to open and remove the blob by.
+   */
+  public synchronized long put(@NonNull byte[] blob, long ttl) {
+    expireEntries();
+
+    long  id    = createId();
+    Entry entry = new Entry(id, blob, System.currentTimeMillis() + ttl);
+
+    entries.put(id, entry);
+    memoryBytes += blob.length;
+
+    if (blob.length > MAX_INLINE_BYTES || memoryBytes > memoryBudget) {
+      entry.spilling = true;
+      executor.execute(() -> spill(entry));
+    }
+
+    return id;
+  }
+
+  /**
+   * @return A stream of the blob's contents. The blob stays available until the stream is closed,
+   *         even if it's removed in the meantime.
+   */
+  public synchronized @NonNull InputStream open(long id) throws IOException {
+    expireEntries();
+
+    Entry entry = entries.get(id);
+
+    if (entry == null) {
+      throw new IOException("ID not found: " + id);
+    }
+
+    InputStream source;
+
+    if (entry.blob != null) source = new ByteArrayInputStream(entry.blob);
+    else                    source = ModernDecryptingPartInputStream.createFor(getAttachmentSecret(), entry.file, 0);
+
+    entry.references++;
+
+    return new EntryInputStream(source, entry);
+  }
+
+  public synchronized void remove(long id) {
+    Entry entry = entries.remove(id);
+
+    if (entry != null) {
+      entry.removed = true;
+      freeIfUnreferenced(entry);
+    }
+  }
+
+  /**
+   * Accounts for blob bytes held in memory outside of the store, if they fit in what's left of the
+   * budget. Every successful reservation must be followed by a {@link #unreserve(long)}.
+   */
+  synchronized boolean reserve(long bytes) {
+    if (bytes > MAX_INLINE_BYTES || memoryBytes + bytes > memoryBudget) {
+      return false;
+    }
+
+    memoryBytes += bytes;
+    return true;
+  }
+
+  synchronized void unreserve(long bytes) {
+    memoryBytes -= bytes;
+  }
+
+  public synchronized long getMemoryBytes() {
+    return memoryBytes;
+  }
+
+  public synchronized long getDiskBytes() {
+    return diskBytes;
+  }
+
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  private void spill(@NonNull Entry entry) {
+    byte[] blob;
+    File   file;
+
+    synchronized (this) {
+      if (entry.removed) return;
+      blob = entry.blob;
+      file = new File(directory, entry.id + EXTENSION);
+    }
+
+    try {
+      if (!directory.exists() && !directory.mkdirs()) {
+        throw new IOException("Unable to create " + directory);
+      }
+
+      Pair<byte[], OutputStream> output = ModernEncryptingPartOutputStream.createFor(getAttachmentSecret(), file, true);
+      output.second.write(blob);
+      output.second.close();
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to spill blob, keeping it in memory.", e);
+      file.delete();
+
+      synchronized (this) {
+        entry.spilling = false;
+      }
+      return;
+    }
+
+    synchronized (this) {
+      entry.spilling = false;
+      entry.file     = file;
+      diskBytes     += file.length();
+
+      if (entry.removed && entry.references == 0) {
+        freeFile(entry);
+      } else if (!entry.removed) {
+        entry.blob   = null;
+        memoryBytes -= blob.length;
+      }
+    }
+  }
+
+  /**
+   * Only files need the secret, and they're always written on the spill executor first, so the
+   * secret is never read on the thread that happens to create the store.
+   */
+  private @NonNull AttachmentSecret getAttachmentSecret() {
+    return AttachmentSecretProvider.getInstance(context).getOrCreateAttachmentSecret();
+  }
+
+  private void expireEntries() {
+    long now = System.currentTimeMillis();
+
+    Iterator<Entry> iterator = entries.values().iterator();
+
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+
+      if (entry.expiresAt <= now) {
+        Log.i(TAG, "Expiring blob " + entry.id);
+        iterator.remove();
+        entry.removed = true;
+        freeIfUnreferenced(entry);
+      }
+    }
+  }
+
+  private synchronized void release(@NonNull Entry entry) {
+    entry.references--;
+    freeIfUnreferenced(entry);
+  }
+
+  private void freeIfUnreferenced(@NonNull Entry entry) {
+    if (!entry.removed || entry.references > 0) return;
+
+    if (entry.blob != null) {
+      memoryBytes -= entry.blob.length;
+      entry.blob   = null;
+    }
+
+    if (entry.file != null && !entry.spilling) {
+      freeFile(entry);
+    }
+  }
+
+  private void freeFile(@NonNull Entry entry) {
+    diskBytes -= entry.file.length();
+
+    if (!entry.file.delete()) {
+      Log.w(TAG, "Failed to delete " + entry.file);
+    }
+
+    entry.file = null;
+  }
+
+  private void deleteOrphanedFiles() {
+    File[] files = directory.listFiles();
+    if (files == null) return;
+
+    synchronized (this) {
+      for (File file : files) {
+        if (!isEntryFile(file)) file.delete();
+      }
+    }
+  }
+
+  private boolean isEntryFile(@NonNull File file) {
+    for (Entry entry : entries.values()) {
+      if (file.equals(entry.file)) return true;
+    }
+
+    return false;
+  }
+
+  private long createId() {
+    long id;
+
+    do {
+      id = Math.abs(random.nextLong());
+    } while (entries.containsKey(id));
+
+    return id;
+  }
+
+  private static class Entry {
+    private final long id;
+    private final long expiresAt;
+
+    private byte[]  blob;
+    private File    file;
+    private int     references;
+    private boolean spilling;
+    private boolean removed;
+
+    private Entry(long id, @NonNull byte[] blob, long expiresAt) {
+      this.id        = id;
+      this.blob      = blob;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private class EntryInputStream extends FilterInputStream {
+
+    private final Entry entry;
+
+    private boolean closed;
+
+    private EntryInputStream(@NonNull InputStream in, @NonNull Entry entry) {
+      super(in);
+      this.entry = entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (!closed) {
+          closed = true;
+          release(entry);
+        }
+      }
+    }
+  }
+}
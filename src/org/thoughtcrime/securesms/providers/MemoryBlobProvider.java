@@ -1,16 +1,15 @@
 package org.thoughtcrime.securesms.providers;
 
 import android.content.ContentUris;
+import android.content.Context;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class MemoryBlobProvider {
 
@@ -21,15 +20,27 @@ public class MemoryBlobProvider {
   public  static final String PATH        = "memory/*/#";
   private static final Uri    CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/memory");
 
-  private final Map<Long, Entry> cache = new HashMap<>();
+  private static final long TTL = TimeUnit.DAYS.toMillis(1);
 
-  private static final MemoryBlobProvider instance = new MemoryBlobProvider();
+  private static volatile MemoryBlobProvider instance;
 
-  public static MemoryBlobProvider getInstance() {
+  public static MemoryBlobProvider getInstance(@NonNull Context context) {
+    if (instance == null) {
+      synchronized (MemoryBlobProvider.class) {
+        if (instance == null) {
+          instance = new MemoryBlobProvider(BlobStore.getInstance(context));
+        }
+      }
+    }
     return instance;
   }
 
-  private MemoryBlobProvider() {}
+  private final BlobStore blobStore;
+  private final Set<Long> singleUse = new HashSet<>();
+
+  private MemoryBlobProvider(@NonNull BlobStore blobStore) {
+    this.blobStore = blobStore;
+  }
 
   public synchronized Uri createSingleUseUri(@NonNull byte[] blob) {
     return createUriInternal(blob, true);
@@ -40,51 +51,30 @@ public class MemoryBlobProvider {
   }
 
   public synchronized void delete(@NonNull Uri uri) {
-    cache.remove(ContentUris.parseId(uri));
+    long id = ContentUris.parseId(uri);
+
+    singleUse.remove(id);
+    blobStore.remove(id);
   }
 
   public synchronized @NonNull InputStream getStream(long id) throws IOException {
-    Entry entry = cache.get(id);
+    InputStream stream = blobStore.open(id);
 
-    if (entry == null) {
-      throw new IOException("ID not found: " + id);
+    if (singleUse.remove(id)) {
+      blobStore.remove(id);
     }
 
-    if (entry.isSingleUse()) {
-      cache.remove(id);
-    }
-
-    return new ByteArrayInputStream(entry.getBlob());
+    return stream;
   }
 
   private Uri createUriInternal(@NonNull byte[] blob, boolean singleUse) {
-    try {
-      long id = Math.abs(SecureRandom.getInstance("SHA1PRNG").nextLong());
-      cache.put(id, new Entry(blob, singleUse));
-
-      Uri uniqueUri = Uri.withAppendedPath(CONTENT_URI, String.valueOf(System.currentTimeMillis()));
-      return ContentUris.withAppendedId(uniqueUri, id);
-    } catch (NoSuchAlgorithmException e) {
-      throw new AssertionError(e);
-    }
-  }
-
-  private static class Entry {
-
-    private final byte[]  blob;
-    private final boolean singleUse;
+    long id = blobStore.put(blob, TTL);
 
-    private Entry(@NonNull byte[] blob, boolean singleUse) {
-      this.blob      = blob;
-      this.singleUse = singleUse;
+    if (singleUse) {
+      this.singleUse.add(id);
     }
 
-    public byte[] getBlob() {
-      return blob;
-    }
-
-    public boolean isSingleUse() {
-      return singleUse;
-    }
+    Uri uniqueUri = Uri.withAppendedPath(CONTENT_URI, String.valueOf(System.currentTimeMillis()));
+    return ContentUris.withAppendedId(uniqueUri, id);
   }
 }
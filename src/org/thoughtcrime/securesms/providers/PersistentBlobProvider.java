@@ -12,6 +12,7 @@ import org.thoughtcrime.securesms.logging.Log;
 import android.util.Pair;
 import android.webkit.MimeTypeMap;
 
+import org.thoughtcrime.securesms.audio.AudioWaveform;
 import org.thoughtcrime.securesms.crypto.AttachmentSecret;
 import org.thoughtcrime.securesms.crypto.AttachmentSecretProvider;
 import org.thoughtcrime.securesms.crypto.ClassicDecryptingPartInputStream;
@@ -20,16 +21,22 @@ import org.thoughtcrime.securesms.crypto.ModernEncryptingPartOutputStream;
 import org.thoughtcrime.securesms.util.FileProviderUtil;
 import org.thoughtcrime.securesms.util.Util;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 public class PersistentBlobProvider {
 
@@ -46,8 +53,10 @@ public class PersistentBlobProvider {
   private static final int        FILESIZE_PATH_SEGMENT = 3;
 
   private static final String     BLOB_EXTENSION        = "blob";
+  private static final String     WAVEFORM_EXTENSION    = "waveform";
   private static final int        MATCH_OLD             = 1;
   private static final int        MATCH_NEW             = 2;
+  private static final int        STREAMING_CHUNK_SIZE  = 16 * 1024;
 
   private static final UriMatcher MATCHER               = new UriMatcher(UriMatcher.NO_MATCH) {{
     addURI(AUTHORITY, EXPECTED_PATH_OLD, MATCH_OLD);
@@ -68,13 +77,16 @@ public class PersistentBlobProvider {
   }
 
   @SuppressLint("UseSparseArrays")
-  private final Map<Long, byte[]> cache    = Collections.synchronizedMap(new HashMap<Long, byte[]>());
-  private final ExecutorService   executor = Executors.newCachedThreadPool();
+  private final Map<Long, byte[]>       cache    = Collections.synchronizedMap(new HashMap<Long, byte[]>());
+  private final Map<Long, Future<Void>> writes   = new ConcurrentHashMap<>();
+  private final ExecutorService         executor = Executors.newCachedThreadPool();
 
   private final AttachmentSecret  attachmentSecret;
+  private final BlobStore         blobStore;
 
   private PersistentBlobProvider(@NonNull Context context) {
     this.attachmentSecret = AttachmentSecretProvider.getInstance(context).getOrCreateAttachmentSecret();
+    this.blobStore        = BlobStore.getInstance(context);
   }
 
   public Uri create(@NonNull Context context,
@@ -83,7 +95,13 @@ public class PersistentBlobProvider {
                     @Nullable String fileName)
   {
     final long id = System.currentTimeMillis();
-    cache.put(id, blobBytes);
+
+    // Blobs are only served from memory until they're written out if they fit in the shared
+    // budget. Otherwise reads wait for the write to finish.
+    if (blobStore.reserve(blobBytes.length)) {
+      cache.put(id, blobBytes);
+    }
+
     return create(context, attachmentSecret, new ByteArrayInputStream(blobBytes), id, mimeType, fileName, (long) blobBytes.length);
   }
 
@@ -96,6 +114,57 @@ public class PersistentBlobProvider {
     return create(context, attachmentSecret, input, System.currentTimeMillis(), mimeType, fileName, fileSize);
   }
 
+  /**
+   * Creates a blob to be written a chunk at a time as it's produced, such as a recording, straight
+   * into encrypted storage. The blob can't be read until the returned stream has been closed.
+   */
+  public @NonNull Pair<Uri, OutputStream> createForStreaming(@NonNull Context context,
+                                                             @NonNull String mimeType,
+                                                             @Nullable String fileName)
+      throws IOException
+  {
+    final long id = System.currentTimeMillis();
+
+    OutputStream output = ModernEncryptingPartOutputStream.createFor(attachmentSecret, getFile(context, id).file, true).second;
+
+    return new Pair<>(createUri(id, mimeType, fileName, null), new BufferedOutputStream(output, STREAMING_CHUNK_SIZE));
+  }
+
+  /**
+   * Saves the waveform of a recorded blob in an encrypted file next to it, so it survives until
+   * it's stored with the attachment made from the blob.
+   */
+  public void setAudioWaveform(@NonNull Context context, @NonNull Uri uri, @NonNull AudioWaveform waveform)
+      throws IOException
+  {
+    File         file   = getWaveformFile(context, ContentUris.parseId(uri));
+    OutputStream output = ModernEncryptingPartOutputStream.createFor(attachmentSecret, file, true).second;
+
+    try {
+      output.write(waveform.getPeaks());
+    } finally {
+      output.close();
+    }
+  }
+
+  public @Nullable AudioWaveform getAudioWaveform(@NonNull Context context, @NonNull Uri uri) {
+    switch (MATCHER.match(uri)) {
+    case MATCH_OLD:
+    case MATCH_NEW:
+      File file = getWaveformFile(context, ContentUris.parseId(uri));
+      if (!file.exists()) return null;
+
+      try (InputStream input = ModernDecryptingPartInputStream.createFor(attachmentSecret, file, 0)) {
+        return new AudioWaveform(Util.readFully(input));
+      } catch (IOException e) {
+        Log.w(TAG, e);
+        return null;
+      }
+    }
+
+    return null;
+  }
+
   private Uri create(@NonNull Context context,
                      @NonNull  AttachmentSecret attachmentSecret,
                      @NonNull  InputStream input,
@@ -105,6 +174,10 @@ public class PersistentBlobProvider {
                      @Nullable Long fileSize)
   {
     persistToDisk(context, attachmentSecret, id, input);
+    return createUri(id, mimeType, fileName, fileSize);
+  }
+
+  private Uri createUri(long id, @NonNull String mimeType, @Nullable String fileName, @Nullable Long fileSize) {
     final Uri uniqueUri = CONTENT_URI.buildUpon()
                                      .appendPath(mimeType)
                                      .appendPath(fileName)
@@ -118,16 +191,40 @@ public class PersistentBlobProvider {
                              @NonNull AttachmentSecret attachmentSecret,
                              final long id, final InputStream input)
   {
-    executor.submit(() -> {
+    FutureTask<Void> write = new FutureTask<>(() -> {
+      File file = getFile(context, id).file;
+
       try {
-        Pair<byte[], OutputStream> output = ModernEncryptingPartOutputStream.createFor(attachmentSecret, getFile(context, id).file, true);
+        Pair<byte[], OutputStream> output = ModernEncryptingPartOutputStream.createFor(attachmentSecret, file, true);
         Util.copy(input, output.second);
+        return null;
       } catch (IOException e) {
         Log.w(TAG, e);
+        file.delete();
+        throw e;
+      } finally {
+        removeCached(id);
+        writes.remove(id);
       }
-
-      cache.remove(id);
     });
+
+    writes.put(id, write);
+    executor.execute(write);
+  }
+
+  private void awaitWrite(long id) throws IOException {
+    Future<Void> write = writes.get(id);
+
+    if (write == null) return;
+
+    try {
+      write.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the blob to be written.");
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to write the blob.", e.getCause());
+    }
   }
 
   public Uri createForExternal(@NonNull Context context, @NonNull String mimeType) throws IOException {
@@ -140,8 +237,9 @@ public class PersistentBlobProvider {
     case MATCH_OLD:
     case MATCH_NEW:
       long id = ContentUris.parseId(uri);
-      cache.remove(id);
-      return getFile(context, ContentUris.parseId(uri)).file.delete();
+      removeCached(id);
+      getWaveformFile(context, id).delete();
+      return getFile(context, id).file.delete();
     }
 
     //noinspection SimplifiableIfStatement
@@ -152,6 +250,14 @@ public class PersistentBlobProvider {
     return false;
   }
 
+  private void removeCached(long id) {
+    byte[] cached = cache.remove(id);
+
+    if (cached != null) {
+      blobStore.unreserve(cached.length);
+    }
+  }
+
   public @NonNull InputStream getStream(@NonNull Context context, long id) throws IOException {
     final byte[] cached = cache.get(id);
 
@@ -159,6 +265,8 @@ public class PersistentBlobProvider {
       return new ByteArrayInputStream(cached);
     }
 
+    awaitWrite(id);
+
     FileData fileData = getFile(context, id);
 
     if (fileData.modern) return ModernDecryptingPartInputStream.createFor(attachmentSecret, fileData.file, 0);
@@ -187,6 +295,10 @@ public class PersistentBlobProvider {
     return new File(context.getCacheDir(), "capture-m-" + id + "." + BLOB_EXTENSION);
   }
 
+  private File getWaveformFile(@NonNull Context context, long id) {
+    return new File(context.getCacheDir(), "capture-m-" + id + "." + WAVEFORM_EXTENSION);
+  }
+
   public static @Nullable String getMimeType(@NonNull Context context, @NonNull Uri persistentBlobUri) {
     if (!isAuthority(context, persistentBlobUri)) return null;
     return isExternalBlobUri(context, persistentBlobUri)
@@ -433,6 +433,21 @@ public class Recipient implements RecipientModifiedListener {
     return getFallbackContactPhoto().asDrawable(context, getColor().toAvatarColor(context), inverted);
   }
 
+  /**
+   * Like {@link #getFallbackContactPhotoDrawable(Context, boolean)}, but generated avatars are
+   * rendered in the background instead of on the calling thread.
+   */
+  public synchronized @NonNull Drawable getAsyncFallbackContactPhotoDrawable(Context context, boolean inverted) {
+    FallbackContactPhoto fallbackContactPhoto = getFallbackContactPhoto();
+    int                  color                = getColor().toAvatarColor(context);
+
+    if (fallbackContactPhoto instanceof GeneratedContactPhoto) {
+      return ((GeneratedContactPhoto) fallbackContactPhoto).asAsyncDrawable(context, color, inverted);
+    }
+
+    return fallbackContactPhoto.asDrawable(context, color, inverted);
+  }
+
   public synchronized @NonNull FallbackContactPhoto getFallbackContactPhoto() {
     if      (isResolving())            return new TransparentContactPhoto();
     else if (isGroupRecipient())       return new ResourceContactPhoto(R.drawable.ic_group_white_24dp, R.drawable.ic_group_large);
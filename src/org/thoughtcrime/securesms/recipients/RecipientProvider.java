@@ -134,8 +134,12 @@ class RecipientProvider {
       List<Recipient> members         = new LinkedList<>();
       Long            avatarId        = null;
 
-      for (Address memberAddress : memberAddresses) {
-        members.add(getRecipient(context, memberAddress, Optional.absent(), Optional.absent(), asynchronous));
+      if (asynchronous) {
+        for (Address memberAddress : memberAddresses) {
+          members.add(getRecipient(context, memberAddress, Optional.absent(), Optional.absent(), true));
+        }
+      } else {
+        members.addAll(DatabaseFactory.getGroupDatabase(context).getGroupMembers(groupId.toGroupString(), true));
       }
 
       if (!groupId.isMmsGroup() && title == null) {
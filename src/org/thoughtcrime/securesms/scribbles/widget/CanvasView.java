@@ -21,18 +21,26 @@ import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.RectF;
 import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
 
 import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
 /**
  * This class defines fields and methods for drawing.
+ *
+ * Every stroke but the last one is rasterised once into a backing bitmap, so a frame only has to
+ * draw that bitmap and the stroke that is still being drawn. The stroke history is kept as it
+ * is, and copies of the backing bitmap are taken every few strokes so undo can go back to the
+ * nearest one and replay the strokes after it instead of every stroke since the start.
  */
 public class CanvasView extends View {
 
@@ -40,6 +48,9 @@ public class CanvasView extends View {
 
   public static final int DEFAULT_STROKE_WIDTH = 15;
 
+  private static final int CHECKPOINT_INTERVAL = 20;
+  private static final int MAX_CHECKPOINTS     = 3;
+
   // Enumeration for Mode
   public enum Mode {
     DRAW,
@@ -65,6 +76,14 @@ public class CanvasView extends View {
   private List<Path> pathLists  = new ArrayList<Path>();
   private List<Paint> paintLists = new ArrayList<Paint>();
 
+  // for the committed strokes
+  private final Paint                  bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+  private final LinkedList<Checkpoint> checkpoints = new LinkedList<>();
+
+  private Bitmap committed       = null;
+  private Canvas committedCanvas = null;
+  private int    committedCount  = 0;
+
   // for Eraser
 //  private int baseColor = Color.WHITE;
   private int baseColor = Color.TRANSPARENT;
@@ -192,6 +211,8 @@ public class CanvasView extends View {
    * @param path the instance of Path
    */
   private void updateHistory(Path path) {
+    this.discardCheckpointsAfter(this.historyPointer);
+
     if (this.historyPointer == this.pathLists.size()) {
       this.pathLists.add(path);
       this.paintLists.add(this.createPaint());
@@ -361,14 +382,31 @@ public class CanvasView extends View {
     canvas.drawColor(this.baseColor);
 
     if (this.bitmap != null) {
-      canvas.drawBitmap(this.bitmap, 0F, 0F, new Paint());
+      canvas.drawBitmap(this.bitmap, 0F, 0F, this.bitmapPaint);
     }
 
-    for (int i = 0; i < this.historyPointer; i++) {
-      Path path   = this.pathLists.get(i);
-      Paint paint = this.paintLists.get(i);
+    if (this.historyPointer == 0) {
+      return;
+    }
+
+    Path  livePath  = this.getCurrentPath();
+    Paint livePaint = this.paintLists.get(this.historyPointer - 1);
+
+    if (!this.commit(this.historyPointer - 1)) {
+      // No backing bitmap yet
+      for (int i = 0; i < this.historyPointer; i++) {
+        canvas.drawPath(this.pathLists.get(i), this.paintLists.get(i));
+      }
+    } else if (livePaint.getXfermode() != null) {
+      // The eraser has to clear the committed strokes, not the window behind them
+      int layer = canvas.saveLayer(0F, 0F, this.canvasWidth, this.canvasHeight, null);
 
-      canvas.drawPath(path, paint);
+      canvas.drawBitmap(this.committed, 0F, 0F, this.bitmapPaint);
+      canvas.drawPath(livePath, livePaint);
+      canvas.restoreToCount(layer);
+    } else {
+      canvas.drawBitmap(this.committed, 0F, 0F, this.bitmapPaint);
+      canvas.drawPath(livePath, livePaint);
     }
   }
 
@@ -377,27 +415,109 @@ public class CanvasView extends View {
     super.onSizeChanged(w, h, oldw, oldh);
     this.canvasWidth = w;
     this.canvasHeight = h;
+
+    this.checkpoints.clear();
+    this.committedCount = 0;
+
+    if (w > 0 && h > 0) {
+      this.committed       = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+      this.committedCanvas = new Canvas(this.committed);
+    } else {
+      this.committed       = null;
+      this.committedCanvas = null;
+    }
   }
 
-  public void render(Canvas canvas) {
-    float scaleX = 1.0F * canvas.getWidth() / canvasWidth;
-    float scaleY = 1.0F * canvas.getHeight() / canvasHeight;
+  /**
+   * Brings the backing bitmap to exactly the first <code>count</code> strokes of the history,
+   * going back to the nearest checkpoint first if it is ahead of that.
+   *
+   * @return false if there is no backing bitmap to draw from
+   */
+  private boolean commit(int count) {
+    if (this.committed == null) {
+      return false;
+    }
+
+    if (this.committedCount > count) {
+      Checkpoint restore = null;
 
-    Matrix matrix = new Matrix();
-    matrix.setScale(scaleX, scaleY);
+      for (Checkpoint checkpoint : this.checkpoints) {
+        if (checkpoint.count <= count) restore = checkpoint;
+      }
 
-    for (int i = 0; i < this.historyPointer; i++) {
-      Path path   = this.pathLists.get(i);
-      Paint paint = this.paintLists.get(i);
+      this.committed.eraseColor(Color.TRANSPARENT);
+
+      if (restore != null) {
+        this.committedCanvas.drawBitmap(restore.bitmap, 0F, 0F, null);
+        this.committedCount = restore.count;
+      } else {
+        this.committedCount = 0;
+      }
+    }
+
+    while (this.committedCount < count) {
+      this.committedCanvas.drawPath(this.pathLists.get(this.committedCount), this.paintLists.get(this.committedCount));
+      this.committedCount++;
 
-      Path scaledPath = new Path();
-      path.transform(matrix, scaledPath);
+      if (this.committedCount % CHECKPOINT_INTERVAL == 0) {
+        this.checkpoint();
+      }
+    }
 
-      Paint scaledPaint = new Paint(paint);
-      scaledPaint.setStrokeWidth(scaledPaint.getStrokeWidth() * scaleX);
+    return true;
+  }
 
-      canvas.drawPath(scaledPath, scaledPaint);
+  private void checkpoint() {
+    if (!this.checkpoints.isEmpty() && this.checkpoints.getLast().count >= this.committedCount) {
+      return;
     }
+
+    Bitmap bitmap;
+
+    if (this.checkpoints.size() >= MAX_CHECKPOINTS) {
+      bitmap = this.checkpoints.removeFirst().bitmap;
+      bitmap.eraseColor(Color.TRANSPARENT);
+      new Canvas(bitmap).drawBitmap(this.committed, 0F, 0F, null);
+    } else {
+      bitmap = this.committed.copy(Bitmap.Config.ARGB_8888, false);
+    }
+
+    this.checkpoints.add(new Checkpoint(this.committedCount, bitmap));
+  }
+
+  /**
+   * Drops the checkpoints that include the stroke at <code>index</code> or any after it, since
+   * that stroke is about to be replaced.
+   */
+  private void discardCheckpointsAfter(int index) {
+    Iterator<Checkpoint> iterator = this.checkpoints.iterator();
+
+    while (iterator.hasNext()) {
+      if (iterator.next().count > index) iterator.remove();
+    }
+
+    if (this.committedCount > index) {
+      // Undone without a draw in between, rebuild from the checkpoints that are left
+      this.committedCount = Integer.MAX_VALUE;
+    }
+  }
+
+  /**
+   * Captures the strokes as they are now, so they can be rendered off the UI thread while drawing
+   * carries on.
+   */
+  public @NonNull Strokes getStrokes() {
+    List<Path>  paths  = new ArrayList<>(this.historyPointer);
+    List<Paint> paints = new ArrayList<>(this.historyPointer);
+
+    for (int i = 0; i < this.historyPointer; i++) {
+      // Only the last path can still change
+      paths.add(i == this.historyPointer - 1 ? new Path(this.pathLists.get(i)) : this.pathLists.get(i));
+      paints.add(this.paintLists.get(i));
+    }
+
+    return new Strokes(paths, paints, this.canvasWidth, this.canvasHeight);
   }
 
   /**
@@ -513,6 +633,8 @@ public class CanvasView extends View {
     paint.setColor(Color.WHITE);
     paint.setStyle(Paint.Style.FILL);
 
+    this.discardCheckpointsAfter(this.historyPointer);
+
     if (this.historyPointer == this.pathLists.size()) {
       this.pathLists.add(path);
       this.paintLists.add(paint);
@@ -785,4 +907,56 @@ public class CanvasView extends View {
 
     return colors;
   }
-}
\ No newline at end of file
+
+  private static class Checkpoint {
+    private final int    count;
+    private final Bitmap bitmap;
+
+    private Checkpoint(int count, @NonNull Bitmap bitmap) {
+      this.count  = count;
+      this.bitmap = bitmap;
+    }
+  }
+
+  public static class Strokes {
+
+    private final List<Path>  paths;
+    private final List<Paint> paints;
+    private final int         width;
+    private final int         height;
+
+    private Strokes(@NonNull List<Path> paths, @NonNull List<Paint> paints, int width, int height) {
+      this.paths  = paths;
+      this.paints = paints;
+      this.width  = width;
+      this.height = height;
+    }
+
+    /**
+     * Draws the strokes as vectors scaled to the size of the canvas, so they stay sharp at a
+     * larger size than the view they were drawn on.
+     */
+    @WorkerThread
+    public void render(@NonNull Canvas canvas) {
+      float scaleX = 1.0F * canvas.getWidth() / width;
+      float scaleY = 1.0F * canvas.getHeight() / height;
+
+      Matrix matrix      = new Matrix();
+      Path   scaledPath  = new Path();
+      Paint  scaledPaint = new Paint();
+
+      matrix.setScale(scaleX, scaleY);
+
+      for (int i = 0; i < paths.size(); i++) {
+        Paint paint = paints.get(i);
+
+        paths.get(i).transform(matrix, scaledPath);
+
+        scaledPaint.set(paint);
+        scaledPaint.setStrokeWidth(paint.getStrokeWidth() * scaleX);
+
+        canvas.drawPath(scaledPath, scaledPaint);
+      }
+    }
+  }
+}
@@ -45,6 +45,7 @@ import org.thoughtcrime.securesms.scribbles.widget.entity.MotionEntity;
 import org.thoughtcrime.securesms.scribbles.widget.entity.TextEntity;
 import org.thoughtcrime.securesms.util.Util;
 import org.thoughtcrime.securesms.util.concurrent.ListenableFuture;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 import org.thoughtcrime.securesms.util.concurrent.SettableFuture;
 
 import java.util.LinkedHashSet;
@@ -118,10 +119,15 @@ public class ScribbleView extends FrameLayout {
                  .into(new SimpleTarget<Bitmap>() {
                    @Override
                    public void onResourceReady(@NonNull Bitmap bitmap, @Nullable Transition<? super Bitmap> transition) {
-                     Canvas canvas = new Canvas(bitmap);
+                     Canvas             canvas  = new Canvas(bitmap);
+                     CanvasView.Strokes strokes = canvasView.getStrokes();
+
                      motionView.render(canvas);
-                     canvasView.render(canvas);
-                     future.set(bitmap);
+
+                     PriorityExecutors.USER_INITIATED.execute(() -> {
+                       strokes.render(canvas);
+                       Util.runOnMain(() -> future.set(bitmap));
+                     });
                    }
 
                    @Override
@@ -21,6 +21,7 @@ import org.thoughtcrime.securesms.R;
 import org.thoughtcrime.securesms.database.SmsMigrator;
 import org.thoughtcrime.securesms.database.SmsMigrator.ProgressDescription;
 import org.thoughtcrime.securesms.notifications.NotificationChannels;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
 
 import java.lang.ref.WeakReference;
 import java.util.concurrent.Executor;
@@ -216,5 +217,6 @@ public class ApplicationMigrationService extends Service
 
   public static void setDatabaseImported(Context context) {
     context.getSharedPreferences(PREFERENCES_NAME, 0).edit().putBoolean(DATABASE_MIGRATED, true).apply();
+    SignalExecutors.IO.execute(() -> SmsMigrator.restoreIndexingIfSuspended(context.getApplicationContext()));
   }
 }
@@ -45,11 +45,15 @@ import org.thoughtcrime.securesms.util.ServiceUtil;
 import org.thoughtcrime.securesms.util.TextSecurePreferences;
 import org.thoughtcrime.securesms.util.Util;
 import org.thoughtcrime.securesms.webrtc.CallNotificationBuilder;
+import org.thoughtcrime.securesms.webrtc.CallQualityLog;
+import org.thoughtcrime.securesms.webrtc.CallSetupStats;
 import org.thoughtcrime.securesms.webrtc.CameraState;
+import org.thoughtcrime.securesms.webrtc.IceUpdateBatcher;
 import org.thoughtcrime.securesms.webrtc.IncomingPstnCallReceiver;
 import org.thoughtcrime.securesms.webrtc.PeerConnectionFactoryOptions;
 import org.thoughtcrime.securesms.webrtc.PeerConnectionWrapper;
 import org.thoughtcrime.securesms.webrtc.PeerConnectionWrapper.PeerConnectionException;
+import org.thoughtcrime.securesms.webrtc.TurnServerCache;
 import org.thoughtcrime.securesms.webrtc.UncaughtExceptionHandlerManager;
 import org.thoughtcrime.securesms.webrtc.WebRtcDataProtos;
 import org.thoughtcrime.securesms.webrtc.WebRtcDataProtos.Connected;
@@ -147,10 +151,12 @@ public class WebRtcCallService extends Service implements InjectableType,
     public static final String ACTION_SCREEN_OFF = "SCREEN_OFF";
     public static final String ACTION_CHECK_TIMEOUT = "CHECK_TIMEOUT";
     public static final String ACTION_IS_IN_CALL_QUERY = "IS_IN_CALL";
+    public static final String ACTION_PREWARM = "PREWARM";
 
     public static final String ACTION_RESPONSE_MESSAGE = "RESPONSE_MESSAGE";
     public static final String ACTION_ICE_MESSAGE = "ICE_MESSAGE";
     public static final String ACTION_ICE_CANDIDATE = "ICE_CANDIDATE";
+    public static final String ACTION_ICE_GATHERING_COMPLETE = "ICE_GATHERING_COMPLETE";
     public static final String ACTION_CALL_CONNECTED = "CALL_CONNECTED";
     public static final String ACTION_REMOTE_HANGUP = "REMOTE_HANGUP";
     public static final String ACTION_REMOTE_BUSY = "REMOTE_BUSY";
@@ -190,6 +196,13 @@ public class WebRtcCallService extends Service implements InjectableType,
     private List<IceUpdateMessage> pendingOutgoingIceUpdates;
     @Nullable
     private List<IceCandidate> pendingIncomingIceUpdates;
+    @Nullable
+    private IceUpdateBatcher iceUpdateBatcher;
+    @Nullable
+    private CallSetupStats callSetupStats;
+
+    private final TurnServerCache turnServerCache = new TurnServerCache();
+    private boolean warm;
 
     @Nullable
     public static SurfaceViewRenderer localRenderer;           // 本地视频渲染器
@@ -249,11 +262,14 @@ public class WebRtcCallService extends Service implements InjectableType,
                 handleRemoteIceCandidate(intent);
             else if (intent.getAction().equals(ACTION_ICE_CANDIDATE))
                 handleLocalIceCandidate(intent);
+            else if (intent.getAction().equals(ACTION_ICE_GATHERING_COMPLETE))
+                handleIceGatheringComplete(intent);
             else if (intent.getAction().equals(ACTION_ICE_CONNECTED)) handleIceConnected(intent);
             else if (intent.getAction().equals(ACTION_CALL_CONNECTED)) handleCallConnected(intent);
             else if (intent.getAction().equals(ACTION_CHECK_TIMEOUT)) handleCheckTimeout(intent);
             else if (intent.getAction().equals(ACTION_IS_IN_CALL_QUERY))
                 handleIsInCallQuery(intent);
+            else if (intent.getAction().equals(ACTION_PREWARM)) handlePrewarm(intent);
         });
 
         return START_NOT_STICKY;
@@ -378,6 +394,9 @@ public class WebRtcCallService extends Service implements InjectableType,
         this.callId = intent.getLongExtra(EXTRA_CALL_ID, -1);   // 获取通话ID
         this.pendingIncomingIceUpdates = new LinkedList<>();
         this.recipient = getRemoteRecipient(intent);                            // 获取接受者
+        this.iceUpdateBatcher = createIceUpdateBatcher(this.recipient, this.callId);
+        this.callSetupStats = new CallSetupStats(false, warm);
+        this.callSetupStats.mark(CallSetupStats.OFFER_RECEIVED);
 
         if (isIncomingMessageExpired(intent)) {            // 2分钟内未接来电
             insertMissedCall(this.recipient, true);   // 插入未接来电数据
@@ -391,10 +410,13 @@ public class WebRtcCallService extends Service implements InjectableType,
 
         timeoutExecutor.schedule(new TimeoutRunnable(this.callId), 2, TimeUnit.MINUTES);    // 通话心跳
 
+        // 先开始检索中继器服务器地址，与视频初始化并行
+        ListenableFutureTask<List<PeerConnection.IceServer>> turnServers = retrieveTurnServers(callSetupStats);
+
         initializeVideo();    // 初始化视频资源
 
         // 检索中继器服务器地址成功后
-        retrieveTurnServers().addListener(new SuccessOnlyListener<List<PeerConnection.IceServer>>(this.callState, this.callId) {
+        turnServers.addListener(new SuccessOnlyListener<List<PeerConnection.IceServer>>(this.callState, this.callId) {
             @Override
             public void onSuccessContinue(List<PeerConnection.IceServer> result) {
                 try {
@@ -411,6 +433,7 @@ public class WebRtcCallService extends Service implements InjectableType,
                     // 建立数据的“点对点”（peer to peer）通信
                     WebRtcCallService.this.peerConnection = new PeerConnectionWrapper(WebRtcCallService.this, peerConnectionFactory, WebRtcCallService.this, localRenderer, result, WebRtcCallService.this, !isSystemContact || isAlwaysTurn);
                     WebRtcCallService.this.localCameraState = WebRtcCallService.this.peerConnection.getCameraState();
+                    if (callSetupStats != null) callSetupStats.mark(CallSetupStats.PEER_CONNECTION);
                     // A(当前)收到B的offer信令后，利用pc.setRemoteDescription()方法将B的SDP描述赋给A的PC对象。
                     WebRtcCallService.this.peerConnection.setRemoteDescription(new SessionDescription(SessionDescription.Type.OFFER, offer));
                     WebRtcCallService.this.lockManager.updatePhoneState(LockManager.PhoneState.PROCESSING);
@@ -466,6 +489,11 @@ public class WebRtcCallService extends Service implements InjectableType,
             this.recipient = getRemoteRecipient(intent);                          // 获取盐城收件人
             this.callId = SecureRandom.getInstance("SHA1PRNG").nextLong();     // 生成CallId
             this.pendingOutgoingIceUpdates = new LinkedList<>();
+            this.iceUpdateBatcher = createIceUpdateBatcher(this.recipient, this.callId);
+            this.callSetupStats = new CallSetupStats(true, warm);
+
+            // 先开始检索中继器服务器地址，与视频和音频初始化并行
+            ListenableFutureTask<List<PeerConnection.IceServer>> turnServers = retrieveTurnServers(callSetupStats);
 
             initializeVideo();      // 初始化视频资源
 
@@ -482,7 +510,7 @@ public class WebRtcCallService extends Service implements InjectableType,
 
             timeoutExecutor.schedule(new TimeoutRunnable(this.callId), 2, TimeUnit.MINUTES);  // 通话心跳
 
-            retrieveTurnServers().addListener(new SuccessOnlyListener<List<PeerConnection.IceServer>>(this.callState, this.callId) {
+            turnServers.addListener(new SuccessOnlyListener<List<PeerConnection.IceServer>>(this.callState, this.callId) {
                 @Override
                 public void onSuccessContinue(List<PeerConnection.IceServer> result) {
                     try {
@@ -491,6 +519,7 @@ public class WebRtcCallService extends Service implements InjectableType,
                         // 每一个通话都创建一个新的节点连接
                         WebRtcCallService.this.peerConnection = new PeerConnectionWrapper(WebRtcCallService.this, peerConnectionFactory, WebRtcCallService.this, localRenderer, result, WebRtcCallService.this, isAlwaysTurn);
                         WebRtcCallService.this.localCameraState = WebRtcCallService.this.peerConnection.getCameraState();
+                        if (callSetupStats != null) callSetupStats.mark(CallSetupStats.PEER_CONNECTION);
                         // 创建数据通道，用于传输媒体数据
                         WebRtcCallService.this.dataChannel = WebRtcCallService.this.peerConnection.createDataChannel(DATA_CHANNEL_NAME);
                         WebRtcCallService.this.dataChannel.registerObserver(WebRtcCallService.this);  // 注册观察者用于监听媒体数据传输窗台
@@ -554,9 +583,13 @@ public class WebRtcCallService extends Service implements InjectableType,
                 throw new AssertionError("assert");
             }
 
+            if (callSetupStats != null) callSetupStats.mark(CallSetupStats.ANSWER_RECEIVED);
+
             if (!pendingOutgoingIceUpdates.isEmpty()) {
                 ListenableFutureTask<Boolean> listenableFutureTask = sendMessage(recipient, SignalServiceCallMessage.forIceUpdates(pendingOutgoingIceUpdates));
 
+                if (callSetupStats != null) callSetupStats.onIceMessageSent(pendingOutgoingIceUpdates.size());
+
                 listenableFutureTask.addListener(new FailureListener<Boolean>(callState, callId) {
                     @Override
                     public void onFailureContinue(Throwable error) {
@@ -608,26 +641,65 @@ public class WebRtcCallService extends Service implements InjectableType,
                 intent.getIntExtra(EXTRA_ICE_SDP_LINE_INDEX, 0),
                 intent.getStringExtra(EXTRA_ICE_SDP));
 
+        if (callSetupStats != null) callSetupStats.mark(CallSetupStats.FIRST_CANDIDATE);
+
         if (pendingOutgoingIceUpdates != null) {
             Log.i(TAG, "Adding to pending ice candidates...");
             this.pendingOutgoingIceUpdates.add(iceUpdateMessage);
             return;
         }
 
-        ListenableFutureTask<Boolean> listenableFutureTask = sendMessage(recipient, SignalServiceCallMessage.forIceUpdate(iceUpdateMessage));
+        if (iceUpdateBatcher != null) {
+            iceUpdateBatcher.add(iceUpdateMessage);
+        }
+    }
+
+    private void handleIceGatheringComplete(Intent intent) {
+        if (callState == CallState.STATE_IDLE || !Util.isEquals(this.callId, getCallId(intent))) {
+            return;
+        }
 
-        listenableFutureTask.addListener(new FailureListener<Boolean>(callState, callId) {
-            @Override
-            public void onFailureContinue(Throwable error) {
-                Log.w(TAG, error);
-                sendMessage(WebRtcViewModel.State.NETWORK_FAILURE, recipient, localCameraState, remoteVideoEnabled, bluetoothAvailable, microphoneEnabled);
+        if (callSetupStats != null) callSetupStats.mark(CallSetupStats.GATHERING_DONE);
+        if (iceUpdateBatcher != null) iceUpdateBatcher.onGatheringComplete();
+    }
 
-                terminate();
-            }
+    /**
+     * Sends locally gathered candidates in batches once the remote party knows about the call.
+     * A failure to send any of them ends the call, as it always has.
+     */
+    private IceUpdateBatcher createIceUpdateBatcher(@NonNull final Recipient recipient, final long callId) {
+        return new IceUpdateBatcher(serviceExecutor, timeoutExecutor, batch -> {
+            Log.i(TAG, "Sending " + batch.size() + " ice candidates...");
+
+            if (callSetupStats != null) callSetupStats.onIceMessageSent(batch.size());
+
+            sendMessage(recipient, SignalServiceCallMessage.forIceUpdates(batch)).addListener(new FutureTaskListener<Boolean>() {
+                @Override
+                public void onSuccess(Boolean result) {
+                    if (Util.isEquals(WebRtcCallService.this.callId, callId) && iceUpdateBatcher != null) {
+                        iceUpdateBatcher.onSent();
+                    }
+                }
+
+                @Override
+                public void onFailure(ExecutionException exception) {
+                    Log.w(TAG, exception);
+
+                    if (Util.isEquals(WebRtcCallService.this.callId, callId)) {
+                        sendMessage(WebRtcViewModel.State.NETWORK_FAILURE, recipient, localCameraState, remoteVideoEnabled, bluetoothAvailable, microphoneEnabled);
+                        terminate();
+                    }
+                }
+            });
         });
     }
 
     private void handleIceConnected(Intent intent) {
+        if (callSetupStats != null) {
+            callSetupStats.mark(CallSetupStats.ICE_CONNECTED);
+            Log.i(TAG, "Call setup: " + callSetupStats);
+        }
+
         if (callState == CallState.STATE_ANSWERING) {
             if (this.recipient == null) throw new AssertionError("assert");
 
@@ -681,6 +753,8 @@ public class WebRtcCallService extends Service implements InjectableType,
 
         callState = CallState.STATE_CONNECTED;
 
+        if (callSetupStats != null) callSetupStats.mark(CallSetupStats.CALL_CONNECTED);
+
         if (localCameraState.isEnabled())
             lockManager.updatePhoneState(LockManager.PhoneState.IN_VIDEO);
         else lockManager.updatePhoneState(LockManager.PhoneState.IN_CALL);
@@ -779,6 +853,28 @@ public class WebRtcCallService extends Service implements InjectableType,
         }
     }
 
+    /**
+     * A call is likely soon, so get the TURN credentials ahead of time. Creating the service has
+     * already set up the PeerConnectionFactory and the audio manager.
+     */
+    private void handlePrewarm(Intent intent) {
+        this.warm = true;
+
+        if (callState != CallState.STATE_IDLE || turnServerCache.get() != null) {
+            return;
+        }
+
+        networkExecutor.execute(() -> {
+            if (turnServerCache.get() != null) return;
+
+            try {
+                turnServerCache.set(accountManager.getTurnServerInfo());
+            } catch (IOException e) {
+                Log.w(TAG, e);
+            }
+        });
+    }
+
     private void handleIsInCallQuery(Intent intent) {
         ResultReceiver resultReceiver = intent.getParcelableExtra(EXTRA_RESULT_RECEIVER);
 
@@ -1058,6 +1154,18 @@ public class WebRtcCallService extends Service implements InjectableType,
         this.remoteVideoEnabled = false;
         this.pendingOutgoingIceUpdates = null;
         this.pendingIncomingIceUpdates = null;
+        this.warm = true;
+
+        if (this.callSetupStats != null) {
+            CallQualityLog.add(this.callSetupStats);
+            this.callSetupStats = null;
+        }
+
+        if (this.iceUpdateBatcher != null) {
+            this.iceUpdateBatcher.cancel();
+            this.iceUpdateBatcher = null;
+        }
+
         lockManager.updatePhoneState(LockManager.PhoneState.IDLE);
     }
 
@@ -1168,6 +1276,13 @@ public class WebRtcCallService extends Service implements InjectableType,
     public void onIceGatheringChange(PeerConnection.IceGatheringState newState) {
         Log.i(TAG, "onIceGatheringChange:" + newState);
 
+        if (newState == PeerConnection.IceGatheringState.COMPLETE) {
+            Intent intent = new Intent(this, WebRtcCallService.class);
+            intent.setAction(ACTION_ICE_GATHERING_COMPLETE);
+            intent.putExtra(EXTRA_CALL_ID, callId);
+
+            startService(intent);
+        }
     }
 
     /**
@@ -1202,6 +1317,9 @@ public class WebRtcCallService extends Service implements InjectableType,
     public void onAddStream(MediaStream stream) {
         Log.i(TAG, "onAddStream:" + stream);
 
+        CallSetupStats stats = callSetupStats;
+        if (stats != null) stats.mark(CallSetupStats.MEDIA_FLOWING);
+
         for (AudioTrack audioTrack : stream.audioTracks) {
             audioTrack.setEnabled(true);
         }
@@ -1289,12 +1407,19 @@ public class WebRtcCallService extends Service implements InjectableType,
      *
      * @return
      */
-    private ListenableFutureTask<List<PeerConnection.IceServer>> retrieveTurnServers() {
+    private ListenableFutureTask<List<PeerConnection.IceServer>> retrieveTurnServers(@Nullable CallSetupStats stats) {
         Callable<List<PeerConnection.IceServer>> callable = () -> {
             LinkedList<PeerConnection.IceServer> results = new LinkedList<>();
 
             try {
-                TurnServerInfo turnServerInfo = accountManager.getTurnServerInfo();   // 获取当前账号的中继器服务器地址信息
+                TurnServerInfo turnServerInfo = turnServerCache.get();               // 未过期的缓存凭据
+
+                if (stats != null) stats.setTurnCached(turnServerInfo != null);
+
+                if (turnServerInfo == null) {
+                    turnServerInfo = accountManager.getTurnServerInfo();   // 获取当前账号的中继器服务器地址信息
+                    turnServerCache.set(turnServerInfo);
+                }
 
                 for (String url : turnServerInfo.getUrls()) {
                     if (url.startsWith("turn")) {   // 如果包含turn前缀，则构建ICE服务器时传入用户名和密码
@@ -1308,6 +1433,8 @@ public class WebRtcCallService extends Service implements InjectableType,
                 Log.w(TAG, e);
             }
 
+            if (stats != null) stats.mark(CallSetupStats.TURN_SERVERS);
+
             return results;
         };
 
@@ -1493,6 +1620,17 @@ public class WebRtcCallService extends Service implements InjectableType,
         }
     }
 
+    /**
+     * Gets ready for a call the user is likely to place soon, such as when a conversation that
+     * supports calling is opened.
+     */
+    public static void prewarm(Context context) {
+        Intent intent = new Intent(context, WebRtcCallService.class);
+        intent.setAction(ACTION_PREWARM);
+
+        context.startService(intent);
+    }
+
     public static void isCallActive(Context context, ResultReceiver resultReceiver) {
         Intent intent = new Intent(context, WebRtcCallService.class);
         intent.setAction(ACTION_IS_IN_CALL_QUERY);
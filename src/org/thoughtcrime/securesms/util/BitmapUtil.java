@@ -27,6 +27,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.SoftReference;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -44,6 +45,13 @@ public class BitmapUtil {
   private static final int MAX_COMPRESSION_ATTEMPTS         = 5;
   private static final int MIN_COMPRESSION_QUALITY_DECREASE = 5;
 
+  private static final int   PROBE_TILE_SIZE                 = 64;
+  private static final int   PROBE_TILES_PER_SIDE            = 8;
+  private static final float PROBE_SAFETY_MARGIN             = 0.9f;
+  private static final int   INITIAL_COMPRESSION_BUFFER_SIZE = 512 * 1024;
+
+  private static final ThreadLocal<SoftReference<ByteArrayOutputStream>> COMPRESSION_BUFFER = new ThreadLocal<>();
+
   @WorkerThread
   public static <T> ScaleResult createScaledBytes(Context context, T model, MediaConstraints constraints)
       throws BitmapDecodingException
@@ -59,10 +67,6 @@ public class BitmapUtil {
       throws BitmapDecodingException
   {
     try {
-      int    quality  = MAX_COMPRESSION_QUALITY;
-      int    attempts = 0;
-      byte[] bytes;
-
       Bitmap scaledBitmap = GlideApp.with(context.getApplicationContext())
                                     .asBitmap()
                                     .load(model)
@@ -79,21 +83,8 @@ public class BitmapUtil {
       Log.i(TAG, "Initial scaled bitmap has size of " + scaledBitmap.getByteCount() + " bytes.");
 
       try {
-        do {
-          ByteArrayOutputStream baos = new ByteArrayOutputStream();
-          scaledBitmap.compress(CompressFormat.JPEG, quality, baos);
-          bytes = baos.toByteArray();
-
-          Log.d(TAG, "iteration with quality " + quality + " size " + (bytes.length / 1024) + "kb");
-          if (quality == MIN_COMPRESSION_QUALITY) break;
-
-          int nextQuality = (int)Math.floor(quality * Math.sqrt((double)maxImageSize / bytes.length));
-          if (quality - nextQuality < MIN_COMPRESSION_QUALITY_DECREASE) {
-            nextQuality = quality - MIN_COMPRESSION_QUALITY_DECREASE;
-          }
-          quality = Math.max(nextQuality, MIN_COMPRESSION_QUALITY);
-        }
-        while (bytes.length > maxImageSize && attempts++ < MAX_COMPRESSION_ATTEMPTS);
+        CompressionResult result = compressToSize(scaledBitmap, maxImageSize);
+        byte[]            bytes  = result.bytes;
 
         if (bytes.length > maxImageSize) {
           throw new BitmapDecodingException("Unable to scale image below: " + bytes.length);
@@ -103,17 +94,119 @@ public class BitmapUtil {
           throw new BitmapDecodingException("Decoding failed. Bitmap has a length of " + bytes.length + " bytes.");
         }
 
-        Log.i(TAG, "createScaledBytes(" + model.toString() + ") -> quality " + Math.min(quality, MAX_COMPRESSION_QUALITY) + ", " + attempts + " attempt(s)");
+        Log.i(TAG, "createScaledBytes(" + model.toString() + ") -> quality " + result.quality + ", " + result.attempts + " attempt(s)");
 
         return new ScaleResult(bytes, scaledBitmap.getWidth(), scaledBitmap.getHeight());
       } finally {
         if (scaledBitmap != null) scaledBitmap.recycle();
       }
-    } catch (InterruptedException | ExecutionException e) {
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BitmapDecodingException(e);
+    } catch (ExecutionException e) {
       throw new BitmapDecodingException(e);
     }
   }
 
+  /**
+   * Compresses the bitmap as a JPEG at the highest quality that fits within maxImageSize. The
+   * starting quality is predicted from a cheap probe encode, so in the common case the full
+   * bitmap only needs to be encoded once.
+   */
+  @VisibleForTesting
+  @WorkerThread
+  static @NonNull CompressionResult compressToSize(@NonNull Bitmap bitmap, int maxImageSize) {
+    ByteArrayOutputStream buffer   = getCompressionBuffer();
+    int                   quality  = estimateQuality(bitmap, maxImageSize, buffer);
+    int                   attempts = 0;
+
+    while (true) {
+      buffer.reset();
+      bitmap.compress(CompressFormat.JPEG, quality, buffer);
+      attempts++;
+
+      Log.d(TAG, "iteration with quality " + quality + " size " + (buffer.size() / 1024) + "kb");
+
+      if (buffer.size() <= maxImageSize || quality == MIN_COMPRESSION_QUALITY || attempts > MAX_COMPRESSION_ATTEMPTS) {
+        break;
+      }
+
+      int nextQuality = (int)Math.floor(quality * Math.sqrt((double)maxImageSize / buffer.size()));
+      if (quality - nextQuality < MIN_COMPRESSION_QUALITY_DECREASE) {
+        nextQuality = quality - MIN_COMPRESSION_QUALITY_DECREASE;
+      }
+      quality = Math.max(nextQuality, MIN_COMPRESSION_QUALITY);
+    }
+
+    return new CompressionResult(buffer.toByteArray(), quality, attempts);
+  }
+
+  /**
+   * JPEG output size is dominated by the detail within each 8x8 block, so rather than encoding a
+   * downscaled copy (which packs more detail into every block and overestimates the size), the
+   * probe is a mosaic of full-resolution tiles sampled evenly across the bitmap. Its size per pixel
+   * is extrapolated to the full bitmap and the quality is chosen assuming size grows with the
+   * square of the quality, the same model used when retrying.
+   */
+  private static int estimateQuality(@NonNull Bitmap bitmap, int maxImageSize, @NonNull ByteArrayOutputStream buffer) {
+    int tilesX = Math.min(PROBE_TILES_PER_SIDE, bitmap.getWidth()  / PROBE_TILE_SIZE);
+    int tilesY = Math.min(PROBE_TILES_PER_SIDE, bitmap.getHeight() / PROBE_TILE_SIZE);
+
+    if (tilesX < 2 || tilesY < 2 || tilesX * tilesY * PROBE_TILE_SIZE * PROBE_TILE_SIZE * 4 > bitmap.getWidth() * bitmap.getHeight()) {
+      return MAX_COMPRESSION_QUALITY;
+    }
+
+    Bitmap probe  = Bitmap.createBitmap(tilesX * PROBE_TILE_SIZE, tilesY * PROBE_TILE_SIZE, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(probe);
+    Rect   src    = new Rect();
+    Rect   dst    = new Rect();
+    int    stepX  = (bitmap.getWidth()  - PROBE_TILE_SIZE) / Math.max(1, tilesX - 1);
+    int    stepY  = (bitmap.getHeight() - PROBE_TILE_SIZE) / Math.max(1, tilesY - 1);
+
+    try {
+      for (int y = 0; y < tilesY; y++) {
+        for (int x = 0; x < tilesX; x++) {
+          int left = (x * stepX) & ~0xf;
+          int top  = (y * stepY) & ~0xf;
+
+          src.set(left, top, left + PROBE_TILE_SIZE, top + PROBE_TILE_SIZE);
+          dst.set(x * PROBE_TILE_SIZE, y * PROBE_TILE_SIZE, (x + 1) * PROBE_TILE_SIZE, (y + 1) * PROBE_TILE_SIZE);
+          canvas.drawBitmap(bitmap, src, dst, null);
+        }
+      }
+
+      buffer.reset();
+      probe.compress(CompressFormat.JPEG, MAX_COMPRESSION_QUALITY, buffer);
+
+      double bytesPerPixel = (double)buffer.size() / (probe.getWidth() * probe.getHeight());
+      double predicted     = bytesPerPixel * bitmap.getWidth() * bitmap.getHeight();
+      double target        = maxImageSize * PROBE_SAFETY_MARGIN;
+
+      Log.d(TAG, "Probe predicts " + (long)(predicted / 1024) + "kb at quality " + MAX_COMPRESSION_QUALITY);
+
+      if (predicted <= target) {
+        return MAX_COMPRESSION_QUALITY;
+      }
+
+      int quality = (int)Math.floor(MAX_COMPRESSION_QUALITY * Math.sqrt(target / predicted));
+      return Math.max(MIN_COMPRESSION_QUALITY, Math.min(MAX_COMPRESSION_QUALITY, quality));
+    } finally {
+      probe.recycle();
+    }
+  }
+
+  private static @NonNull ByteArrayOutputStream getCompressionBuffer() {
+    SoftReference<ByteArrayOutputStream> reference = COMPRESSION_BUFFER.get();
+    ByteArrayOutputStream                buffer    = reference != null ? reference.get() : null;
+
+    if (buffer == null) {
+      buffer = new ByteArrayOutputStream(INITIAL_COMPRESSION_BUFFER_SIZE);
+      COMPRESSION_BUFFER.set(new SoftReference<>(buffer));
+    }
+
+    return buffer;
+  }
+
   @WorkerThread
   public static <T> Bitmap createScaledBitmap(Context context, T model, int maxWidth, int maxHeight)
       throws BitmapDecodingException
@@ -125,7 +218,10 @@ public class BitmapUtil {
                      .downsample(DownsampleStrategy.AT_MOST)
                      .submit(maxWidth, maxHeight)
                      .get();
-    } catch (InterruptedException | ExecutionException e) {
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BitmapDecodingException(e);
+    } catch (ExecutionException e) {
       throw new BitmapDecodingException(e);
     }
   }
@@ -369,6 +465,19 @@ public class BitmapUtil {
     return Math.min(maximumTextureSize, MAX_ALLOWED_TEXTURE_SIZE);
   }
 
+  @VisibleForTesting
+  static class CompressionResult {
+    final byte[] bytes;
+    final int    quality;
+    final int    attempts;
+
+    CompressionResult(byte[] bytes, int quality, int attempts) {
+      this.bytes    = bytes;
+      this.quality  = quality;
+      this.attempts = attempts;
+    }
+  }
+
   public static class ScaleResult {
     private final byte[] bitmap;
     private final int    width;
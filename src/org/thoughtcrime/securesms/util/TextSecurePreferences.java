@@ -31,6 +31,12 @@ public class TextSecurePreferences {
 
   private static final String TAG = TextSecurePreferences.class.getSimpleName();
 
+  private static volatile Snapshot snapshot;
+
+  private static final SharedPreferences.OnSharedPreferenceChangeListener SNAPSHOT_LISTENER = (preferences, key) -> {
+    if (key == null || Snapshot.KEYS.contains(key)) refreshSnapshot(preferences);
+  };
+
   public  static final String IDENTITY_PREF                    = "pref_choose_identity";
   public  static final String CHANGE_PASSPHRASE_PREF           = "pref_change_passphrase";
   public  static final String DISABLE_PASSPHRASE_PREF          = "pref_disable_passphrase";
@@ -172,7 +178,7 @@ public class TextSecurePreferences {
   private static final String UNIDENTIFIED_DELIVERY_ENABLED                      = "pref_unidentified_delivery_enabled";
 
   public static boolean isScreenLockEnabled(@NonNull Context context) {
-    return getBooleanPreference(context, SCREEN_LOCK, false);
+    return getSnapshot(context).screenLockEnabled;
   }
 
   public static void setScreenLockEnabled(@NonNull Context context, boolean value) {
@@ -329,7 +335,7 @@ public class TextSecurePreferences {
   }
 
   public static boolean isReadReceiptsEnabled(Context context) {
-    return getBooleanPreference(context, READ_RECEIPTS_PREF, false);
+    return getSnapshot(context).readReceiptsEnabled;
   }
 
   public static void setReadReceiptsEnabled(Context context, boolean enabled) {
@@ -365,7 +371,7 @@ public class TextSecurePreferences {
   }
 
   public static int getMessageBodyTextSize(Context context) {
-    return Integer.valueOf(getStringPreference(context, MESSAGE_BODY_TEXT_SIZE_PREF, "16"));
+    return getSnapshot(context).messageBodyTextSize;
   }
 
   public static boolean isTurnOnly(Context context) {
@@ -373,7 +379,7 @@ public class TextSecurePreferences {
   }
 
   public static boolean isGcmDisabled(Context context) {
-    return getBooleanPreference(context, GCM_DISABLED_PREF, false);
+    return getSnapshot(context).gcmDisabled;
   }
 
   public static void setGcmDisabled(Context context, boolean disabled) {
@@ -402,7 +408,7 @@ public class TextSecurePreferences {
   }
 
   public static boolean isMultiDevice(Context context) {
-    return getBooleanPreference(context, MULTI_DEVICE_PROVISIONED_PREF, false);
+    return getSnapshot(context).multiDevice;
   }
 
   public static void setSignedPreKeyFailureCount(Context context, int value) {
@@ -414,7 +420,7 @@ public class TextSecurePreferences {
   }
 
   public static NotificationPrivacyPreference getNotificationPrivacy(Context context) {
-    return new NotificationPrivacyPreference(getStringPreference(context, NOTIFICATION_PRIVACY_PREF, "all"));
+    return getSnapshot(context).notificationPrivacy;
   }
 
   public static boolean isNewContactsNotificationEnabled(Context context) {
@@ -510,7 +516,7 @@ public class TextSecurePreferences {
   }
 
   public static boolean isInThreadNotifications(Context context) {
-    return getBooleanPreference(context, IN_THREAD_NOTIFICATION_PREF, true);
+    return getSnapshot(context).inThreadNotifications;
   }
 
   public static long getUnidentifiedAccessCertificateRotationTime(Context context) {
@@ -539,11 +545,11 @@ public class TextSecurePreferences {
   }
 
   public static boolean isUniversalUnidentifiedAccess(Context context) {
-    return getBooleanPreference(context, UNIVERSAL_UNIDENTIFIED_ACCESS, false);
+    return getSnapshot(context).universalUnidentifiedAccess;
   }
 
   public static boolean isShowUnidentifiedDeliveryIndicatorsEnabled(Context context) {
-    return getBooleanPreference(context, SHOW_UNIDENTIFIED_DELIVERY_INDICATORS, false);
+    return getSnapshot(context).showUnidentifiedDeliveryIndicators;
   }
 
   public static void setIsUnidentifiedDeliveryEnabled(Context context, boolean enabled) {
@@ -551,7 +557,7 @@ public class TextSecurePreferences {
   }
 
   public static boolean isUnidentifiedDeliveryEnabled(Context context) {
-    return getBooleanPreference(context, UNIDENTIFIED_DELIVERY_ENABLED, true);
+    return getSnapshot(context).unidentifiedDeliveryEnabled;
   }
 
   public static long getSignedPreKeyRotationTime(Context context) {
@@ -595,7 +601,7 @@ public class TextSecurePreferences {
   }
 
   public static String getLocalNumber(Context context) {
-    return getStringPreference(context, LOCAL_NUMBER_PREF, null);
+    return getSnapshot(context).localNumber;
   }
 
   public static void setLocalNumber(Context context, String localNumber) {
@@ -627,7 +633,7 @@ public class TextSecurePreferences {
   }
 
   public static boolean isPasswordDisabled(Context context) {
-    return getBooleanPreference(context, DISABLE_PASSPHRASE_PREF, false);
+    return getSnapshot(context).passwordDisabled;
   }
 
   public static void setPasswordDisabled(Context context, boolean disabled) {
@@ -773,7 +779,7 @@ public class TextSecurePreferences {
   }
 
   public static String getTheme(Context context) {
-    return getStringPreference(context, THEME_PREF, "light");
+    return getSnapshot(context).theme;
   }
 
   public static boolean isVerifying(Context context) {
@@ -785,7 +791,7 @@ public class TextSecurePreferences {
   }
 
   public static boolean isPushRegistered(Context context) {
-    return getBooleanPreference(context, REGISTERED_GCM_PREF, false);
+    return getSnapshot(context).pushRegistered;
   }
 
   public static void setPushRegistered(Context context, boolean registered) {
@@ -862,7 +868,7 @@ public class TextSecurePreferences {
   }
 
   public static boolean isNotificationsEnabled(Context context) {
-    return getBooleanPreference(context, NOTIFICATION_PREF, true);
+    return getSnapshot(context).notificationsEnabled;
   }
 
   public static boolean isCallNotificationsEnabled(Context context) {
@@ -910,7 +916,7 @@ public class TextSecurePreferences {
   }
 
   public static boolean isNotificationVibrateEnabled(Context context) {
-    return getBooleanPreference(context, VIBRATE_PREF, true);
+    return getSnapshot(context).notificationVibrateEnabled;
   }
 
   public static boolean isCallNotificationVibrateEnabled(Context context) {
@@ -948,7 +954,7 @@ public class TextSecurePreferences {
   }
 
   public static boolean isSystemEmojiPreferred(Context context) {
-    return getBooleanPreference(context, SYSTEM_EMOJI_PREF, false);
+    return getSnapshot(context).systemEmojiPreferred;
   }
 
   public static @NonNull Set<String> getMobileMediaDownloadAllowed(Context context) {
@@ -1042,7 +1048,9 @@ public class TextSecurePreferences {
   }
 
   public static void setBooleanPreference(Context context, String key, boolean value) {
-    PreferenceManager.getDefaultSharedPreferences(context).edit().putBoolean(key, value).apply();
+    SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+    preferences.edit().putBoolean(key, value).apply();
+    onPreferenceWritten(preferences, key);
   }
 
   public static boolean getBooleanPreference(Context context, String key, boolean defaultValue) {
@@ -1050,7 +1058,9 @@ public class TextSecurePreferences {
   }
 
   public static void setStringPreference(Context context, String key, String value) {
-    PreferenceManager.getDefaultSharedPreferences(context).edit().putString(key, value).apply();
+    SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+    preferences.edit().putString(key, value).apply();
+    onPreferenceWritten(preferences, key);
   }
 
   public static String getStringPreference(Context context, String key, String defaultValue) {
@@ -1078,7 +1088,9 @@ public class TextSecurePreferences {
   }
 
   private static void removePreference(Context context, String key) {
-    PreferenceManager.getDefaultSharedPreferences(context).edit().remove(key).apply();
+    SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+    preferences.edit().remove(key).apply();
+    onPreferenceWritten(preferences, key);
   }
 
   private static Set<String> getStringSetPreference(Context context, String key, Set<String> defaultValues) {
@@ -1089,4 +1101,89 @@ public class TextSecurePreferences {
       return defaultValues;
     }
   }
+
+  private static @NonNull Snapshot getSnapshot(Context context) {
+    Snapshot current = snapshot;
+
+    if (current == null) {
+      synchronized (TextSecurePreferences.class) {
+        if (snapshot == null) {
+          SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+          preferences.registerOnSharedPreferenceChangeListener(SNAPSHOT_LISTENER);
+          snapshot = new Snapshot(preferences);
+        }
+
+        current = snapshot;
+      }
+    }
+
+    return current;
+  }
+
+  /**
+   * Change listeners are only called on the main thread, after the write. Writes made through
+   * this class refresh the snapshot immediately, so that they're visible to the writing thread.
+   */
+  private static void onPreferenceWritten(@NonNull SharedPreferences preferences, @NonNull String key) {
+    if (snapshot != null && Snapshot.KEYS.contains(key)) {
+      refreshSnapshot(preferences);
+    }
+  }
+
+  private static synchronized void refreshSnapshot(@NonNull SharedPreferences preferences) {
+    snapshot = new Snapshot(preferences);
+  }
+
+  /**
+   * An immutable copy of the preferences read on hot paths, such as binding messages, building
+   * notifications and sending. It's replaced as a whole whenever one of them changes, so that
+   * reading one is a field read rather than a lookup and parse in {@link SharedPreferences}.
+   */
+  private static class Snapshot {
+
+    private static final Set<String> KEYS = new HashSet<>(Arrays.asList(
+        LOCAL_NUMBER_PREF, REGISTERED_GCM_PREF, DISABLE_PASSPHRASE_PREF, MULTI_DEVICE_PROVISIONED_PREF,
+        SCREEN_LOCK, READ_RECEIPTS_PREF, THEME_PREF, MESSAGE_BODY_TEXT_SIZE_PREF, NOTIFICATION_PREF,
+        NOTIFICATION_PRIVACY_PREF, IN_THREAD_NOTIFICATION_PREF, VIBRATE_PREF, SYSTEM_EMOJI_PREF,
+        UNIDENTIFIED_DELIVERY_ENABLED, UNIVERSAL_UNIDENTIFIED_ACCESS, SHOW_UNIDENTIFIED_DELIVERY_INDICATORS,
+        GCM_DISABLED_PREF));
+
+    private final String                        localNumber;
+    private final boolean                       pushRegistered;
+    private final boolean                       passwordDisabled;
+    private final boolean                       multiDevice;
+    private final boolean                       screenLockEnabled;
+    private final boolean                       readReceiptsEnabled;
+    private final String                        theme;
+    private final int                           messageBodyTextSize;
+    private final boolean                       notificationsEnabled;
+    private final NotificationPrivacyPreference notificationPrivacy;
+    private final boolean                       inThreadNotifications;
+    private final boolean                       notificationVibrateEnabled;
+    private final boolean                       systemEmojiPreferred;
+    private final boolean                       unidentifiedDeliveryEnabled;
+    private final boolean                       universalUnidentifiedAccess;
+    private final boolean                       showUnidentifiedDeliveryIndicators;
+    private final boolean                       gcmDisabled;
+
+    private Snapshot(@NonNull SharedPreferences preferences) {
+      this.localNumber                        = preferences.getString(LOCAL_NUMBER_PREF, null);
+      this.pushRegistered                     = preferences.getBoolean(REGISTERED_GCM_PREF, false);
+      this.passwordDisabled                   = preferences.getBoolean(DISABLE_PASSPHRASE_PREF, false);
+      this.multiDevice                        = preferences.getBoolean(MULTI_DEVICE_PROVISIONED_PREF, false);
+      this.screenLockEnabled                  = preferences.getBoolean(SCREEN_LOCK, false);
+      this.readReceiptsEnabled                = preferences.getBoolean(READ_RECEIPTS_PREF, false);
+      this.theme                              = preferences.getString(THEME_PREF, "light");
+      this.messageBodyTextSize                = Integer.valueOf(preferences.getString(MESSAGE_BODY_TEXT_SIZE_PREF, "16"));
+      this.notificationsEnabled               = preferences.getBoolean(NOTIFICATION_PREF, true);
+      this.notificationPrivacy                = new NotificationPrivacyPreference(preferences.getString(NOTIFICATION_PRIVACY_PREF, "all"));
+      this.inThreadNotifications              = preferences.getBoolean(IN_THREAD_NOTIFICATION_PREF, true);
+      this.notificationVibrateEnabled         = preferences.getBoolean(VIBRATE_PREF, true);
+      this.systemEmojiPreferred               = preferences.getBoolean(SYSTEM_EMOJI_PREF, false);
+      this.unidentifiedDeliveryEnabled        = preferences.getBoolean(UNIDENTIFIED_DELIVERY_ENABLED, true);
+      this.universalUnidentifiedAccess        = preferences.getBoolean(UNIVERSAL_UNIDENTIFIED_ACCESS, false);
+      this.showUnidentifiedDeliveryIndicators = preferences.getBoolean(SHOW_UNIDENTIFIED_DELIVERY_INDICATORS, false);
+      this.gcmDisabled                        = preferences.getBoolean(GCM_DISABLED_PREF, false);
+    }
+  }
 }
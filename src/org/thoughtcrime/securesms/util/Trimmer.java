@@ -8,11 +8,12 @@ import android.widget.Toast;
 import org.thoughtcrime.securesms.R;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.database.ThreadDatabase;
+import org.thoughtcrime.securesms.util.concurrent.PriorityExecutors;
 
 public class Trimmer {
 
   public static void trimAllThreads(Context context, int threadLengthLimit) {
-    new TrimmingProgressTask(context).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, threadLengthLimit);
+    new TrimmingProgressTask(context).executeOnExecutor(PriorityExecutors.USER_INITIATED, threadLengthLimit);
   }
 
   private static class TrimmingProgressTask extends AsyncTask<Integer, Integer, Void> implements ThreadDatabase.ProgressListener {
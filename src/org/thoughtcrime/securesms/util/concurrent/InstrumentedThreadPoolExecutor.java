@@ -0,0 +1,108 @@
+package org.thoughtcrime.securesms.util.concurrent;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool whose threads run at a fixed OS priority and are let go after a while of being
+ * idle. Keeps track of how deep its queue gets and how long tasks wait before and while running.
+ */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+
+  private static final long IDLE_SECONDS = 15;
+
+  private final String name;
+
+  private long completed;
+  private long totalWaitTime;
+  private long maxWaitTime;
+  private long totalRunTime;
+  private long maxRunTime;
+  private int  maxQueueDepth;
+
+  public InstrumentedThreadPoolExecutor(@NonNull String name, int threads, int threadPriority, @NonNull BlockingQueue<Runnable> queue) {
+    super(threads, threads, IDLE_SECONDS, TimeUnit.SECONDS, queue, new PriorityThreadFactory(name, threadPriority));
+    this.name = name;
+    allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public void execute(@NonNull Runnable command) {
+    super.execute(new TimedRunnable(command));
+
+    int depth = getQueue().size();
+
+    synchronized (this) {
+      maxQueueDepth = Math.max(maxQueueDepth, depth);
+    }
+  }
+
+  private synchronized void onTaskComplete(long waitTime, long runTime) {
+    completed++;
+    totalWaitTime += waitTime;
+    totalRunTime  += runTime;
+    maxWaitTime    = Math.max(maxWaitTime, waitTime);
+    maxRunTime     = Math.max(maxRunTime, runTime);
+  }
+
+  /**
+   * @return One line describing the pool's load since it was created.
+   */
+  public synchronized @NonNull String getReport() {
+    long averageWait = completed > 0 ? totalWaitTime / completed : 0;
+    long averageRun  = completed > 0 ? totalRunTime / completed : 0;
+
+    return String.format(Locale.US, "%-16s threads %d/%d, queued %d (max %d), completed %d, wait avg %d ms max %d ms, run avg %d ms max %d ms",
+                         name, getActiveCount(), getMaximumPoolSize(), getQueue().size(), maxQueueDepth, completed,
+                         averageWait, maxWaitTime, averageRun, maxRunTime);
+  }
+
+  private class TimedRunnable implements Runnable {
+
+    private final Runnable delegate;
+    private final long     queuedAt = SystemClock.elapsedRealtime();
+
+    private TimedRunnable(@NonNull Runnable delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void run() {
+      long startedAt = SystemClock.elapsedRealtime();
+
+      try {
+        delegate.run();
+      } finally {
+        onTaskComplete(startedAt - queuedAt, SystemClock.elapsedRealtime() - startedAt);
+      }
+    }
+  }
+
+  private static class PriorityThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger counter = new AtomicInteger();
+    private final String        name;
+    private final int           threadPriority;
+
+    private PriorityThreadFactory(@NonNull String name, int threadPriority) {
+      this.name           = name;
+      this.threadPriority = threadPriority;
+    }
+
+    @Override
+    public Thread newThread(@NonNull Runnable r) {
+      return new Thread(() -> {
+        Process.setThreadPriority(threadPriority);
+        r.run();
+      }, name + "-" + counter.getAndIncrement());
+    }
+  }
+}
@@ -1,12 +1,15 @@
 package org.thoughtcrime.securesms.util.concurrent;
 
+import android.arch.lifecycle.DefaultLifecycleObserver;
 import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleOwner;
 import android.os.AsyncTask;
+import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 
 import org.thoughtcrime.securesms.util.Util;
 
-import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 public class LifecycleBoundTask {
 
@@ -17,28 +20,59 @@ public class LifecycleBoundTask {
    * {@link AsyncTask}, but is safe in that you can guarantee your task won't be called when your
    * view is in an invalid state.
    */
+  @MainThread
   public static <E> void run(@NonNull Lifecycle lifecycle, @NonNull BackgroundTask<E> backgroundTask, @NonNull ForegroundTask<E> foregroundTask) {
+    run(lifecycle, PriorityExecutors.Priority.USER_INITIATED, backgroundTask, foregroundTask);
+  }
+
+  /**
+   * Like {@link #run(Lifecycle, BackgroundTask, ForegroundTask)}, on the pool for the given
+   * priority. If the lifecycle is destroyed before the background task has started, it never runs.
+   */
+  @MainThread
+  public static <E> void run(@NonNull Lifecycle lifecycle,
+                             @NonNull PriorityExecutors.Priority priority,
+                             @NonNull BackgroundTask<E> backgroundTask,
+                             @NonNull ForegroundTask<E> foregroundTask)
+  {
     if (!isValid(lifecycle)) {
       return;
     }
 
-    AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+    CancelOnDestroy observer = new CancelOnDestroy();
+
+    observer.future = PriorityExecutors.get(priority).submit(() -> {
       final E result = backgroundTask.run();
 
       if (isValid(lifecycle)) {
         Util.runOnMain(() -> {
+          lifecycle.removeObserver(observer);
+
           if (isValid(lifecycle)) {
             foregroundTask.run(result);
           }
         });
       }
     });
+
+    lifecycle.addObserver(observer);
   }
 
   private static boolean isValid(@NonNull Lifecycle lifecycle) {
     return lifecycle.getCurrentState().isAtLeast(Lifecycle.State.CREATED);
   }
 
+  private static class CancelOnDestroy implements DefaultLifecycleObserver {
+
+    private Future<?> future;
+
+    @Override
+    public void onDestroy(@NonNull LifecycleOwner owner) {
+      owner.getLifecycle().removeObserver(this);
+      future.cancel(false);
+    }
+  }
+
   public interface BackgroundTask<E> {
     E run();
   }
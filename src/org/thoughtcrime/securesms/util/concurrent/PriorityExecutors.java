@@ -0,0 +1,78 @@
+package org.thoughtcrime.securesms.util.concurrent;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import org.thoughtcrime.securesms.util.LinkedBlockingLifoQueue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Bounded pools for the app's background work, one per priority class. Each class has its own
+ * threads, so a backlog of low priority work can delay other low priority work but never the
+ * loads the UI is waiting on.
+ *
+ * Blocking network calls belong on {@link SignalExecutors#IO} instead, which isn't bounded.
+ */
+public class PriorityExecutors {
+
+  private static final int CPU_BOUND_THREADS = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+
+  /**
+   * Loads that something on screen is waiting for, such as recipients and images in visible rows.
+   * The most recently submitted task runs first, since it's the most likely to still be visible.
+   */
+  public static final InstrumentedThreadPoolExecutor UI_CRITICAL = new InstrumentedThreadPoolExecutor("signal-ui",
+                                                                                                      CPU_BOUND_THREADS,
+                                                                                                      Process.THREAD_PRIORITY_DEFAULT,
+                                                                                                      new LinkedBlockingLifoQueue<>());
+
+  /**
+   * Work the user just asked for, such as sending, saving, deleting or trimming, and the thumbnails
+   * an image load is blocked on.
+   */
+  public static final InstrumentedThreadPoolExecutor USER_INITIATED = new InstrumentedThreadPoolExecutor("signal-user",
+                                                                                                          CPU_BOUND_THREADS,
+                                                                                                          Process.THREAD_PRIORITY_BACKGROUND,
+                                                                                                          new LinkedBlockingQueue<>());
+
+  /**
+   * Work the user won't notice if it's late, such as bookkeeping and notifications.
+   */
+  public static final InstrumentedThreadPoolExecutor BACKGROUND = new InstrumentedThreadPoolExecutor("signal-background",
+                                                                                                      2,
+                                                                                                      Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_LESS_FAVORABLE,
+                                                                                                      new LinkedBlockingQueue<>());
+
+  /**
+   * Long or repetitive work that nothing is waiting on, such as generating thumbnails for new
+   * attachments and warming conversation list rows before they're shown. Runs one task at a time,
+   * most recently submitted first, so nothing that blocks a caller or shows progress belongs here.
+   */
+  public static final InstrumentedThreadPoolExecutor BULK = new InstrumentedThreadPoolExecutor("signal-bulk",
+                                                                                                1,
+                                                                                                Process.THREAD_PRIORITY_LOWEST,
+                                                                                                new LinkedBlockingLifoQueue<>());
+
+  public enum Priority {
+    UI_CRITICAL, USER_INITIATED, BACKGROUND, BULK
+  }
+
+  public static @NonNull ExecutorService get(@NonNull Priority priority) {
+    switch (priority) {
+      case UI_CRITICAL:    return UI_CRITICAL;
+      case USER_INITIATED: return USER_INITIATED;
+      case BACKGROUND:     return BACKGROUND;
+      case BULK:           return BULK;
+      default:             throw new AssertionError();
+    }
+  }
+
+  public static @NonNull String getReport() {
+    return UI_CRITICAL.getReport()    + "\n" +
+           USER_INITIATED.getReport() + "\n" +
+           BACKGROUND.getReport()     + "\n" +
+           BULK.getReport();
+  }
+}
@@ -26,4 +26,12 @@ public class SignalExecutors {
     executor.allowCoreThreadTimeOut(true);
     return executor;
   }
+
+  public static ExecutorService newCachedBoundedExecutor(final String name, int maxThreads) {
+    final AtomicInteger counter = new AtomicInteger();
+
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 15, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> new Thread(r, name + "-" + counter.getAndIncrement()));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
 }
@@ -11,6 +11,7 @@ import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.TransferListener;
 
 import org.thoughtcrime.securesms.attachments.Attachment;
+import org.thoughtcrime.securesms.crypto.ModernDecryptingPartChannel;
 import org.thoughtcrime.securesms.database.AttachmentDatabase;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.mms.PartUriParser;
@@ -24,8 +25,9 @@ public class PartDataSource implements DataSource {
   private final @NonNull  Context      context;
   private final @Nullable TransferListener<? super PartDataSource> listener;
 
-  private Uri         uri;
-  private InputStream inputSteam;
+  private Uri                         uri;
+  private ModernDecryptingPartChannel channel;
+  private InputStream                 inputSteam;
 
   PartDataSource(@NonNull Context context, @Nullable TransferListener<? super PartDataSource> listener) {
     this.context  = context.getApplicationContext();
@@ -42,7 +44,10 @@ public class PartDataSource implements DataSource {
 
     if (attachment == null) throw new IOException("Attachment not found");
 
-    this.inputSteam = attachmentDatabase.getAttachmentStream(partUri.getPartId(), dataSpec.position);
+    this.channel = attachmentDatabase.getAttachmentChannel(partUri.getPartId());
+
+    if (channel != null) channel.position(dataSpec.position);
+    else                 inputSteam = attachmentDatabase.getAttachmentStream(partUri.getPartId(), dataSpec.position);
 
     if (listener != null) {
       listener.onTransferStart(this, dataSpec);
@@ -55,7 +60,8 @@ public class PartDataSource implements DataSource {
 
   @Override
   public int read(byte[] buffer, int offset, int readLength) throws IOException {
-    int read = inputSteam.read(buffer, offset, readLength);
+    int read = channel != null ? channel.read(buffer, offset, readLength)
+                               : inputSteam.read(buffer, offset, readLength);
 
     if (read > 0 && listener != null) {
       listener.onBytesTransferred(this, read);
@@ -71,6 +77,10 @@ public class PartDataSource implements DataSource {
 
   @Override
   public void close() throws IOException {
-    inputSteam.close();
+    if (channel != null)    channel.close();
+    if (inputSteam != null) inputSteam.close();
+
+    channel    = null;
+    inputSteam = null;
   }
 }
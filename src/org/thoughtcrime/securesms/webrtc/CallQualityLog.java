@@ -0,0 +1,46 @@
+package org.thoughtcrime.securesms.webrtc;
+
+
+import android.support.annotation.NonNull;
+
+import org.thoughtcrime.securesms.logging.Log;
+
+import java.util.LinkedList;
+
+/**
+ * Keeps the setup stats of the last few calls, one JSON object per line, for debug logs.
+ */
+public class CallQualityLog {
+
+  private static final String TAG = CallQualityLog.class.getSimpleName();
+
+  private static final int MAX_ENTRIES = 10;
+
+  private static final LinkedList<String> entries = new LinkedList<>();
+
+  public static void add(@NonNull CallSetupStats stats) {
+    String entry = stats.toJson();
+
+    Log.i(TAG, entry);
+
+    synchronized (entries) {
+      entries.add(entry);
+      if (entries.size() > MAX_ENTRIES) entries.removeFirst();
+    }
+  }
+
+  public static @NonNull String getReport() {
+    synchronized (entries) {
+      if (entries.isEmpty()) return "None";
+
+      StringBuilder builder = new StringBuilder();
+
+      for (String entry : entries) {
+        if (builder.length() > 0) builder.append('\n');
+        builder.append(entry);
+      }
+
+      return builder.toString();
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package org.thoughtcrime.securesms.webrtc;
+
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Times the stages of setting up a single call, relative to when the call started, along with
+ * how many ICE candidates were signaled and in how many messages.
+ */
+public class CallSetupStats {
+
+  public static final String OFFER_RECEIVED  = "offer_received";
+  public static final String TURN_SERVERS    = "turn_servers";
+  public static final String PEER_CONNECTION = "peer_connection";
+  public static final String ANSWER_RECEIVED = "answer_received";
+  public static final String FIRST_CANDIDATE = "first_local_candidate";
+  public static final String GATHERING_DONE  = "ice_gathering_complete";
+  public static final String ICE_CONNECTED   = "ice_connected";
+  public static final String MEDIA_FLOWING   = "media_flowing";
+  public static final String CALL_CONNECTED  = "call_connected";
+
+  private final boolean           outgoing;
+  private final boolean           prewarmed;
+  private final long              startedAt = SystemClock.elapsedRealtime();
+  private final Map<String, Long> stages    = new LinkedHashMap<>();
+
+  private boolean turnCached;
+  private int     candidates;
+  private int     iceMessages;
+
+  public CallSetupStats(boolean outgoing, boolean prewarmed) {
+    this.outgoing  = outgoing;
+    this.prewarmed = prewarmed;
+  }
+
+  /**
+   * Records the first time a stage is reached. Later calls for the same stage are ignored.
+   */
+  public synchronized void mark(@NonNull String stage) {
+    if (!stages.containsKey(stage)) {
+      stages.put(stage, SystemClock.elapsedRealtime() - startedAt);
+    }
+  }
+
+  public synchronized void setTurnCached(boolean turnCached) {
+    this.turnCached = turnCached;
+  }
+
+  public synchronized void onIceMessageSent(int candidates) {
+    this.candidates  += candidates;
+    this.iceMessages += 1;
+  }
+
+  /**
+   * @return The stats as a single line of JSON, for the call quality log.
+   */
+  public synchronized @NonNull String toJson() {
+    try {
+      JSONObject json   = new JSONObject();
+      JSONObject timing = new JSONObject();
+
+      for (Map.Entry<String, Long> stage : stages.entrySet()) {
+        timing.put(stage.getKey(), stage.getValue());
+      }
+
+      json.put("direction", outgoing ? "outgoing" : "incoming");
+      json.put("prewarmed", prewarmed);
+      json.put("turn_cached", turnCached);
+      json.put("connected", stages.containsKey(CALL_CONNECTED));
+      json.put("ice_candidates", candidates);
+      json.put("ice_messages", iceMessages);
+      json.put("stages_ms", timing);
+
+      return json.toString();
+    } catch (JSONException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public synchronized @NonNull String toString() {
+    StringBuilder builder = new StringBuilder(outgoing ? "outgoing" : "incoming");
+
+    for (Map.Entry<String, Long> stage : stages.entrySet()) {
+      builder.append(String.format(Locale.US, ", %s +%d ms", stage.getKey(), stage.getValue()));
+    }
+
+    return builder.append(String.format(Locale.US, ", %d ice candidates in %d messages", candidates, iceMessages))
+                  .toString();
+  }
+}
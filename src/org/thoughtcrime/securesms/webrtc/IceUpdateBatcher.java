@@ -0,0 +1,96 @@
+package org.thoughtcrime.securesms.webrtc;
+
+
+import android.support.annotation.NonNull;
+
+import org.whispersystems.signalservice.api.messages.calls.IceUpdateMessage;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects locally gathered ICE candidates so they can be sent to the remote party a few at a
+ * time instead of one message per candidate.
+ *
+ * A batch is sent a short while after its first candidate arrives, or right away once gathering
+ * completes. While a batch is being sent, new candidates wait for it to finish and then go out
+ * together, so the slower the link, the larger the batches get.
+ *
+ * Not thread safe; every method, and the {@link Sender}, is called on the owner executor.
+ */
+public class IceUpdateBatcher {
+
+  private static final long WINDOW_MS = 50;
+  private static final int  MAX_BATCH = 20;
+
+  private final Executor                 owner;
+  private final ScheduledExecutorService timer;
+  private final Sender                   sender;
+
+  private List<IceUpdateMessage> pending = new LinkedList<>();
+  private boolean                sending;
+  private boolean                scheduled;
+  private boolean                canceled;
+
+  public IceUpdateBatcher(@NonNull Executor owner, @NonNull ScheduledExecutorService timer, @NonNull Sender sender) {
+    this.owner  = owner;
+    this.timer  = timer;
+    this.sender = sender;
+  }
+
+  public void add(@NonNull IceUpdateMessage update) {
+    if (canceled) return;
+
+    pending.add(update);
+
+    if (pending.size() >= MAX_BATCH) {
+      flush();
+    } else if (!scheduled && !sending) {
+      scheduled = true;
+      timer.schedule(() -> owner.execute(this::onWindowElapsed), WINDOW_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * No more candidates are coming, so whatever is waiting can go out now.
+   */
+  public void onGatheringComplete() {
+    flush();
+  }
+
+  /**
+   * To be called when the batch handed to the {@link Sender} has been sent, successfully or not.
+   */
+  public void onSent() {
+    sending = false;
+    flush();
+  }
+
+  public void cancel() {
+    canceled = true;
+    pending.clear();
+  }
+
+  private void onWindowElapsed() {
+    scheduled = false;
+    flush();
+  }
+
+  private void flush() {
+    if (canceled || sending || pending.isEmpty()) return;
+
+    List<IceUpdateMessage> batch = pending;
+
+    pending = new LinkedList<>();
+    sending = true;
+
+    sender.send(batch);
+  }
+
+  public interface Sender {
+    void send(@NonNull List<IceUpdateMessage> batch);
+  }
+}
@@ -0,0 +1,55 @@
+package org.thoughtcrime.securesms.webrtc;
+
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.whispersystems.signalservice.api.messages.calls.TurnServerInfo;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds on to the TURN credentials from the last request until shortly before they expire, so
+ * setting up a call doesn't have to wait on the network for them.
+ *
+ * TURN REST credentials carry their expiry as a Unix timestamp before the first ':' of the
+ * username. Credentials that don't are kept for a short, fixed time instead.
+ */
+public class TurnServerCache {
+
+  private static final long FALLBACK_LIFETIME = TimeUnit.MINUTES.toMillis(10);
+  private static final long EXPIRY_MARGIN     = TimeUnit.MINUTES.toMillis(5);
+
+  private @Nullable TurnServerInfo turnServerInfo;
+  private           long           expiresAt;
+
+  public synchronized @Nullable TurnServerInfo get() {
+    if (turnServerInfo != null && System.currentTimeMillis() < expiresAt) {
+      return turnServerInfo;
+    }
+
+    turnServerInfo = null;
+    return null;
+  }
+
+  public synchronized void set(@NonNull TurnServerInfo turnServerInfo) {
+    this.turnServerInfo = turnServerInfo;
+    this.expiresAt      = getExpiresAt(turnServerInfo.getUsername(), System.currentTimeMillis());
+  }
+
+  static long getExpiresAt(@Nullable String username, long now) {
+    if (username != null) {
+      int separator = username.indexOf(':');
+
+      if (separator > 0) {
+        try {
+          return TimeUnit.SECONDS.toMillis(Long.parseLong(username.substring(0, separator))) - EXPIRY_MARGIN;
+        } catch (NumberFormatException e) {
+          // Not a timestamp, fall through
+        }
+      }
+    }
+
+    return now + FALLBACK_LIFETIME;
+  }
+}
@@ -0,0 +1,145 @@
+package org.thoughtcrime.securesms.components.emoji;
+
+import org.thoughtcrime.securesms.TextSecureTestCase;
+import org.thoughtcrime.securesms.components.emoji.parsing.EmojiDrawInfo;
+import org.thoughtcrime.securesms.components.emoji.parsing.EmojiMatcher;
+import org.thoughtcrime.securesms.components.emoji.parsing.EmojiPageBitmap;
+import org.thoughtcrime.securesms.components.emoji.parsing.EmojiParser;
+import org.thoughtcrime.securesms.components.emoji.parsing.EmojiTree;
+import org.thoughtcrime.securesms.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares {@link EmojiMatcher} against {@link EmojiParser} over message corpora ranging from
+ * plain text to emoji-only messages, and checks that both produce the same candidates.
+ */
+public class EmojiMatcherBenchmark extends TextSecureTestCase {
+
+  private static final String TAG = EmojiMatcherBenchmark.class.getSimpleName();
+
+  private static final int CORPUS_SIZE = 2000;
+  private static final int WARMUP_RUNS = 3;
+  private static final int TIMED_RUNS  = 10;
+
+  private static final String[] WORDS = {"hey", "are", "you", "coming", "tonight", "lol", "ok", "sure",
+                                         "see", "you", "at", "8", "#2", "meeting", "moved", "to", "3pm",
+                                         "haha", "thanks!", "grüße", "日本語", "привет", "—", "..."};
+
+  private EmojiTree    emojiTree;
+  private EmojiMatcher emojiMatcher;
+  private List<String> emojis;
+
+  @Override
+  public void setUp() {
+    super.setUp();
+
+    emojiTree = new EmojiTree();
+    emojis    = new ArrayList<>();
+
+    for (EmojiPageModel page : EmojiPages.DATA_PAGES) {
+      if (page.hasSpriteMap()) {
+        EmojiPageBitmap pageBitmap = new EmojiPageBitmap(getContext(), page, 1);
+        List<String>    pageEmoji  = page.getEmoji();
+
+        for (int i = 0; i < pageEmoji.size(); i++) {
+          emojiTree.add(pageEmoji.get(i), new EmojiDrawInfo(pageBitmap, i));
+          emojis.add(pageEmoji.get(i));
+        }
+      }
+    }
+
+    emojiMatcher = emojiTree.compile();
+  }
+
+  public void testPlainText() {
+    runCorpus("plain", createCorpus(0f));
+  }
+
+  public void testMixed() {
+    runCorpus("mixed", createCorpus(0.15f));
+  }
+
+  public void testEmojiHeavy() {
+    runCorpus("emoji-heavy", createCorpus(0.9f));
+  }
+
+  private void runCorpus(String name, List<String> corpus) {
+    EmojiParser parser = new EmojiParser(emojiTree);
+
+    for (String message : corpus) {
+      assertSameCandidates(message, parser.findCandidates(message), emojiMatcher.findCandidates(message));
+    }
+
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      for (String message : corpus) {
+        parser.findCandidates(message);
+        emojiMatcher.findCandidates(message);
+      }
+    }
+
+    long parserStart = System.nanoTime();
+
+    for (int i = 0; i < TIMED_RUNS; i++) {
+      for (String message : corpus) parser.findCandidates(message);
+    }
+
+    long matcherStart = System.nanoTime();
+
+    for (int i = 0; i < TIMED_RUNS; i++) {
+      for (String message : corpus) emojiMatcher.findCandidates(message);
+    }
+
+    long end      = System.nanoTime();
+    long messages = (long) corpus.size() * TIMED_RUNS;
+
+    Log.i(TAG, name + ": parser " + (matcherStart - parserStart) / messages + " ns/message, " +
+               "matcher " + (end - matcherStart) / messages + " ns/message");
+  }
+
+  /**
+   * @param emojiRatio The chance of each token in a message being an emoji rather than a word.
+   */
+  private List<String> createCorpus(float emojiRatio) {
+    Random       random = new Random(42);
+    List<String> corpus = new ArrayList<>(CORPUS_SIZE);
+
+    for (int i = 0; i < CORPUS_SIZE; i++) {
+      StringBuilder message = new StringBuilder();
+      int           tokens  = 1 + random.nextInt(random.nextInt(10) == 0 ? 80 : 12);
+
+      for (int j = 0; j < tokens; j++) {
+        if (random.nextFloat() < emojiRatio) {
+          message.append(emojis.get(random.nextInt(emojis.size())));
+        } else {
+          if (j > 0) message.append(' ');
+          message.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+      }
+
+      corpus.add(message.toString());
+    }
+
+    return corpus;
+  }
+
+  private static void assertSameCandidates(String message, EmojiParser.CandidateList expected, EmojiParser.CandidateList actual) {
+    assertEquals(message, expected.allEmojis, actual.allEmojis);
+    assertEquals(message, expected.size(), actual.size());
+
+    Iterator<EmojiParser.Candidate> expectedIterator = expected.iterator();
+    Iterator<EmojiParser.Candidate> actualIterator   = actual.iterator();
+
+    while (expectedIterator.hasNext()) {
+      EmojiParser.Candidate expectedCandidate = expectedIterator.next();
+      EmojiParser.Candidate actualCandidate   = actualIterator.next();
+
+      assertEquals(message, expectedCandidate.getStartIndex(), actualCandidate.getStartIndex());
+      assertEquals(message, expectedCandidate.getEndIndex(), actualCandidate.getEndIndex());
+      assertSame(message, expectedCandidate.getDrawInfo(), actualCandidate.getDrawInfo());
+    }
+  }
+}
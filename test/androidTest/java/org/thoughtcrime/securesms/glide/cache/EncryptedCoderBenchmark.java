@@ -0,0 +1,150 @@
+package org.thoughtcrime.securesms.glide.cache;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+
+import org.thoughtcrime.securesms.TextSecureTestCase;
+import org.thoughtcrime.securesms.logging.Log;
+import org.thoughtcrime.securesms.util.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Measures how long a Glide disk cache hit takes to decode: one stream to check that the decoder
+ * handles the entry, and another to decode it. Compares {@link EncryptedCoder} against the
+ * original per-entry Mac and Cipher lookups over a {@link CipherInputStream}.
+ */
+public class EncryptedCoderBenchmark extends TextSecureTestCase {
+
+  private static final String TAG = EncryptedCoderBenchmark.class.getSimpleName();
+
+  private static final int THUMBNAIL_SIZE = 256;
+  private static final int WARMUP_RUNS    = 20;
+  private static final int TIMED_RUNS     = 200;
+
+  private final EncryptedCoder coder = new EncryptedCoder();
+
+  private byte[] secret;
+  private File   entry;
+  private byte[] plaintext;
+
+  @Override
+  public void setUp() {
+    super.setUp();
+
+    try {
+      Bitmap                bitmap = Bitmap.createBitmap(THUMBNAIL_SIZE, THUMBNAIL_SIZE, Bitmap.Config.ARGB_8888);
+      ByteArrayOutputStream baos   = new ByteArrayOutputStream();
+
+      for (int y = 0; y < THUMBNAIL_SIZE; y++) {
+        for (int x = 0; x < THUMBNAIL_SIZE; x++) {
+          bitmap.setPixel(x, y, Color.rgb(x, y, (x * y) & 0xff));
+        }
+      }
+
+      bitmap.compress(Bitmap.CompressFormat.JPEG, 80, baos);
+
+      secret    = Util.getSecretBytes(32);
+      plaintext = baos.toByteArray();
+      entry     = File.createTempFile("glide-benchmark", "tmp", getInstrumentation().getTargetContext().getCacheDir());
+
+      try (OutputStream outputStream = coder.createEncryptedOutputStream(secret, entry)) {
+        outputStream.write(plaintext);
+      }
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    entry.delete();
+    super.tearDown();
+  }
+
+  public void testRoundTrip() throws Exception {
+    assertTrue(Arrays.equals(plaintext, Util.readFully(coder.createEncryptedInputStream(secret, entry))));
+    assertTrue(Arrays.equals(plaintext, Util.readFully(createLegacyInputStream(secret, entry))));
+  }
+
+  public void testCacheHitDecodeLatency() throws Exception {
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      decodeLegacy();
+      decode();
+    }
+
+    long legacyStart = System.nanoTime();
+    for (int i = 0; i < TIMED_RUNS; i++) decodeLegacy();
+
+    long start = System.nanoTime();
+    for (int i = 0; i < TIMED_RUNS; i++) decode();
+
+    long end = System.nanoTime();
+
+    Log.i(TAG, "Cache hit (" + plaintext.length + " bytes): legacy " + (start - legacyStart) / TIMED_RUNS / 1000 + " us, " +
+               "pooled " + (end - start) / TIMED_RUNS / 1000 + " us");
+  }
+
+  private void decode() throws Exception {
+    try (InputStream inputStream = coder.createEncryptedInputStream(secret, entry)) {
+      BitmapFactory.Options options = boundsOnly();
+      BitmapFactory.decodeStream(inputStream, null, options);
+      assertEquals(THUMBNAIL_SIZE, options.outWidth);
+    }
+
+    try (InputStream inputStream = coder.createEncryptedInputStream(secret, entry)) {
+      assertNotNull(BitmapFactory.decodeStream(inputStream));
+    }
+  }
+
+  private void decodeLegacy() throws Exception {
+    try (InputStream inputStream = createLegacyInputStream(secret, entry)) {
+      BitmapFactory.Options options = boundsOnly();
+      BitmapFactory.decodeStream(inputStream, null, options);
+      assertEquals(THUMBNAIL_SIZE, options.outWidth);
+    }
+
+    try (InputStream inputStream = createLegacyInputStream(secret, entry)) {
+      assertNotNull(BitmapFactory.decodeStream(inputStream));
+    }
+  }
+
+  private static BitmapFactory.Options boundsOnly() {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    return options;
+  }
+
+  private static InputStream createLegacyInputStream(byte[] masterKey, File file) throws Exception {
+    Mac mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(masterKey, "HmacSHA256"));
+
+    FileInputStream fileInputStream = new FileInputStream(file);
+    byte[]          header          = new byte[16 + 32];
+
+    Util.readFully(fileInputStream, header);
+
+    byte[] key = mac.doFinal(Arrays.copyOfRange(header, 16, header.length));
+
+    Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+    cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(new byte[16]));
+
+    CipherInputStream inputStream = new CipherInputStream(fileInputStream, cipher);
+    Util.readFully(inputStream, new byte[16]);
+
+    return inputStream;
+  }
+}
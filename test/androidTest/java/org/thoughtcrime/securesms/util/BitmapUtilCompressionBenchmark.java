@@ -0,0 +1,141 @@
+package org.thoughtcrime.securesms.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Shader;
+
+import org.thoughtcrime.securesms.TextSecureTestCase;
+import org.thoughtcrime.securesms.logging.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * Compares {@link BitmapUtil#compressToSize(Bitmap, int)} against the previous fixed-start
+ * compression loop over a synthetic corpus that ranges from flat, screenshot-like images to
+ * high-detail, photo-like ones.
+ */
+public class BitmapUtilCompressionBenchmark extends TextSecureTestCase {
+
+  private static final String TAG = BitmapUtilCompressionBenchmark.class.getSimpleName();
+
+  private static final int   MAX_IMAGE_SIZE = 1024 * 1024;
+  private static final int[] WIDTHS         = {1280, 2048, 3264};
+  private static final int[] HEIGHTS        = {960,  1536, 2448};
+
+  public void testCompressToSize() {
+    long legacyTime   = 0;
+    long legacyPasses = 0;
+    long probeTime    = 0;
+    long probePasses  = 0;
+
+    for (int size = 0; size < WIDTHS.length; size++) {
+      for (int detail = 0; detail <= 4; detail++) {
+        Bitmap bitmap = createSample(WIDTHS[size], HEIGHTS[size], detail);
+
+        try {
+          long   start  = System.currentTimeMillis();
+          int[]  legacy = compressLegacy(bitmap, MAX_IMAGE_SIZE);
+          long   middle = System.currentTimeMillis();
+
+          BitmapUtil.CompressionResult result = BitmapUtil.compressToSize(bitmap, MAX_IMAGE_SIZE);
+          long                         end    = System.currentTimeMillis();
+
+          legacyTime   += middle - start;
+          legacyPasses += legacy[1];
+          probeTime    += end - middle;
+          probePasses  += result.attempts;
+
+          Log.i(TAG, bitmap.getWidth() + "x" + bitmap.getHeight() + " detail " + detail + ": " +
+                     "legacy q" + legacy[0] + " in " + legacy[1] + " passes, " + (middle - start) + " ms; " +
+                     "probe q" + result.quality + " in " + result.attempts + " passes, " + (end - middle) + " ms");
+
+          if (legacy[2] <= MAX_IMAGE_SIZE) {
+            assertTrue(result.bytes.length <= MAX_IMAGE_SIZE);
+          }
+        } finally {
+          bitmap.recycle();
+        }
+      }
+    }
+
+    Log.i(TAG, "legacy: " + legacyPasses + " passes, " + legacyTime + " ms; probe: " + probePasses + " passes, " + probeTime + " ms");
+  }
+
+  private static int[] compressLegacy(Bitmap bitmap, int maxImageSize) {
+    int    quality  = 90;
+    int    attempts = 0;
+    int    passes   = 0;
+    byte[] bytes;
+
+    do {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      bitmap.compress(Bitmap.CompressFormat.JPEG, quality, baos);
+      bytes = baos.toByteArray();
+      passes++;
+
+      if (quality == 45) break;
+
+      int nextQuality = (int)Math.floor(quality * Math.sqrt((double)maxImageSize / bytes.length));
+      if (quality - nextQuality < 5) {
+        nextQuality = quality - 5;
+      }
+      quality = Math.max(nextQuality, 45);
+    }
+    while (bytes.length > maxImageSize && attempts++ < 5);
+
+    return new int[] {quality, passes, bytes.length};
+  }
+
+  /**
+   * A gradient background with a number of noisy, hard-edged patches proportional to the detail
+   * level, which is a rough stand-in for anything from a screenshot to a busy outdoor photo.
+   */
+  private static Bitmap createSample(int width, int height, int detail) {
+    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(bitmap);
+    Paint  paint  = new Paint();
+    Random random = new Random(width * 31 + detail);
+
+    paint.setShader(new LinearGradient(0, 0, width, height, Color.rgb(40, 90, 160), Color.rgb(230, 200, 120), Shader.TileMode.CLAMP));
+    canvas.drawRect(0, 0, width, height, paint);
+    paint.setShader(null);
+
+    int patches = detail * detail * 40;
+
+    for (int i = 0; i < patches; i++) {
+      int left = random.nextInt(width);
+      int top  = random.nextInt(height);
+      int size = 8 + random.nextInt(Math.max(1, width / 20));
+
+      paint.setColor(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+      canvas.drawRect(left, top, left + size, top + size, paint);
+    }
+
+    if (detail >= 3) {
+      int[] row = new int[width];
+
+      for (int y = 0; y < height; y += 2) {
+        bitmap.getPixels(row, 0, width, 0, y, width, 1);
+
+        for (int x = 0; x < width; x++) {
+          int noise = random.nextInt(detail * 12) - detail * 6;
+          int pixel = row[x];
+
+          row[x] = Color.rgb(clamp(Color.red(pixel) + noise), clamp(Color.green(pixel) + noise), clamp(Color.blue(pixel) + noise));
+        }
+
+        bitmap.setPixels(row, 0, width, 0, y, width, 1);
+      }
+    }
+
+    return bitmap;
+  }
+
+  private static int clamp(int value) {
+    return Math.max(0, Math.min(255, value));
+  }
+}
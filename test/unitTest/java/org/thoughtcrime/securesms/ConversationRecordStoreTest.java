@@ -0,0 +1,174 @@
+package org.thoughtcrime.securesms;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.thoughtcrime.securesms.database.model.MessageRecord;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConversationRecordStoreTest {
+
+  private final LinkedList<Runnable> pending = new LinkedList<>();
+  private final List<int[]>          loads   = new ArrayList<>();
+
+  private ConversationRecordStore store;
+
+  @Before
+  public void setUp() {
+    Executor queued = pending::add;
+    store = new ConversationRecordStore(queued, Runnable::run);
+  }
+
+  @Test
+  public void testKeysSeparateTransports() {
+    assertNotEquals(ConversationRecordStore.getKey(1, true), ConversationRecordStore.getKey(1, false));
+    assertNotEquals(ConversationRecordStore.getKey(1, true), ConversationRecordStore.getKey(2, false));
+  }
+
+  @Test
+  public void testBoundRecordsAreKept() {
+    MessageRecord record = record(7);
+
+    store.reset(100, null);
+    store.put(key(7), 7, record);
+
+    assertSame(record, store.get(key(7)));
+    assertNull(store.get(key(8)));
+  }
+
+  @Test
+  public void testRecordsOutsideTheWindowAreNotKept() {
+    store.reset(1000, null);
+
+    for (int row = 0; row < 200; row++) {
+      store.put(key(row), row, record(row));
+    }
+
+    assertEquals(2 * ConversationRecordStore.LOOK_AHEAD + 1, store.size());
+
+    store.onVisibleRangeChanged(100, 110);
+
+    for (int row = 0; row < 200; row++) {
+      store.put(key(row), row, record(row));
+    }
+
+    assertEquals(10 + 1 + 2 * ConversationRecordStore.LOOK_AHEAD, store.size());
+    assertNull(store.get(key(100 - ConversationRecordStore.LOOK_AHEAD - 1)));
+    assertNotNull(store.get(key(100 - ConversationRecordStore.LOOK_AHEAD)));
+    assertNotNull(store.get(key(110 + ConversationRecordStore.LOOK_AHEAD)));
+    assertNull(store.get(key(110 + ConversationRecordStore.LOOK_AHEAD + 1)));
+
+    store.onVisibleRangeChanged(120, 130);
+
+    assertNull(store.get(key(120 - ConversationRecordStore.LOOK_AHEAD - 1)));
+    assertNotNull(store.get(key(120 - ConversationRecordStore.LOOK_AHEAD)));
+  }
+
+  @Test
+  public void testReadsAheadOfScrollDirection() {
+    store.reset(1000, this::load);
+
+    store.onVisibleRangeChanged(0, 9);
+    runPending();
+
+    assertEquals(1, loads.size());
+    assertEquals(10, loads.get(0)[0]);
+    assertNotNull(store.get(key(10 + ConversationRecordStore.LOOK_AHEAD - 1)));
+
+    store.onVisibleRangeChanged(50, 59);
+    store.onVisibleRangeChanged(40, 49);
+    runPending();
+
+    assertEquals(40 - ConversationRecordStore.LOOK_AHEAD, loads.get(loads.size() - 1)[0]);
+    assertNotNull(store.get(key(40 - ConversationRecordStore.LOOK_AHEAD)));
+  }
+
+  @Test
+  public void testReadsSkipLoadedRows() {
+    store.reset(1000, this::load);
+
+    store.put(key(20), 20, record(20));
+    store.onVisibleRangeChanged(0, 9);
+    runPending();
+
+    assertEquals(10, loads.get(0)[0]);
+    assertEquals(10, loads.get(0)[1]);
+    assertEquals(21, loads.get(1)[0]);
+  }
+
+  @Test
+  public void testFailedReadsAreRetried() {
+    final int[] attempts = new int[1];
+
+    store.reset(1000, (row, count) -> {
+      if (attempts[0]++ == 0) throw new IllegalStateException();
+      return load(row, count);
+    });
+
+    store.onVisibleRangeChanged(0, 9);
+
+    try {
+      runPending();
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+
+    assertNull(store.get(key(20)));
+
+    store.onVisibleRangeChanged(1, 10);
+    runPending();
+
+    assertEquals(11, loads.get(0)[0]);
+    assertNotNull(store.get(key(20)));
+  }
+
+  @Test
+  public void testReadsForAnOldCursorAreDiscarded() {
+    store.reset(1000, this::load);
+    store.onVisibleRangeChanged(0, 9);
+
+    store.reset(1000, null);
+    runPending();
+
+    assertEquals(0, store.size());
+  }
+
+  private List<MessageRecord> load(int row, int count) {
+    List<MessageRecord> records = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      records.add(record(row + i));
+    }
+
+    loads.add(new int[] {row, count});
+    return records;
+  }
+
+  private void runPending() {
+    while (!pending.isEmpty()) {
+      pending.removeFirst().run();
+    }
+  }
+
+  private static long key(long id) {
+    return ConversationRecordStore.getKey(id, false);
+  }
+
+  private static MessageRecord record(long id) {
+    MessageRecord record = mock(MessageRecord.class);
+    when(record.getId()).thenReturn(id);
+    when(record.isMms()).thenReturn(false);
+    return record;
+  }
+}
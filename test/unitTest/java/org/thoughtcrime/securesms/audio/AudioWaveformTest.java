@@ -0,0 +1,58 @@
+package org.thoughtcrime.securesms.audio;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AudioWaveformTest {
+
+  @Test
+  public void testEmptyRecording() {
+    assertEquals(0, new AudioWaveform.Builder().build().getBarCount());
+  }
+
+  @Test
+  public void testShortRecordingKeepsEverySlice() {
+    AudioWaveform.Builder builder = new AudioWaveform.Builder();
+
+    builder.process(samples(1024, 0), 0, 2048);
+    builder.process(samples(1024, Short.MAX_VALUE), 0, 2048);
+    builder.process(samples(512, Short.MIN_VALUE), 0, 1024);
+
+    AudioWaveform waveform = builder.build();
+
+    assertEquals(3, waveform.getBarCount());
+    assertEquals(0f, waveform.getPeak(0), 0f);
+    assertEquals(1f, waveform.getPeak(1), 0f);
+    assertEquals(1f, waveform.getPeak(2), 0f);
+  }
+
+  @Test
+  public void testLongRecordingIsCappedAndKeepsPeaks() {
+    AudioWaveform.Builder builder = new AudioWaveform.Builder();
+    byte[]                silence = samples(1024, 0);
+
+    for (int i = 0; i < 1000; i++) {
+      builder.process(silence, 0, silence.length);
+    }
+
+    builder.process(samples(1, Short.MAX_VALUE), 0, 2);
+
+    AudioWaveform waveform = builder.build();
+
+    assertEquals(AudioWaveform.MAX_BARS, waveform.getBarCount());
+    assertEquals(1f, waveform.getPeak(AudioWaveform.MAX_BARS - 1), 0f);
+    assertEquals(0f, waveform.getPeak(0), 0f);
+  }
+
+  private static byte[] samples(int count, int value) {
+    byte[] pcm = new byte[count * 2];
+
+    for (int i = 0; i < count; i++) {
+      pcm[2 * i]     = (byte) (value & 0xFF);
+      pcm[2 * i + 1] = (byte) ((value >> 8) & 0xFF);
+    }
+
+    return pcm;
+  }
+}
@@ -0,0 +1,86 @@
+package org.thoughtcrime.securesms.logsubmit;
+
+import android.util.Log;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LogBundleTest {
+
+  private static final String HEADER  = "========== LOGGER ========";
+  private static final String INFO    = "2018-10-19 12:00:00.000 GMT+02:00 I KeyCachingService: Locked";
+  private static final String WARNING = "2018-10-19 12:00:01.000 GMT+02:00 W WebRtcCallService: Network failure";
+  private static final String LOGCAT  = "10-19 12:00:02.000  1234  5678 E ActivityManager: ANR in org.thoughtcrime.securesms";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testParseLevelAndTag() {
+    assertEquals(Log.INFO, LogBundle.parseLevel(INFO));
+    assertEquals(Log.ERROR, LogBundle.parseLevel(LOGCAT));
+    assertEquals(LogBundle.LEVEL_NONE, LogBundle.parseLevel(HEADER));
+    assertEquals(LogBundle.LEVEL_NONE, LogBundle.parseLevel("Device  : Google Pixel (sailfish)"));
+
+    assertEquals("KeyCachingService", LogBundle.parseTag(INFO));
+    assertEquals("ActivityManager", LogBundle.parseTag(LOGCAT));
+    assertNull(LogBundle.parseTag(HEADER));
+  }
+
+  @Test
+  public void testLinesAreReadBack() throws IOException {
+    LogBundle bundle = createBundle();
+
+    assertEquals(5, bundle.getLineCount());
+    assertEquals(HEADER, bundle.getLine(0));
+    assertEquals("", bundle.getLine(1));
+    assertEquals(WARNING, bundle.getLine(3));
+    assertEquals(Log.WARN, bundle.getLevel(3));
+  }
+
+  @Test
+  public void testFilter() throws IOException {
+    LogBundle bundle = createBundle();
+
+    assertNull(bundle.filter(Log.VERBOSE, " "));
+    assertArrayEquals(new int[] {3, 4}, bundle.filter(Log.WARN, null));
+    assertArrayEquals(new int[] {2}, bundle.filter(Log.VERBOSE, "keycaching"));
+    assertArrayEquals(new int[0], bundle.filter(Log.ERROR, "WebRtc"));
+  }
+
+  @Test
+  public void testWriteToAppliesEdits() throws IOException {
+    LogBundle            bundle = createBundle();
+    Map<Integer, String> edits  = new HashMap<>();
+    Buffer               sink   = new Buffer();
+
+    edits.put(2, "redacted");
+    bundle.writeTo(sink, edits);
+
+    assertEquals(HEADER + "\n\nredacted\n" + WARNING + "\n" + LOGCAT + "\n", sink.readUtf8());
+    assertEquals(bundle.getLength(Collections.emptyMap()) - INFO.length() + "redacted".length(), bundle.getLength(edits));
+  }
+
+  private LogBundle createBundle() throws IOException {
+    LogBundle.Writer writer = new LogBundle.Writer(folder.newFile());
+
+    writer.writeLine(HEADER);
+    writer.writeLine("");
+    writer.writeLines(INFO + "\n" + WARNING + "\n");
+    writer.writeLine(LOGCAT);
+
+    return writer.finish();
+  }
+}
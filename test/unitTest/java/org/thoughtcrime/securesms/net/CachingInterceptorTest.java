@@ -0,0 +1,116 @@
+package org.thoughtcrime.securesms.net;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+
+public class CachingInterceptorTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private MockWebServer server;
+  private OkHttpClient  client;
+
+  @Before
+  public void setUp() throws IOException {
+    HttpResponseCache cache = new HttpResponseCache(folder.newFolder("http"), 1024 * 1024, new PlainStorage());
+
+    server = new MockWebServer();
+    server.start();
+
+    client = new OkHttpClient.Builder().addInterceptor(new CachingInterceptor(cache, 0)).build();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  public void testFreshResponseIsServedFromCache() throws IOException {
+    server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody("trending"));
+
+    assertEquals("trending", get("/trending"));
+    assertEquals("trending", get("/trending"));
+    assertEquals(1, server.getRequestCount());
+  }
+
+  @Test
+  public void testNoStoreResponseIsNotCached() throws IOException {
+    server.enqueue(new MockResponse().setHeader("Cache-Control", "no-store").setBody("first"));
+    server.enqueue(new MockResponse().setHeader("Cache-Control", "no-store").setBody("second"));
+
+    assertEquals("first", get("/search"));
+    assertEquals("second", get("/search"));
+    assertEquals(2, server.getRequestCount());
+  }
+
+  @Test
+  public void testStaleResponseIsRevalidatedWithEtag() throws Exception {
+    server.enqueue(new MockResponse().setHeader("Cache-Control", "no-cache").setHeader("ETag", "\"v1\"").setBody("descriptor"));
+    server.enqueue(new MockResponse().setResponseCode(304));
+
+    assertEquals("descriptor", get("/latest.json"));
+    assertEquals("descriptor", get("/latest.json"));
+
+    server.takeRequest();
+    assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+  }
+
+  @Test
+  public void testConcurrentRequestsAreDeduplicated() throws Exception {
+    server.enqueue(new MockResponse().setBody("page").setBodyDelay(500, TimeUnit.MILLISECONDS));
+
+    ExecutorService  executor = Executors.newFixedThreadPool(2);
+    Callable<String> task     = () -> get("/page");
+    Future<String>   first    = executor.submit(task);
+    Future<String>   second   = executor.submit(task);
+
+    assertEquals("page", first.get(5, TimeUnit.SECONDS));
+    assertEquals("page", second.get(5, TimeUnit.SECONDS));
+    assertEquals(1, server.getRequestCount());
+
+    executor.shutdown();
+  }
+
+  private String get(String path) throws IOException {
+    try (Response response = client.newCall(new Request.Builder().url(server.url(path)).build()).execute()) {
+      return response.body().string();
+    }
+  }
+
+  private static class PlainStorage implements HttpResponseCache.Storage {
+    @Override
+    public OutputStream openOutput(File file) throws IOException {
+      return new FileOutputStream(file);
+    }
+
+    @Override
+    public InputStream openInput(File file) throws IOException {
+      return new FileInputStream(file);
+    }
+  }
+}